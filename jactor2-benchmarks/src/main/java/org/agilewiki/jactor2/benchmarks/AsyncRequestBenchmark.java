@@ -0,0 +1,67 @@
+package org.agilewiki.jactor2.benchmarks;
+
+import org.agilewiki.jactor2.core.facilities.Plant;
+import org.agilewiki.jactor2.core.messages.RequestBase;
+import org.agilewiki.jactor2.core.reactors.NonBlockingReactor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AsyncRequest send and response between two NonBlockingReactors of the same facility.
+ * With a batch size of 1 the two reactors play ping-pong, while larger batches
+ * show the effect of buffering the messages in the outbox.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AsyncRequestBenchmark {
+    private static final int OPERATIONS = 10000;
+
+    @Param({"1", "100"})
+    public int batchSize;
+
+    private Plant plant;
+    private Driver driver;
+    private Driver.RequestFactory factory;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        plant = new Plant();
+        driver = new Driver(new NonBlockingReactor(plant));
+        final Echo echo = new Echo(new NonBlockingReactor(plant));
+        factory = new Driver.RequestFactory() {
+            @Override
+            public RequestBase<Integer> create(final int _value) {
+                return echo.echoSReq(_value);
+            }
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        plant.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public int send() throws Exception {
+        return driver.sendAReq(factory, OPERATIONS, batchSize).call();
+    }
+}
@@ -0,0 +1,28 @@
+package org.agilewiki.jactor2.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, so that the allocation rate per operation
+ * (gc.alloc.rate.norm) is reported along with the throughput.
+ * The arguments are the usual JMH command line options, e.g. a regular expression
+ * selecting the benchmarks to be run:
+ * <pre>
+ * mvn -pl jactor2-core,jactor2-benchmarks install
+ * java -jar jactor2-benchmarks/target/benchmarks.jar DoLocal
+ * </pre>
+ */
+public class BenchmarkRunner {
+
+    public static void main(final String[] _args) throws Exception {
+        final Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(_args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,61 @@
+package org.agilewiki.jactor2.benchmarks;
+
+import org.agilewiki.jactor2.core.facilities.Plant;
+import org.agilewiki.jactor2.core.reactors.IsolationReactor;
+import org.agilewiki.jactor2.core.reactors.NonBlockingReactor;
+import org.agilewiki.jactor2.core.reactors.Reactor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RequestBase.call from a thread which is not part of the facility,
+ * with the benchmark thread blocking until each response is received.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CallBenchmark {
+
+    @Param({"nonBlocking", "isolation"})
+    public String reactorType;
+
+    private Plant plant;
+    private Echo echo;
+    private int value;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        plant = new Plant();
+        final Reactor reactor = "isolation".equals(reactorType) ?
+                new IsolationReactor(plant) :
+                new NonBlockingReactor(plant);
+        echo = new Echo(reactor);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        plant.close();
+    }
+
+    @Benchmark
+    public int call() throws Exception {
+        value += 1;
+        return echo.echoSReq(value).call();
+    }
+}
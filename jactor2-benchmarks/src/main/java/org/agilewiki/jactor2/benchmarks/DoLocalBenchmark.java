@@ -0,0 +1,84 @@
+package org.agilewiki.jactor2.benchmarks;
+
+import org.agilewiki.jactor2.core.blades.BladeBase;
+import org.agilewiki.jactor2.core.facilities.Plant;
+import org.agilewiki.jactor2.core.messages.AsyncRequest;
+import org.agilewiki.jactor2.core.messages.SyncRequest;
+import org.agilewiki.jactor2.core.reactors.NonBlockingReactor;
+import org.agilewiki.jactor2.core.reactors.Reactor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SyncRequest.doLocal, where a request is processed immediately by a blade
+ * sharing the reactor of the caller.
+ * Each invocation is a single call which then passes OPERATIONS requests locally.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DoLocalBenchmark {
+    private static final int OPERATIONS = 10000;
+
+    private Plant plant;
+    private Looper looper;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        plant = new Plant();
+        looper = new Looper(new NonBlockingReactor(plant));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        plant.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public int doLocal() throws Exception {
+        return looper.loopAReq(OPERATIONS).call();
+    }
+
+    /**
+     * Passes requests to an Echo blade with the same reactor.
+     */
+    static class Looper extends BladeBase {
+        private final Echo echo;
+
+        Looper(final Reactor _reactor) throws Exception {
+            initialize(_reactor);
+            echo = new Echo(_reactor);
+        }
+
+        AsyncRequest<Integer> loopAReq(final int _count) {
+            return new AsyncBladeRequest<Integer>() {
+                @Override
+                protected void processAsyncRequest() throws Exception {
+                    int sum = 0;
+                    for (int i = 0; i < _count; i++) {
+                        final SyncRequest<Integer> request = echo.echoSReq(i);
+                        sum += local(request);
+                    }
+                    processAsyncResponse(sum);
+                }
+            };
+        }
+    }
+}
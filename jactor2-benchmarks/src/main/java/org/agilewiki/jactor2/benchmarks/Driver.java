@@ -0,0 +1,86 @@
+package org.agilewiki.jactor2.benchmarks;
+
+import org.agilewiki.jactor2.core.blades.BladeBase;
+import org.agilewiki.jactor2.core.messages.AsyncRequest;
+import org.agilewiki.jactor2.core.messages.AsyncResponseProcessor;
+import org.agilewiki.jactor2.core.messages.RequestBase;
+import org.agilewiki.jactor2.core.reactors.Reactor;
+
+/**
+ * A blade which sends requests to another blade, a batch at a time, with the next batch
+ * being sent once all the responses to the previous batch have been received.
+ * A batch size of 1 gives a ping-pong exchange between the two reactors.
+ */
+public class Driver extends BladeBase {
+
+    /**
+     * Creates the requests to be sent.
+     */
+    public interface RequestFactory {
+
+        /**
+         * Create a request.
+         *
+         * @param _value The value to be passed with the request.
+         * @return A new request.
+         */
+        RequestBase<Integer> create(int _value);
+    }
+
+    /**
+     * Create a Driver blade.
+     *
+     * @param _reactor The blade's reactor.
+     */
+    public Driver(final Reactor _reactor) throws Exception {
+        initialize(_reactor);
+    }
+
+    /**
+     * Returns a request to send requests in batches.
+     *
+     * @param _factory   Creates the requests to be sent.
+     * @param _count     The total number of requests to be sent.
+     * @param _batchSize The number of requests sent before waiting for the responses.
+     * @return The request, which returns the sum of the responses.
+     */
+    public AsyncRequest<Integer> sendAReq(final RequestFactory _factory,
+                                          final int _count,
+                                          final int _batchSize) {
+        return new AsyncBladeRequest<Integer>() {
+            final AsyncResponseProcessor<Integer> dis = this;
+            int sent;
+            int pending;
+            int sum;
+
+            final AsyncResponseProcessor<Integer> responseProcessor =
+                    new AsyncResponseProcessor<Integer>() {
+                        @Override
+                        public void processAsyncResponse(final Integer _response) throws Exception {
+                            sum += _response;
+                            pending -= 1;
+                            if (pending == 0)
+                                nextBatch();
+                        }
+                    };
+
+            @Override
+            protected void processAsyncRequest() throws Exception {
+                nextBatch();
+            }
+
+            private void nextBatch() throws Exception {
+                if (sent == _count) {
+                    dis.processAsyncResponse(sum);
+                    return;
+                }
+                final int batch = Math.min(_batchSize, _count - sent);
+                pending = batch;
+                for (int i = 0; i < batch; i++) {
+                    send(_factory.create(sent), responseProcessor);
+                    sent += 1;
+                }
+            }
+        };
+    }
+}
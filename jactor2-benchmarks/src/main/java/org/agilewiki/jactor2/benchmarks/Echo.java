@@ -0,0 +1,73 @@
+package org.agilewiki.jactor2.benchmarks;
+
+import org.agilewiki.jactor2.core.blades.BladeBase;
+import org.agilewiki.jactor2.core.messages.AsyncRequest;
+import org.agilewiki.jactor2.core.messages.SyncRequest;
+import org.agilewiki.jactor2.core.reactors.Reactor;
+
+/**
+ * A blade which returns the value passed to it.
+ */
+public class Echo extends BladeBase {
+
+    /**
+     * Create an Echo blade.
+     *
+     * @param _reactor The blade's reactor.
+     */
+    public Echo(final Reactor _reactor) throws Exception {
+        initialize(_reactor);
+    }
+
+    /**
+     * Returns a request which returns the value passed to it.
+     *
+     * @param _value The value to be returned.
+     * @return The request.
+     */
+    public SyncRequest<Integer> echoSReq(final int _value) {
+        return new SyncBladeRequest<Integer>() {
+            @Override
+            protected Integer processSyncRequest() throws Exception {
+                return _value;
+            }
+        };
+    }
+
+    /**
+     * Returns an async request which returns the value passed to it.
+     *
+     * @param _value The value to be returned.
+     * @return The request.
+     */
+    public AsyncRequest<Integer> echoAReq(final int _value) {
+        return new AsyncBladeRequest<Integer>() {
+            @Override
+            protected void processAsyncRequest() throws Exception {
+                processAsyncResponse(_value);
+            }
+        };
+    }
+
+    /**
+     * A recyclable request which returns the value passed to it.
+     */
+    public class EchoAReq extends RecyclableAsyncBladeRequest<Integer> {
+
+        /**
+         * The value to be returned.
+         */
+        public int value;
+
+        @Override
+        protected void processAsyncRequest() throws Exception {
+            processAsyncResponse(value);
+        }
+
+        @Override
+        protected void reset() {
+            super.reset();
+            value = 0;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package org.agilewiki.jactor2.benchmarks;
+
+import org.agilewiki.jactor2.core.blades.Blade;
+import org.agilewiki.jactor2.core.blades.BladeBase;
+import org.agilewiki.jactor2.core.facilities.Plant;
+import org.agilewiki.jactor2.core.messages.Event;
+import org.agilewiki.jactor2.core.messages.EventBus;
+import org.agilewiki.jactor2.core.reactors.NonBlockingReactor;
+import org.agilewiki.jactor2.core.reactors.Reactor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Event.signal fan-out through EventBus.publishSReq, with the subscribers either each on
+ * its own reactor (reactorCount 0) or spread over a few shared reactors, in which case
+ * a single message per reactor delivers the event. An operation completes when every
+ * subscriber has processed the event.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EventBusBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int subscriberCount;
+
+    @Param({"0", "4"})
+    public int reactorCount;
+
+    private Plant plant;
+    private EventBus<Listener> eventBus;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        plant = new Plant();
+        eventBus = new EventBus<Listener>(new NonBlockingReactor(plant));
+        final Reactor[] reactors = new Reactor[reactorCount];
+        for (int i = 0; i < reactorCount; i++) {
+            reactors[i] = new NonBlockingReactor(plant);
+        }
+        for (int i = 0; i < subscriberCount; i++) {
+            final Reactor reactor = reactorCount == 0 ?
+                    new NonBlockingReactor(plant) : reactors[i % reactorCount];
+            eventBus.subscribeSReq(new Subscriber(reactor)).call();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        plant.close();
+    }
+
+    @Benchmark
+    public void publish() throws Exception {
+        final CountDownLatch done = new CountDownLatch(subscriberCount);
+        eventBus.publishSReq(new Tick(done)).call();
+        done.await();
+    }
+
+    /**
+     * The blades subscribed to the event bus.
+     */
+    public interface Listener extends Blade {
+        void tick(CountDownLatch _done);
+    }
+
+    /**
+     * The event published to the subscribers.
+     */
+    static class Tick extends Event<Listener> {
+        private final CountDownLatch done;
+
+        Tick(final CountDownLatch _done) {
+            done = _done;
+        }
+
+        @Override
+        protected void processEvent(final Listener _targetBlade) throws Exception {
+            _targetBlade.tick(done);
+        }
+    }
+
+    static class Subscriber extends BladeBase implements Listener {
+        Subscriber(final Reactor _reactor) throws Exception {
+            initialize(_reactor);
+        }
+
+        @Override
+        public void tick(final CountDownLatch _done) {
+            _done.countDown();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package org.agilewiki.jactor2.benchmarks;
+
+import org.agilewiki.jactor2.core.blades.BladeBase;
+import org.agilewiki.jactor2.core.facilities.Plant;
+import org.agilewiki.jactor2.core.messages.AsyncRequest;
+import org.agilewiki.jactor2.core.messages.AsyncResponseProcessor;
+import org.agilewiki.jactor2.core.messages.SyncRequest;
+import org.agilewiki.jactor2.core.reactors.NonBlockingReactor;
+import org.agilewiki.jactor2.core.reactors.Reactor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fairness under skewed load, with the run quota of the facility. Each operation floods one
+ * hot reactor with a large block of messages and then passes one request to each of 1,000 cold
+ * reactors, timing how long it takes for all the cold reactors to respond. Without a quota, a
+ * thread which picks up the hot reactor keeps it until the flood has been processed. With a
+ * quota, the hot reactor yields its thread and the cold reactors are served in between.
+ * The hot reactor is drained between operations. The plant has a single thread, which stands
+ * in for a pool whose threads are all kept busy by hot reactors.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FairnessBenchmark {
+    private static final int COLD_REACTORS = 1000;
+    private static final int HOT_MESSAGES = 20000;
+
+    @Param({"0", "100"})
+    public int runMessageQuota;
+
+    private Plant plant;
+    private Hub hub;
+    private Worker hot;
+    private Worker[] cold;
+    private final AtomicLong hotProcessed = new AtomicLong();
+    private long hotSent;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        plant = new Plant(1);
+        plant.setRunMessageQuota(runMessageQuota);
+        hub = new Hub(new NonBlockingReactor(plant));
+        hot = new Worker(new NonBlockingReactor(plant), hotProcessed);
+        cold = new Worker[COLD_REACTORS];
+        for (int i = 0; i < COLD_REACTORS; i++)
+            cold[i] = new Worker(new NonBlockingReactor(plant), null);
+    }
+
+    @Setup(Level.Invocation)
+    public void drain() throws Exception {
+        while (hotProcessed.get() < hotSent)
+            Thread.sleep(1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        plant.close();
+    }
+
+    @Benchmark
+    public int coldRound() throws Exception {
+        hotSent += HOT_MESSAGES;
+        return hub.roundAReq().call();
+    }
+
+    /**
+     * A blade which counts the messages it processes.
+     */
+    static class Worker extends BladeBase {
+        private final AtomicLong processed;
+
+        Worker(final Reactor _reactor, final AtomicLong _processed) throws Exception {
+            initialize(_reactor);
+            processed = _processed;
+        }
+
+        SyncRequest<Integer> workSReq() {
+            return new SyncBladeRequest<Integer>() {
+                @Override
+                protected Integer processSyncRequest() throws Exception {
+                    if (processed != null)
+                        processed.incrementAndGet();
+                    return 1;
+                }
+            };
+        }
+    }
+
+    /**
+     * Floods the hot reactor and then passes a request to each of the cold reactors.
+     */
+    class Hub extends BladeBase {
+
+        Hub(final Reactor _reactor) throws Exception {
+            initialize(_reactor);
+        }
+
+        AsyncRequest<Integer> roundAReq() {
+            return new AsyncBladeRequest<Integer>() {
+                final AsyncResponseProcessor<Integer> dis = this;
+                int pending = COLD_REACTORS;
+
+                final AsyncResponseProcessor<Integer> coldResponseProcessor =
+                        new AsyncResponseProcessor<Integer>() {
+                            @Override
+                            public void processAsyncResponse(final Integer _response) throws Exception {
+                                pending -= 1;
+                                if (pending == 0)
+                                    dis.processAsyncResponse(COLD_REACTORS);
+                            }
+                        };
+
+                @Override
+                protected void processAsyncRequest() throws Exception {
+                    for (int i = 0; i < HOT_MESSAGES; i++)
+                        send(hot.workSReq(), null);
+                    for (final Worker worker : cold)
+                        send(worker.workSReq(), coldResponseProcessor);
+                }
+            };
+        }
+    }
+}
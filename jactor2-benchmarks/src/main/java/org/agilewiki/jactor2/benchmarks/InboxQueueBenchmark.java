@@ -0,0 +1,183 @@
+package org.agilewiki.jactor2.benchmarks;
+
+import org.agilewiki.jactor2.core.reactors.LinkedMessage;
+import org.agilewiki.jactor2.core.reactors.LinkedMessageQueue;
+import org.agilewiki.jactor2.core.reactors.Reactor;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The concurrent queue of an inbox: a ConcurrentLinkedQueue, which allocates a node for
+ * each message added, compared with a LinkedMessageQueue, where each message carries its
+ * own link. Compare the gc.alloc.rate.norm reported by the GC profiler.
+ * <p>
+ * In the exchange group, several producers add messages which are polled by a single
+ * consumer, as when requests are sent to a reactor from other threads. The offered and
+ * polled counters are the messages exchanged per second, as an offer is skipped while the
+ * consumer has yet to poll the earlier use of a message, and a poll may find the queue empty.
+ * The offerThenPoll benchmark adds and then polls a batch of messages on a single thread.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Group)
+public class InboxQueueBenchmark {
+    private static final int OPERATIONS = 1024;
+
+    @Param({"ConcurrentLinkedQueue", "LinkedMessageQueue"})
+    public String queueType;
+
+    private Queue<Object> queue;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        if ("LinkedMessageQueue".equals(queueType))
+            queue = new LinkedMessageQueue();
+        else
+            queue = new ConcurrentLinkedQueue<Object>();
+    }
+
+    @Benchmark
+    @Group("exchange")
+    @GroupThreads(3)
+    public boolean offer(final Producer _producer, final Counters _counters) {
+        final TestMessage message = _producer.messages[_producer.next];
+        if (message.queued)
+            return false;
+        message.queued = true;
+        queue.offer(message);
+        _producer.next = (_producer.next + 1) % OPERATIONS;
+        _counters.offered += 1;
+        return true;
+    }
+
+    @Benchmark
+    @Group("exchange")
+    @GroupThreads(1)
+    public Object poll(final Counters _counters) {
+        final Object message = queue.poll();
+        if (message != null) {
+            ((TestMessage) message).queued = false;
+            _counters.polled += 1;
+        }
+        return message;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public Object offerThenPoll(final Producer _producer) {
+        final TestMessage[] messages = _producer.messages;
+        for (int i = 0; i < OPERATIONS; i++) {
+            queue.offer(messages[i]);
+        }
+        Object message = null;
+        for (int i = 0; i < OPERATIONS; i++) {
+            message = queue.poll();
+        }
+        return message;
+    }
+
+    /**
+     * The messages added by a thread, each of which is reused once it has been polled.
+     */
+    @State(Scope.Thread)
+    public static class Producer {
+        final TestMessage[] messages = new TestMessage[OPERATIONS];
+        int next;
+
+        public Producer() {
+            for (int i = 0; i < OPERATIONS; i++) {
+                messages[i] = new TestMessage();
+            }
+        }
+
+        /**
+         * The queue is replaced for each iteration, so any message left in the previous
+         * queue can be reused.
+         */
+        @Setup(Level.Iteration)
+        public void setup() {
+            for (final TestMessage message : messages) {
+                message.queued = false;
+            }
+            next = 0;
+        }
+    }
+
+    /**
+     * The number of messages actually added and polled.
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long offered;
+        public long polled;
+
+        @Setup(Level.Iteration)
+        public void setup() {
+            offered = 0;
+            polled = 0;
+        }
+    }
+
+    static class TestMessage extends LinkedMessage {
+
+        /**
+         * True from when the message is added until it has been polled.
+         */
+        volatile boolean queued;
+
+        @Override
+        public boolean isForeign() {
+            return true;
+        }
+
+        @Override
+        public boolean isResponsePending() {
+            return false;
+        }
+
+        @Override
+        public boolean isSignal() {
+            return true;
+        }
+
+        @Override
+        public boolean isIsolated() {
+            return false;
+        }
+
+        @Override
+        public void eval() {
+        }
+
+        @Override
+        public void processException(final Reactor _activeReactor, final Exception _e) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
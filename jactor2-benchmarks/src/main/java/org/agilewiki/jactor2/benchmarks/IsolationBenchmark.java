@@ -0,0 +1,101 @@
+package org.agilewiki.jactor2.benchmarks;
+
+import org.agilewiki.jactor2.core.blades.BladeBase;
+import org.agilewiki.jactor2.core.facilities.Plant;
+import org.agilewiki.jactor2.core.messages.AsyncRequest;
+import org.agilewiki.jactor2.core.messages.AsyncResponseProcessor;
+import org.agilewiki.jactor2.core.messages.RequestBase;
+import org.agilewiki.jactor2.core.reactors.IsolationReactor;
+import org.agilewiki.jactor2.core.reactors.NonBlockingReactor;
+import org.agilewiki.jactor2.core.reactors.Reactor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request serialization by IsolationReactor. A batch of requests is sent to a relay blade,
+ * which passes each request on to an Echo blade before responding. With an IsolationReactor,
+ * the relay only starts on the next request once the previous one has its response,
+ * while a NonBlockingReactor relays the whole batch at once.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IsolationBenchmark {
+    private static final int OPERATIONS = 10000;
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"isolation", "nonBlocking"})
+    public String reactorType;
+
+    private Plant plant;
+    private Driver driver;
+    private Driver.RequestFactory factory;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        plant = new Plant();
+        driver = new Driver(new NonBlockingReactor(plant));
+        final Echo echo = new Echo(new NonBlockingReactor(plant));
+        final Reactor relayReactor = "isolation".equals(reactorType) ?
+                new IsolationReactor(plant) :
+                new NonBlockingReactor(plant);
+        final Relay relay = new Relay(relayReactor, echo);
+        factory = new Driver.RequestFactory() {
+            @Override
+            public RequestBase<Integer> create(final int _value) {
+                return relay.relayAReq(_value);
+            }
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        plant.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public int relay() throws Exception {
+        return driver.sendAReq(factory, OPERATIONS, BATCH_SIZE).call();
+    }
+
+    /**
+     * Passes each request on to an Echo blade.
+     */
+    static class Relay extends BladeBase {
+        private final Echo echo;
+
+        Relay(final Reactor _reactor, final Echo _echo) throws Exception {
+            initialize(_reactor);
+            echo = _echo;
+        }
+
+        AsyncRequest<Integer> relayAReq(final int _value) {
+            return new AsyncBladeRequest<Integer>() {
+                final AsyncResponseProcessor<Integer> dis = this;
+
+                @Override
+                protected void processAsyncRequest() throws Exception {
+                    send(echo.echoSReq(_value), dis);
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package org.agilewiki.jactor2.benchmarks;
+
+import org.agilewiki.jactor2.core.facilities.Plant;
+import org.agilewiki.jactor2.core.messages.RequestBase;
+import org.agilewiki.jactor2.core.reactors.KeyedIsolationReactor;
+import org.agilewiki.jactor2.core.reactors.NonBlockingReactor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of a KeyedIsolationReactor against the number of isolation keys. As in
+ * IsolationBenchmark, a batch of requests is sent to a relay blade, which passes each request
+ * on to an Echo blade before responding. The requests are spread over keyCount keys, so with
+ * one key they are serialized as with an IsolationReactor, and with as many keys as the batch
+ * size the whole batch is relayed at once.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KeyedIsolationBenchmark {
+    private static final int OPERATIONS = 10000;
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"1", "4", "16", "100"})
+    public int keyCount;
+
+    private Plant plant;
+    private Driver driver;
+    private Driver.RequestFactory factory;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        plant = new Plant();
+        driver = new Driver(new NonBlockingReactor(plant));
+        final Echo echo = new Echo(new NonBlockingReactor(plant));
+        final IsolationBenchmark.Relay relay =
+                new IsolationBenchmark.Relay(new KeyedIsolationReactor(plant), echo);
+        final Integer[] keys = new Integer[keyCount];
+        for (int i = 0; i < keyCount; i++)
+            keys[i] = i;
+        factory = new Driver.RequestFactory() {
+            @Override
+            public RequestBase<Integer> create(final int _value) {
+                return relay.relayAReq(_value).setIsolationKey(keys[_value % keyCount]);
+            }
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        plant.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public int relay() throws Exception {
+        return driver.sendAReq(factory, OPERATIONS, BATCH_SIZE).call();
+    }
+}
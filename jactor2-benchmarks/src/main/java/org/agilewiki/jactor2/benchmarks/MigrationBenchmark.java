@@ -0,0 +1,104 @@
+package org.agilewiki.jactor2.benchmarks;
+
+import org.agilewiki.jactor2.core.facilities.Facility;
+import org.agilewiki.jactor2.core.facilities.Plant;
+import org.agilewiki.jactor2.core.messages.RequestBase;
+import org.agilewiki.jactor2.core.reactors.AdaptiveMigrationPolicy;
+import org.agilewiki.jactor2.core.reactors.MigrationPolicy;
+import org.agilewiki.jactor2.core.reactors.NonBlockingReactor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reactor migration in UnboundReactor.flush. Two reactors play ping-pong.
+ * When both are in the same facility, each flush migrates the thread to the idle target.
+ * Migration is not possible between facilities, so there each message is instead
+ * passed to the thread manager of the target facility.
+ * <p>
+ * In the fan-out case, the driver sends a batch of requests spread over several echo
+ * reactors, so migrating with the last block leaves the driver to be resubmitted when
+ * the responses come back. Each case is run with the driver using each migration policy.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MigrationBenchmark {
+    private static final int OPERATIONS = 10000;
+    private static final int FAN_OUT = 8;
+
+    @Param({"true", "false"})
+    public boolean sameFacility;
+
+    @Param({"always", "never", "adaptive"})
+    public String policy;
+
+    private Plant plant;
+    private Driver driver;
+    private Driver.RequestFactory factory;
+    private Driver.RequestFactory fanOutFactory;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        plant = new Plant();
+        final Facility echoFacility = sameFacility ?
+                plant :
+                plant.createFacilitySReq("echo").call();
+        final NonBlockingReactor driverReactor = new NonBlockingReactor(plant);
+        if ("never".equals(policy))
+            driverReactor.setMigrationPolicy(MigrationPolicy.NEVER);
+        else if ("adaptive".equals(policy))
+            driverReactor.setMigrationPolicy(new AdaptiveMigrationPolicy());
+        driver = new Driver(driverReactor);
+        final Echo echo = new Echo(new NonBlockingReactor(echoFacility));
+        factory = new Driver.RequestFactory() {
+            @Override
+            public RequestBase<Integer> create(final int _value) {
+                return echo.echoSReq(_value);
+            }
+        };
+        final Echo[] echoes = new Echo[FAN_OUT];
+        for (int i = 0; i < FAN_OUT; i++)
+            echoes[i] = new Echo(new NonBlockingReactor(echoFacility));
+        fanOutFactory = new Driver.RequestFactory() {
+            @Override
+            public RequestBase<Integer> create(final int _value) {
+                return echoes[_value % FAN_OUT].echoSReq(_value);
+            }
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        plant.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public int pingPong() throws Exception {
+        return driver.sendAReq(factory, OPERATIONS, 1).call();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public int fanOut() throws Exception {
+        return driver.sendAReq(fanOutFactory, OPERATIONS, FAN_OUT).call();
+    }
+}
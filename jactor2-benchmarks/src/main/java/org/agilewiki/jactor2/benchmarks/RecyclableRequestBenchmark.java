@@ -0,0 +1,89 @@
+package org.agilewiki.jactor2.benchmarks;
+
+import org.agilewiki.jactor2.core.facilities.Plant;
+import org.agilewiki.jactor2.core.messages.RequestBase;
+import org.agilewiki.jactor2.core.messages.RequestPool;
+import org.agilewiki.jactor2.core.reactors.NonBlockingReactor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AsyncRequests between two NonBlockingReactors, either newly created for each send or
+ * taken from a RequestPool. Compare the gc.alloc.rate.norm reported by the GC profiler.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RecyclableRequestBenchmark {
+    private static final int OPERATIONS = 10000;
+
+    @Param({"1", "100"})
+    public int batchSize;
+
+    private Plant plant;
+    private Driver driver;
+    private Driver.RequestFactory newFactory;
+    private Driver.RequestFactory pooledFactory;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        plant = new Plant();
+        final NonBlockingReactor driverReactor = new NonBlockingReactor(plant);
+        driver = new Driver(driverReactor);
+        final Echo echo = new Echo(new NonBlockingReactor(plant));
+        newFactory = new Driver.RequestFactory() {
+            @Override
+            public RequestBase<Integer> create(final int _value) {
+                return echo.echoAReq(_value);
+            }
+        };
+        final RequestPool<Echo.EchoAReq> pool = new RequestPool<Echo.EchoAReq>(driverReactor) {
+            @Override
+            protected Echo.EchoAReq create() {
+                return echo.new EchoAReq();
+            }
+        };
+        pooledFactory = new Driver.RequestFactory() {
+            @Override
+            public RequestBase<Integer> create(final int _value) {
+                final Echo.EchoAReq request = pool.acquire();
+                request.value = _value;
+                return request;
+            }
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        plant.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public int newRequests() throws Exception {
+        return driver.sendAReq(newFactory, OPERATIONS, batchSize).call();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public int pooledRequests() throws Exception {
+        return driver.sendAReq(pooledFactory, OPERATIONS, batchSize).call();
+    }
+}
@@ -2,10 +2,13 @@ package org.agilewiki.jactor2.core.blades;
 
 import org.agilewiki.jactor2.core.messages.AsyncRequest;
 import org.agilewiki.jactor2.core.messages.AsyncResponseProcessor;
+import org.agilewiki.jactor2.core.messages.RecyclableAsyncRequest;
 import org.agilewiki.jactor2.core.messages.RequestBase;
 import org.agilewiki.jactor2.core.messages.SyncRequest;
 import org.agilewiki.jactor2.core.reactors.Reactor;
 
+import java.util.List;
+
 /**
  * <p>
  * BladeBase is a convenience class that implements an Blade. Initialization is not
@@ -81,6 +84,17 @@ public class BladeBase implements Blade {
         }
     }
 
+    protected abstract class RecyclableAsyncBladeRequest<RESPONSE_TYPE>
+            extends RecyclableAsyncRequest<RESPONSE_TYPE> {
+
+        /**
+         * Create a RecyclableAsyncBladeRequest.
+         */
+        public RecyclableAsyncBladeRequest() {
+            super(BladeBase.this.reactor);
+        }
+    }
+
     /**
      * Process the request immediately.
      *
@@ -104,4 +118,19 @@ public class BladeBase implements Blade {
             throws Exception {
         RequestBase.doSend(reactor, _request, _responseProcessor);
     }
+
+    /**
+     * Passes a list of requests and processes the list of their responses once all the
+     * responses have been received. The requests bound for the same target are added to its
+     * inbox as a single block.
+     *
+     * @param _requests          The requests to be passed.
+     * @param _responseProcessor Processes the responses, which are in the same order as the requests.
+     * @param <RESPONSE_TYPE>    The type of value returned by the requests.
+     */
+    protected <RESPONSE_TYPE> void sendAll(final List<? extends RequestBase<RESPONSE_TYPE>> _requests,
+                                           final AsyncResponseProcessor<List<RESPONSE_TYPE>> _responseProcessor)
+            throws Exception {
+        RequestBase.doSendAll(reactor, _requests, _responseProcessor);
+    }
 }
@@ -2,6 +2,7 @@ package org.agilewiki.jactor2.core.facilities;
 
 import org.agilewiki.jactor2.core.blades.BladeBase;
 import org.agilewiki.jactor2.core.messages.*;
+import org.agilewiki.jactor2.core.metrics.FacilityMetrics;
 import org.agilewiki.jactor2.core.reactors.Inbox;
 import org.agilewiki.jactor2.core.reactors.NonBlockingReactor;
 import org.agilewiki.jactor2.core.reactors.Outbox;
@@ -9,10 +10,14 @@ import org.agilewiki.jactor2.core.reactors.Reactor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.ObjectName;
 import java.util.*;
 import java.util.concurrent.ConcurrentNavigableMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Provides a thread pool for
@@ -50,10 +55,9 @@ public class Facility extends BladeBase implements AutoCloseable {
     private boolean shuttingDown = false;
 
     /**
-     * When DEBUG, pendingRequests holds the active requests ordered by timestamp.
+     * When METRICS, the totals of the metrics recorded by the reactors of the facility.
      */
-    public final ConcurrentSkipListMap<Long, Set<RequestBase>> pendingRequests =
-            Plant.DEBUG ? new ConcurrentSkipListMap<Long, Set<RequestBase>>() : null;
+    private final FacilityMetrics metrics = Plant.METRICS ? new FacilityMetrics() : null;
 
     /**
      * The logger used by targetReactor.
@@ -82,6 +86,21 @@ public class Facility extends BladeBase implements AutoCloseable {
 
     private EventBus<FacilityPropertyChangeSubscriber> propertyChangeSubscribers;
 
+    /**
+     * Runs the timed tasks of the facility, such as request deadlines, or null until first needed.
+     */
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * The number of messages a reactor may process before yielding its thread, or 0.
+     */
+    private volatile int runMessageQuota;
+
+    /**
+     * The time in nanoseconds a reactor may run before yielding its thread, or 0.
+     */
+    private volatile long runTimeQuota;
+
     /**
      * Create a Facility.
      */
@@ -118,8 +137,23 @@ public class Facility extends BladeBase implements AutoCloseable {
                     final int _initialBufferSize,
                     final int _threadCount,
                     final ThreadFactory _threadFactory) throws Exception {
-        threadManager = new ThreadManager(
-                _threadCount, _threadFactory);
+        this(
+                _initialLocalMessageQueueSize,
+                _initialBufferSize,
+                new WorkStealingThreadManager(_threadCount, _threadFactory));
+    }
+
+    /**
+     * Create a Facility.
+     *
+     * @param _initialLocalMessageQueueSize How big should the initial inbox doLocal queue size be?
+     * @param _initialBufferSize            How big should the initial outbox (per target Reactor) buffer size be?
+     * @param _threadManager                The thread pool used to run the reactors of the facility.
+     */
+    public Facility(final int _initialLocalMessageQueueSize,
+                    final int _initialBufferSize,
+                    final ThreadManager _threadManager) throws Exception {
+        threadManager = _threadManager;
         initialLocalMessageQueueSize = _initialLocalMessageQueueSize;
         initialBufferSize = _initialBufferSize;
         internalReactor = new InternalReactor();
@@ -144,6 +178,21 @@ public class Facility extends BladeBase implements AutoCloseable {
         return new Facility(_name, _initialLocalMessageQueueSize, _initialBufferSize, _threadCount, _threadFactory);
     }
 
+    /**
+     * Create a Facility.
+     *
+     * @param _name                         The name of the facility.
+     * @param _initialLocalMessageQueueSize How big should the initial inbox doLocal queue size be?
+     * @param _initialBufferSize            How big should the initial outbox (per target Reactor) buffer size be?
+     * @param _threadManager                The thread pool used to run the reactors of the facility.
+     */
+    protected Facility _createFacility(final String _name,
+                                       final int _initialLocalMessageQueueSize,
+                                       final int _initialBufferSize,
+                                       final ThreadManager _threadManager) throws Exception {
+        return new Facility(_name, _initialLocalMessageQueueSize, _initialBufferSize, _threadManager);
+    }
+
     /**
      * Create a Facility.
      *
@@ -162,6 +211,22 @@ public class Facility extends BladeBase implements AutoCloseable {
         firstSet(NAME_PROPERTY, _name);
     }
 
+    /**
+     * Create a Facility.
+     *
+     * @param _name                         The name of the facility.
+     * @param _initialLocalMessageQueueSize How big should the initial inbox doLocal queue size be?
+     * @param _initialBufferSize            How big should the initial outbox (per target Reactor) buffer size be?
+     * @param _threadManager                The thread pool used to run the reactors of the facility.
+     */
+    private Facility(final String _name,
+                     final int _initialLocalMessageQueueSize,
+                     final int _initialBufferSize,
+                     final ThreadManager _threadManager) throws Exception {
+        this(_initialLocalMessageQueueSize, _initialBufferSize, _threadManager);
+        firstSet(NAME_PROPERTY, _name);
+    }
+
     /**
      * Returns the logger to be used by targetReactor.
      *
@@ -189,6 +254,110 @@ public class Facility extends BladeBase implements AutoCloseable {
         return initialLocalMessageQueueSize;
     }
 
+    /**
+     * Limits the number of messages a non-blocking or isolation reactor of this facility
+     * processes each time it is run. Once the quota is reached, the reactor flushes its
+     * buffered messages and yields the thread, being resubmitted to the thread manager behind
+     * the reactors already waiting. So a reactor flooded with messages can not hold on to a
+     * thread while other reactors wait. The default is 0, no quota.
+     *
+     * @param _runMessageQuota The number of messages per run, or 0 for no quota.
+     */
+    public void setRunMessageQuota(final int _runMessageQuota) {
+        if (_runMessageQuota < 0)
+            throw new IllegalArgumentException("negative quota");
+        runMessageQuota = _runMessageQuota;
+    }
+
+    /**
+     * Returns the number of messages a reactor may process before yielding its thread.
+     *
+     * @return The number of messages per run, or 0 for no quota.
+     */
+    public int getRunMessageQuota() {
+        return runMessageQuota;
+    }
+
+    /**
+     * Limits the time a non-blocking or isolation reactor of this facility runs before
+     * yielding its thread, as with setRunMessageQuota. The time is checked after each message,
+     * so a single long message is not interrupted. The default is 0, no quota.
+     *
+     * @param _runTimeQuota The time per run, or 0 for no quota.
+     * @param _unit         The unit of the time.
+     */
+    public void setRunTimeQuota(final long _runTimeQuota, final TimeUnit _unit) {
+        if (_runTimeQuota < 0)
+            throw new IllegalArgumentException("negative quota");
+        runTimeQuota = _unit.toNanos(_runTimeQuota);
+    }
+
+    /**
+     * Returns the time a reactor may run before yielding its thread.
+     *
+     * @return The time per run in nanoseconds, or 0 for no quota.
+     */
+    public long getRunTimeQuota() {
+        return runTimeQuota;
+    }
+
+    /**
+     * Returns the thread pool used by the facility.
+     *
+     * @return The thread manager.
+     */
+    public ThreadManager getThreadManager() {
+        return threadManager;
+    }
+
+    /**
+     * Returns the metrics of the facility.
+     *
+     * @return The metrics, or null when the jactor.metrics system property is not true.
+     */
+    public FacilityMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Makes the metrics of the facility available as a JMX MBean.
+     * The MBean is unregistered when the facility is closed.
+     *
+     * @return The name of the MBean.
+     */
+    public ObjectName registerMetricsMBean() throws Exception {
+        if (metrics == null)
+            throw new IllegalStateException("metrics are not enabled");
+        String name = getName();
+        if (name == null)
+            name = "Facility@" + Integer.toHexString(System.identityHashCode(this));
+        return metrics.registerMBean(name);
+    }
+
+    /**
+     * Returns the scheduler used for the timed tasks of the facility, like the deadlines of
+     * requests. The scheduler has a single daemon thread, which is created when the scheduler
+     * is first needed and which ends when the facility is closed. Scheduled tasks should only
+     * pass messages to reactors, as the thread is not part of the thread pool.
+     *
+     * @return The scheduler.
+     */
+    public synchronized ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable _runnable) {
+                    final Thread thread = new Thread(_runnable, "jactor2-scheduler");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            if (isClosing())
+                scheduler.shutdownNow();
+        }
+        return scheduler;
+    }
+
     /**
      * Submit a Reactor for subsequent execution.
      *
@@ -252,6 +421,17 @@ public class Facility extends BladeBase implements AutoCloseable {
             plant.removeAutoClosableSReq(this).signal();
         }
         threadManager.close();
+        synchronized (this) {
+            if (scheduler != null)
+                scheduler.shutdownNow();
+        }
+        internalReactor.closeForeignRequests();
+        if (metrics != null) {
+            try {
+                metrics.unregisterMBean();
+            } catch (final Exception e) {
+            }
+        }
         final Iterator<AutoCloseable> it = closeables.iterator();
         while (it.hasNext()) {
             try {
@@ -321,7 +501,7 @@ public class Facility extends BladeBase implements AutoCloseable {
         else
             old = properties.put(_propertyName, _propertyValue);
         FacilityPropertyChange change = new FacilityPropertyChange(this, _propertyName, old, _propertyValue);
-        propertyChangeSubscribers.publishSReq(change).signal();
+        propertyChangeSubscribers.publishSReq(change, _propertyName).signal();
         return old;
     }
 
@@ -337,7 +517,7 @@ public class Facility extends BladeBase implements AutoCloseable {
                     old = properties.put(_propertyName, _propertyValue);
                 FacilityPropertyChange change =
                         new FacilityPropertyChange(Facility.this, _propertyName, old, _propertyValue);
-                local(propertyChangeSubscribers.publishSReq(change));
+                local(propertyChangeSubscribers.publishSReq(change, _propertyName));
                 return old;
             }
         };
@@ -388,20 +568,6 @@ public class Facility extends BladeBase implements AutoCloseable {
     public AsyncRequest<Boolean> hasDependencyAReq(final String _name) {
         return new AsyncBladeRequest<Boolean>() {
             AsyncResponseProcessor<Boolean> dis = this;
-            int count;
-
-            AsyncResponseProcessor<Boolean> prp = new AsyncResponseProcessor<Boolean>() {
-                @Override
-                public void processAsyncResponse(Boolean _hasDependency) throws Exception {
-                    if (_hasDependency) {
-                        dis.processAsyncResponse(true);
-                        return;
-                    }
-                    count--;
-                    if (count == 0)
-                        dis.processAsyncResponse(false);
-                }
-            };
 
             @Override
             protected void processAsyncRequest() throws Exception {
@@ -410,17 +576,21 @@ public class Facility extends BladeBase implements AutoCloseable {
                     return;
                 }
                 ConcurrentNavigableMap<String, Object> cnm = matchingProperties(DEPENDENCY_PROPERTY_PREFIX);
-                Collection<Object> values = cnm.values();
-                if (values.size() == 0) {
-                    processAsyncResponse(false);
-                    return;
-                }
-                Iterator<Object> it = values.iterator();
-                while (it.hasNext()) {
-                    Facility dependency = (Facility) it.next();
-                    count++;
-                    send(dependency.hasDependencyAReq(_name), prp);
+                List<AsyncRequest<Boolean>> requests = new ArrayList<AsyncRequest<Boolean>>(cnm.size());
+                for (Object dependency : cnm.values()) {
+                    requests.add(((Facility) dependency).hasDependencyAReq(_name));
                 }
+                send(new ScatterGather<Boolean, Boolean>(getReactor(), requests, false) {
+                    @Override
+                    protected Boolean reduce(final Boolean _result, final Boolean _hasDependency) {
+                        return _result || _hasDependency;
+                    }
+
+                    @Override
+                    protected boolean isComplete(final Boolean _result) {
+                        return _result;
+                    }
+                }, dis);
             }
         };
     }
@@ -476,6 +646,46 @@ public class Facility extends BladeBase implements AutoCloseable {
         return propertyChangeSubscribers.unsubscribeSReq(_subscriber);
     }
 
+    /**
+     * Returns a request to subscribe to the changes of the properties whose names start with a prefix.
+     * The result of the request is a copy of the matching properties, or null when the
+     * subscriber was already subscribed with that prefix.
+     *
+     * @param _subscriber The blade which receives the property changes.
+     * @param _prefix     The prefix of the property names.
+     * @return The request.
+     */
+    public SyncRequest<Map<String, Object>> subscribePropertyChangesSReq(
+            final FacilityPropertyChangeSubscriber _subscriber,
+            final String _prefix) {
+        return new SyncBladeRequest<Map<String, Object>>() {
+            @Override
+            protected Map<String, Object> processSyncRequest()
+                    throws Exception {
+                if (!local(propertyChangeSubscribers.subscribeSReq(_subscriber, _prefix)))
+                    return null;
+                final Map<String, Object> matching = new HashMap<String, Object>(matchingProperties(_prefix));
+                final Object value = properties.get(_prefix);
+                if (value != null)
+                    matching.put(_prefix, value);
+                return matching;
+            }
+        };
+    }
+
+    /**
+     * Returns a request to unsubscribe from the changes of the properties whose names start
+     * with a prefix.
+     *
+     * @param _subscriber The blade which receives the property changes.
+     * @param _prefix     The prefix given when subscribing.
+     * @return The request, which returns true when the subscription was removed.
+     */
+    public SyncRequest<Boolean> unsubscribePropertyChangesSReq(final FacilityPropertyChangeSubscriber _subscriber,
+                                                               final String _prefix) {
+        return propertyChangeSubscribers.unsubscribeSReq(_subscriber, _prefix);
+    }
+
     /**
      * The reactor used internally.
      */
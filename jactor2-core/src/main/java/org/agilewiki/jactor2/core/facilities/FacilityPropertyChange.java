@@ -1,6 +1,7 @@
 package org.agilewiki.jactor2.core.facilities;
 
 import org.agilewiki.jactor2.core.messages.Event;
+import org.agilewiki.jactor2.core.reactors.MessagePriority;
 
 public class FacilityPropertyChange extends Event<FacilityPropertyChangeSubscriber> {
     private final Facility facility;
@@ -18,6 +19,7 @@ public class FacilityPropertyChange extends Event<FacilityPropertyChangeSubscrib
         name = _name;
         oldValue = _oldValue;
         newValue = _newValue;
+        setPriority(MessagePriority.HIGH);
     }
 
     @Override
@@ -0,0 +1,82 @@
+package org.agilewiki.jactor2.core.facilities;
+
+/**
+ * Determines how a pool thread waits when there is no work.
+ * <p>
+ * An idle thread first busy-spins, checking for work on each spin, then yields its
+ * processor between checks, and finally parks until it is woken up by the submission of
+ * a reactor. Waking up a parked thread goes through the operating system, which adds
+ * latency to request/response traffic. Spinning and yielding avoid that latency, but
+ * at the cost of the processor time used by idle threads.
+ * </p>
+ * <p>
+ * The default strategy, PARK, parks the thread as soon as there is no work.
+ * </p>
+ */
+public class IdleStrategy {
+
+    /**
+     * Park as soon as there is no work.
+     */
+    public final static IdleStrategy PARK = new IdleStrategy(0, 0);
+
+    /**
+     * The number of times to check for work while busy-spinning.
+     */
+    private final int spins;
+
+    /**
+     * The number of times to check for work while yielding, after spinning.
+     */
+    private final int yields;
+
+    /**
+     * Create an IdleStrategy.
+     *
+     * @param _spins  The number of times to check for work while busy-spinning.
+     * @param _yields The number of times to check for work while yielding, after spinning.
+     */
+    public IdleStrategy(final int _spins, final int _yields) {
+        if (_spins < 0)
+            throw new IllegalArgumentException("spins may not be negative");
+        if (_yields < 0)
+            throw new IllegalArgumentException("yields may not be negative");
+        spins = _spins;
+        yields = _yields;
+    }
+
+    /**
+     * Returns the number of times to check for work while busy-spinning.
+     *
+     * @return The number of spins.
+     */
+    public int getSpins() {
+        return spins;
+    }
+
+    /**
+     * Returns the number of times to check for work while yielding.
+     *
+     * @return The number of yields.
+     */
+    public int getYields() {
+        return yields;
+    }
+
+    /**
+     * Called by a pool thread each time it finds no work.
+     *
+     * @param _idleCount The number of times the thread has already found no work
+     *                   since it last had work or was last unparked.
+     * @return True when the thread should now park.
+     */
+    public boolean idle(final int _idleCount) {
+        if (_idleCount < spins)
+            return false;
+        if (_idleCount - spins < yields) {
+            Thread.yield();
+            return false;
+        }
+        return true;
+    }
+}
@@ -14,6 +14,11 @@ public class Plant extends Facility {
      */
     public final static boolean DEBUG = "true".equals(System.getProperty("jactor.debug"));
 
+    /**
+     * System property flag, jactor.metrics, to turn on the recording of reactor metrics;
+     */
+    public final static boolean METRICS = "true".equals(System.getProperty("jactor.metrics"));
+
     private static Plant singleton;
 
     public static Plant getSingleton() {
@@ -59,7 +64,22 @@ public class Plant extends Facility {
                  final int _initialBufferSize,
                  final int _threadCount,
                  final ThreadFactory _threadFactory) throws Exception {
-        super(_initialLocalMessageQueueSize, _initialBufferSize, _threadCount, _threadFactory);
+        this(_initialLocalMessageQueueSize,
+                _initialBufferSize,
+                new WorkStealingThreadManager(_threadCount, _threadFactory));
+    }
+
+    /**
+     * Create a Plant.
+     *
+     * @param _initialLocalMessageQueueSize How big should the initial inbox doLocal queue size be?
+     * @param _initialBufferSize            How big should the initial outbox (per target Reactor) buffer size be?
+     * @param _threadManager                The thread pool used to run the reactors of the plant.
+     */
+    public Plant(final int _initialLocalMessageQueueSize,
+                 final int _initialBufferSize,
+                 final ThreadManager _threadManager) throws Exception {
+        super(_initialLocalMessageQueueSize, _initialBufferSize, _threadManager);
         if (singleton != null) {
             throw new IllegalStateException("the singleton already exists");
         }
@@ -136,6 +156,24 @@ public class Plant extends Facility {
         };
     }
 
+    public SyncRequest<Facility> createFacilitySReq(final String _name,
+                                                    final int _initialLocalMessageQueueSize,
+                                                    final int _initialBufferSize,
+                                                    final ThreadManager _threadManager) throws Exception {
+        return new SyncBladeRequest<Facility>() {
+            @Override
+            protected Facility processSyncRequest() throws Exception {
+                Facility facility = _createFacility(
+                        _name,
+                        _initialLocalMessageQueueSize,
+                        _initialBufferSize,
+                        _threadManager);
+                closeables.add(facility);
+                return facility;
+            }
+        };
+    }
+
     @Override
     protected void _close() throws Exception {
         singleton = null;
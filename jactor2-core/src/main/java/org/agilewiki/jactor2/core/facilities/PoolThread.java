@@ -2,6 +2,8 @@ package org.agilewiki.jactor2.core.facilities;
 
 import org.agilewiki.jactor2.core.reactors.UnboundReactor;
 
+import java.util.concurrent.ConcurrentLinkedDeque;
+
 /**
  * Base class for all threads in a facility thread pool.
  * The RequestBase.call method should not be invoked from a PoolThread.
@@ -10,6 +12,32 @@ public class PoolThread extends Thread {
 
     private volatile UnboundReactor currentReactor;
 
+    /**
+     * The thread manager which runs this thread, or null.
+     */
+    private ThreadManager threadManager;
+
+    /**
+     * The reactors queued for this thread, or null when the thread manager
+     * does not give its threads their own queues.
+     */
+    private ConcurrentLinkedDeque<UnboundReactor> localQueue;
+
+    /**
+     * The index of this thread in the thread pool.
+     */
+    private int index;
+
+    /**
+     * The number of times this thread ran a reactor which it had also run last.
+     */
+    private volatile long affinityHits;
+
+    /**
+     * The number of times this thread ran a reactor which was last run by another thread.
+     */
+    private volatile long affinityMisses;
+
     public PoolThread(final Runnable _runnable) {
         super(_runnable);
     }
@@ -31,4 +59,83 @@ public class PoolThread extends Thread {
     public void setCurrentReactor(final UnboundReactor _reactor) {
         currentReactor = _reactor;
     }
+
+    /**
+     * Returns the thread manager which runs this thread.
+     *
+     * @return The thread manager, or null.
+     */
+    ThreadManager getThreadManager() {
+        return threadManager;
+    }
+
+    /**
+     * Returns the index of this thread in the thread pool.
+     *
+     * @return The index of this thread.
+     */
+    int getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the number of times this thread ran a reactor which it had also run last.
+     *
+     * @return The number of affinity hits.
+     */
+    public long getAffinityHits() {
+        return affinityHits;
+    }
+
+    /**
+     * Returns the number of times this thread ran a reactor which was last run by another thread.
+     * Reactors being run for the first time are not counted.
+     *
+     * @return The number of affinity misses.
+     */
+    public long getAffinityMisses() {
+        return affinityMisses;
+    }
+
+    /**
+     * Records that this thread is running a reactor, which then has this thread as its home.
+     * This method is only called by this thread.
+     *
+     * @param _reactor The reactor being run.
+     */
+    void running(final UnboundReactor _reactor) {
+        final PoolThread home = _reactor.getHomeThread();
+        if (home == this) {
+            affinityHits += 1;
+            return;
+        }
+        if (home != null)
+            affinityMisses += 1;
+        _reactor.setHomeThread(this);
+    }
+
+    /**
+     * Returns the reactors queued for this thread.
+     *
+     * @return The local queue, or null.
+     */
+    ConcurrentLinkedDeque<UnboundReactor> getLocalQueue() {
+        return localQueue;
+    }
+
+    /**
+     * Binds this thread to the thread manager which runs it.
+     * This method is called by the thread itself, before it runs any reactor.
+     *
+     * @param _threadManager The thread manager.
+     * @param _index         The index of this thread in the thread pool.
+     * @param _localQueue    The reactors queued for this thread, or null.
+     */
+    void bind(final ThreadManager _threadManager,
+              final int _index,
+              final ConcurrentLinkedDeque<UnboundReactor> _localQueue) {
+        threadManager = _threadManager;
+        index = _index;
+        localQueue = _localQueue;
+    }
 }
@@ -0,0 +1,101 @@
+package org.agilewiki.jactor2.core.facilities;
+
+import org.agilewiki.jactor2.core.reactors.Reactor;
+import org.agilewiki.jactor2.core.reactors.UnboundReactor;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A ThreadManager where all the threads take their work from a single queue of
+ * reactors, with a semaphore used to wake up a thread when a reactor is added to the queue.
+ * This works well with a small number of threads, but the threads contend for the head of the
+ * queue and for the semaphore as the number of threads increases.
+ */
+final public class SharedQueueThreadManager extends ThreadManager {
+
+    /**
+     * The taskRequest semaphore is used to wake up a thread
+     * when there is a Reactor which hasWork.
+     */
+    final private Semaphore taskRequest = new Semaphore(0);
+
+    /**
+     * The reactors queue holds the reactors which have messages to be processed.
+     */
+    final private ConcurrentLinkedQueue<UnboundReactor> reactors =
+            new ConcurrentLinkedQueue<UnboundReactor>();
+
+    /**
+     * Create a SharedQueueThreadManager.
+     *
+     * @param _threadCount   The number of threads to be created.
+     * @param _threadFactory Used to create the threads.
+     */
+    public SharedQueueThreadManager(final int _threadCount,
+                                    final ThreadFactory _threadFactory) {
+        this(_threadCount, _threadFactory, IdleStrategy.PARK);
+    }
+
+    /**
+     * Create a SharedQueueThreadManager.
+     *
+     * @param _threadCount   The number of threads to be created.
+     * @param _threadFactory Used to create the threads.
+     * @param _idleStrategy  Determines how a thread waits when there is no work.
+     */
+    public SharedQueueThreadManager(final int _threadCount,
+                                    final ThreadFactory _threadFactory,
+                                    final IdleStrategy _idleStrategy) {
+        super(_threadCount, _idleStrategy);
+        startThreads(_threadFactory);
+    }
+
+    @Override
+    protected Runnable createWorker(final int _index) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                final PoolThread currentThread = (PoolThread) Thread.currentThread();
+                int idleCount = 0;
+                while (true) {
+                    try {
+                        if (taskRequest.tryAcquire()) {
+                            idleCount = 0;
+                        } else if (idleStrategy.idle(idleCount)) {
+                            idleCount = 0;
+                            taskRequest.acquire();
+                        } else {
+                            idleCount += 1;
+                            if (closing)
+                                return;
+                            continue;
+                        }
+                        final UnboundReactor reactor = reactors.poll();
+                        if (reactor != null) {
+                            runReactor(currentThread, reactor);
+                        }
+                    } catch (final InterruptedException e) {
+                    }
+                    currentThread.setCurrentReactor(null);
+                    if (closing)
+                        return;
+                }
+            }
+        };
+    }
+
+    @Override
+    public void execute(final Reactor _reactor) {
+        if (closing)
+            return;
+        reactors.add((UnboundReactor) _reactor);
+        taskRequest.release();
+    }
+
+    @Override
+    protected void wakeAll() {
+        taskRequest.release(threadCount);
+    }
+}
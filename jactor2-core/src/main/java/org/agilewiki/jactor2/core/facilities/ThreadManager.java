@@ -1,12 +1,11 @@
 package org.agilewiki.jactor2.core.facilities;
 
+import org.agilewiki.jactor2.core.metrics.ReactorMetrics;
 import org.agilewiki.jactor2.core.reactors.Reactor;
 import org.agilewiki.jactor2.core.reactors.UnboundReactor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -17,112 +16,211 @@ import java.util.concurrent.atomic.AtomicReference;
  * assumes that the thread pool has a fixed number of threads.
  * ThreadManager is also responsible for assigning the threadReference
  * when a Reactor is run.
+ * <p>
+ * Subclasses decide how the reactors with work are queued and how the threads
+ * find them. WorkStealingThreadManager is used by default, while
+ * SharedQueueThreadManager uses a single queue shared by all the threads.
+ * </p>
  */
-final public class ThreadManager {
+abstract public class ThreadManager {
     final Logger logger = LoggerFactory.getLogger(ThreadManager.class);
 
     /**
-     * The taskRequest semaphore is used to wake up a thread
-     * when there is a Reactor which hasWork.
+     * When closing is true, the threads exit as they finish their current activity.
      */
-    final private Semaphore taskRequest = new Semaphore(0);
+    protected volatile boolean closing = false;
 
     /**
-     * The reactors queue holds the reactors which have messages to be processed.
+     * The threadCount is the number of threads in the thread pool.
      */
-    final private ConcurrentLinkedQueue<UnboundReactor> reactors =
-            new ConcurrentLinkedQueue<UnboundReactor>();
+    protected final int threadCount;
 
     /**
-     * When closing is true, the threads exit as they finish their current activity.
+     * Determines how a thread waits when there is no work.
      */
-    private boolean closing = false;
+    protected final IdleStrategy idleStrategy;
 
     /**
-     * The threadCount is the number of threads in the thread pool.
+     * The threads in the thread pool.
      */
-    private int threadCount;
+    private Thread threads[] = null;
 
     /**
-     * The threads in the thread pool.
+     * Create a ThreadManager.
+     *
+     * @param _threadCount  The number of threads to be created.
+     * @param _idleStrategy Determines how a thread waits when there is no work.
      */
-    private Thread threads[] = null;
+    protected ThreadManager(final int _threadCount,
+                            final IdleStrategy _idleStrategy) {
+        this.threadCount = _threadCount;
+        this.idleStrategy = _idleStrategy;
+    }
 
     /**
-     * Create a ThreadManager
+     * Creates and starts the threads of the thread pool.
+     * This method must be called once, at the end of the subclass constructor.
      *
-     * @param _threadCount   The number of threads to be created.
      * @param _threadFactory Used to create the threads.
      */
-    public ThreadManager(final int _threadCount,
-                         final ThreadFactory _threadFactory) {
-        this.threadCount = _threadCount;
-        final Runnable runnable = new Runnable() {
-            @Override
-            public void run() {
-                final PoolThread currentThread = (PoolThread) Thread.currentThread();
-                while (true) {
-                    try {
-                        taskRequest.acquire();
-                        UnboundReactor reactor = reactors.poll();
-                        if (reactor != null) {
-                            AtomicReference<Thread> threadReference = reactor.getThreadReference();
-                            if (threadReference.get() == null &&
-                                    threadReference.compareAndSet(null, currentThread)) {
-                                currentThread.setCurrentReactor(reactor);
-                                while (true) {
-                                    try {
-                                        reactor.run();
-                                    } catch (final MigrationException me) {
-                                        boolean hasWork = reactor.hasWork();
-                                        threadReference.set(null);
-                                        if (reactor.isIdler() || hasWork || reactor.hasConcurrent()) {
-                                            execute(reactor);
-                                        }
-                                        reactor = me.reactor;
-                                        threadReference = reactor.getThreadReference();
-                                        currentThread.setCurrentReactor(reactor);
-                                        continue;
-                                    } catch (final Throwable e) {
-                                        logger.error(
-                                                "Exception thrown by a targetReactor's run method",
-                                                e);
-                                    }
-                                    boolean hasWork = reactor.hasWork();
-                                    threadReference.set(null);
-                                    if (hasWork || reactor.hasConcurrent())
-                                        execute(reactor);
-                                    break;
-                                }
-                                currentThread.setCurrentReactor(null);
-                            }
-                        }
-                    } catch (final InterruptedException e) {
-                    }
-                    currentThread.setCurrentReactor(null);
-                    if (closing)
-                        return;
-                }
-            }
-        };
-        threads = new Thread[this.threadCount];
-        for (int c = 0; c < _threadCount; c++) {
-            final Thread t = _threadFactory.newThread(runnable);
+    protected final void startThreads(final ThreadFactory _threadFactory) {
+        threads = new Thread[threadCount];
+        for (int c = 0; c < threadCount; c++) {
+            final Thread t = _threadFactory.newThread(createWorker(c));
             threads[c] = t;
+        }
+        for (final Thread t : threads) {
             t.start();
         }
     }
 
+    /**
+     * Returns the thread count.
+     *
+     * @return The number of threads in the thread pool.
+     */
+    public final int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * Returns the strategy used by a thread when there is no work.
+     *
+     * @return The idle strategy.
+     */
+    public final IdleStrategy getIdleStrategy() {
+        return idleStrategy;
+    }
+
+    /**
+     * Returns the number of times a reactor was run by the same thread that ran it last.
+     *
+     * @return The total of the affinity hits of the threads.
+     */
+    public final long getAffinityHits() {
+        long total = 0;
+        final Thread[] ts = threads;
+        if (ts != null) {
+            for (final Thread t : ts) {
+                if (t instanceof PoolThread)
+                    total += ((PoolThread) t).getAffinityHits();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Returns the number of times a reactor was run by a different thread than the one that ran it last.
+     *
+     * @return The total of the affinity misses of the threads.
+     */
+    public final long getAffinityMisses() {
+        long total = 0;
+        final Thread[] ts = threads;
+        if (ts != null) {
+            for (final Thread t : ts) {
+                if (t instanceof PoolThread)
+                    total += ((PoolThread) t).getAffinityMisses();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Create the runnable to be run by a thread of the pool.
+     *
+     * @param _index The index of the thread, from 0 to threadCount - 1.
+     * @return The runnable.
+     */
+    abstract protected Runnable createWorker(final int _index);
+
     /**
      * Begin running a targetReactor.
      *
      * @param _reactor The run method is to be called by the selected thread.
      */
-    final public void execute(final Reactor _reactor) {
-        if (closing)
+    abstract public void execute(final Reactor _reactor);
+
+    /**
+     * Resubmit a reactor which yielded its thread on reaching the run quota of its facility.
+     * The reactor should be run after the reactors already waiting, which is what execute does
+     * by default.
+     *
+     * @param _reactor The reactor.
+     */
+    protected void executeYielded(final UnboundReactor _reactor) {
+        execute(_reactor);
+    }
+
+    /**
+     * Wake up all the threads, so that they can see that the thread manager is closing.
+     */
+    abstract protected void wakeAll();
+
+    /**
+     * Runs a reactor on the current thread, following any thread migrations,
+     * and then resubmits the reactors which still have work.
+     *
+     * @param _currentThread The current thread.
+     * @param _reactor       The reactor to be run.
+     */
+    protected final void runReactor(final PoolThread _currentThread, UnboundReactor _reactor) {
+        AtomicReference<Thread> threadReference = _reactor.getThreadReference();
+        if (threadReference.get() != null ||
+                !threadReference.compareAndSet(null, _currentThread))
             return;
-        reactors.add((UnboundReactor) _reactor);
-        taskRequest.release();
+        _currentThread.setCurrentReactor(_reactor);
+        while (true) {
+            _currentThread.running(_reactor);
+            final ReactorMetrics metrics = _reactor.getMetrics();
+            if (metrics != null)
+                metrics.started();
+            try {
+                _reactor.run();
+            } catch (final Throwable e) {
+                logger.error(
+                        "Exception thrown by a targetReactor's run method",
+                        e);
+            }
+            final UnboundReactor migrationTarget = _reactor.takeMigrationTarget();
+            if (migrationTarget != null) {
+                boolean hasWork = _reactor.hasWork();
+                _reactor.migrated(hasWork || _reactor.hasConcurrent());
+                threadReference.set(null);
+                if (_reactor.isIdler() || hasWork || _reactor.hasConcurrent()) {
+                    resubmit(_reactor);
+                }
+                _reactor = migrationTarget;
+                threadReference = _reactor.getThreadReference();
+                _currentThread.setCurrentReactor(_reactor);
+                continue;
+            }
+            final boolean yielded = _reactor.takeYielded();
+            boolean hasWork = _reactor.hasWork();
+            threadReference.set(null);
+            if (hasWork || _reactor.hasConcurrent()) {
+                if (yielded) {
+                    if (metrics != null)
+                        metrics.submitted();
+                    executeYielded(_reactor);
+                } else
+                    resubmit(_reactor);
+            }
+            break;
+        }
+        _currentThread.setCurrentReactor(null);
+    }
+
+    /**
+     * Submit a reactor which still has work after being run.
+     *
+     * @param _reactor The reactor.
+     */
+    private void resubmit(final UnboundReactor _reactor) {
+        final ReactorMetrics metrics = _reactor.getMetrics();
+        if (metrics != null)
+            metrics.submitted();
+        execute(_reactor);
     }
 
     /**
@@ -131,11 +229,11 @@ final public class ThreadManager {
      * and then wakes up all the threads.
      * This method only returns after all the threads have died.
      */
-    final public void close() {
+    public void close() {
         if (closing)
             return;
         closing = true;
-        taskRequest.release(threadCount);
+        wakeAll();
         final Thread ct = Thread.currentThread();
         for (final Thread t : threads) {
             if (ct != t) {
@@ -0,0 +1,271 @@
+package org.agilewiki.jactor2.core.facilities;
+
+import org.agilewiki.jactor2.core.reactors.Reactor;
+import org.agilewiki.jactor2.core.reactors.UnboundReactor;
+
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The default ThreadManager, where each thread has its own queue of reactors.
+ * <p>
+ * A reactor submitted by a thread of the pool is added to the queue of that thread,
+ * so it is likely to be run by the same thread and with a warm cache.
+ * Reactors submitted by other threads are added to a shared submission queue.
+ * </p>
+ * <p>
+ * With affinity, which is the default, a reactor is instead added to the queue of its
+ * home thread, the thread which last ran it, waking that thread if it is idle. So reactors
+ * which often pass messages to each other tend to stay on the same threads, rather than going
+ * to whichever thread submits them. Affinity is only a preference, as an idle thread will
+ * still steal a reactor from a busy one. ThreadManager.getAffinityHits and getAffinityMisses
+ * show how often reactors were run by their home thread.
+ * A thread with an empty queue first takes work from the submission queue and then
+ * steals work from the queues of the other threads. When there is no work to be found,
+ * the thread spins, yields and then parks until a reactor is submitted, as determined by
+ * the IdleStrategy.
+ * </p>
+ */
+final public class WorkStealingThreadManager extends ThreadManager {
+
+    /**
+     * The reactors submitted by threads which are not part of this thread pool.
+     */
+    private final ConcurrentLinkedQueue<UnboundReactor> submissions =
+            new ConcurrentLinkedQueue<UnboundReactor>();
+
+    /**
+     * The workers which are parked, or about to park.
+     */
+    private final ConcurrentLinkedQueue<Worker> idleWorkers =
+            new ConcurrentLinkedQueue<Worker>();
+
+    /**
+     * The workers, one per thread.
+     */
+    private final Worker[] workers;
+
+    /**
+     * True when reactors are preferentially queued for their home thread.
+     */
+    private final boolean affinity;
+
+    /**
+     * Create a WorkStealingThreadManager.
+     *
+     * @param _threadCount   The number of threads to be created.
+     * @param _threadFactory Used to create the threads.
+     */
+    public WorkStealingThreadManager(final int _threadCount,
+                                     final ThreadFactory _threadFactory) {
+        this(_threadCount, _threadFactory, IdleStrategy.PARK);
+    }
+
+    /**
+     * Create a WorkStealingThreadManager.
+     *
+     * @param _threadCount   The number of threads to be created.
+     * @param _threadFactory Used to create the threads.
+     * @param _idleStrategy  Determines how a thread waits when there is no work.
+     */
+    public WorkStealingThreadManager(final int _threadCount,
+                                     final ThreadFactory _threadFactory,
+                                     final IdleStrategy _idleStrategy) {
+        this(_threadCount, _threadFactory, _idleStrategy, true);
+    }
+
+    /**
+     * Create a WorkStealingThreadManager.
+     *
+     * @param _threadCount   The number of threads to be created.
+     * @param _threadFactory Used to create the threads.
+     * @param _idleStrategy  Determines how a thread waits when there is no work.
+     * @param _affinity      True when reactors are to be queued for the thread which last ran them.
+     */
+    public WorkStealingThreadManager(final int _threadCount,
+                                     final ThreadFactory _threadFactory,
+                                     final IdleStrategy _idleStrategy,
+                                     final boolean _affinity) {
+        super(_threadCount, _idleStrategy);
+        affinity = _affinity;
+        workers = new Worker[_threadCount];
+        for (int c = 0; c < _threadCount; c++) {
+            workers[c] = new Worker(c);
+        }
+        startThreads(_threadFactory);
+    }
+
+    @Override
+    protected Runnable createWorker(final int _index) {
+        return workers[_index];
+    }
+
+    @Override
+    public void execute(final Reactor _reactor) {
+        if (closing)
+            return;
+        final UnboundReactor reactor = (UnboundReactor) _reactor;
+        final Thread currentThread = Thread.currentThread();
+        if (affinity) {
+            final PoolThread home = reactor.getHomeThread();
+            if (home != null && home != currentThread && home.getThreadManager() == this) {
+                final Worker homeWorker = workers[home.getIndex()];
+                homeWorker.localQueue.addLast(reactor);
+                if (idleWorkers.remove(homeWorker)) {
+                    LockSupport.unpark(homeWorker.thread);
+                    return;
+                }
+                final Worker idleWorker = idleWorkers.poll();
+                if (idleWorker != null)
+                    LockSupport.unpark(idleWorker.thread);
+                return;
+            }
+        }
+        if (currentThread instanceof PoolThread &&
+                ((PoolThread) currentThread).getThreadManager() == this) {
+            ((PoolThread) currentThread).getLocalQueue().addLast(reactor);
+        } else {
+            submissions.add(reactor);
+        }
+        final Worker idleWorker = idleWorkers.poll();
+        if (idleWorker != null)
+            LockSupport.unpark(idleWorker.thread);
+    }
+
+    /**
+     * A reactor which yielded its thread is added to the shared submission queue rather than
+     * to a local queue, so that the reactors submitted by other threads are not starved by
+     * a reactor which keeps being resubmitted.
+     *
+     * @param _reactor The reactor.
+     */
+    @Override
+    protected void executeYielded(final UnboundReactor _reactor) {
+        if (closing)
+            return;
+        submissions.add(_reactor);
+        final Worker idleWorker = idleWorkers.poll();
+        if (idleWorker != null)
+            LockSupport.unpark(idleWorker.thread);
+    }
+
+    /**
+     * Returns true when reactors are preferentially queued for their home thread.
+     *
+     * @return True when affinity is enabled.
+     */
+    public boolean isAffinity() {
+        return affinity;
+    }
+
+    @Override
+    protected void wakeAll() {
+        for (final Worker worker : workers) {
+            final Thread thread = worker.thread;
+            if (thread != null)
+                LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * The runnable of a thread in the pool.
+     */
+    private final class Worker implements Runnable {
+
+        /**
+         * The index of this worker.
+         */
+        private final int index;
+
+        /**
+         * The reactors queued for this worker.
+         * The worker takes reactors from the head, while other workers steal from the tail.
+         */
+        private final ConcurrentLinkedDeque<UnboundReactor> localQueue =
+                new ConcurrentLinkedDeque<UnboundReactor>();
+
+        /**
+         * The thread running this worker.
+         */
+        private volatile Thread thread;
+
+        /**
+         * Create a worker.
+         *
+         * @param _index The index of this worker.
+         */
+        Worker(final int _index) {
+            index = _index;
+        }
+
+        @Override
+        public void run() {
+            final PoolThread currentThread = (PoolThread) Thread.currentThread();
+            currentThread.bind(WorkStealingThreadManager.this, index, localQueue);
+            thread = currentThread;
+            int idleCount = 0;
+            while (!closing) {
+                final UnboundReactor reactor = findWork();
+                if (reactor != null) {
+                    idleCount = 0;
+                    runReactor(currentThread, reactor);
+                } else if (idleStrategy.idle(idleCount)) {
+                    idleCount = 0;
+                    park();
+                } else
+                    idleCount += 1;
+            }
+        }
+
+        /**
+         * Returns a reactor taken from the local queue, the submission queue or
+         * the queue of another worker.
+         *
+         * @return A reactor, or null.
+         */
+        private UnboundReactor findWork() {
+            UnboundReactor reactor = localQueue.pollFirst();
+            if (reactor != null)
+                return reactor;
+            reactor = submissions.poll();
+            if (reactor != null)
+                return reactor;
+            return steal();
+        }
+
+        /**
+         * Steal a reactor from the tail of another worker's queue.
+         *
+         * @return A reactor, or null.
+         */
+        private UnboundReactor steal() {
+            final int count = workers.length;
+            for (int i = 1; i < count; i++) {
+                final UnboundReactor reactor = workers[(index + i) % count].localQueue.pollLast();
+                if (reactor != null)
+                    return reactor;
+            }
+            return null;
+        }
+
+        /**
+         * Park the thread until there is work.
+         * The worker is registered as idle before checking one last time for work,
+         * so a reactor submitted after that check will unpark this thread.
+         */
+        private void park() {
+            idleWorkers.add(this);
+            final UnboundReactor reactor = findWork();
+            if (reactor != null) {
+                idleWorkers.remove(this);
+                runReactor((PoolThread) thread, reactor);
+                return;
+            }
+            if (!closing)
+                LockSupport.park(this);
+            idleWorkers.remove(this);
+        }
+    }
+}
@@ -22,5 +22,11 @@
  * <p>
  *     Each instance of Facility also maintains a table of properties.
  * </p>
+ * <p>
+ *     The threads of a facility are managed by a ThreadManager, which can be passed
+ *     when the facility is created. WorkStealingThreadManager, the default, gives
+ *     each thread its own queue of reactors, while SharedQueueThreadManager uses a
+ *     single queue for all the threads.
+ * </p>
  */
 package org.agilewiki.jactor2.core.facilities;
\ No newline at end of file
@@ -2,6 +2,8 @@ package org.agilewiki.jactor2.core.messages;
 
 import org.agilewiki.jactor2.core.reactors.Reactor;
 
+import java.util.List;
+
 /**
  * AsyncRequest instances are used for passing both 1-way and 2-way buffered messages between blades.
  * Requests are typically created as an anonymous class within the targeted Blade and are bound
@@ -204,4 +206,19 @@ public abstract class AsyncRequest<RESPONSE_TYPE>
             throws Exception {
         RequestBase.doSend(targetReactor, _request, _responseProcessor);
     }
+
+    /**
+     * Passes a list of requests and processes the list of their responses once all the
+     * responses have been received. The requests bound for the same target are added to its
+     * inbox as a single block.
+     *
+     * @param _requests          The requests to be passed.
+     * @param _responseProcessor Processes the responses, which are in the same order as the requests.
+     * @param <RT>               The type of value returned by the requests.
+     */
+    protected <RT> void sendAll(final List<? extends RequestBase<RT>> _requests,
+                                final AsyncResponseProcessor<List<RT>> _responseProcessor)
+            throws Exception {
+        RequestBase.doSendAll(targetReactor, _requests, _responseProcessor);
+    }
 }
@@ -1,17 +1,45 @@
 package org.agilewiki.jactor2.core.messages;
 
 import org.agilewiki.jactor2.core.blades.Blade;
+import org.agilewiki.jactor2.core.blades.ExceptionHandler;
+import org.agilewiki.jactor2.core.reactors.MessagePriority;
+import org.agilewiki.jactor2.core.reactors.Reactor;
+import org.agilewiki.jactor2.core.reactors.ReactorBase;
+import org.agilewiki.jactor2.core.reactors.ThreadBoundReactor;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * A thread-safe wrapper for a AsyncResponseProcessor.
  * When a request is processed, the AsyncResponseProcessor given must only be used by the
  * same thread that is processing the request. In contrast, the processResult method
  * of BoundResponseProcessor can be called from any thread.
+ * <p>
+ * When called on the thread which is running the reactor of the target blade, the wrapped
+ * AsyncResponseProcessor is simply called. Otherwise the responses are queued and a single
+ * event is passed to the target blade to process all the responses queued by the time it runs,
+ * so a burst of responses, like the acknowledgements of a pipeline, costs one event rather than
+ * one event per response.
+ * </p>
+ * <p>
+ * Either way, each response is processed in a context of its own, much as an event is:
+ * the exception handler starts out as null, and requests passed while processing the response
+ * do not inherit the deadline, cancellation or isolation of the message the reactor happened
+ * to be processing. An exception thrown while processing a response is passed to the exception
+ * handler set while processing it, if any, and is otherwise logged as a warning.
+ * </p>
  *
  * @param <RESPONSE_TYPE>
  */
 public class BoundResponseProcessor<RESPONSE_TYPE> implements
         AsyncResponseProcessor<RESPONSE_TYPE> {
+
+    /**
+     * Stands in for a null response in the queue of responses.
+     */
+    private static final Object NULL_RESPONSE = new Object();
+
     /**
      * The processing on whose thread the wrapped AsyncResponseProcessor object can be used.
      */
@@ -22,6 +50,26 @@ public class BoundResponseProcessor<RESPONSE_TYPE> implements
      */
     private final AsyncResponseProcessor<RESPONSE_TYPE> rp;
 
+    /**
+     * The responses which have not yet been processed.
+     */
+    private final ConcurrentLinkedQueue<Object> responses = new ConcurrentLinkedQueue<Object>();
+
+    /**
+     * True when the continuation event has been passed and has not yet started processing the responses.
+     */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    /**
+     * The event used to process the queued responses on the thread of the target blade.
+     */
+    private final ContinuationEvent continuationEvent = new ContinuationEvent();
+
+    /**
+     * The current message of the target reactor while a response is processed.
+     */
+    private final ContinuationMessage continuationMessage = new ContinuationMessage();
+
     /**
      * Create a thread-safe wrapper for a AsyncResponseProcessor.
      *
@@ -35,49 +83,138 @@ public class BoundResponseProcessor<RESPONSE_TYPE> implements
     }
 
     /**
-     * This method processes the response by immediately passing the wrapped response and AsyncResponseProcessor
-     * via an Event back to the appropriate processing.
+     * This method processes the response immediately when called on the thread of the target
+     * blade. Otherwise the response is queued and, unless an event is already on its way, an
+     * Event is passed back to the appropriate processing. The event has a high priority, as it
+     * is in effect a response.
      *
      * @param rsp The response.
      */
     @Override
     public void processAsyncResponse(final RESPONSE_TYPE rsp) throws Exception {
-        new ContinuationEvent<RESPONSE_TYPE>(rp, rsp).signal(targetBlade);
+        if (isTargetThread()) {
+            if (!responses.isEmpty())
+                processResponses();
+            processResponse(rsp);
+            return;
+        }
+        responses.offer(rsp == null ? NULL_RESPONSE : rsp);
+        if (scheduled.compareAndSet(false, true))
+            continuationEvent.signal(targetBlade);
     }
 
     /**
-     * The request used to pass the response and the wrapped AsyncResponseProcessor back to the
-     * original target processing.
+     * Returns true when the current thread is running the reactor of the target blade.
      *
-     * @param <RESPONSE_TYPE> The type of response.
+     * @return True when the wrapped AsyncResponseProcessor can be called directly.
      */
-    static class ContinuationEvent<RESPONSE_TYPE> extends Event<Blade> {
-        /**
-         * The wrapped AsyncResponseProcessor.
-         */
-        private final AsyncResponseProcessor<RESPONSE_TYPE> rp;
+    private boolean isTargetThread() {
+        final ReactorBase reactor = (ReactorBase) targetBlade.getReactor();
+        return !(reactor instanceof ThreadBoundReactor) &&
+                reactor.getThreadReference().get() == Thread.currentThread();
+    }
 
-        /**
-         * The response.
-         */
-        private final RESPONSE_TYPE rsp;
+    /**
+     * Passes the queued responses, in the order received, to the wrapped AsyncResponseProcessor.
+     * An exception thrown while processing one response does not keep the remaining
+     * responses from being processed.
+     */
+    private void processResponses() {
+        while (true) {
+            final Object response = responses.poll();
+            if (response == null)
+                return;
+            processResponse(response == NULL_RESPONSE ? null : (RESPONSE_TYPE) response);
+        }
+    }
+
+    /**
+     * Passes a response to the wrapped AsyncResponseProcessor, with the continuation message
+     * as the current message of the target reactor and no exception handler. The current
+     * message and exception handler of the reactor are restored afterwards.
+     *
+     * @param _response The response.
+     */
+    private void processResponse(final RESPONSE_TYPE _response) {
+        final ReactorBase reactor = (ReactorBase) targetBlade.getReactor();
+        final Message message = reactor.getCurrentMessage();
+        final ExceptionHandler<?> exceptionHandler = reactor.getExceptionHandler();
+        reactor.setExceptionHandler(null);
+        reactor.setCurrentMessage(continuationMessage);
+        try {
+            rp.processAsyncResponse(_response);
+        } catch (final Exception e) {
+            continuationMessage.processException(reactor, e);
+        } finally {
+            reactor.setCurrentMessage(message);
+            reactor.setExceptionHandler(exceptionHandler);
+        }
+    }
+
+    /**
+     * The event used to process the queued responses with the wrapped AsyncResponseProcessor
+     * on the thread of the original target processing.
+     */
+    private class ContinuationEvent extends Event<Blade> {
 
         /**
-         * Creates the request used to pass the response and wrapped AsyncResponseProcessor
-         * back to the original target processing.
-         *
-         * @param _rp  The wrapped AsyncResponseProcessor.
-         * @param _rsp The response.
+         * Creates the event used to process the queued responses.
          */
-        public ContinuationEvent(final AsyncResponseProcessor<RESPONSE_TYPE> _rp, final RESPONSE_TYPE _rsp) {
-            rp = _rp;
-            rsp = _rsp;
+        ContinuationEvent() {
+            setPriority(MessagePriority.HIGH);
         }
 
         @Override
-        protected void processEvent(Blade _targetBlade) throws Exception {
-            rp.processAsyncResponse(rsp);
+        protected void processEvent(final Blade _targetBlade) throws Exception {
+            scheduled.set(false);
+            processResponses();
         }
     }
 
+    /**
+     * The current message of the target reactor while a response is processed, and so the
+     * message whose processException method is called when the response to a request passed
+     * while processing a response is an exception.
+     */
+    private static class ContinuationMessage implements Message {
+
+        @Override
+        public boolean isForeign() {
+            return false;
+        }
+
+        @Override
+        public boolean isResponsePending() {
+            return false;
+        }
+
+        @Override
+        public boolean isIsolated() {
+            return false;
+        }
+
+        @Override
+        public void eval() {
+        }
+
+        @Override
+        public void processException(final Reactor _activeReactor, final Exception _e) {
+            final ReactorBase activeReactor = (ReactorBase) _activeReactor;
+            final ExceptionHandler<?> exceptionHandler = activeReactor.getExceptionHandler();
+            if (exceptionHandler == null) {
+                activeReactor.getLogger().warn("Uncaught throwable", _e);
+                return;
+            }
+            try {
+                exceptionHandler.processException(_e);
+            } catch (final Throwable u) {
+                activeReactor.getLogger().error("Exception handler unable to process throwable "
+                        + exceptionHandler.getClass().getName(), u);
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
 }
@@ -2,6 +2,8 @@ package org.agilewiki.jactor2.core.messages;
 
 import org.agilewiki.jactor2.core.blades.Blade;
 import org.agilewiki.jactor2.core.blades.ExceptionHandler;
+import org.agilewiki.jactor2.core.reactors.LinkedMessage;
+import org.agilewiki.jactor2.core.reactors.MessagePriority;
 import org.agilewiki.jactor2.core.reactors.Reactor;
 import org.agilewiki.jactor2.core.reactors.ReactorBase;
 
@@ -83,6 +85,32 @@ import org.agilewiki.jactor2.core.reactors.ReactorBase;
  */
 public abstract class Event<TARGET_BLADE_TYPE extends Blade> {
 
+    /**
+     * The priority of the event messages.
+     */
+    private MessagePriority priority = MessagePriority.NORMAL;
+
+    /**
+     * Assigns a priority to the messages passed by this event, which is used when
+     * the target reactor has a PriorityInbox.
+     *
+     * @param _priority The priority of this event.
+     */
+    public void setPriority(final MessagePriority _priority) {
+        if (_priority == null)
+            throw new NullPointerException("priority");
+        priority = _priority;
+    }
+
+    /**
+     * Returns the priority of the messages passed by this event.
+     *
+     * @return The priority of this event.
+     */
+    public MessagePriority getPriority() {
+        return priority;
+    }
+
     /**
      * Passes an event message immediately to the target Reactor for subsequent processing
      * by the thread of the that targetReactor. No result is passed back and if an exception is
@@ -95,6 +123,54 @@ public abstract class Event<TARGET_BLADE_TYPE extends Blade> {
         ((ReactorBase) _targetBlade.getReactor()).unbufferedAddMessage(message, false);
     }
 
+    /**
+     * Passes a coalescing event message to the target Reactor. If an event passed earlier
+     * to the same blade with the same coalescing key has not yet been processed, it is
+     * replaced by this one, so that only the latest event is processed.
+     * The key is qualified by the target blade, so events passed to different blades
+     * of the same reactor never replace one another.
+     *
+     * @param _targetBlade   The actor to be operated on.
+     * @param _coalescingKey Identifies the events which replace one another.
+     */
+    final public void signal(final TARGET_BLADE_TYPE _targetBlade, final Object _coalescingKey)
+            throws Exception {
+        if (_coalescingKey == null)
+            throw new NullPointerException("coalescingKey");
+        final EventMessage message = new EventMessage(_targetBlade);
+        ((ReactorBase) _targetBlade.getReactor()).coalesce(new CoalescingKey(_targetBlade, _coalescingKey), message);
+    }
+
+    /**
+     * Passes a single event message to a reactor, which then applies this event to each
+     * of the given blades in turn. This is how an EventBus publishes an event, with one
+     * message and one inbox offer per reactor rather than per subscriber.
+     * An exception thrown while processing the event for one blade does not keep
+     * the event from being processed for the others.
+     *
+     * @param _reactor      The reactor used by all the target blades.
+     * @param _targetBlades The blades to be operated on. The array must not be changed afterwards.
+     */
+    final void signal(final Reactor _reactor, final Object[] _targetBlades) throws Exception {
+        final EventBatchMessage message = new EventBatchMessage(_reactor, _targetBlades);
+        ((ReactorBase) _reactor).unbufferedAddMessage(message, false);
+    }
+
+    /**
+     * Passes a single coalescing event message to a reactor, which then applies this event
+     * to each of the given blades in turn, unless the message is replaced by a later one
+     * with the same coalescing key before it is processed.
+     *
+     * @param _reactor       The reactor used by all the target blades.
+     * @param _targetBlades  The blades to be operated on. The array must not be changed afterwards.
+     * @param _coalescingKey Identifies the events which replace one another.
+     */
+    final void signal(final Reactor _reactor, final Object[] _targetBlades, final Object _coalescingKey)
+            throws Exception {
+        final EventBatchMessage message = new EventBatchMessage(_reactor, _targetBlades);
+        ((ReactorBase) _reactor).coalesce(_coalescingKey, message);
+    }
+
     /**
      * The processEvent method will be invoked by the target Reactor on its own thread
      * when this event is processed.
@@ -108,7 +184,7 @@ public abstract class Event<TARGET_BLADE_TYPE extends Blade> {
      * The message subclass used to pass events. Event messages are not reused, with a
      * new event message being created each time Event.signal is called.
      */
-    final private class EventMessage implements Message {
+    final private class EventMessage extends LinkedMessage {
 
         /**
          * The blade to be operated on.
@@ -124,6 +200,11 @@ public abstract class Event<TARGET_BLADE_TYPE extends Blade> {
             targetBlade = _targetBlade;
         }
 
+        @Override
+        public MessagePriority getPriority() {
+            return priority;
+        }
+
         @Override
         public boolean isForeign() {
             return false;
@@ -134,6 +215,11 @@ public abstract class Event<TARGET_BLADE_TYPE extends Blade> {
             return false;
         }
 
+        @Override
+        public boolean isSignal() {
+            return true;
+        }
+
         @Override
         public boolean isIsolated() {
             return false;
@@ -157,18 +243,145 @@ public abstract class Event<TARGET_BLADE_TYPE extends Blade> {
 
         @Override
         public void processException(final Reactor _activeReactor, final Exception _e) {
-            ReactorBase activeMessageProcessor = (ReactorBase) _activeReactor;
-            ExceptionHandler exceptionHandler = activeMessageProcessor.getExceptionHandler();
-            if (exceptionHandler != null) {
+            eventException(_activeReactor, _e);
+        }
+    }
+
+    /**
+     * The message used to pass an event to several blades of the same reactor.
+     */
+    final private class EventBatchMessage extends LinkedMessage {
+
+        /**
+         * The reactor used by the target blades.
+         */
+        final Reactor reactor;
+
+        /**
+         * The blades to be operated on.
+         */
+        final Object[] targetBlades;
+
+        /**
+         * Create an EventBatchMessage.
+         *
+         * @param _reactor      The reactor used by the target blades.
+         * @param _targetBlades The blades to be operated on.
+         */
+        EventBatchMessage(final Reactor _reactor, final Object[] _targetBlades) {
+            reactor = _reactor;
+            targetBlades = _targetBlades;
+        }
+
+        @Override
+        public MessagePriority getPriority() {
+            return priority;
+        }
+
+        @Override
+        public boolean isForeign() {
+            return false;
+        }
+
+        @Override
+        public boolean isResponsePending() {
+            return false;
+        }
+
+        @Override
+        public boolean isSignal() {
+            return true;
+        }
+
+        @Override
+        public boolean isIsolated() {
+            return false;
+        }
+
+        @Override
+        public void close() throws Exception {
+        }
+
+        @Override
+        public void eval() {
+            ReactorBase targetMessageProcessor = (ReactorBase) reactor;
+            for (final Object targetBlade : targetBlades) {
+                targetMessageProcessor.setExceptionHandler(null);
+                targetMessageProcessor.setCurrentMessage(this);
                 try {
-                    exceptionHandler.processException(_e);
-                } catch (final Throwable u) {
-                    activeMessageProcessor.getLogger().error("Exception handler unable to process throwable "
-                            + exceptionHandler.getClass().getName(), u);
-                    activeMessageProcessor.getLogger().error("Thrown by exception handler and uncaught "
-                            + exceptionHandler.getClass().getName(), _e);
+                    processEvent((TARGET_BLADE_TYPE) targetBlade);
+                } catch (final Exception e) {
+                    processException(targetMessageProcessor, e);
                 }
             }
         }
+
+        @Override
+        public void processException(final Reactor _activeReactor, final Exception _e) {
+            eventException(_activeReactor, _e);
+        }
+    }
+
+    /**
+     * Passes an exception thrown while processing this event to the exception handler
+     * of the active reactor, if any.
+     *
+     * @param _activeReactor The reactor processing the event.
+     * @param _e             The exception thrown.
+     */
+    private void eventException(final Reactor _activeReactor, final Exception _e) {
+        ReactorBase activeMessageProcessor = (ReactorBase) _activeReactor;
+        ExceptionHandler exceptionHandler = activeMessageProcessor.getExceptionHandler();
+        if (exceptionHandler != null) {
+            try {
+                exceptionHandler.processException(_e);
+            } catch (final Throwable u) {
+                activeMessageProcessor.getLogger().error("Exception handler unable to process throwable "
+                        + exceptionHandler.getClass().getName(), u);
+                activeMessageProcessor.getLogger().error("Thrown by exception handler and uncaught "
+                        + exceptionHandler.getClass().getName(), _e);
+            }
+        }
+    }
+
+    /**
+     * A coalescing key qualified by the target blade, so that the events of different blades
+     * passed to the same reactor do not replace one another.
+     */
+    private static final class CoalescingKey {
+
+        /**
+         * The target blade.
+         */
+        private final Blade targetBlade;
+
+        /**
+         * The coalescing key given when signalling.
+         */
+        private final Object key;
+
+        /**
+         * Create a CoalescingKey.
+         *
+         * @param _targetBlade The target blade.
+         * @param _key         The coalescing key given when signalling.
+         */
+        CoalescingKey(final Blade _targetBlade, final Object _key) {
+            targetBlade = _targetBlade;
+            key = _key;
+        }
+
+        @Override
+        public boolean equals(final Object _other) {
+            if (!(_other instanceof CoalescingKey))
+                return false;
+            final CoalescingKey other = (CoalescingKey) _other;
+            return targetBlade == other.targetBlade && key.equals(other.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(targetBlade) + key.hashCode();
+        }
     }
 }
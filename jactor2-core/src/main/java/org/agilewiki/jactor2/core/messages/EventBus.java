@@ -4,14 +4,25 @@ import org.agilewiki.jactor2.core.blades.Blade;
 import org.agilewiki.jactor2.core.blades.BladeBase;
 import org.agilewiki.jactor2.core.reactors.Reactor;
 
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
  * <p>
  * Publishes events to subscribers.
  * </p>
+ * <p>
+ * An event can be published with a topic, and a subscriber can limit the events it receives
+ * to those whose topic starts with a prefix or is equal to a key. A subscription without
+ * a filter has the prefix "", which matches every topic, and an event published without
+ * a topic has the topic "". So events are only passed to the reactors of the subscribers
+ * which are interested in them.
+ * </p>
  * <h3>Sample Usage:</h3>
  * <pre>
  * import org.agilewiki.jactor2.core.messaging.EventBus;
@@ -133,9 +144,23 @@ import java.util.Set;
  */
 public class EventBus<TARGET_BLADE_TYPE extends Blade> extends BladeBase {
     /**
-     * The blades which will receive the published events.
+     * The subscribers with a prefix filter, by prefix.
+     * Each value is an array of groups of subscribers, one group per reactor. The arrays and
+     * the groups are never changed, but replaced when a subscriber is added or removed, so
+     * publishing iterates over arrays and the messages which deliver an event can safely
+     * hold on to the subscriber array of a group.
+     */
+    private final Map<String, Group[]> prefixSubscriptions = new HashMap<String, Group[]>();
+
+    /**
+     * The subscribers with a key filter, by key, grouped by reactor.
+     */
+    private final Map<String, Group[]> keySubscriptions = new HashMap<String, Group[]>();
+
+    /**
+     * The number of subscriptions.
      */
-    private final Set<TARGET_BLADE_TYPE> subscribers = new HashSet<TARGET_BLADE_TYPE>();
+    private int subscriberCount;
 
     /**
      * Create an event bus.
@@ -147,42 +172,177 @@ public class EventBus<TARGET_BLADE_TYPE extends Blade> extends BladeBase {
     }
 
     /**
-     * Returns a request to add a subscriber.
+     * Returns a request to add a subscriber which receives all the events.
      * The result of the request is true when the subscriber list was changed.
      *
      * @param _subscriber A blade that will receive the published events.
      * @return The request.
      */
     public SyncRequest<Boolean> subscribeSReq(final TARGET_BLADE_TYPE _subscriber) {
+        return subscribeSReq(_subscriber, "");
+    }
+
+    /**
+     * Returns a request to add a subscriber which receives the events whose topic
+     * starts with the given prefix.
+     * The result of the request is true when the subscriber list was changed.
+     *
+     * @param _subscriber A blade that will receive the published events.
+     * @param _prefix     The prefix of the topics, or "" for all the events.
+     * @return The request.
+     */
+    public SyncRequest<Boolean> subscribeSReq(final TARGET_BLADE_TYPE _subscriber,
+                                              final String _prefix) {
+        return subscribeSReq(prefixSubscriptions, _subscriber, _prefix);
+    }
+
+    /**
+     * Returns a request to add a subscriber which receives the events whose topic
+     * is equal to the given key.
+     * The result of the request is true when the subscriber list was changed.
+     *
+     * @param _subscriber A blade that will receive the published events.
+     * @param _key        The topic.
+     * @return The request.
+     */
+    public SyncRequest<Boolean> subscribeKeySReq(final TARGET_BLADE_TYPE _subscriber,
+                                                 final String _key) {
+        return subscribeSReq(keySubscriptions, _subscriber, _key);
+    }
+
+    /**
+     * Returns a request to add a subscription.
+     *
+     * @param _subscriptions The prefix or key subscriptions.
+     * @param _subscriber    A blade that will receive the published events.
+     * @param _filter        The prefix or key.
+     * @return The request.
+     */
+    private SyncRequest<Boolean> subscribeSReq(final Map<String, Group[]> _subscriptions,
+                                               final TARGET_BLADE_TYPE _subscriber,
+                                               final String _filter) {
+        if (_filter == null)
+            throw new NullPointerException("filter");
         return new SyncBladeRequest<Boolean>() {
             @Override
             protected Boolean processSyncRequest()
                     throws Exception {
-                return subscribers.add(_subscriber);
+                Group[] groups = _subscriptions.get(_filter);
+                if (groups == null)
+                    groups = new Group[0];
+                final Reactor reactor = _subscriber.getReactor();
+                final int g = indexOf(groups, reactor);
+                if (g == -1) {
+                    final Group[] newGroups = new Group[groups.length + 1];
+                    System.arraycopy(groups, 0, newGroups, 0, groups.length);
+                    newGroups[groups.length] = new Group(reactor, new Object[]{_subscriber});
+                    _subscriptions.put(_filter, newGroups);
+                } else {
+                    final Object[] old = groups[g].subscribers;
+                    for (final Object subscriber : old) {
+                        if (subscriber.equals(_subscriber))
+                            return false;
+                    }
+                    final Object[] subscribers = new Object[old.length + 1];
+                    System.arraycopy(old, 0, subscribers, 0, old.length);
+                    subscribers[old.length] = _subscriber;
+                    _subscriptions.put(_filter, replace(groups, g, new Group(reactor, subscribers)));
+                }
+                subscriberCount += 1;
+                return true;
             }
         };
     }
 
     /**
-     * Returns a request to remove a subscriber.
+     * Returns a request to remove a subscriber which receives all the events.
      * The result of the request is true when the subscriber list was changed.
      *
      * @param _subscriber The blade that should no longer receive the published events.
      * @return The request.
      */
     public SyncRequest<Boolean> unsubscribeSReq(final TARGET_BLADE_TYPE _subscriber) {
+        return unsubscribeSReq(_subscriber, "");
+    }
+
+    /**
+     * Returns a request to remove a subscription with a prefix.
+     * The result of the request is true when the subscriber list was changed.
+     *
+     * @param _subscriber The blade that should no longer receive the published events.
+     * @param _prefix     The prefix given when subscribing.
+     * @return The request.
+     */
+    public SyncRequest<Boolean> unsubscribeSReq(final TARGET_BLADE_TYPE _subscriber,
+                                                final String _prefix) {
+        return unsubscribeSReq(prefixSubscriptions, _subscriber, _prefix);
+    }
+
+    /**
+     * Returns a request to remove a subscription with a key.
+     * The result of the request is true when the subscriber list was changed.
+     *
+     * @param _subscriber The blade that should no longer receive the published events.
+     * @param _key        The key given when subscribing.
+     * @return The request.
+     */
+    public SyncRequest<Boolean> unsubscribeKeySReq(final TARGET_BLADE_TYPE _subscriber,
+                                                   final String _key) {
+        return unsubscribeSReq(keySubscriptions, _subscriber, _key);
+    }
+
+    /**
+     * Returns a request to remove a subscription.
+     *
+     * @param _subscriptions The prefix or key subscriptions.
+     * @param _subscriber    The blade that should no longer receive the published events.
+     * @param _filter        The prefix or key.
+     * @return The request.
+     */
+    private SyncRequest<Boolean> unsubscribeSReq(final Map<String, Group[]> _subscriptions,
+                                                 final TARGET_BLADE_TYPE _subscriber,
+                                                 final String _filter) {
         return new SyncBladeRequest<Boolean>() {
             @Override
             protected Boolean processSyncRequest()
                     throws Exception {
-                return subscribers.remove(_subscriber);
+                final Group[] groups = _subscriptions.get(_filter);
+                if (groups == null)
+                    return false;
+                final int g = indexOf(groups, _subscriber.getReactor());
+                if (g == -1)
+                    return false;
+                final Object[] old = groups[g].subscribers;
+                int i = 0;
+                while (i < old.length && !old[i].equals(_subscriber))
+                    i += 1;
+                if (i == old.length)
+                    return false;
+                if (old.length > 1) {
+                    final Object[] subscribers = new Object[old.length - 1];
+                    System.arraycopy(old, 0, subscribers, 0, i);
+                    System.arraycopy(old, i + 1, subscribers, i, old.length - i - 1);
+                    _subscriptions.put(_filter, replace(groups, g, new Group(groups[g].reactor, subscribers)));
+                } else if (groups.length > 1) {
+                    final Group[] newGroups = new Group[groups.length - 1];
+                    System.arraycopy(groups, 0, newGroups, 0, g);
+                    System.arraycopy(groups, g + 1, newGroups, g, groups.length - g - 1);
+                    _subscriptions.put(_filter, newGroups);
+                } else {
+                    _subscriptions.remove(_filter);
+                }
+                subscriberCount -= 1;
+                return true;
             }
         };
     }
 
     /**
-     * Returns a request to publish an event to all the subscribers.
+     * Returns a request to publish an event without a topic, which is passed to the
+     * subscribers which receive all the events.
      * The request completes with a null result only when the event has been sent to all subscribers.
+     * A single message is passed to each reactor used by the subscribers, and that message
+     * then applies the event to each of the subscribers of that reactor in turn.
      * Exceptions thrown by subscribers when processing these events are are simply logged,
      * as is the case for all events.
      *
@@ -191,16 +351,263 @@ public class EventBus<TARGET_BLADE_TYPE extends Blade> extends BladeBase {
      */
     public SyncRequest<Void> publishSReq(
             final Event<TARGET_BLADE_TYPE> event) {
+        return publishSReq(event, "");
+    }
+
+    /**
+     * Returns a request to publish an event to the subscribers whose prefix or key
+     * matches a topic. A subscriber with several matching subscriptions receives the
+     * event once.
+     * The request completes with a null result only when the event has been sent to all
+     * the matching subscribers.
+     *
+     * @param event  The event to be published.
+     * @param _topic The topic of the event.
+     * @return The request.
+     */
+    public SyncRequest<Void> publishSReq(
+            final Event<TARGET_BLADE_TYPE> event,
+            final String _topic) {
+        return publishSReq(event, _topic, null);
+    }
+
+    /**
+     * Returns a request to publish a coalescing event to the subscribers whose prefix or key
+     * matches a topic. An event published earlier by this event bus with the same
+     * coalescing key which a reactor has not yet processed is replaced by this one, so that
+     * a slow subscriber only processes the latest of a burst of events, like "state changed"
+     * notifications. The subscribers which match the topic should not depend on the event,
+     * as only the subscribers of the latest event receive it.
+     *
+     * @param event          The event to be published.
+     * @param _topic         The topic of the event.
+     * @param _coalescingKey Identifies the events which replace one another.
+     * @return The request.
+     */
+    public SyncRequest<Void> publishCoalescedSReq(
+            final Event<TARGET_BLADE_TYPE> event,
+            final String _topic,
+            final Object _coalescingKey) {
+        if (_coalescingKey == null)
+            throw new NullPointerException("coalescingKey");
+        return publishSReq(event, _topic, new CoalescingKey(this, _coalescingKey));
+    }
+
+    /**
+     * Returns a request to publish an event.
+     *
+     * @param event          The event to be published.
+     * @param _topic         The topic of the event.
+     * @param _coalescingKey Identifies the events which replace one another, or null.
+     * @return The request.
+     */
+    private SyncRequest<Void> publishSReq(
+            final Event<TARGET_BLADE_TYPE> event,
+            final String _topic,
+            final Object _coalescingKey) {
         return new SyncBladeRequest<Void>() {
             @Override
             protected Void processSyncRequest()
                     throws Exception {
-                Iterator<TARGET_BLADE_TYPE> it = subscribers.iterator();
-                while (it.hasNext()) {
-                    event.signal(it.next());
+                final List<Group[]> matches = match(_topic);
+                if (matches.size() == 1) {
+                    for (final Group group : matches.get(0)) {
+                        deliver(event, group.reactor, group.subscribers, _coalescingKey);
+                    }
+                } else if (matches.size() > 1) {
+                    final Map<Reactor, Set<Object>> merged = new LinkedHashMap<Reactor, Set<Object>>();
+                    for (final Group[] groups : matches) {
+                        for (final Group group : groups) {
+                            Set<Object> subscribers = merged.get(group.reactor);
+                            if (subscribers == null) {
+                                subscribers = new LinkedHashSet<Object>();
+                                merged.put(group.reactor, subscribers);
+                            }
+                            for (final Object subscriber : group.subscribers) {
+                                subscribers.add(subscriber);
+                            }
+                        }
+                    }
+                    for (final Map.Entry<Reactor, Set<Object>> entry : merged.entrySet()) {
+                        deliver(event, entry.getKey(), entry.getValue().toArray(), _coalescingKey);
+                    }
                 }
                 return null;
             }
         };
     }
-}
\ No newline at end of file
+
+    /**
+     * Passes an event to the subscribers of a reactor.
+     *
+     * @param _event         The event.
+     * @param _reactor       The reactor of the subscribers.
+     * @param _subscribers   The subscribers.
+     * @param _coalescingKey Identifies the events which replace one another, or null.
+     */
+    private static void deliver(final Event<?> _event,
+                                final Reactor _reactor,
+                                final Object[] _subscribers,
+                                final Object _coalescingKey) throws Exception {
+        if (_coalescingKey == null)
+            _event.signal(_reactor, _subscribers);
+        else
+            _event.signal(_reactor, _subscribers, _coalescingKey);
+    }
+
+    /**
+     * Returns the subscriptions which match a topic.
+     * The key subscriptions are found with a single lookup, while each distinct prefix
+     * is compared with the topic.
+     *
+     * @param _topic The topic of an event.
+     * @return The groups of each matching subscription.
+     */
+    private List<Group[]> match(final String _topic) {
+        final List<Group[]> matches = new ArrayList<Group[]>(2);
+        final Group[] keyed = keySubscriptions.get(_topic);
+        if (keyed != null)
+            matches.add(keyed);
+        for (final Map.Entry<String, Group[]> entry : prefixSubscriptions.entrySet()) {
+            if (_topic.startsWith(entry.getKey()))
+                matches.add(entry.getValue());
+        }
+        return matches;
+    }
+
+    /**
+     * Returns the number of subscriptions.
+     * (This method must be called on the thread of the event bus.)
+     *
+     * @return The number of subscriptions.
+     */
+    public int getSubscriberCount() {
+        return subscriberCount;
+    }
+
+    /**
+     * Returns the number of reactors used by the subscribers which receive all the events,
+     * which is the number of messages passed when an event is published without a topic.
+     * (This method must be called on the thread of the event bus.)
+     *
+     * @return The number of reactors.
+     */
+    public int getReactorCount() {
+        return getReactorCount("");
+    }
+
+    /**
+     * Returns the number of messages passed when an event is published with the given topic,
+     * one for each reactor used by the matching subscribers.
+     * (This method must be called on the thread of the event bus.)
+     *
+     * @param _topic The topic of an event.
+     * @return The number of reactors.
+     */
+    public int getReactorCount(final String _topic) {
+        final Set<Reactor> reactors = new LinkedHashSet<Reactor>();
+        for (final Group[] groups : match(_topic)) {
+            for (final Group group : groups) {
+                reactors.add(group.reactor);
+            }
+        }
+        return reactors.size();
+    }
+
+    /**
+     * Returns the index of the group of a reactor.
+     *
+     * @param _groups  The groups of a subscription.
+     * @param _reactor The reactor.
+     * @return The index of the group, or -1.
+     */
+    private static int indexOf(final Group[] _groups, final Reactor _reactor) {
+        for (int i = 0; i < _groups.length; i++) {
+            if (_groups[i].reactor == _reactor)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns a copy of the groups array with one group replaced.
+     *
+     * @param _groups The groups of a subscription.
+     * @param _index  The index of the group.
+     * @param _group  The new group.
+     * @return The new groups array.
+     */
+    private static Group[] replace(final Group[] _groups, final int _index, final Group _group) {
+        final Group[] newGroups = _groups.clone();
+        newGroups[_index] = _group;
+        return newGroups;
+    }
+
+    /**
+     * The subscribers which use the same reactor.
+     */
+    private static final class Group {
+
+        /**
+         * The reactor used by the subscribers.
+         */
+        final Reactor reactor;
+
+        /**
+         * The subscribers.
+         */
+        final Object[] subscribers;
+
+        /**
+         * Create a Group.
+         *
+         * @param _reactor     The reactor used by the subscribers.
+         * @param _subscribers The subscribers.
+         */
+        Group(final Reactor _reactor, final Object[] _subscribers) {
+            reactor = _reactor;
+            subscribers = _subscribers;
+        }
+    }
+
+    /**
+     * A coalescing key qualified by the event bus, so that the events of different event buses
+     * passed to the same reactor do not replace one another.
+     */
+    private static final class CoalescingKey {
+
+        /**
+         * The event bus.
+         */
+        private final EventBus<?> eventBus;
+
+        /**
+         * The coalescing key given when publishing.
+         */
+        private final Object key;
+
+        /**
+         * Create a CoalescingKey.
+         *
+         * @param _eventBus The event bus.
+         * @param _key      The coalescing key given when publishing.
+         */
+        CoalescingKey(final EventBus<?> _eventBus, final Object _key) {
+            eventBus = _eventBus;
+            key = _key;
+        }
+
+        @Override
+        public boolean equals(final Object _other) {
+            if (!(_other instanceof CoalescingKey))
+                return false;
+            final CoalescingKey other = (CoalescingKey) _other;
+            return eventBus == other.eventBus && key.equals(other.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(eventBus) + key.hashCode();
+        }
+    }
+}
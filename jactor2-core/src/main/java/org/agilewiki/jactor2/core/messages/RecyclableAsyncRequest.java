@@ -0,0 +1,48 @@
+package org.agilewiki.jactor2.core.messages;
+
+import org.agilewiki.jactor2.core.reactors.Reactor;
+
+/**
+ * An AsyncRequest which is reused rather than being garbage collected.
+ * Recyclable requests are taken from a RequestPool. When the response arrives back at the
+ * source reactor, the request is reset and returned to the pool it was taken from, and then
+ * the response is passed to the response processor.
+ * <p>
+ * As a request is reused, its parameters can not be final fields or captured variables.
+ * Instead they are fields which are assigned after the request is taken from the pool and
+ * which are cleared by an override of the reset method.
+ * </p>
+ * <p>
+ * A recyclable request must not be referenced once its response has been returned.
+ * So the processing of the request must not keep a reference to it, and it must only be
+ * passed using send, as requests passed with signal or call are not returned to their pool.
+ * Responses to the requests it passed which arrive after its own response has been returned
+ * are dropped, as by then the request may already be in use again.
+ * </p>
+ *
+ * @param <RESPONSE_TYPE> The type of response value.
+ */
+public abstract class RecyclableAsyncRequest<RESPONSE_TYPE> extends AsyncRequest<RESPONSE_TYPE> {
+
+    /**
+     * Returns this request to the pool it was taken from, or null.
+     */
+    RequestPool<?>.Recycler recycler;
+
+    /**
+     * Create a RecyclableAsyncRequest.
+     *
+     * @param _targetReactor The targetReactor where this Request Objects is passed for processing.
+     *                       The thread owned by this targetReactor will process this Request.
+     */
+    public RecyclableAsyncRequest(final Reactor _targetReactor) {
+        super(_targetReactor);
+    }
+
+    @Override
+    protected void responseProcessed() {
+        final RequestPool<?>.Recycler r = recycler;
+        if (r != null)
+            r.recycle();
+    }
+}
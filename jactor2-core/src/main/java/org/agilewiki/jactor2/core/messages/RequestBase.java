@@ -5,18 +5,23 @@ import org.agilewiki.jactor2.core.facilities.Facility;
 import org.agilewiki.jactor2.core.facilities.Plant;
 import org.agilewiki.jactor2.core.facilities.PoolThread;
 import org.agilewiki.jactor2.core.facilities.ServiceClosedException;
-import org.agilewiki.jactor2.core.reactors.IsolationReactor;
+import org.agilewiki.jactor2.core.metrics.RequestTrace;
+import org.agilewiki.jactor2.core.metrics.RequestTracer;
+import org.agilewiki.jactor2.core.reactors.KeyedIsolationReactor;
+import org.agilewiki.jactor2.core.reactors.LinkedMessage;
+import org.agilewiki.jactor2.core.reactors.MessagePriority;
 import org.agilewiki.jactor2.core.reactors.Reactor;
 import org.agilewiki.jactor2.core.reactors.ReactorBase;
 import org.agilewiki.jactor2.core.reactors.ThreadBoundReactor;
 
-import java.util.Collections;
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
-public abstract class RequestBase<RESPONSE_TYPE> implements Message {
+public abstract class RequestBase<RESPONSE_TYPE> extends LinkedMessage {
 
     /**
      * Process the request immediately.
@@ -37,9 +42,44 @@ public abstract class RequestBase<RESPONSE_TYPE> implements Message {
     }
 
     /**
-     * Assigned to current time when Facility.DEBUG.
+     * Passes a list of requests and, once all the responses have been received, passes
+     * the list of responses to a single AsyncResponseProcessor.
+     * <p>
+     * The requests are buffered like those passed by doSend, so the requests bound for
+     * the same target are added to its inbox as a single block, with one enqueue and one
+     * wakeup of the target, when the source has finished processing the current message.
+     * If a request fails, its exception is passed to the exception handler of the source
+     * and the AsyncResponseProcessor is not called.
+     * </p>
+     *
+     * @param _source            The targetReactor on whose thread this method was invoked and which
+     *                           will receive the responses.
+     * @param _requests          The requests to be passed.
+     * @param _responseProcessor Processes the responses, which are in the same order as the requests.
+     *                           It is called immediately when there are no requests.
+     * @param <RESPONSE_TYPE>    The type of value returned by the requests.
      */
-    private Long debugTimestamp;
+    public static <RESPONSE_TYPE> void doSendAll(
+            final Reactor _source,
+            final List<? extends RequestBase<RESPONSE_TYPE>> _requests,
+            final AsyncResponseProcessor<List<RESPONSE_TYPE>> _responseProcessor) throws Exception {
+        final int size = _requests.size();
+        if (size == 0) {
+            _responseProcessor.processAsyncResponse(new ArrayList<RESPONSE_TYPE>(0));
+            return;
+        }
+        final ListGatherer<RESPONSE_TYPE> gatherer =
+                new ListGatherer<RESPONSE_TYPE>(size, _responseProcessor);
+        for (int i = 0; i < size; i++) {
+            final RequestBase<RESPONSE_TYPE> request = _requests.get(i);
+            request.doSend(_source, gatherer.responseProcessor(i));
+        }
+    }
+
+    /**
+     * The trace of this request, or null when this request is not being traced.
+     */
+    private RequestTrace trace;
 
     /**
      * A request can only be used once.
@@ -69,6 +109,17 @@ public abstract class RequestBase<RESPONSE_TYPE> implements Message {
      */
     protected Message oldMessage;
 
+    /**
+     * The generation of oldMessage when this request was passed, when oldMessage is a request.
+     */
+    private int oldGeneration;
+
+    /**
+     * Incremented each time this request is reset, so that a late response to a request which
+     * was passed while processing an earlier use of this request can be recognized.
+     */
+    private volatile int generation;
+
     /**
      * The exception handler that was active in the source targetReactor at the time
      * when this message was created.
@@ -86,7 +137,7 @@ public abstract class RequestBase<RESPONSE_TYPE> implements Message {
     protected boolean responsePending = true;
 
     /**
-     * True when the request is, directly or indirectly, from an IsolationReactor that awaits a response.
+     * True when the request is, directly or indirectly, from an isolating reactor that awaits a response.
      */
     private boolean isolated;
 
@@ -95,6 +146,27 @@ public abstract class RequestBase<RESPONSE_TYPE> implements Message {
      */
     protected Object response;
 
+    /**
+     * The time, in milliseconds since the epoch, after which this request is no longer
+     * worth processing, or 0 when there is no deadline.
+     */
+    private long deadline;
+
+    /**
+     * True when this request has been cancelled.
+     */
+    private volatile boolean cancelled;
+
+    /**
+     * The priority of this request.
+     */
+    private MessagePriority priority = MessagePriority.NORMAL;
+
+    /**
+     * The key used by a KeyedIsolationReactor to decide which requests are serialized, or null.
+     */
+    private Object isolationKey;
+
     /**
      * Create a RequestBase.
      *
@@ -117,6 +189,131 @@ public abstract class RequestBase<RESPONSE_TYPE> implements Message {
         return targetReactor;
     }
 
+    /**
+     * Assigns a deadline to this request, after which the request is not worth processing.
+     * A request still in the inbox of its target when the deadline passes is discarded
+     * without being processed, and a RequestExpiredException is passed back as its response.
+     * The requests passed by this request while it is being processed inherit its deadline,
+     * unless they have an earlier one.
+     * (This method must be called before this request is passed.)
+     *
+     * @param _deadline The time, in milliseconds since the epoch, or 0 for no deadline.
+     * @return This request.
+     */
+    public RequestBase<RESPONSE_TYPE> setDeadline(final long _deadline) {
+        if (used)
+            throw new IllegalStateException("Already used");
+        deadline = _deadline;
+        return this;
+    }
+
+    /**
+     * Returns the deadline of this request.
+     *
+     * @return The time, in milliseconds since the epoch, or 0 when there is no deadline.
+     */
+    public long getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * Assigns a priority to this request, which is used when the target reactor has a
+     * PriorityInbox. The response is always given a high priority.
+     * (This method must be called before this request is passed.)
+     *
+     * @param _priority The priority of this request.
+     * @return This request.
+     */
+    public RequestBase<RESPONSE_TYPE> setPriority(final MessagePriority _priority) {
+        if (used)
+            throw new IllegalStateException("Already used");
+        if (_priority == null)
+            throw new NullPointerException("priority");
+        priority = _priority;
+        return this;
+    }
+
+    @Override
+    public MessagePriority getPriority() {
+        return priority;
+    }
+
+    /**
+     * Assigns an isolation key to this request, which is used when the target reactor is a
+     * KeyedIsolationReactor. Only requests with equal keys are isolated from each other.
+     * Requests without a key share the null key.
+     * (This method must be called before this request is passed.)
+     *
+     * @param _isolationKey The isolation key, or null.
+     * @return This request.
+     */
+    public RequestBase<RESPONSE_TYPE> setIsolationKey(final Object _isolationKey) {
+        if (used)
+            throw new IllegalStateException("Already used");
+        isolationKey = _isolationKey;
+        return this;
+    }
+
+    /**
+     * Returns the isolation key of this request.
+     *
+     * @return The isolation key, or null.
+     */
+    public Object getIsolationKey() {
+        return isolationKey;
+    }
+
+    /**
+     * Cancels this request, and with it all the requests that were passed while processing it.
+     * A cancelled request which has not yet been processed is discarded by the inbox of its
+     * target and a RequestExpiredException is passed back as its response.
+     * A request already being processed runs to completion, though it can check isCancelled
+     * to stop early.
+     * This method can be called from any thread.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Returns true when this request, or the request which was being processed when this
+     * request was passed, directly or indirectly, has been cancelled.
+     *
+     * @return True when cancelled.
+     */
+    public boolean isCancelled() {
+        RequestBase<?> request = this;
+        while (true) {
+            if (request.cancelled)
+                return true;
+            final Message parent = request.oldMessage;
+            if (!(parent instanceof RequestBase) || request.isOldMessageStale())
+                return false;
+            request = (RequestBase<?>) parent;
+        }
+    }
+
+    /**
+     * Called by the inbox of the target reactor before this request is processed.
+     * When this request has been cancelled or its deadline has passed, a RequestExpiredException
+     * is passed back as its response, or, for a signal, the request is simply dropped.
+     *
+     * @return True when this request has expired and is not to be processed.
+     */
+    public boolean discardIfExpired() {
+        if (!responsePending)
+            return false;
+        final String reason;
+        if (deadline != 0 && System.currentTimeMillis() > deadline)
+            reason = "Deadline passed";
+        else if (isCancelled())
+            reason = "Request cancelled";
+        else
+            return false;
+        abort(new RequestExpiredException(reason));
+        return true;
+    }
+
     /**
      * Marks the request as having been used, or throws an
      * exception if the request was already used.
@@ -136,6 +333,8 @@ public abstract class RequestBase<RESPONSE_TYPE> implements Message {
     public void signal() throws Exception {
         use();
         responseProcessor = SignalResponseProcessor.SINGLETON;
+        if (RequestTracer.SAMPLING > 0)
+            trace = RequestTracer.sample(this, null, targetReactor);
         targetReactor.unbufferedAddMessage(this, false);
     }
 
@@ -170,8 +369,8 @@ public abstract class RequestBase<RESPONSE_TYPE> implements Message {
                     "A valid source sourceReactor can not be idle");
         if (oldMessage != null && oldMessage.isIsolated())
             isolated = true;
-        if (targetReactor instanceof IsolationReactor) {
-            if (isolated)
+        if (targetReactor.isIsolating()) {
+            if (isolated || (_responseProcessor != null && isAwaitedBy(source.getCurrentMessage())))
                 throw new UnsupportedOperationException("Isolated requests can not be nested, even indirectly.");
             isolated = true;
         }
@@ -179,11 +378,17 @@ public abstract class RequestBase<RESPONSE_TYPE> implements Message {
         AsyncResponseProcessor<RESPONSE_TYPE> rp = _responseProcessor;
         if (rp == null)
             rp = (AsyncResponseProcessor<RESPONSE_TYPE>) SignalResponseProcessor.SINGLETON;
-        else
-            addDebugPending();
+        if (RequestTracer.SAMPLING > 0)
+            trace = RequestTracer.sample(this, source, targetReactor);
         foreign = source.getFacility() != targetReactor.getFacility();
         messageSource = source;
         oldMessage = source.getCurrentMessage();
+        if (oldMessage instanceof RequestBase) {
+            oldGeneration = ((RequestBase) oldMessage).generation;
+            final long parentDeadline = ((RequestBase) oldMessage).deadline;
+            if (parentDeadline != 0 && (deadline == 0 || parentDeadline < deadline))
+                deadline = parentDeadline;
+        }
         sourceExceptionHandler = source.getExceptionHandler();
         responseProcessor = rp;
         boolean local = targetReactor == source;
@@ -204,9 +409,8 @@ public abstract class RequestBase<RESPONSE_TYPE> implements Message {
         use();
         if (Thread.currentThread() instanceof PoolThread)
             throw new UnsupportedOperationException("Use of call on a PoolThread can result in a deadlock");
-        if (Plant.DEBUG) {
-            addDebugPending();
-        }
+        if (RequestTracer.SAMPLING > 0)
+            trace = RequestTracer.sample(this, null, targetReactor);
         foreign = true;
         messageSource = new Pender();
         responseProcessor = CallResponseProcessor.SINGLETON;
@@ -215,18 +419,56 @@ public abstract class RequestBase<RESPONSE_TYPE> implements Message {
     }
 
     /**
-     * track pending requests.
+     * Passes this Request to the target Reactor and returns a future which is completed
+     * by the result. Unlike call, no thread waits for the result, so callAsync can be
+     * used on any thread, including a pool thread.
+     *
+     * @return A future completed by the result of applying this Request to the target blade.
      */
-    private void addDebugPending() {
-        if (Plant.DEBUG) {
-            debugTimestamp = System.nanoTime();
-            Facility targetFacility = targetReactor.getFacility();
-            Map<Long, Set<RequestBase>> pendingRequests = targetFacility.pendingRequests;
-            Set<RequestBase> nanoSet = pendingRequests.get(debugTimestamp);
-            if (nanoSet == null) {
-                nanoSet = Collections.newSetFromMap(new ConcurrentHashMap<RequestBase, Boolean>());
-            }
-            pendingRequests.put(debugTimestamp, nanoSet);
+    public RequestFuture<RESPONSE_TYPE> callAsync() throws Exception {
+        use();
+        if (RequestTracer.SAMPLING > 0)
+            trace = RequestTracer.sample(this, null, targetReactor);
+        foreign = true;
+        final RequestFuture<RESPONSE_TYPE> future = new RequestFuture<RESPONSE_TYPE>(this);
+        messageSource = future;
+        responseProcessor = CallResponseProcessor.SINGLETON;
+        targetReactor.unbufferedAddMessage(this, false);
+        return future;
+    }
+
+    /**
+     * Passes this Request to the target Reactor and blocks the current thread until
+     * a result is returned or the timeout expires. The timeout is also the deadline of
+     * this request, so when the caller gives up the request is cancelled and is not
+     * processed if it is still waiting in an inbox.
+     *
+     * @param _timeout The maximum time to wait.
+     * @param _unit    The unit of the timeout.
+     * @return The result from applying this Request to the target blade.
+     * @throws TimeoutException If no result was returned before the timeout expired.
+     * @throws Exception        If the result is an exception, it is thrown rather than being returned.
+     */
+    public RESPONSE_TYPE call(final long _timeout, final TimeUnit _unit) throws Exception {
+        final long millis = _unit.toMillis(_timeout);
+        final long newDeadline = System.currentTimeMillis() + millis;
+        if (deadline == 0 || newDeadline < deadline)
+            setDeadline(newDeadline);
+        use();
+        if (Thread.currentThread() instanceof PoolThread)
+            throw new UnsupportedOperationException("Use of call on a PoolThread can result in a deadlock");
+        if (RequestTracer.SAMPLING > 0)
+            trace = RequestTracer.sample(this, null, targetReactor);
+        foreign = true;
+        final Pender pender = new Pender();
+        messageSource = pender;
+        responseProcessor = CallResponseProcessor.SINGLETON;
+        targetReactor.unbufferedAddMessage(this, false);
+        try {
+            return (RESPONSE_TYPE) pender.pend(millis);
+        } catch (final TimeoutException e) {
+            cancel();
+            throw e;
         }
     }
 
@@ -236,20 +478,11 @@ public abstract class RequestBase<RESPONSE_TYPE> implements Message {
      * @param _response the response being returned
      */
     protected void setResponse(final Object _response, final Reactor _activeReactor) {
-        ((ReactorBase) _activeReactor).requestEnd();
+        ((ReactorBase) _activeReactor).requestEnd(this);
         responsePending = false;
         response = _response;
-        if (Plant.DEBUG) {
-            Facility targetFacility = targetReactor.getFacility();
-            Map<Long, Set<RequestBase>> pendingRequests = targetFacility.pendingRequests;
-            Set<RequestBase> nanoSet = pendingRequests.get(debugTimestamp);
-            if (nanoSet != null) {
-                nanoSet.remove(this);
-                if (nanoSet.isEmpty()) {
-                    pendingRequests.remove(debugTimestamp);
-                }
-            }
-        }
+        if (trace != null)
+            trace.ended(_response);
     }
 
     /**
@@ -280,9 +513,8 @@ public abstract class RequestBase<RESPONSE_TYPE> implements Message {
                 }
             }
         }
-        final Facility facility = targetReactor.getFacility();
         if (foreign)
-            facility.removeAutoClosableSReq(RequestBase.this).signal();
+            targetReactor.removeForeignRequest(this);
         if (!responsePending)
             return false;
         setResponse(_response, targetReactor);
@@ -311,6 +543,17 @@ public abstract class RequestBase<RESPONSE_TYPE> implements Message {
         return ((ReactorBase) messageSource).getFacility();
     }
 
+    /**
+     * Returns the reactor which passed this request.
+     *
+     * @return The source reactor, or null when the request was passed using call or callAsync.
+     */
+    public Reactor getSourceReactor() {
+        if (!(messageSource instanceof Reactor))
+            return null;
+        return (Reactor) messageSource;
+    }
+
     @Override
     public boolean isForeign() {
         return foreign;
@@ -321,6 +564,11 @@ public abstract class RequestBase<RESPONSE_TYPE> implements Message {
         return responsePending;
     }
 
+    @Override
+    public boolean isSignal() {
+        return responsePending && responseProcessor == SignalResponseProcessor.SINGLETON;
+    }
+
     @Override
     public boolean isIsolated() {
         return isolated;
@@ -328,11 +576,36 @@ public abstract class RequestBase<RESPONSE_TYPE> implements Message {
 
     @Override
     public void close() {
+        abort(new ServiceClosedException());
+    }
+
+    /**
+     * Passes an exception back to the source as the response to a request which will not
+     * be processed, as when the target facility is closed or the target inbox is full.
+     * Nothing is done when a response has already been assigned or when the request
+     * was passed using signal.
+     *
+     * @param _e The exception to be returned as the response.
+     */
+    public void abort(final Exception _e) {
         if (!responsePending)
             return;
         responsePending = false;
-        response = new ServiceClosedException();
-        messageSource.incomingResponse(this, null);
+        response = _e;
+        if (trace != null)
+            trace.ended(_e);
+        if (messageSource != null)
+            messageSource.incomingResponse(this, null);
+    }
+
+    /**
+     * Ends the trace of a signal which was discarded by a full inbox, so that the trace
+     * is not reported as outstanding.
+     */
+    @Override
+    protected void discarded() {
+        if (trace != null)
+            trace.discarded();
     }
 
     /**
@@ -341,23 +614,18 @@ public abstract class RequestBase<RESPONSE_TYPE> implements Message {
     @Override
     public void eval() {
         if (responsePending) {
-            final Facility facility = targetReactor.getFacility();
             if (foreign)
-                try {
-                    facility.addAutoClosableSReq(this).signal();
-                } catch (Exception e) {
-                }
+                targetReactor.addForeignRequest(this);
             targetReactor.setExceptionHandler(null);
             targetReactor.setCurrentMessage(this);
-            targetReactor.requestBegin();
+            targetReactor.requestBegin(this);
+            if (trace != null)
+                trace.started();
             try {
                 processRequestMessage();
             } catch (final Exception e) {
                 if (foreign)
-                    try {
-                        facility.removeAutoClosableSReq(this).signal();
-                    } catch (Exception e1) {
-                    }
+                    targetReactor.removeForeignRequest(this);
                 processException(targetReactor, e);
             }
         } else {
@@ -374,20 +642,108 @@ public abstract class RequestBase<RESPONSE_TYPE> implements Message {
      * Process a response.
      */
     private void processResponseMessage() {
-        ReactorBase sourceMessageProcessor = (ReactorBase) messageSource;
+        if (isOldMessageStale()) {
+            // The request which passed this request has already returned its own response
+            // and been reset for reuse, so the response is dropped.
+            responseProcessed();
+            return;
+        }
+        final ReactorBase sourceMessageProcessor = (ReactorBase) messageSource;
+        final Message sourceMessage = oldMessage;
+        final AsyncResponseProcessor sourceResponseProcessor = responseProcessor;
+        final Object sourceResponse = response;
         sourceMessageProcessor.setExceptionHandler(sourceExceptionHandler);
-        sourceMessageProcessor.setCurrentMessage(oldMessage);
-        if (response instanceof Exception) {
-            oldMessage.processException(sourceMessageProcessor, (Exception) response);
+        sourceMessageProcessor.setCurrentMessage(sourceMessage);
+        responseProcessed();
+        if (sourceResponse instanceof Exception) {
+            sourceMessage.processException(sourceMessageProcessor, (Exception) sourceResponse);
             return;
         }
         try {
-            responseProcessor.processAsyncResponse(response);
+            sourceResponseProcessor.processAsyncResponse(sourceResponse);
         } catch (final Exception e) {
-            oldMessage.processException(sourceMessageProcessor, e);
+            sourceMessage.processException(sourceMessageProcessor, e);
         }
     }
 
+    /**
+     * Returns true when a request to the isolating target reactor of this request is waiting,
+     * directly or indirectly, for the response to the message being processed. Passing this
+     * request to the target reactor and waiting for its response would then deadlock, as the
+     * target reactor does not start this request until that earlier request has completed.
+     * The chain of waiting requests ends at a request passed without a response processor.
+     *
+     * @param _parent The message being processed by the source reactor, or null.
+     * @return True when waiting for the response to this request would deadlock.
+     */
+    private boolean isAwaitedBy(final Message _parent) {
+        Message parent = _parent;
+        while (parent instanceof RequestBase) {
+            final RequestBase<?> request = (RequestBase<?>) parent;
+            if (request.targetReactor == targetReactor &&
+                    (!(targetReactor instanceof KeyedIsolationReactor) || sameIsolationKey(request)))
+                return true;
+            if (request.responseProcessor == SignalResponseProcessor.SINGLETON || request.isOldMessageStale())
+                return false;
+            parent = request.oldMessage;
+        }
+        return false;
+    }
+
+    /**
+     * Returns true when a request has the same isolation key as this request.
+     *
+     * @param _request The other request.
+     * @return True when the isolation keys are equal or both null.
+     */
+    private boolean sameIsolationKey(final RequestBase<?> _request) {
+        return isolationKey == null ? _request.isolationKey == null : isolationKey.equals(_request.isolationKey);
+    }
+
+    /**
+     * Returns true when oldMessage is a request which has been reset since this request was
+     * passed, so that it has nothing more to do with this request.
+     *
+     * @return True when oldMessage has been reset.
+     */
+    private boolean isOldMessageStale() {
+        final Message parent = oldMessage;
+        return parent instanceof RequestBase && ((RequestBase<?>) parent).generation != oldGeneration;
+    }
+
+    /**
+     * Called on the thread of the source reactor when the response is about to be processed,
+     * after which this request is no longer referenced by any reactor. So a recyclable
+     * request can be reused by the processing of its own response.
+     * This method is not called for requests passed using signal or call.
+     * By default, nothing is done.
+     */
+    protected void responseProcessed() {
+    }
+
+    /**
+     * Clears the state of this request, so that it can be passed again.
+     * Subclasses which override this method must call super.reset().
+     */
+    protected void reset() {
+        generation += 1;
+        trace = null;
+        used = false;
+        foreign = false;
+        messageSource = null;
+        oldMessage = null;
+        oldGeneration = 0;
+        sourceExceptionHandler = null;
+        responseProcessor = null;
+        responsePending = true;
+        isolated = false;
+        response = null;
+        deadline = 0;
+        cancelled = false;
+        priority = MessagePriority.NORMAL;
+        isolationKey = null;
+    }
+
     @Override
     public void processException(final Reactor _activeReactor, final Exception _e) {
         ReactorBase activeMessageProcessor = (ReactorBase) _activeReactor;
@@ -478,6 +834,29 @@ public abstract class RequestBase<RESPONSE_TYPE> implements Message {
          */
         Object pend() throws Exception {
             done.acquire();
+            return result();
+        }
+
+        /**
+         * Returns the response, which may be null. But if the response
+         * is an exception, then it is thrown.
+         *
+         * @param _millis The maximum number of milliseconds to wait.
+         * @return The response or null, but not an exception.
+         * @throws TimeoutException If there was no response in time.
+         */
+        Object pend(final long _millis) throws Exception {
+            if (!done.tryAcquire(_millis, TimeUnit.MILLISECONDS))
+                throw new TimeoutException();
+            return result();
+        }
+
+        /**
+         * Returns the response, or throws it if the response is an exception.
+         *
+         * @return The response or null, but not an exception.
+         */
+        private Object result() throws Exception {
             if (result instanceof Exception)
                 throw (Exception) result;
             if (result instanceof Error)
@@ -493,9 +872,64 @@ public abstract class RequestBase<RESPONSE_TYPE> implements Message {
         }
     }
 
+    /**
+     * Collects the responses to the requests passed by doSendAll.
+     *
+     * @param <RESPONSE_TYPE> The type of value returned by the requests.
+     */
+    private static final class ListGatherer<RESPONSE_TYPE> {
+
+        /**
+         * The responses, in the order of the requests.
+         */
+        private final Object[] responses;
+
+        /**
+         * Processes the list of responses.
+         */
+        private final AsyncResponseProcessor<List<RESPONSE_TYPE>> responseProcessor;
+
+        /**
+         * The number of responses not yet received.
+         */
+        private int pending;
+
+        /**
+         * Create a ListGatherer.
+         *
+         * @param _size              The number of requests.
+         * @param _responseProcessor Processes the list of responses.
+         */
+        ListGatherer(final int _size,
+                     final AsyncResponseProcessor<List<RESPONSE_TYPE>> _responseProcessor) {
+            responses = new Object[_size];
+            responseProcessor = _responseProcessor;
+            pending = _size;
+        }
+
+        /**
+         * Returns the response processor for one of the requests.
+         *
+         * @param _index The index of the request.
+         * @return The response processor.
+         */
+        AsyncResponseProcessor<RESPONSE_TYPE> responseProcessor(final int _index) {
+            return new AsyncResponseProcessor<RESPONSE_TYPE>() {
+                @Override
+                public void processAsyncResponse(final RESPONSE_TYPE _response) throws Exception {
+                    responses[_index] = _response;
+                    pending -= 1;
+                    if (pending == 0)
+                        responseProcessor.processAsyncResponse(
+                                (List<RESPONSE_TYPE>) Arrays.asList(responses));
+                }
+            };
+        }
+    }
+
     /**
      * A subclass of AsyncResponseProcessor that is used as a place holder when the RequestBase.call
-     * method is used.
+     * or RequestBase.callAsync method is used.
      */
     final private static class CallResponseProcessor implements AsyncResponseProcessor<Object> {
         /**
@@ -0,0 +1,18 @@
+package org.agilewiki.jactor2.core.messages;
+
+/**
+ * This exception is passed back as the response to a request which was discarded
+ * by the inbox of its target reactor, because the request was cancelled or its
+ * deadline had passed before it could be processed.
+ */
+public class RequestExpiredException extends Exception {
+
+    /**
+     * Create a RequestExpiredException.
+     *
+     * @param _message The detail message.
+     */
+    public RequestExpiredException(final String _message) {
+        super(_message);
+    }
+}
@@ -0,0 +1,193 @@
+package org.agilewiki.jactor2.core.messages;
+
+import org.agilewiki.jactor2.core.reactors.Reactor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The Future returned by RequestBase.callAsync, which is completed by the response to the request.
+ * <p>
+ * Unlike RequestBase.call, no thread is parked while waiting for the response. The future is
+ * completed directly from the thread of the target reactor when the response is assigned,
+ * and the listeners added to the future are then passed to their executors. So code driven
+ * by an external event loop can have any number of requests outstanding, and callAsync
+ * can be used on a pool thread, as long as get is not called there.
+ * </p>
+ * <p>
+ * Cancelling the future also cancels the request, so the request is discarded if it has not
+ * yet been processed.
+ * </p>
+ * <h3>Sample Usage:</h3>
+ * <pre>
+ * final RequestFuture&lt;String&gt; future = blade.greetingSReq().callAsync();
+ * future.addListener(new Runnable() {
+ *     public void run() {
+ *         try {
+ *             channel.write(future.get());
+ *         } catch (final Exception e) {
+ *             channel.close();
+ *         }
+ *     }
+ * }, eventLoop);
+ * </pre>
+ *
+ * @param <RESPONSE_TYPE> The type of value returned.
+ */
+public class RequestFuture<RESPONSE_TYPE> implements Future<RESPONSE_TYPE>, MessageSource {
+
+    /**
+     * The request whose response completes this future.
+     */
+    private final RequestBase<RESPONSE_TYPE> request;
+
+    /**
+     * True once a response has been received or the future was cancelled.
+     */
+    private boolean done;
+
+    /**
+     * True when the future was cancelled.
+     */
+    private boolean cancelled;
+
+    /**
+     * The response, which may be an exception.
+     */
+    private Object result;
+
+    /**
+     * The listeners, each already bound to its executor, or null once the future is done.
+     */
+    private List<Runnable> listeners = new ArrayList<Runnable>();
+
+    /**
+     * Create a RequestFuture.
+     *
+     * @param _request The request whose response completes this future.
+     */
+    RequestFuture(final RequestBase<RESPONSE_TYPE> _request) {
+        request = _request;
+    }
+
+    /**
+     * Adds a listener which is run, using the given executor, once this future is done.
+     * If the future is already done, the listener is passed to the executor immediately.
+     * <p>
+     * A listener is otherwise passed to its executor on the thread of the target reactor,
+     * so an executor which runs the listener directly must not block.
+     * </p>
+     *
+     * @param _listener The listener.
+     * @param _executor The executor which runs the listener.
+     */
+    public void addListener(final Runnable _listener, final Executor _executor) {
+        final Runnable listener = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    _executor.execute(_listener);
+                } catch (final Throwable t) {
+                    request.targetReactor.getLogger().error("Unable to run a future listener", t);
+                }
+            }
+        };
+        synchronized (this) {
+            if (!done) {
+                listeners.add(listener);
+                return;
+            }
+        }
+        listener.run();
+    }
+
+    @Override
+    public void incomingResponse(final Message _message, final Reactor _responseSource) {
+        complete(((RequestBase) _message).response, false);
+    }
+
+    @Override
+    public boolean cancel(final boolean _mayInterruptIfRunning) {
+        if (!complete(new CancellationException(), true))
+            return false;
+        request.cancel();
+        return true;
+    }
+
+    /**
+     * Completes this future and runs the listeners.
+     *
+     * @param _result    The response.
+     * @param _cancelled True when the future is being cancelled.
+     * @return True if the future was not already done.
+     */
+    private boolean complete(final Object _result, final boolean _cancelled) {
+        final List<Runnable> completed;
+        synchronized (this) {
+            if (done)
+                return false;
+            done = true;
+            cancelled = _cancelled;
+            result = _result;
+            completed = listeners;
+            listeners = null;
+            notifyAll();
+        }
+        for (final Runnable listener : completed) {
+            listener.run();
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    @Override
+    public synchronized RESPONSE_TYPE get() throws InterruptedException, ExecutionException {
+        while (!done)
+            wait();
+        return response();
+    }
+
+    @Override
+    public synchronized RESPONSE_TYPE get(final long _timeout, final TimeUnit _unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        final long end = System.nanoTime() + _unit.toNanos(_timeout);
+        while (!done) {
+            final long remaining = end - System.nanoTime();
+            if (remaining <= 0)
+                throw new TimeoutException();
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return response();
+    }
+
+    /**
+     * Returns the response, or throws it wrapped in an ExecutionException when it is a throwable.
+     * (Must be called while synchronized on this future, once it is done.)
+     *
+     * @return The response.
+     */
+    private RESPONSE_TYPE response() throws ExecutionException {
+        if (cancelled)
+            throw (CancellationException) result;
+        if (result instanceof Throwable)
+            throw new ExecutionException((Throwable) result);
+        @SuppressWarnings("unchecked")
+        final RESPONSE_TYPE response = (RESPONSE_TYPE) result;
+        return response;
+    }
+}
@@ -0,0 +1,198 @@
+package org.agilewiki.jactor2.core.messages;
+
+import org.agilewiki.jactor2.core.facilities.Plant;
+import org.agilewiki.jactor2.core.facilities.PoolThread;
+import org.agilewiki.jactor2.core.reactors.Reactor;
+import org.agilewiki.jactor2.core.reactors.ReactorBase;
+import org.agilewiki.jactor2.core.reactors.ThreadBoundReactor;
+
+import java.util.ArrayDeque;
+
+/**
+ * A pool of recyclable requests of one type, used by a single source reactor.
+ * Requests are taken from the pool and sent by the source reactor, and are returned to the
+ * pool when the source reactor processes their responses. So a pool is only ever
+ * accessed from the thread of its reactor and needs no synchronization.
+ * <p>
+ * A request/response loop which uses a pool allocates no requests once the pool holds
+ * as many requests as the loop has in flight. The rest of the send path still allocates,
+ * so pooling reduces the garbage created per request rather than eliminating it.
+ * </p>
+ * <h3>Sample Usage:</h3>
+ * <pre>
+ * final RequestPool&lt;Counter.AddAReq&gt; pool = new RequestPool&lt;Counter.AddAReq&gt;(getReactor()) {
+ *     {@literal @}Override
+ *     protected Counter.AddAReq create() {
+ *         return counter.new AddAReq();
+ *     }
+ * };
+ *
+ * final Counter.AddAReq request = pool.acquire();
+ * request.value = 42;
+ * send(request, responseProcessor);
+ * </pre>
+ *
+ * @param <REQUEST> The type of request held by the pool.
+ */
+public abstract class RequestPool<REQUEST extends RecyclableAsyncRequest<?>> {
+
+    /**
+     * The default maximum number of idle requests held by a pool.
+     */
+    public final static int DEFAULT_MAX_SIZE = 1024;
+
+    /**
+     * The reactor which sends the requests.
+     */
+    private final ReactorBase sourceReactor;
+
+    /**
+     * The maximum number of idle requests held.
+     */
+    private final int maxSize;
+
+    /**
+     * The idle requests.
+     */
+    private final ArrayDeque<REQUEST> idle;
+
+    /**
+     * The number of requests created by the pool.
+     */
+    private long created;
+
+    /**
+     * The number of times a request was reused.
+     */
+    private long reused;
+
+    /**
+     * Create a RequestPool.
+     *
+     * @param _sourceReactor The reactor which sends the requests.
+     */
+    public RequestPool(final Reactor _sourceReactor) {
+        this(_sourceReactor, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Create a RequestPool.
+     *
+     * @param _sourceReactor The reactor which sends the requests.
+     * @param _maxSize       The maximum number of idle requests held by the pool.
+     */
+    public RequestPool(final Reactor _sourceReactor, final int _maxSize) {
+        sourceReactor = (ReactorBase) _sourceReactor;
+        maxSize = _maxSize;
+        idle = new ArrayDeque<REQUEST>(Math.min(_maxSize, 16));
+    }
+
+    /**
+     * Create a new request.
+     *
+     * @return A new request.
+     */
+    abstract protected REQUEST create();
+
+    /**
+     * Returns an idle request, or a new request when the pool is empty.
+     * (This method must be called on the thread of the source reactor.)
+     *
+     * @return A request which has not been sent.
+     */
+    public REQUEST acquire() {
+        if (Plant.DEBUG) {
+            if (sourceReactor instanceof ThreadBoundReactor) {
+                if (Thread.currentThread() instanceof PoolThread)
+                    throw new IllegalStateException("acquire from wrong thread");
+            } else {
+                if (sourceReactor.getThreadReference().get() != Thread.currentThread())
+                    throw new IllegalStateException("acquire from wrong thread");
+            }
+        }
+        REQUEST request = idle.pollLast();
+        if (request != null) {
+            reused += 1;
+            return request;
+        }
+        created += 1;
+        request = create();
+        request.recycler = new Recycler(request);
+        return request;
+    }
+
+    /**
+     * Resets a request whose response has been processed and returns it to the pool.
+     *
+     * @param _request The request.
+     */
+    private void release(final REQUEST _request) {
+        _request.reset();
+        if (idle.size() < maxSize)
+            idle.addLast(_request);
+    }
+
+    /**
+     * Returns the reactor which sends the requests.
+     *
+     * @return The source reactor.
+     */
+    public Reactor getSourceReactor() {
+        return sourceReactor;
+    }
+
+    /**
+     * Returns the number of idle requests held by the pool.
+     *
+     * @return The number of idle requests.
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Returns the number of requests created by the pool.
+     *
+     * @return The number of requests created.
+     */
+    public long getCreatedCount() {
+        return created;
+    }
+
+    /**
+     * Returns the number of times a request was reused.
+     *
+     * @return The number of requests reused.
+     */
+    public long getReusedCount() {
+        return reused;
+    }
+
+    /**
+     * Returns a request created by the pool to the pool once its response has been processed.
+     * Holding the request with its own type means no cast is needed to put it back.
+     */
+    final class Recycler {
+
+        /**
+         * The request.
+         */
+        private final REQUEST request;
+
+        /**
+         * Create a Recycler.
+         *
+         * @param _request The request.
+         */
+        Recycler(final REQUEST _request) {
+            request = _request;
+        }
+
+        /**
+         * Resets the request and returns it to the pool.
+         */
+        void recycle() {
+            release(request);
+        }
+    }
+}
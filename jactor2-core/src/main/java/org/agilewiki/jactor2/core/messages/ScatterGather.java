@@ -0,0 +1,271 @@
+package org.agilewiki.jactor2.core.messages;
+
+import org.agilewiki.jactor2.core.blades.Blade;
+import org.agilewiki.jactor2.core.reactors.Reactor;
+
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A request which passes a list of requests in parallel and combines their responses
+ * into a single result.
+ * <p>
+ * Each response is passed to the reduce method as it arrives, together with the result
+ * so far, starting with an initial value. The result is returned once all the responses
+ * have been reduced, or as soon as isComplete returns true for the result so far, or when
+ * the timeout expires, in which case the timedOut method decides what is returned.
+ * Requests still outstanding once the result has been returned are cancelled, and
+ * responses which arrive after that are ignored.
+ * If a request fails, or reduce throws an exception, then that exception is the response,
+ * and the timeout and the requests still outstanding are cancelled.
+ * </p>
+ * <p>
+ * A ScatterGather request is usually passed to the reactor of the blade which sends it,
+ * so that the responses are processed on the thread of that blade. But when that reactor
+ * is an IsolationReactor, it does not start the ScatterGather request until the request
+ * which passed it has completed, so passing it there with a response processor throws an
+ * UnsupportedOperationException. Pass it to a NonBlockingReactor instead.
+ * </p>
+ * <h3>Sample Usage:</h3>
+ * <pre>
+ * // True when any of the blades has the key.
+ * send(new ScatterGather&lt;Boolean, Boolean&gt;(getReactor(), hasKeyRequests, false) {
+ *     {@literal @}Override
+ *     protected Boolean reduce(final Boolean _result, final Boolean _hasKey) {
+ *         return _result || _hasKey;
+ *     }
+ *
+ *     {@literal @}Override
+ *     protected boolean isComplete(final Boolean _result) {
+ *         return _result;
+ *     }
+ * }.setTimeout(100), responseProcessor);
+ * </pre>
+ *
+ * @param <PART>   The type of response returned by each of the requests.
+ * @param <RESULT> The type of the combined result.
+ */
+public abstract class ScatterGather<PART, RESULT> extends AsyncRequest<RESULT> {
+
+    /**
+     * The requests to be passed.
+     */
+    private final List<? extends RequestBase<PART>> requests;
+
+    /**
+     * The result so far.
+     */
+    private RESULT result;
+
+    /**
+     * The number of milliseconds to wait for the responses, or 0.
+     */
+    private long timeout;
+
+    /**
+     * The number of responses received.
+     */
+    private int responseCount;
+
+    /**
+     * True when the timeout expired before the result was returned.
+     */
+    private boolean timedOut;
+
+    /**
+     * The task which expires the timeout, or null.
+     */
+    private ScheduledFuture<?> deadline;
+
+    /**
+     * True for each request whose response has been received.
+     */
+    private final boolean[] received;
+
+    /**
+     * Create a ScatterGather request.
+     *
+     * @param _targetReactor The reactor which passes the requests and processes their responses.
+     * @param _requests      The requests to be passed.
+     * @param _initialResult The result when there are no responses.
+     */
+    public ScatterGather(final Reactor _targetReactor,
+                         final List<? extends RequestBase<PART>> _requests,
+                         final RESULT _initialResult) {
+        super(_targetReactor);
+        requests = _requests;
+        result = _initialResult;
+        received = new boolean[_requests.size()];
+    }
+
+    /**
+     * Limits the time spent waiting for the responses.
+     * (This method must be called before this request is passed.)
+     *
+     * @param _timeout The number of milliseconds to wait for the responses, or 0 to wait forever.
+     * @return This request.
+     */
+    public ScatterGather<PART, RESULT> setTimeout(final long _timeout) {
+        if (used)
+            throw new IllegalStateException("Already used");
+        timeout = _timeout;
+        return this;
+    }
+
+    /**
+     * Combines a response with the result so far.
+     *
+     * @param _result   The result so far.
+     * @param _response The response to one of the requests.
+     * @return The new result.
+     */
+    abstract protected RESULT reduce(RESULT _result, PART _response) throws Exception;
+
+    /**
+     * Returns true when the result can be returned without waiting for the remaining responses.
+     * By default, all the responses are waited for.
+     *
+     * @param _result The result so far.
+     * @return True when the result is complete.
+     */
+    protected boolean isComplete(final RESULT _result) throws Exception {
+        return false;
+    }
+
+    /**
+     * Called when the timeout expires before all the responses have been received.
+     * By default, the partial result is returned.
+     *
+     * @param _result The result so far.
+     * @return The result to be returned.
+     */
+    protected RESULT timedOut(final RESULT _result) throws Exception {
+        return _result;
+    }
+
+    /**
+     * Returns the number of responses which were reduced.
+     *
+     * @return The number of responses.
+     */
+    public int getResponseCount() {
+        return responseCount;
+    }
+
+    /**
+     * Returns true when the timeout expired before all the responses were received.
+     *
+     * @return True when timed out.
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    @Override
+    protected void processAsyncRequest() throws Exception {
+        if (requests.isEmpty() || isComplete(result)) {
+            processAsyncResponse(result);
+            return;
+        }
+        if (timeout > 0)
+            deadline = targetReactor.getFacility().getScheduler().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        final Expiry expiry = new Expiry();
+                        expiry.signal(expiry);
+                    } catch (final Exception e) {
+                        targetReactor.getLogger().warn("unable to expire a timeout", e);
+                    }
+                }
+            }, timeout, TimeUnit.MILLISECONDS);
+        final int size = requests.size();
+        for (int i = 0; i < size; i++) {
+            final RequestBase<PART> request = requests.get(i);
+            send(request, partResponseProcessor(i));
+        }
+    }
+
+    /**
+     * Returns the response processor for one of the requests.
+     *
+     * @param _index The index of the request.
+     * @return The response processor.
+     */
+    private AsyncResponseProcessor<PART> partResponseProcessor(final int _index) {
+        return new AsyncResponseProcessor<PART>() {
+            @Override
+            public void processAsyncResponse(final PART _response) throws Exception {
+                received[_index] = true;
+                if (!responsePending)
+                    return;
+                responseCount += 1;
+                result = reduce(result, _response);
+                if (responseCount == received.length || isComplete(result))
+                    complete(result);
+            }
+        };
+    }
+
+    /**
+     * Returns the result and cancels the requests which are still outstanding.
+     *
+     * @param _result The result.
+     */
+    private void complete(final RESULT _result) throws Exception {
+        cancelOutstanding();
+        processAsyncResponse(_result);
+    }
+
+    /**
+     * Cancels the timeout and the requests whose responses have not been received.
+     */
+    private void cancelOutstanding() {
+        if (deadline != null)
+            deadline.cancel(false);
+        if (responseCount < received.length) {
+            for (int i = 0; i < received.length; i++) {
+                if (!received[i])
+                    requests.get(i).cancel();
+            }
+        }
+    }
+
+    /**
+     * The event which expires the timeout on the thread of the target reactor. An event is used
+     * rather than a request, as an isolating reactor holds back requests until this request
+     * has completed, but never events. The event is its own target blade.
+     */
+    private final class Expiry extends Event<Blade> implements Blade {
+
+        @Override
+        public Reactor getReactor() {
+            return targetReactor;
+        }
+
+        @Override
+        protected void processEvent(final Blade _targetBlade) throws Exception {
+            if (!responsePending)
+                return;
+            timedOut = true;
+            try {
+                complete(timedOut(result));
+            } catch (final Exception e) {
+                cancelOutstanding();
+                processAsyncException(e);
+            }
+        }
+    }
+
+    /**
+     * Cancels the timeout and the outstanding requests before the exception is passed on,
+     * as when one of the requests fails.
+     */
+    @Override
+    public void processException(final Reactor _activeReactor, final Exception _e) {
+        if (responsePending)
+            cancelOutstanding();
+        super.processException(_activeReactor, _e);
+    }
+}
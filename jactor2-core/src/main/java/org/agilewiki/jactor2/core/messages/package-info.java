@@ -10,6 +10,12 @@
  *     doSend messages to any number of blades. And when passing an event message to an blade,
  *     the message is given to the target blade's processing immediately, without buffering.
  * </p>
+ * <p>
+ *     An event can also be passed with a coalescing key. Only one message per key is then held
+ *     in the inbox of the target reactor, and a later event with the same key replaces the one
+ *     waiting there, so that a slow blade only processes the latest of a burst of
+ *     "state changed" notifications. EventBus.publishCoalescedSReq does the same for published events.
+ * </p>
  * <h2>AsyncRequest/Response Messages</h2>
  * <p>
  *     In contrast, request messages are created and passed using anonymous subclasses of
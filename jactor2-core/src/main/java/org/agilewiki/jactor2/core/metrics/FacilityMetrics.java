@@ -0,0 +1,320 @@
+package org.agilewiki.jactor2.core.metrics;
+
+import org.agilewiki.jactor2.core.reactors.ReactorBase;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The metrics of a facility, which are the totals of the metrics of its reactors.
+ * Facilities only have metrics when the jactor.metrics system property is true.
+ * <p>
+ * The totals are computed each time they are requested, so nothing is added to
+ * the processing of messages beyond what the reactors themselves record.
+ * FacilityMetrics can also be registered as a JMX MBean.
+ * </p>
+ * <p>
+ * Reactors are only held weakly, as the facility itself holds them. When a reactor is
+ * closed or garbage collected, its counts are kept in the retired totals, so the counters
+ * never go down.
+ * </p>
+ */
+public class FacilityMetrics implements FacilityMetricsMBean {
+
+    /**
+     * The metrics of the reactors of the facility which have not been closed or collected,
+     * each with a weak reference to its reactor.
+     */
+    private final Map<ReactorMetrics, ReactorReference> reactors =
+            new ConcurrentHashMap<ReactorMetrics, ReactorReference>();
+
+    /**
+     * The references to reactors which have been garbage collected.
+     */
+    private final ReferenceQueue<ReactorBase> collected = new ReferenceQueue<ReactorBase>();
+
+    /**
+     * The totals of the metrics of the reactors which have been closed or collected.
+     */
+    private final ReactorMetrics retired = new ReactorMetrics();
+
+    /**
+     * The name under which this MBean is registered, or null.
+     */
+    private volatile ObjectName objectName;
+
+    /**
+     * Create the metrics of a reactor and include them in the facility totals.
+     *
+     * @param _reactor The reactor.
+     * @return The metrics of the reactor.
+     */
+    public ReactorMetrics addReactor(final ReactorBase _reactor) {
+        expunge();
+        final ReactorMetrics metrics = new ReactorMetrics();
+        reactors.put(metrics, new ReactorReference(_reactor, metrics, collected));
+        return metrics;
+    }
+
+    /**
+     * Move the metrics of a closed reactor to the retired totals.
+     *
+     * @param _reactor The reactor.
+     */
+    public void removeReactor(final ReactorBase _reactor) {
+        retire(_reactor.getMetrics());
+    }
+
+    /**
+     * Move the metrics of a reactor to the retired totals, unless already done.
+     *
+     * @param _metrics The metrics of the reactor.
+     */
+    private synchronized void retire(final ReactorMetrics _metrics) {
+        if (reactors.remove(_metrics) != null)
+            retired.add(_metrics);
+    }
+
+    /**
+     * Move the metrics of the reactors which have been garbage collected to the retired totals.
+     */
+    private void expunge() {
+        Reference<? extends ReactorBase> reference;
+        while ((reference = collected.poll()) != null) {
+            retire(((ReactorReference) reference).metrics);
+        }
+    }
+
+    /**
+     * Returns the totals of the metrics of all the reactors, including the retired totals.
+     * The totals are computed while holding the same lock as retire, so no reactor is
+     * counted twice or missed while its metrics are being retired.
+     *
+     * @return New metrics holding the totals.
+     */
+    private synchronized ReactorMetrics getTotals() {
+        expunge();
+        final ReactorMetrics totals = new ReactorMetrics();
+        totals.add(retired);
+        for (final ReactorMetrics metrics : reactors.keySet()) {
+            totals.add(metrics);
+        }
+        return totals;
+    }
+
+    /**
+     * Register this object with the platform MBean server.
+     *
+     * @param _facilityName The name of the facility.
+     * @return The name of the MBean.
+     */
+    public ObjectName registerMBean(final String _facilityName) throws Exception {
+        final ObjectName name = new ObjectName("org.agilewiki.jactor2:type=Facility,name=" +
+                ObjectName.quote(_facilityName));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+        objectName = name;
+        return name;
+    }
+
+    /**
+     * Unregister this object from the platform MBean server, if it was registered.
+     */
+    public void unregisterMBean() throws Exception {
+        final ObjectName name = objectName;
+        if (name == null)
+            return;
+        objectName = null;
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        if (server.isRegistered(name))
+            server.unregisterMBean(name);
+    }
+
+    /**
+     * Returns the service times of all the reactors.
+     *
+     * @return A new histogram.
+     */
+    public Histogram getServiceTime() {
+        return getTotals().getServiceTime();
+    }
+
+    /**
+     * Returns the queued times of all the reactors.
+     *
+     * @return A new histogram.
+     */
+    public Histogram getQueuedTime() {
+        return getTotals().getQueuedTime();
+    }
+
+    /**
+     * Returns the flush batch sizes of all the reactors.
+     *
+     * @return A new histogram.
+     */
+    public Histogram getFlushBatchSize() {
+        return getTotals().getFlushBatchSize();
+    }
+
+    @Override
+    public int getReactorCount() {
+        expunge();
+        return reactors.size();
+    }
+
+    @Override
+    public long getMessagesProcessed() {
+        return getTotals().getMessagesProcessed();
+    }
+
+    @Override
+    public int getInboxDepth() {
+        int total = 0;
+        for (final ReactorReference reference : reactors.values()) {
+            final ReactorBase reactor = reference.get();
+            if (reactor != null)
+                total += reactor.getInboxDepth();
+        }
+        return total;
+    }
+
+    @Override
+    public int getLocalInboxDepth() {
+        int total = 0;
+        for (final ReactorReference reference : reactors.values()) {
+            final ReactorBase reactor = reference.get();
+            if (reactor != null)
+                total += reactor.getLocalInboxDepth();
+        }
+        return total;
+    }
+
+    @Override
+    public int getConcurrentInboxDepth() {
+        int total = 0;
+        for (final ReactorReference reference : reactors.values()) {
+            final ReactorBase reactor = reference.get();
+            if (reactor != null)
+                total += reactor.getConcurrentInboxDepth();
+        }
+        return total;
+    }
+
+    @Override
+    public int getMaxInboxDepth() {
+        int max = 0;
+        for (final ReactorReference reference : reactors.values()) {
+            final ReactorBase reactor = reference.get();
+            if (reactor != null)
+                max = Math.max(max, reactor.getInboxMaxDepth());
+        }
+        return max;
+    }
+
+    @Override
+    public double getMeanServiceTime() {
+        return getServiceTime().getMean();
+    }
+
+    @Override
+    public long getServiceTime99() {
+        return getServiceTime().getPercentile(99);
+    }
+
+    @Override
+    public long getMaxServiceTime() {
+        return getServiceTime().getMax();
+    }
+
+    @Override
+    public double getMeanQueuedTime() {
+        return getQueuedTime().getMean();
+    }
+
+    @Override
+    public long getQueuedTime99() {
+        return getQueuedTime().getPercentile(99);
+    }
+
+    @Override
+    public long getMaxQueuedTime() {
+        return getQueuedTime().getMax();
+    }
+
+    @Override
+    public long getRuns() {
+        return getTotals().getRuns();
+    }
+
+    @Override
+    public long getMigrations() {
+        return getTotals().getMigrations();
+    }
+
+    @Override
+    public long getDeclinedMigrations() {
+        return getTotals().getDeclinedMigrations();
+    }
+
+    @Override
+    public long getAbandonments() {
+        return getTotals().getAbandonments();
+    }
+
+    @Override
+    public long getYields() {
+        return getTotals().getYields();
+    }
+
+    @Override
+    public long getFlushes() {
+        return getTotals().getFlushes();
+    }
+
+    @Override
+    public double getMeanFlushBatchSize() {
+        return getFlushBatchSize().getMean();
+    }
+
+    @Override
+    public long getMaxFlushBatchSize() {
+        return getFlushBatchSize().getMax();
+    }
+
+    @Override
+    public String getSlowestOutstandingRequests() {
+        return RequestTracer.dumpSlowestOutstanding(20);
+    }
+
+    /**
+     * A weak reference to a reactor which holds the metrics of the reactor,
+     * so that they can be retired once the reactor has been collected.
+     */
+    private static final class ReactorReference extends WeakReference<ReactorBase> {
+
+        /**
+         * The metrics of the reactor.
+         */
+        final ReactorMetrics metrics;
+
+        /**
+         * Create a reference to a reactor.
+         *
+         * @param _reactor The reactor.
+         * @param _metrics The metrics of the reactor.
+         * @param _queue   The queue to which the reference is added once the reactor is collected.
+         */
+        ReactorReference(final ReactorBase _reactor,
+                         final ReactorMetrics _metrics,
+                         final ReferenceQueue<ReactorBase> _queue) {
+            super(_reactor, _queue);
+            metrics = _metrics;
+        }
+    }
+}
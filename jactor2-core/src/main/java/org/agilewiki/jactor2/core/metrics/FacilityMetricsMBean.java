@@ -0,0 +1,53 @@
+package org.agilewiki.jactor2.core.metrics;
+
+/**
+ * The JMX view of the metrics of a facility.
+ * Times are in nanoseconds.
+ */
+public interface FacilityMetricsMBean {
+
+    int getReactorCount();
+
+    long getMessagesProcessed();
+
+    int getInboxDepth();
+
+    int getLocalInboxDepth();
+
+    int getConcurrentInboxDepth();
+
+    int getMaxInboxDepth();
+
+    double getMeanServiceTime();
+
+    long getServiceTime99();
+
+    long getMaxServiceTime();
+
+    double getMeanQueuedTime();
+
+    long getQueuedTime99();
+
+    long getMaxQueuedTime();
+
+    long getRuns();
+
+    long getMigrations();
+
+    long getDeclinedMigrations();
+
+    long getAbandonments();
+
+    long getYields();
+
+    long getFlushes();
+
+    double getMeanFlushBatchSize();
+
+    long getMaxFlushBatchSize();
+
+    /**
+     * Returns the slowest of the outstanding requests traced by the RequestTracer.
+     */
+    String getSlowestOutstandingRequests();
+}
@@ -0,0 +1,122 @@
+package org.agilewiki.jactor2.core.metrics;
+
+/**
+ * A histogram of non-negative values, with one bucket per power of 2.
+ * Recording a value is cheap and allocates nothing, while percentiles are
+ * only accurate to within a factor of 2.
+ * <p>
+ * A histogram is updated by a single thread, the thread running the reactor which
+ * owns it. Other threads may read it, in which case the values are approximate.
+ * </p>
+ */
+public final class Histogram {
+
+    /**
+     * Bucket i holds the count of values from 2^(i-1) to 2^i - 1, with bucket 0 holding
+     * the count of zeros.
+     */
+    private final long[] buckets = new long[65];
+
+    /**
+     * The number of values recorded.
+     */
+    private long count;
+
+    /**
+     * The sum of the values recorded.
+     */
+    private long sum;
+
+    /**
+     * The largest value recorded.
+     */
+    private long max;
+
+    /**
+     * Record a value. Negative values are recorded as 0.
+     *
+     * @param _value The value to be recorded.
+     */
+    public void record(final long _value) {
+        final long value = _value < 0 ? 0 : _value;
+        buckets[64 - Long.numberOfLeadingZeros(value)] += 1;
+        count += 1;
+        sum += value;
+        if (value > max)
+            max = value;
+    }
+
+    /**
+     * Adds the values recorded by another histogram to this histogram.
+     *
+     * @param _histogram The histogram to be added.
+     */
+    public void add(final Histogram _histogram) {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] += _histogram.buckets[i];
+        }
+        count += _histogram.count;
+        sum += _histogram.sum;
+        if (_histogram.max > max)
+            max = _histogram.max;
+    }
+
+    /**
+     * Returns the number of values recorded.
+     *
+     * @return The number of values recorded.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the sum of the values recorded.
+     *
+     * @return The sum of the values recorded.
+     */
+    public long getSum() {
+        return sum;
+    }
+
+    /**
+     * Returns the largest value recorded.
+     *
+     * @return The largest value recorded, or 0.
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the mean of the values recorded.
+     *
+     * @return The mean, or 0.
+     */
+    public double getMean() {
+        final long c = count;
+        return c == 0 ? 0 : (double) sum / c;
+    }
+
+    /**
+     * Returns an upper bound for the given percentile of the values recorded.
+     *
+     * @param _percentile The percentile, from 0 to 100.
+     * @return The upper bound of the bucket holding the percentile, but not more than the maximum.
+     */
+    public long getPercentile(final double _percentile) {
+        final long c = count;
+        if (c == 0)
+            return 0;
+        final double threshold = c * _percentile / 100;
+        long cumulative = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            cumulative += buckets[i];
+            if (cumulative >= threshold) {
+                final long upper = i == 0 ? 0 : i == 64 ? Long.MAX_VALUE : (1L << i) - 1;
+                return Math.min(upper, max);
+            }
+        }
+        return max;
+    }
+}
@@ -0,0 +1,247 @@
+package org.agilewiki.jactor2.core.metrics;
+
+/**
+ * The counters and histograms of a single reactor. A reactor only has metrics when
+ * metrics are enabled, otherwise its metrics field is null and no time is taken
+ * beyond the null check.
+ * <p>
+ * Except for the time of the last submission, the metrics are only updated by the
+ * thread running the reactor, so no synchronization is used. Other threads may read
+ * the metrics, in which case the values are approximate.
+ * </p>
+ */
+public final class ReactorMetrics {
+
+    /**
+     * The time taken by eval, per message processed, in nanoseconds.
+     */
+    private final Histogram serviceTime = new Histogram();
+
+    /**
+     * The time from the reactor being submitted to a thread manager until the reactor
+     * is run, in nanoseconds.
+     */
+    private final Histogram queuedTime = new Histogram();
+
+    /**
+     * The number of messages in each block passed to another reactor by flush.
+     */
+    private final Histogram flushBatchSize = new Histogram();
+
+    /**
+     * The number of times the reactor was run by a thread taken from the thread pool.
+     */
+    private long runs;
+
+    /**
+     * The number of times the thread running the reactor migrated to another reactor.
+     */
+    private long migrations;
+
+    /**
+     * The number of possible migrations declined by the migration policy.
+     */
+    private long declinedMigrations;
+
+    /**
+     * The number of migrations which left the reactor with messages still to be processed,
+     * so that it had to be resubmitted to the thread manager.
+     */
+    private long abandonments;
+
+    /**
+     * The number of flushes which passed messages to other reactors.
+     */
+    private long flushes;
+
+    /**
+     * The number of times the reactor yielded its thread on reaching the run quota.
+     */
+    private long yields;
+
+    /**
+     * When the reactor was last submitted to the thread manager, or 0.
+     */
+    private volatile long submitTime;
+
+    /**
+     * Record the processing of a message.
+     *
+     * @param _serviceTime The time taken by eval, in nanoseconds.
+     */
+    public void messageProcessed(final long _serviceTime) {
+        serviceTime.record(_serviceTime);
+    }
+
+    /**
+     * Record the submission of the reactor to a thread manager.
+     * This method may be called by any thread.
+     */
+    public void submitted() {
+        submitTime = System.nanoTime();
+    }
+
+    /**
+     * Record the start of a run of the reactor by a thread of the thread pool.
+     */
+    public void started() {
+        runs += 1;
+        final long t = submitTime;
+        if (t != 0) {
+            submitTime = 0;
+            queuedTime.record(System.nanoTime() - t);
+        }
+    }
+
+    /**
+     * Record the migration of the thread to another reactor.
+     */
+    public void migrated() {
+        migrations += 1;
+    }
+
+    /**
+     * Record a possible migration which was declined by the migration policy.
+     */
+    public void declined() {
+        declinedMigrations += 1;
+    }
+
+    /**
+     * Record a migration which left the reactor with messages still to be processed.
+     */
+    public void abandoned() {
+        abandonments += 1;
+    }
+
+    /**
+     * Record the reactor yielding its thread on reaching the run quota.
+     */
+    public void yielded() {
+        yields += 1;
+    }
+
+    /**
+     * Record a flush which passed messages to other reactors.
+     */
+    public void flushed() {
+        flushes += 1;
+    }
+
+    /**
+     * Record a block of messages passed to another reactor.
+     *
+     * @param _size The number of messages in the block.
+     */
+    public void batch(final int _size) {
+        flushBatchSize.record(_size);
+    }
+
+    /**
+     * Adds the metrics recorded by another reactor to these metrics.
+     *
+     * @param _metrics The metrics to be added.
+     */
+    public void add(final ReactorMetrics _metrics) {
+        serviceTime.add(_metrics.serviceTime);
+        queuedTime.add(_metrics.queuedTime);
+        flushBatchSize.add(_metrics.flushBatchSize);
+        runs += _metrics.runs;
+        migrations += _metrics.migrations;
+        declinedMigrations += _metrics.declinedMigrations;
+        abandonments += _metrics.abandonments;
+        flushes += _metrics.flushes;
+        yields += _metrics.yields;
+    }
+
+    /**
+     * Returns the number of messages processed.
+     *
+     * @return The number of messages processed.
+     */
+    public long getMessagesProcessed() {
+        return serviceTime.getCount();
+    }
+
+    /**
+     * Returns the time taken by eval, per message, in nanoseconds.
+     *
+     * @return The service time histogram.
+     */
+    public Histogram getServiceTime() {
+        return serviceTime;
+    }
+
+    /**
+     * Returns the time spent waiting for a thread, in nanoseconds.
+     *
+     * @return The queued time histogram.
+     */
+    public Histogram getQueuedTime() {
+        return queuedTime;
+    }
+
+    /**
+     * Returns the sizes of the blocks of messages passed to other reactors.
+     *
+     * @return The flush batch size histogram.
+     */
+    public Histogram getFlushBatchSize() {
+        return flushBatchSize;
+    }
+
+    /**
+     * Returns the number of times the reactor was run by a thread taken from the thread pool.
+     *
+     * @return The number of runs.
+     */
+    public long getRuns() {
+        return runs;
+    }
+
+    /**
+     * Returns the number of times the thread running the reactor migrated to another reactor.
+     *
+     * @return The number of migrations.
+     */
+    public long getMigrations() {
+        return migrations;
+    }
+
+    /**
+     * Returns the number of possible migrations declined by the migration policy.
+     *
+     * @return The number of declined migrations.
+     */
+    public long getDeclinedMigrations() {
+        return declinedMigrations;
+    }
+
+    /**
+     * Returns the number of migrations which left the reactor with messages still to be
+     * processed.
+     *
+     * @return The number of abandonments.
+     */
+    public long getAbandonments() {
+        return abandonments;
+    }
+
+    /**
+     * Returns the number of flushes which passed messages to other reactors.
+     *
+     * @return The number of flushes.
+     */
+    public long getFlushes() {
+        return flushes;
+    }
+
+    /**
+     * Returns the number of times the reactor yielded its thread on reaching the run quota.
+     *
+     * @return The number of yields.
+     */
+    public long getYields() {
+        return yields;
+    }
+}
@@ -0,0 +1,166 @@
+package org.agilewiki.jactor2.core.metrics;
+
+import org.agilewiki.jactor2.core.reactors.Reactor;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * The trace of a sampled request. Times are from System.nanoTime, with 0 meaning
+ * that the request has not yet reached that point.
+ * <p>
+ * The reactors are only weakly referenced, so that a trace does not keep a closed reactor
+ * and its blades reachable.
+ * </p>
+ */
+public final class RequestTrace {
+
+    /**
+     * The class of the request.
+     */
+    private final Class<?> requestClass;
+
+    /**
+     * The reactor which passed the request, or null when the request was passed using
+     * call or signal.
+     */
+    private final WeakReference<Reactor> sourceReactor;
+
+    /**
+     * The reactor which processes the request.
+     */
+    private final WeakReference<Reactor> targetReactor;
+
+    /**
+     * When the request was passed.
+     */
+    private final long enqueueTime;
+
+    /**
+     * When the target reactor started processing the request.
+     */
+    private volatile long startTime;
+
+    /**
+     * When a response was assigned to the request.
+     */
+    private volatile long endTime;
+
+    /**
+     * The class of the response, "null", "discarded", or null when there is no response yet.
+     */
+    private volatile String responseType;
+
+    /**
+     * Create a RequestTrace.
+     *
+     * @param _requestClass  The class of the request.
+     * @param _sourceReactor The reactor which passed the request, or null.
+     * @param _targetReactor The reactor which processes the request.
+     */
+    RequestTrace(final Class<?> _requestClass,
+                 final Reactor _sourceReactor,
+                 final Reactor _targetReactor) {
+        requestClass = _requestClass;
+        sourceReactor = _sourceReactor == null ? null : new WeakReference<Reactor>(_sourceReactor);
+        targetReactor = new WeakReference<Reactor>(_targetReactor);
+        enqueueTime = System.nanoTime();
+    }
+
+    /**
+     * Record the start of processing by the target reactor.
+     */
+    public void started() {
+        if (startTime == 0)
+            startTime = System.nanoTime();
+    }
+
+    /**
+     * Record the assignment of a response.
+     *
+     * @param _response The response.
+     */
+    public void ended(final Object _response) {
+        responseType = _response == null ? "null" : _response.getClass().getName();
+        endTime = System.nanoTime();
+    }
+
+    /**
+     * Record that the request was discarded without being processed, as when a signal
+     * is passed to a full inbox.
+     */
+    public void discarded() {
+        responseType = "discarded";
+        endTime = System.nanoTime();
+    }
+
+    /**
+     * Returns true when no response has been assigned yet.
+     *
+     * @return True when the request is outstanding.
+     */
+    public boolean isOutstanding() {
+        return endTime == 0;
+    }
+
+    /**
+     * Returns the time the request has been outstanding, or took to complete.
+     *
+     * @param _now The current time, from System.nanoTime.
+     * @return The elapsed time in nanoseconds.
+     */
+    public long getElapsedTime(final long _now) {
+        final long end = endTime;
+        return (end == 0 ? _now : end) - enqueueTime;
+    }
+
+    public Class<?> getRequestClass() {
+        return requestClass;
+    }
+
+    /**
+     * Returns the reactor which passed the request.
+     *
+     * @return The reactor, or null when the request was passed using call or signal,
+     *         or when the reactor is no longer reachable.
+     */
+    public Reactor getSourceReactor() {
+        return sourceReactor == null ? null : sourceReactor.get();
+    }
+
+    /**
+     * Returns the reactor which processes the request.
+     *
+     * @return The reactor, or null when the reactor is no longer reachable.
+     */
+    public Reactor getTargetReactor() {
+        return targetReactor.get();
+    }
+
+    public long getEnqueueTime() {
+        return enqueueTime;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public long getEndTime() {
+        return endTime;
+    }
+
+    public String getResponseType() {
+        return responseType;
+    }
+
+    @Override
+    public String toString() {
+        final long now = System.nanoTime();
+        final long start = startTime;
+        return requestClass.getName() +
+                " source=" + getSourceReactor() +
+                " target=" + getTargetReactor() +
+                " elapsed=" + getElapsedTime(now) / 1000 + "us" +
+                (start == 0 ? " not started" : " queued=" + (start - enqueueTime) / 1000 + "us") +
+                (isOutstanding() ? " outstanding" : " response=" + responseType);
+    }
+}
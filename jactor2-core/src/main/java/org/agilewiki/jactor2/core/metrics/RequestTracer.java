@@ -0,0 +1,141 @@
+package org.agilewiki.jactor2.core.metrics;
+
+import org.agilewiki.jactor2.core.facilities.Plant;
+import org.agilewiki.jactor2.core.reactors.Reactor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Traces a sample of the requests, to help diagnose slow or stuck requests.
+ * <p>
+ * The sampling rate is set by the jactor.trace.sampling system property, with 1 in every
+ * SAMPLING requests being traced. Tracing is off when the property is 0, which is the
+ * default unless jactor.debug is true, in which case every request is traced.
+ * </p>
+ * <p>
+ * The traces are written into a ring buffer, whose size is set by the jactor.trace.ringSize
+ * system property, so the memory used by tracing is bounded no matter how many threads pass
+ * requests. The ring buffer is split into stripes, one per group of threads, each with its own
+ * sampling count and write position, so that threads passing requests seldom contend.
+ * As the counts are not kept per thread, the sampling is the same for short-lived threads,
+ * like virtual threads, as for pool threads.
+ * Once a stripe is full, its oldest completed traces are overwritten, but a trace is kept
+ * for as long as its request is outstanding. When every trace in a stripe is outstanding,
+ * no more requests are sampled on that stripe until one of them ends.
+ * </p>
+ */
+public final class RequestTracer {
+
+    /**
+     * 1 in every SAMPLING requests is traced, or none when SAMPLING is 0.
+     */
+    public final static int SAMPLING =
+            Math.max(0, Integer.getInteger("jactor.trace.sampling", Plant.DEBUG ? 1 : 0));
+
+    /**
+     * The number of traces held.
+     */
+    public final static int RING_SIZE =
+            Math.max(1, Integer.getInteger("jactor.trace.ringSize", 1024));
+
+    /**
+     * The number of stripes, a power of 2 which is no greater than RING_SIZE.
+     */
+    private final static int STRIPES = Math.min(
+            Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1),
+            Integer.highestOneBit(RING_SIZE));
+
+    /**
+     * The number of traces held by each stripe.
+     */
+    private final static int STRIPE_SIZE = RING_SIZE / STRIPES;
+
+    /**
+     * The ring buffer of traces, with the traces of each stripe held together.
+     */
+    private static final AtomicReferenceArray<RequestTrace> traces =
+            new AtomicReferenceArray<RequestTrace>(STRIPES * STRIPE_SIZE);
+
+    /**
+     * For each stripe, the number of traces written, used to pick the next slot.
+     */
+    private static final AtomicIntegerArray written = new AtomicIntegerArray(STRIPES);
+
+    /**
+     * For each stripe, the number of requests passed, used to pick the requests to be traced.
+     */
+    private static final AtomicIntegerArray passed = new AtomicIntegerArray(STRIPES);
+
+    private RequestTracer() {
+    }
+
+    /**
+     * Starts tracing a request, if it is selected by the sampling.
+     * Only call this method when SAMPLING is not 0.
+     *
+     * @param _request       The request.
+     * @param _sourceReactor The reactor passing the request, or null.
+     * @param _targetReactor The reactor which processes the request.
+     * @return The trace, or null when the request is not sampled.
+     */
+    public static RequestTrace sample(final Object _request,
+                                      final Reactor _sourceReactor,
+                                      final Reactor _targetReactor) {
+        final int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        if (SAMPLING > 1 && (passed.incrementAndGet(stripe) & Integer.MAX_VALUE) % SAMPLING != 0)
+            return null;
+        final RequestTrace trace = new RequestTrace(_request.getClass(), _sourceReactor, _targetReactor);
+        final int base = stripe * STRIPE_SIZE;
+        for (int i = 0; i < STRIPE_SIZE; i++) {
+            final int slot = base + (written.getAndIncrement(stripe) & Integer.MAX_VALUE) % STRIPE_SIZE;
+            final RequestTrace old = traces.get(slot);
+            if ((old == null || !old.isOutstanding()) && traces.compareAndSet(slot, old, trace))
+                return trace;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the traces of the requests which are still outstanding, slowest first.
+     *
+     * @param _max The maximum number of traces to be returned.
+     * @return The traces.
+     */
+    public static List<RequestTrace> getSlowestOutstanding(final int _max) {
+        final List<RequestTrace> outstanding = new ArrayList<RequestTrace>();
+        for (int i = 0; i < traces.length(); i++) {
+            final RequestTrace trace = traces.get(i);
+            if (trace != null && trace.isOutstanding())
+                outstanding.add(trace);
+        }
+        final long now = System.nanoTime();
+        Collections.sort(outstanding, new Comparator<RequestTrace>() {
+            @Override
+            public int compare(final RequestTrace _a, final RequestTrace _b) {
+                final long a = _a.getElapsedTime(now);
+                final long b = _b.getElapsedTime(now);
+                return a < b ? 1 : a == b ? 0 : -1;
+            }
+        });
+        return outstanding.size() > _max ? outstanding.subList(0, _max) : outstanding;
+    }
+
+    /**
+     * Returns a description of the slowest outstanding requests, one per line.
+     *
+     * @param _max The maximum number of requests to be described.
+     * @return The description.
+     */
+    public static String dumpSlowestOutstanding(final int _max) {
+        final StringBuilder sb = new StringBuilder();
+        for (final RequestTrace trace : getSlowestOutstanding(_max)) {
+            sb.append(trace).append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,27 @@
+/**
+ * <h1>Metrics</h1>
+ * <p>
+ *     When the jactor.metrics system property is true, each reactor records the number of
+ *     messages processed, the time taken to process each message, the time spent waiting for
+ *     a thread, the number of thread migrations, the number of migrations declined by the
+ *     migration policy and of those which left work behind, and the number and size of flushes.
+ *     Facility.getMetrics returns the totals for the reactors of a facility, and
+ *     Facility.registerMetricsMBean makes them available through JMX.
+ * </p>
+ * <p>
+ *     When metrics are disabled, ReactorBase.getMetrics and Facility.getMetrics return null and
+ *     the only cost is a null check per message.
+ * </p>
+ * <h2>Request Tracing</h2>
+ * <p>
+ *     When the jactor.trace.sampling system property is n, 1 in every n requests passed by a
+ *     thread is traced, recording the source and target reactors, the request class, the times
+ *     when the request was passed, started and completed, and the type of the response.
+ *     Tracing is off by default, except when jactor.debug is true, which traces every request.
+ *     Traces are held in a single ring buffer of jactor.trace.ringSize entries, and
+ *     RequestTracer.dumpSlowestOutstanding describes the requests which have not yet completed,
+ *     starting with the oldest. This is also available as the SlowestOutstandingRequests attribute
+ *     of the facility MBean.
+ * </p>
+ */
+package org.agilewiki.jactor2.core.metrics;
@@ -0,0 +1,82 @@
+package org.agilewiki.jactor2.core.reactors;
+
+/**
+ * A migration policy which learns from the reactor it is used by. A migration is a hit when
+ * the reactor left behind had nothing more to do, and a miss when it had to be resubmitted to
+ * the thread manager. The thread migrates while the recent hit rate stays at or above
+ * the threshold. Otherwise only one migration in every probe interval is allowed, so that
+ * the hit rate is still measured and migration resumes when the traffic pattern changes.
+ * <p>
+ * An AdaptiveMigrationPolicy holds the state of a single reactor, so each reactor must be
+ * given its own instance.
+ * </p>
+ */
+public class AdaptiveMigrationPolicy implements MigrationPolicy {
+
+    /**
+     * The smallest hit rate for which the thread migrates.
+     */
+    private final double threshold;
+
+    /**
+     * The number of possible migrations per probe while the hit rate is low.
+     */
+    private final int probeInterval;
+
+    /**
+     * The recent hit rate, an exponentially weighted average of the last 8 or so migrations.
+     */
+    private double hitRate = 1;
+
+    /**
+     * The number of possible migrations declined since the last probe.
+     */
+    private int declined;
+
+    /**
+     * Create an AdaptiveMigrationPolicy with a threshold of 0.5 and a probe interval of 16.
+     */
+    public AdaptiveMigrationPolicy() {
+        this(0.5, 16);
+    }
+
+    /**
+     * Create an AdaptiveMigrationPolicy.
+     *
+     * @param _threshold     The smallest hit rate, between 0 and 1, for which the thread migrates.
+     * @param _probeInterval The number of possible migrations per probe while the hit rate is low.
+     */
+    public AdaptiveMigrationPolicy(final double _threshold, final int _probeInterval) {
+        if (_probeInterval < 1)
+            throw new IllegalArgumentException("probe interval must be at least 1");
+        threshold = _threshold;
+        probeInterval = _probeInterval;
+    }
+
+    /**
+     * Returns the recent hit rate.
+     *
+     * @return The fraction of recent migrations which did not abandon the reactor.
+     */
+    public double getHitRate() {
+        return hitRate;
+    }
+
+    @Override
+    public boolean mayMigrate(final UnboundReactor _source,
+                              final UnboundReactor _target,
+                              final int _messageCount) {
+        if (hitRate >= threshold)
+            return true;
+        declined += 1;
+        if (declined < probeInterval)
+            return false;
+        declined = 0;
+        return true;
+    }
+
+    @Override
+    public void migrated(final UnboundReactor _source, final boolean _abandoned) {
+        hitRate += ((_abandoned ? 0 : 1) - hitRate) / 8;
+    }
+}
@@ -0,0 +1,34 @@
+package org.agilewiki.jactor2.core.reactors;
+
+/**
+ * A migration policy which only migrates when the block of messages passed to the target
+ * is at least a given size, so that the thread follows the bulk of the work.
+ * The same instance can be used by any number of reactors.
+ */
+public class BatchSizeMigrationPolicy implements MigrationPolicy {
+
+    /**
+     * The smallest block of messages which the thread migrates with.
+     */
+    private final int minimumMessageCount;
+
+    /**
+     * Create a BatchSizeMigrationPolicy.
+     *
+     * @param _minimumMessageCount The smallest block of messages which the thread migrates with.
+     */
+    public BatchSizeMigrationPolicy(final int _minimumMessageCount) {
+        minimumMessageCount = _minimumMessageCount;
+    }
+
+    @Override
+    public boolean mayMigrate(final UnboundReactor _source,
+                              final UnboundReactor _target,
+                              final int _messageCount) {
+        return _messageCount >= minimumMessageCount;
+    }
+
+    @Override
+    public void migrated(final UnboundReactor _source, final boolean _abandoned) {
+    }
+}
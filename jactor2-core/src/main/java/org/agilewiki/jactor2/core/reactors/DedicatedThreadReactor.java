@@ -0,0 +1,270 @@
+package org.agilewiki.jactor2.core.reactors;
+
+import org.agilewiki.jactor2.core.facilities.Facility;
+import org.agilewiki.jactor2.core.messages.Message;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A targetReactor which owns a platform thread, for latency-critical blades.
+ * <p>
+ * Non-blocking and isolation reactors are run by the threads of the facility's thread manager,
+ * so a message may wait in the thread manager's queue behind other reactors before it is
+ * processed. A DedicatedThreadReactor never goes through the thread manager. Its thread
+ * processes the messages as they arrive and then parks until more messages are passed to it.
+ * In busy-poll mode the thread never parks, but spins on the inbox instead, trading a
+ * processor for the lowest possible latency.
+ * </p>
+ * <p>
+ * As with a ThreadBoundReactor, buffered messages are disbursed once all the incoming
+ * messages have been processed, and threads never migrate into or out of a
+ * DedicatedThreadReactor. Its thread is not a pool thread, so its blades may also use call
+ * to wait for the response to a request.
+ * </p>
+ * <p>
+ * The thread is started when the first message is passed to the reactor, or by calling start,
+ * so that it never runs before the constructors of a subclass have completed. It is stopped
+ * when the reactor is closed, once it has finished the message it is processing, even when
+ * other threads are still passing messages to the reactor. Like the scheduler of the facility,
+ * the thread is a daemon thread, so it does not keep the JVM alive if the facility is never
+ * closed.
+ * </p>
+ * <p>
+ * The Inbox used by DedicatedThreadReactor is NonBlockingInbox.
+ * </p>
+ */
+public class DedicatedThreadReactor extends ReactorBase {
+
+    /**
+     * Used to number the threads.
+     */
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    /**
+     * The number of milliseconds close waits for the thread to finish the message it is processing.
+     */
+    private static final long CLOSE_TIMEOUT = 1000;
+
+    /**
+     * True when the thread spins rather than parking.
+     */
+    private final boolean busyPoll;
+
+    /**
+     * The thread owned by this targetReactor.
+     */
+    private final Thread thread;
+
+    /**
+     * True once the thread has been started.
+     */
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    /**
+     * Always references the thread owned by this targetReactor.
+     */
+    private final AtomicReference<Thread> threadReference = new AtomicReference<Thread>();
+
+    /**
+     * True when the thread has parked, or is about to park.
+     */
+    private volatile boolean parked;
+
+    /**
+     * True when the thread is to stop.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Create a dedicated-thread targetReactor whose thread parks when there is nothing to do.
+     *
+     * @param _facility The facility of the targetReactor.
+     */
+    public DedicatedThreadReactor(final Facility _facility) throws Exception {
+        this(_facility, false);
+    }
+
+    /**
+     * Create a dedicated-thread targetReactor.
+     *
+     * @param _facility The facility of the targetReactor.
+     * @param _busyPoll True when the thread is to spin on the inbox rather than park.
+     */
+    public DedicatedThreadReactor(final Facility _facility, final boolean _busyPoll) throws Exception {
+        this(_facility, _facility.getInitialBufferSize(),
+                _facility.getInitialLocalMessageQueueSize(), _busyPoll);
+    }
+
+    /**
+     * Create a dedicated-thread targetReactor.
+     *
+     * @param _facility              The facility of the targetReactor.
+     * @param _initialOutboxSize     Initial size of the outbox for each unique message destination.
+     * @param _initialLocalQueueSize The initial number of slots in the doLocal queue.
+     * @param _busyPoll              True when the thread is to spin on the inbox rather than park.
+     */
+    public DedicatedThreadReactor(final Facility _facility,
+                                  final int _initialOutboxSize,
+                                  final int _initialLocalQueueSize,
+                                  final boolean _busyPoll) throws Exception {
+        super(_facility, _initialOutboxSize, _initialLocalQueueSize);
+        busyPoll = _busyPoll;
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loop();
+            }
+        }, "jactor2-dedicated-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        threadReference.set(thread);
+    }
+
+    /**
+     * Starts the thread, unless it has already been started or the targetReactor has been closed.
+     * Otherwise the thread is started when the first message is passed to this targetReactor.
+     */
+    public final void start() {
+        if (!closed && started.compareAndSet(false, true))
+            thread.start();
+    }
+
+    /**
+     * Returns true when the thread spins on the inbox rather than parking.
+     *
+     * @return True in busy-poll mode.
+     */
+    public final boolean isBusyPoll() {
+        return busyPoll;
+    }
+
+    /**
+     * Processes messages until the targetReactor is closed.
+     */
+    private void loop() {
+        while (!closed) {
+            try {
+                run();
+            } catch (final Throwable e) {
+                log.error("Exception thrown by a targetReactor's run method", e);
+            }
+            if (busyPoll)
+                continue;
+            parked = true;
+            if (!closed && !hasConcurrent())
+                LockSupport.park(this);
+            parked = false;
+        }
+    }
+
+    @Override
+    protected Inbox createInbox(final int _initialLocalQueueSize) {
+        return new NonBlockingInbox(_initialLocalQueueSize);
+    }
+
+    @Override
+    public AtomicReference<Thread> getThreadReference() {
+        return threadReference;
+    }
+
+    @Override
+    public final boolean isRunning() {
+        return true;
+    }
+
+    @Override
+    public boolean isIdler() {
+        return false;
+    }
+
+    @Override
+    protected void afterAdd() throws Exception {
+        if (!started.get())
+            start();
+        else if (parked)
+            LockSupport.unpark(thread);
+    }
+
+    @Override
+    protected void notBusy() throws Exception {
+        flush();
+    }
+
+    /**
+     * The flush method disburses all buffered message to their target targetReactor for
+     * processing.
+     * <p>
+     * The flush method is automatically called when there are
+     * no more messages to be processed.
+     * </p>
+     *
+     * @return True when one or more buffered messages were delivered.
+     */
+    public final boolean flush() throws Exception {
+        boolean result = false;
+        final Iterator<Map.Entry<ReactorBase, ArrayDeque<Message>>> iter = outbox.getIterator();
+        if (iter != null) {
+            while (iter.hasNext()) {
+                result = true;
+                final Map.Entry<ReactorBase, ArrayDeque<Message>> entry = iter.next();
+                final ReactorBase target = entry.getKey();
+                final ArrayDeque<Message> messages = entry.getValue();
+                iter.remove();
+                if (metrics != null)
+                    metrics.batch(messages.size());
+                target.unbufferedAddMessages(messages);
+            }
+            if (result && metrics != null)
+                metrics.flushed();
+        }
+        return result;
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            final Message message = inbox.poll();
+            if (message == null) {
+                try {
+                    notBusy();
+                } catch (final Exception e) {
+                    log.error("Exception thrown by flush", e);
+                }
+                if (hasWork())
+                    continue;
+                return;
+            }
+            processMessage(message);
+            if (closed)
+                return;
+        }
+    }
+
+    /**
+     * Stops the thread, waiting for it to finish the message it is processing unless close
+     * is called by the thread itself, and then closes the inbox and outbox.
+     * If the thread does not finish within a second, as when one of its blades is waiting in call
+     * for a reactor which has yet to be closed, the thread is interrupted and close returns
+     * without waiting any longer.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(thread);
+        if (started.get() && Thread.currentThread() != thread) {
+            try {
+                thread.join(CLOSE_TIMEOUT);
+                if (thread.isAlive())
+                    thread.interrupt();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        super.close();
+    }
+}
@@ -1,14 +1,27 @@
 package org.agilewiki.jactor2.core.reactors;
 
+import org.agilewiki.jactor2.core.facilities.Plant;
 import org.agilewiki.jactor2.core.messages.Message;
+import org.agilewiki.jactor2.core.messages.RequestBase;
 
 import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Provides at least two queues for a targetReactor's incoming messages, where the first queue is a
  * concurrent linked queue for messages passed from other reactors and the other(s) are
  * doLocal queues for messages that are passed using the targetReactor's own thread.
+ * <p>
+ * The concurrent queue is a ConcurrentLinkedQueue by default. A LinkedMessageQueue can be
+ * passed to the inbox constructor instead, to avoid allocating a queue node for each message.
+ * </p>
+ * <p>
+ * By default an inbox is unbounded, but a capacity and an OverflowPolicy can be assigned to it.
+ * The inbox only keeps a count of the messages it holds once it has been bounded, or when
+ * metrics are enabled, so that an unbounded inbox does not pay for a contended counter
+ * on every message.
+ * </p>
  *
  * @author monster
  */
@@ -21,7 +34,77 @@ public abstract class Inbox implements AutoCloseable {
     /**
      * Concurrent queue for cross-thread exchanges.
      */
-    protected ConcurrentLinkedQueue<Object> concurrentQueue;
+    protected final Queue<Object> concurrentQueue;
+
+    /**
+     * The number of messages in the inbox, when counted.
+     */
+    private final AtomicInteger depth = new AtomicInteger();
+
+    /**
+     * The largest number of messages seen in the inbox, when counted.
+     */
+    private final AtomicInteger maxDepth = new AtomicInteger();
+
+    /**
+     * True when the messages in the inbox are counted.
+     */
+    private volatile boolean counting = Plant.METRICS;
+
+    /**
+     * The number of messages in the doLocal queue(s). Only updated by the targetReactor's thread.
+     */
+    private int localDepth;
+
+    /**
+     * The capacity of the inbox, or 0 when the inbox is unbounded.
+     */
+    private volatile int capacity;
+
+    /**
+     * What happens when a message is passed to a full inbox.
+     */
+    private volatile OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+
+    /**
+     * The number of messages rejected because the inbox was full.
+     */
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    /**
+     * The number of signals discarded because the inbox was full.
+     */
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    /**
+     * The number of requests discarded because they were cancelled or their deadline had passed.
+     */
+    private volatile long expiredCount;
+
+    /**
+     * The number of threads waiting for room in the inbox. Only updated while holding roomLock.
+     */
+    private volatile int blockedSenders;
+
+    /**
+     * Used by blocked senders to wait for room in the inbox.
+     */
+    private final Object roomLock = new Object();
+
+    /**
+     * True once the inbox has been closed.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Creates an Inbox.
+     *
+     * @param _concurrentQueue The concurrent queue for cross-thread exchanges.
+     *                         Both messages and queues of messages are added to it.
+     */
+    protected Inbox(final Queue<Object> _concurrentQueue) {
+        concurrentQueue = _concurrentQueue;
+    }
 
     /**
      * Returns true when a message has been passed from another thread.
@@ -55,6 +138,204 @@ public abstract class Inbox implements AutoCloseable {
      */
     abstract public boolean isIdle();
 
+    /**
+     * Bounds the inbox. Once bounded, the inbox counts the messages it holds. Messages
+     * already in the inbox at that time are not counted.
+     *
+     * @param _capacity       The number of messages the inbox can hold, or 0 for an unbounded inbox.
+     * @param _overflowPolicy What happens when a message is passed to a full inbox.
+     */
+    public void setCapacity(final int _capacity, final OverflowPolicy _overflowPolicy) {
+        if (_capacity < 0)
+            throw new IllegalArgumentException("negative capacity");
+        if (_overflowPolicy == null)
+            throw new NullPointerException("overflowPolicy");
+        overflowPolicy = _overflowPolicy;
+        if (_capacity > 0)
+            counting = true;
+        capacity = _capacity;
+        wakeBlockedSenders();
+    }
+
+    /**
+     * Returns the capacity of the inbox.
+     *
+     * @return The number of messages the inbox can hold, or 0 when the inbox is unbounded.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns what happens when a message is passed to a full inbox.
+     *
+     * @return The overflow policy.
+     */
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Returns true when the inbox is bounded and holds at least as many messages as its capacity.
+     *
+     * @return True when the inbox is full.
+     */
+    public boolean isFull() {
+        final int c = capacity;
+        return c > 0 && depth.get() >= c;
+    }
+
+    /**
+     * Returns the number of messages in the inbox.
+     * Messages are only counted when the inbox is bounded or metrics are enabled.
+     *
+     * @return The number of messages in the inbox, or 0 when messages are not counted.
+     */
+    public int getDepth() {
+        return depth.get();
+    }
+
+    /**
+     * Returns the number of messages in the doLocal queue(s).
+     * When called by a thread other than the targetReactor's thread, the value is approximate.
+     *
+     * @return The number of messages in the doLocal queue(s).
+     */
+    public int getLocalDepth() {
+        return localDepth;
+    }
+
+    /**
+     * Returns the number of messages passed from other threads which have not yet been
+     * moved to the doLocal queue(s).
+     *
+     * @return The number of messages in the concurrent queue.
+     */
+    public int getConcurrentDepth() {
+        return Math.max(0, depth.get() - localDepth);
+    }
+
+    /**
+     * Updates the count of messages in the doLocal queue(s).
+     * (This method must be called on the targetReactor's thread.)
+     *
+     * @param _delta The number of messages added, or removed when negative.
+     */
+    protected final void localDepthChanged(final int _delta) {
+        localDepth += _delta;
+    }
+
+    /**
+     * Returns the largest number of messages seen in the inbox.
+     *
+     * @return The largest number of messages seen in the inbox.
+     */
+    public int getMaxDepth() {
+        return maxDepth.get();
+    }
+
+    /**
+     * Returns the number of messages rejected because the inbox was full.
+     *
+     * @return The number of messages rejected.
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * Returns the number of signals discarded because the inbox was full.
+     *
+     * @return The number of signals discarded.
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Returns the number of requests discarded because they were cancelled or their
+     * deadline had passed.
+     *
+     * @return The number of requests discarded.
+     */
+    public long getExpiredCount() {
+        return expiredCount;
+    }
+
+    /**
+     * Count a message which was rejected because the inbox was full.
+     *
+     * @return The number of messages rejected so far.
+     */
+    long rejected() {
+        return rejectedCount.incrementAndGet();
+    }
+
+    /**
+     * Count a signal which was discarded because the inbox was full.
+     */
+    void dropped() {
+        droppedCount.incrementAndGet();
+    }
+
+    /**
+     * Blocks the current thread while the inbox is full.
+     */
+    public void awaitRoom() throws InterruptedException {
+        if (!isFull() || closed)
+            return;
+        synchronized (roomLock) {
+            blockedSenders += 1;
+            try {
+                while (isFull() && !closed)
+                    roomLock.wait();
+            } finally {
+                blockedSenders -= 1;
+            }
+        }
+    }
+
+    /**
+     * Wake up the threads waiting for room in the inbox.
+     */
+    private void wakeBlockedSenders() {
+        if (blockedSenders > 0) {
+            synchronized (roomLock) {
+                roomLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Count the messages being added.
+     *
+     * @param _count The number of messages being added.
+     */
+    private void added(final int _count) {
+        if (!counting)
+            return;
+        final int d = depth.addAndGet(_count);
+        while (true) {
+            final int m = maxDepth.get();
+            if (d <= m || maxDepth.compareAndSet(m, d))
+                return;
+        }
+    }
+
+    /**
+     * Count a message being removed. The count does not drop below 0, as the messages
+     * added before the inbox was bounded were not counted.
+     *
+     * @return The number of messages left in the inbox.
+     */
+    private int removed() {
+        while (true) {
+            final int d = depth.get();
+            if (d == 0 || depth.compareAndSet(d, d - 1))
+                return d == 0 ? 0 : d - 1;
+        }
+    }
+
     /**
      * Inserts a new message in the queue.
      *
@@ -62,6 +343,7 @@ public abstract class Inbox implements AutoCloseable {
      * @param _msg   The new message.
      */
     public void offer(final boolean _local, final Message _msg) {
+        added(1);
         if (_local) {
             offerLocal(_msg);
         } else {
@@ -76,6 +358,7 @@ public abstract class Inbox implements AutoCloseable {
      */
     public void offer(final Queue<Message> _msgs) {
         if (!_msgs.isEmpty()) {
+            added(_msgs.size());
             concurrentQueue.add(_msgs);
         }
     }
@@ -90,11 +373,49 @@ public abstract class Inbox implements AutoCloseable {
     /**
      * Retrieves and removes from the inbox the next message to be processed, or returns
      * null if there are no messages that can be processed.
+     * When the overflow policy is DROP_OLDEST_SIGNAL, signals are discarded while the inbox
+     * holds more messages than its capacity.
+     * Requests which have been cancelled or whose deadline has passed are also discarded,
+     * so that an overloaded reactor does not spend its time on work nobody is waiting for.
      *
      * @return The next message to be processed, or null if there are no messages to be
      *         processed.
      */
-    abstract public Message poll();
+    public final Message poll() {
+        while (true) {
+            final Message message = pollMessage();
+            if (message == null)
+                return null;
+            if (counting) {
+                final int d = removed();
+                final int c = capacity;
+                if (c > 0) {
+                    if (d < c)
+                        wakeBlockedSenders();
+                    else if (overflowPolicy == OverflowPolicy.DROP_OLDEST_SIGNAL &&
+                            message instanceof LinkedMessage && ((LinkedMessage) message).isSignal()) {
+                        droppedCount.incrementAndGet();
+                        ((LinkedMessage) message).discarded();
+                        continue;
+                    }
+                }
+            }
+            if (message instanceof RequestBase && ((RequestBase) message).discardIfExpired()) {
+                expiredCount += 1;
+                continue;
+            }
+            return message;
+        }
+    }
+
+    /**
+     * Retrieves and removes from the queues the next message to be processed, or returns
+     * null if there are no messages that can be processed.
+     *
+     * @return The next message to be processed, or null if there are no messages to be
+     *         processed.
+     */
+    abstract protected Message pollMessage();
 
     /**
      * Signals the start of a request.
@@ -110,8 +431,29 @@ public abstract class Inbox implements AutoCloseable {
 
     }
 
+    /**
+     * Signals the start of the given request. By default, requestBegin() is called.
+     *
+     * @param _request The request being started.
+     */
+    public void requestBegin(final Message _request) {
+        requestBegin();
+    }
+
+    /**
+     * Signals that the result of the given request has been assigned.
+     * By default, requestEnd() is called.
+     *
+     * @param _request The request whose result has been assigned.
+     */
+    public void requestEnd(final Message _request) {
+        requestEnd();
+    }
+
     @Override
     public void close() {
+        closed = true;
+        wakeBlockedSenders();
         while (true) {
             final Message message = poll();
             if (message == null)
@@ -0,0 +1,17 @@
+package org.agilewiki.jactor2.core.reactors;
+
+/**
+ * This exception is passed back as the response to a request which was rejected,
+ * because the inbox of the target reactor was full and its overflow policy is REJECT.
+ */
+public class InboxOverflowException extends Exception {
+
+    /**
+     * Create an InboxOverflowException.
+     *
+     * @param _message The detail message.
+     */
+    public InboxOverflowException(final String _message) {
+        super(_message);
+    }
+}
@@ -35,7 +35,19 @@ public class IsolationInbox extends Inbox {
      * @param initialLocalQueueSize The initial doLocal queue size.
      */
     public IsolationInbox(final int initialLocalQueueSize) {
-        concurrentQueue = new ConcurrentLinkedQueue<Object>();
+        this(initialLocalQueueSize, new ConcurrentLinkedQueue<Object>());
+    }
+
+    /**
+     * Creates an IsolationInbox with the given concurrent queue.
+     *
+     * @param initialLocalQueueSize The initial doLocal queue size.
+     * @param _concurrentQueue      The concurrent queue for cross-thread exchanges,
+     *                              e.g. a LinkedMessageQueue.
+     */
+    public IsolationInbox(final int initialLocalQueueSize,
+                          final Queue<Object> _concurrentQueue) {
+        super(_concurrentQueue);
         if (initialLocalQueueSize > DEFAULT_INITIAL_LOCAL_QUEUE_SIZE) {
             localResponsePendingQueue = new ArrayDeque<Message>(initialLocalQueueSize);
             localNoResponsePendingQueue = new ArrayDeque<Message>(initialLocalQueueSize);
@@ -63,6 +75,7 @@ public class IsolationInbox extends Inbox {
             localResponsePendingQueue.offer(msg);
         else
             localNoResponsePendingQueue.offer(msg);
+        localDepthChanged(1);
     }
 
     @Override
@@ -96,9 +109,10 @@ public class IsolationInbox extends Inbox {
     }
 
     @Override
-    public Message poll() {
+    protected Message pollMessage() {
         if (!hasWork())
             return null;
+        localDepthChanged(-1);
         Message msg = localNoResponsePendingQueue.poll();
         if (msg != null) {
             return msg;
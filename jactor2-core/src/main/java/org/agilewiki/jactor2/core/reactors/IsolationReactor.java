@@ -1,7 +1,6 @@
 package org.agilewiki.jactor2.core.reactors;
 
 import org.agilewiki.jactor2.core.facilities.Facility;
-import org.agilewiki.jactor2.core.facilities.MigrationException;
 import org.agilewiki.jactor2.core.messages.Message;
 
 /**
@@ -16,6 +15,13 @@ import org.agilewiki.jactor2.core.messages.Message;
  * the processing of event messages.
  * </p>
  * <p>
+ * A request passed with a response processor to an IsolationReactor while a request to that
+ * same IsolationReactor is waiting for it, directly or indirectly, would never be processed.
+ * So rather than deadlock, an UnsupportedOperationException is thrown. Chains of requests
+ * through other IsolationReactors, or through signals which are passed without a response
+ * processor, are not affected.
+ * </p>
+ * <p>
  * AsyncRequest/Response messages which are destined to a different targetReactor are buffered rather
  * than being sent immediately. These messages are disbursed to their destinations when the
  * processing of each incoming message is complete.
@@ -23,7 +29,8 @@ import org.agilewiki.jactor2.core.messages.Message;
  * <p>
  * When the last block of buffered messages is being disbursed, if the destination is not
  * a thread-bound targetReactor, the destination targetReactor has no associated thread and the
- * facility of the current targetReactor is the same as the destination targetReactor, then the
+ * facility of the current targetReactor is the same as the destination targetReactor, then,
+ * unless the MigrationPolicy of the current targetReactor declines, the
  * current thread migrates with the message block. By this means the message block is
  * often kept in the hardware thread's high-speed memory cache, which means much faster
  * execution.
@@ -70,6 +77,11 @@ public class IsolationReactor extends UnboundReactor {
         super(_facility, _initialOutboxSize, _initialLocalQueueSize, _onIdle);
     }
 
+    @Override
+    public boolean isIsolating() {
+        return true;
+    }
+
     @Override
     protected Inbox createInbox(int _initialLocalQueueSize) {
         return new IsolationInbox(_initialLocalQueueSize);
@@ -77,11 +89,9 @@ public class IsolationReactor extends UnboundReactor {
 
     @Override
     protected void processMessage(final Message message) {
-        message.eval();
+        super.processMessage(message);
         try {
             flush(true);
-        } catch (final MigrationException me) {
-            throw me;
         } catch (Exception e) {
             log.error("Exception thrown by onIdle", e);
         }
@@ -0,0 +1,222 @@
+package org.agilewiki.jactor2.core.reactors;
+
+import org.agilewiki.jactor2.core.messages.Message;
+import org.agilewiki.jactor2.core.messages.RequestBase;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * The inbox used by KeyedIsolationReactor. A request is not made available for processing
+ * until a result is assigned to the previous request with the same isolation key, while
+ * requests with other keys are processed as they arrive.
+ * <p>
+ * Events and responses are kept in one local queue and requests in another, as with
+ * IsolationInbox. A request whose key is in use is moved to a queue kept for that key,
+ * and the requests waiting on a key are made available again, in the order received,
+ * once the result of the request using that key is assigned.
+ * </p>
+ */
+public class KeyedIsolationInbox extends Inbox {
+
+    /**
+     * The keys of the requests being processed which have not yet been assigned a result,
+     * each with the requests waiting on that key, or null when none are waiting.
+     */
+    private final HashMap<Object, ArrayDeque<Message>> activeKeys =
+            new HashMap<Object, ArrayDeque<Message>>();
+
+    /**
+     * Requests which were waiting on a key that has since been released.
+     */
+    private final ArrayDeque<Message> releasedQueue;
+
+    /**
+     * Local response-pending (requests) queue for same-thread exchanges.
+     */
+    private final ArrayDeque<Message> localResponsePendingQueue;
+
+    /**
+     * Local no-response-pending (events and responses) queue for same-thread exchanges.
+     */
+    private final ArrayDeque<Message> localNoResponsePendingQueue;
+
+    /**
+     * The number of requests waiting on a key.
+     */
+    private int waitingCount;
+
+    /**
+     * Creates a KeyedIsolationInbox.
+     *
+     * @param initialLocalQueueSize The initial doLocal queue size.
+     */
+    public KeyedIsolationInbox(final int initialLocalQueueSize) {
+        this(initialLocalQueueSize, new ConcurrentLinkedQueue<Object>());
+    }
+
+    /**
+     * Creates a KeyedIsolationInbox with the given concurrent queue.
+     *
+     * @param initialLocalQueueSize The initial doLocal queue size.
+     * @param _concurrentQueue      The concurrent queue for cross-thread exchanges,
+     *                              e.g. a LinkedMessageQueue.
+     */
+    public KeyedIsolationInbox(final int initialLocalQueueSize,
+                               final Queue<Object> _concurrentQueue) {
+        super(_concurrentQueue);
+        final int size = Math.max(initialLocalQueueSize, DEFAULT_INITIAL_LOCAL_QUEUE_SIZE);
+        localResponsePendingQueue = new ArrayDeque<Message>(size);
+        localNoResponsePendingQueue = new ArrayDeque<Message>(size);
+        releasedQueue = new ArrayDeque<Message>(DEFAULT_INITIAL_LOCAL_QUEUE_SIZE);
+    }
+
+    /**
+     * Returns the isolation key of a message.
+     *
+     * @param _msg The message.
+     * @return The isolation key of a request, otherwise null.
+     */
+    private static Object isolationKey(final Message _msg) {
+        if (_msg instanceof RequestBase)
+            return ((RequestBase) _msg).getIsolationKey();
+        return null;
+    }
+
+    /**
+     * Add the messages in a message block to the appropriate doLocal queue.
+     *
+     * @param _msgs The message to be added.
+     */
+    private void offerLocal(final Queue<Message> _msgs) {
+        while (!_msgs.isEmpty()) {
+            Message msg = _msgs.poll();
+            offerLocal(msg);
+        }
+    }
+
+    @Override
+    protected void offerLocal(final Message msg) {
+        if (msg.isResponsePending())
+            localResponsePendingQueue.offer(msg);
+        else
+            localNoResponsePendingQueue.offer(msg);
+        localDepthChanged(1);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return localResponsePendingQueue.isEmpty() &&
+                localNoResponsePendingQueue.isEmpty() &&
+                releasedQueue.isEmpty() &&
+                waitingCount == 0 &&
+                concurrentQueue.peek() == null;
+    }
+
+    @Override
+    public boolean isIdle() {
+        return activeKeys.isEmpty() && isEmpty();
+    }
+
+    /**
+     * Moves the requests at the head of a queue whose keys are in use to the queues of
+     * those keys.
+     *
+     * @param _queue The queue of requests.
+     * @return True when the request at the head of the queue can be processed.
+     */
+    private boolean headReady(final ArrayDeque<Message> _queue) {
+        while (true) {
+            final Message msg = _queue.peek();
+            if (msg == null)
+                return false;
+            final Object key = isolationKey(msg);
+            if (!activeKeys.containsKey(key))
+                return true;
+            _queue.poll();
+            ArrayDeque<Message> waiting = activeKeys.get(key);
+            if (waiting == null) {
+                waiting = new ArrayDeque<Message>();
+                activeKeys.put(key, waiting);
+            }
+            waiting.offer(msg);
+            waitingCount += 1;
+        }
+    }
+
+    @Override
+    public boolean hasWork() {
+        while (localNoResponsePendingQueue.isEmpty() &&
+                !headReady(releasedQueue) &&
+                !headReady(localResponsePendingQueue)) {
+            Object obj = concurrentQueue.poll();
+            if (obj == null)
+                return false;
+            if (obj instanceof Message) {
+                Message msg = (Message) obj;
+                offerLocal(msg);
+            } else {
+                @SuppressWarnings("unchecked")
+                final Queue<Message> msgs = (Queue<Message>) obj;
+                offerLocal(msgs);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    protected Message pollMessage() {
+        if (!hasWork())
+            return null;
+        localDepthChanged(-1);
+        Message msg = localNoResponsePendingQueue.poll();
+        if (msg != null)
+            return msg;
+        if (headReady(releasedQueue))
+            return releasedQueue.poll();
+        return localResponsePendingQueue.poll();
+    }
+
+    @Override
+    public void requestBegin(final Message _request) {
+        final Object key = isolationKey(_request);
+        if (activeKeys.containsKey(key))
+            throw new IllegalStateException("already processing a request with key " + key);
+        activeKeys.put(key, null);
+    }
+
+    @Override
+    public void requestEnd(final Message _request) {
+        final Object key = isolationKey(_request);
+        if (!activeKeys.containsKey(key))
+            throw new IllegalStateException("not processing a request with key " + key);
+        final ArrayDeque<Message> waiting = activeKeys.remove(key);
+        if (waiting != null) {
+            waitingCount -= waiting.size();
+            releasedQueue.addAll(waiting);
+        }
+    }
+
+    /**
+     * Returns the number of isolation keys in use by requests which have not yet been
+     * assigned a result.
+     * (This method must be called on the targetReactor's thread.)
+     *
+     * @return The number of keys in use.
+     */
+    public int getActiveKeyCount() {
+        return activeKeys.size();
+    }
+
+    /**
+     * Returns the number of requests waiting for a key to be released.
+     * (This method must be called on the targetReactor's thread.)
+     *
+     * @return The number of waiting requests.
+     */
+    public int getWaitingCount() {
+        return waitingCount;
+    }
+}
@@ -0,0 +1,66 @@
+package org.agilewiki.jactor2.core.reactors;
+
+import org.agilewiki.jactor2.core.facilities.Facility;
+
+/**
+ * An isolation targetReactor which only serializes requests with the same isolation key.
+ * <p>
+ * An IsolationReactor does not start a request until the response has been assigned to the
+ * prior request, so a request that waits on a slow downstream response holds up all the
+ * requests behind it. A KeyedIsolationReactor instead keeps the requests of each isolation key
+ * in order, while requests with other keys are processed in the meantime. So when the requests
+ * for, say, different accounts are independent, they are pipelined, and only the requests for
+ * the same account wait on each other.
+ * </p>
+ * <p>
+ * The isolation key is assigned with RequestBase.setIsolationKey. Requests without a key share
+ * the null key, so when no keys are assigned a KeyedIsolationReactor behaves like an
+ * IsolationReactor. As with an IsolationReactor, event messages are never delayed, and a request
+ * passed back to a KeyedIsolationReactor while a request with the same key is waiting for it,
+ * even indirectly, throws an UnsupportedOperationException rather than deadlock.
+ * </p>
+ * <p>
+ * The Inbox used by KeyedIsolationReactor is KeyedIsolationInbox.
+ * </p>
+ */
+public class KeyedIsolationReactor extends IsolationReactor {
+
+    /**
+     * Create a keyed isolation targetReactor.
+     *
+     * @param _facility The facility of the targetReactor.
+     */
+    public KeyedIsolationReactor(final Facility _facility) throws Exception {
+        super(_facility);
+    }
+
+    /**
+     * Create a keyed isolation targetReactor.
+     *
+     * @param _facility The facility of the targetReactor.
+     * @param _onIdle   Object to be run when the inbox is emptied, or null.
+     */
+    public KeyedIsolationReactor(final Facility _facility, final Runnable _onIdle) throws Exception {
+        super(_facility, _onIdle);
+    }
+
+    /**
+     * Create a keyed isolation targetReactor.
+     *
+     * @param _facility              The facility of the targetReactor.
+     * @param _initialOutboxSize     Initial size of the outbox for each unique message destination.
+     * @param _initialLocalQueueSize The initial number of slots in the doLocal queue.
+     * @param _onIdle                Object to be run when the inbox is emptied, or null.
+     */
+    public KeyedIsolationReactor(final Facility _facility,
+                                 final int _initialOutboxSize,
+                                 final int _initialLocalQueueSize,
+                                 final Runnable _onIdle) throws Exception {
+        super(_facility, _initialOutboxSize, _initialLocalQueueSize, _onIdle);
+    }
+
+    @Override
+    protected Inbox createInbox(final int _initialLocalQueueSize) {
+        return new KeyedIsolationInbox(_initialLocalQueueSize);
+    }
+}
@@ -0,0 +1,53 @@
+package org.agilewiki.jactor2.core.reactors;
+
+import org.agilewiki.jactor2.core.messages.Message;
+
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Base class for messages which carry their own link, so that they can be added to a
+ * LinkedMessageQueue without allocating a queue node.
+ * <p>
+ * A message is only ever in one inbox at a time: a request is first added to the inbox of
+ * its target reactor and then, once it holds a response, to the inbox of its source.
+ * So a single link per message is enough.
+ * </p>
+ */
+public abstract class LinkedMessage implements Message {
+
+    /**
+     * Used for the ordered (lazy) writes of the link.
+     */
+    static final AtomicReferenceFieldUpdater<LinkedMessage, LinkedMessage> NEXT =
+            AtomicReferenceFieldUpdater.newUpdater(LinkedMessage.class, LinkedMessage.class, "next");
+
+    /**
+     * The next message in the LinkedMessageQueue, or null.
+     */
+    volatile LinkedMessage next;
+
+    /**
+     * Returns true when no response is to be returned for this message,
+     * as is the case for events and for requests passed using signal.
+     * Messages which are not LinkedMessages are never treated as signals.
+     *
+     * @return True when no response is to be returned for this message.
+     */
+    public abstract boolean isSignal();
+
+    /**
+     * Returns the priority lane of this message, which is used by PriorityInbox.
+     *
+     * @return The priority of this message.
+     */
+    public MessagePriority getPriority() {
+        return MessagePriority.NORMAL;
+    }
+
+    /**
+     * Called when this message is discarded by a full inbox instead of being processed.
+     * By default, nothing is done.
+     */
+    protected void discarded() {
+    }
+}
@@ -0,0 +1,253 @@
+package org.agilewiki.jactor2.core.reactors;
+
+import org.agilewiki.jactor2.core.messages.Message;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A multi-producer, single-consumer queue of LinkedMessage objects, for use as the
+ * concurrent queue of an inbox.
+ * <p>
+ * The messages are linked through their own next field, so unlike ConcurrentLinkedQueue
+ * no node is allocated when a message is added. A block of messages (a Queue of messages,
+ * as passed by an outbox) is linked together first and then added with a single atomic
+ * exchange, and the messages of the block are then polled one at a time.
+ * </p>
+ * <p>
+ * Any thread may add messages, but only the thread which runs the reactor may poll
+ * them or iterate over them. The peek and isEmpty methods may be called by any thread.
+ * </p>
+ */
+public class LinkedMessageQueue extends AbstractQueue<Object> {
+
+    /**
+     * A placeholder which is linked in when the queue would otherwise become empty,
+     * so that the last message polled is never left in the queue.
+     */
+    private final LinkedMessage stub = new Stub();
+
+    /**
+     * The producers' end of the queue: the message most recently added, or the stub.
+     */
+    private final AtomicReference<LinkedMessage> last = new AtomicReference<LinkedMessage>(stub);
+
+    /**
+     * The consumer's end of the queue: either the stub or the next message to be polled.
+     */
+    private volatile LinkedMessage first = stub;
+
+    /**
+     * Adds a LinkedMessage, or a Queue of LinkedMessage objects, to the queue.
+     *
+     * @param _o A LinkedMessage or a Queue of LinkedMessage objects.
+     * @return True.
+     */
+    @Override
+    public boolean offer(final Object _o) {
+        if (_o instanceof LinkedMessage) {
+            final LinkedMessage message = (LinkedMessage) _o;
+            LinkedMessage.NEXT.lazySet(message, null);
+            append(message, message);
+            return true;
+        }
+        if (!(_o instanceof Queue))
+            throw new IllegalArgumentException("not a LinkedMessage: " + _o.getClass().getName());
+        @SuppressWarnings("unchecked")
+        final Queue<Message> messages = (Queue<Message>) _o;
+        LinkedMessage head = null;
+        LinkedMessage tail = null;
+        for (final Message m : messages) {
+            if (!(m instanceof LinkedMessage))
+                throw new IllegalArgumentException("not a LinkedMessage: " + m.getClass().getName());
+            final LinkedMessage message = (LinkedMessage) m;
+            LinkedMessage.NEXT.lazySet(message, null);
+            if (head == null)
+                head = message;
+            else
+                LinkedMessage.NEXT.lazySet(tail, message);
+            tail = message;
+        }
+        if (head != null)
+            append(head, tail);
+        return true;
+    }
+
+    /**
+     * Adds a chain of linked messages to the producers' end of the queue.
+     *
+     * @param _head The first message of the chain.
+     * @param _tail The last message of the chain.
+     */
+    private void append(final LinkedMessage _head, final LinkedMessage _tail) {
+        final LinkedMessage previous = last.getAndSet(_tail);
+        LinkedMessage.NEXT.lazySet(previous, _head);
+    }
+
+    /**
+     * Waits for a producer which has already claimed the producers' end of the queue
+     * to link in the message that follows.
+     *
+     * @param _message The message to be followed.
+     * @return The next message.
+     */
+    private static LinkedMessage awaitNext(final LinkedMessage _message) {
+        LinkedMessage next;
+        while ((next = _message.next) == null)
+            Thread.yield();
+        return next;
+    }
+
+    /**
+     * Removes the next message. This method must only be called by the consumer.
+     *
+     * @return The next message, or null.
+     */
+    @Override
+    public Object poll() {
+        LinkedMessage message = first;
+        LinkedMessage next = message.next;
+        if (message == stub) {
+            if (next == null) {
+                if (last.get() == stub)
+                    return null;
+                next = awaitNext(stub);
+            }
+            message = next;
+            next = message.next;
+        }
+        if (next == null) {
+            if (last.get() == message) {
+                LinkedMessage.NEXT.lazySet(stub, null);
+                append(stub, stub);
+            }
+            next = awaitNext(message);
+        }
+        first = next;
+        LinkedMessage.NEXT.lazySet(message, null);
+        return message;
+    }
+
+    /**
+     * Returns the next message without removing it, or null when the queue is empty.
+     * When called by a thread other than the consumer, the result is only an indication
+     * of whether the queue is empty.
+     *
+     * @return The next message, or null.
+     */
+    @Override
+    public Object peek() {
+        while (true) {
+            final LinkedMessage message = first;
+            if (message != stub)
+                return message;
+            final LinkedMessage next = stub.next;
+            if (next != null)
+                return next;
+            if (last.get() == stub)
+                return null;
+            Thread.yield();
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return peek() == null;
+    }
+
+    /**
+     * Returns the number of messages in the queue. The queue is traversed,
+     * so this method is best used only for diagnostics.
+     * This method must only be called by the consumer.
+     *
+     * @return The number of messages.
+     */
+    @Override
+    public int size() {
+        int size = 0;
+        final Iterator<Object> it = iterator();
+        while (it.hasNext()) {
+            it.next();
+            size += 1;
+        }
+        return size;
+    }
+
+    /**
+     * Returns an iterator over the messages which are fully linked into the queue.
+     * The iterator does not support remove and must only be used by the consumer.
+     *
+     * @return An iterator.
+     */
+    @Override
+    public Iterator<Object> iterator() {
+        return new Iterator<Object>() {
+            private LinkedMessage next = skipStub(first);
+
+            private LinkedMessage skipStub(final LinkedMessage _message) {
+                return _message == stub ? stub.next : _message;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Object next() {
+                if (next == null)
+                    throw new NoSuchElementException();
+                final LinkedMessage message = next;
+                next = skipStub(message.next);
+                return message;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * The placeholder, which is never returned as a message.
+     */
+    private static final class Stub extends LinkedMessage {
+        @Override
+        public boolean isForeign() {
+            return false;
+        }
+
+        @Override
+        public boolean isResponsePending() {
+            return false;
+        }
+
+        @Override
+        public boolean isSignal() {
+            return false;
+        }
+
+        @Override
+        public boolean isIsolated() {
+            return false;
+        }
+
+        @Override
+        public void eval() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void processException(final Reactor _activeReactor, final Exception _e) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package org.agilewiki.jactor2.core.reactors;
+
+/**
+ * The priority lanes of a PriorityInbox. Messages in a higher lane are processed before
+ * those in a lower lane, while messages in the same lane are processed in the order received.
+ * Other inboxes ignore the priority of a message.
+ */
+public enum MessagePriority {
+
+    /**
+     * Responses, acknowledgements and control messages, which unblock other work.
+     * All responses are processed in this lane, whatever the priority of the request.
+     */
+    HIGH,
+
+    /**
+     * The default priority of requests and events.
+     */
+    NORMAL,
+
+    /**
+     * Bulk work, which is only processed when there is nothing more urgent to do
+     * or when it has waited long enough.
+     */
+    LOW
+}
@@ -0,0 +1,47 @@
+package org.agilewiki.jactor2.core.reactors;
+
+/**
+ * Decides when UnboundReactor.flush migrates the current thread to the target of the last
+ * block of buffered messages.
+ * <p>
+ * Migrating keeps the messages in the cache of the current thread and saves a trip through the
+ * thread manager, which is a big win for a pipeline. But the reactor being left behind must be
+ * resubmitted to the thread manager when it still has work, so for a hub that fans requests out
+ * to many reactors, migrating only means that the hub is constantly abandoned and re-queued.
+ * </p>
+ * <p>
+ * A policy is only consulted when migration is possible: the target is an idle UnboundReactor
+ * in the same facility. Both methods are called by the thread running the source reactor.
+ * </p>
+ */
+public interface MigrationPolicy {
+
+    /**
+     * Always migrate when possible. This is the default.
+     */
+    MigrationPolicy ALWAYS = new BatchSizeMigrationPolicy(1);
+
+    /**
+     * Never migrate.
+     */
+    MigrationPolicy NEVER = new BatchSizeMigrationPolicy(Integer.MAX_VALUE);
+
+    /**
+     * Returns true when the thread should migrate to the target reactor.
+     *
+     * @param _source       The reactor being flushed.
+     * @param _target       The idle reactor to which the last block of messages is passed.
+     * @param _messageCount The number of messages in the block.
+     * @return True to migrate.
+     */
+    boolean mayMigrate(UnboundReactor _source, UnboundReactor _target, int _messageCount);
+
+    /**
+     * Called after the thread has migrated away from a reactor.
+     *
+     * @param _source    The reactor which the thread migrated away from.
+     * @param _abandoned True when the reactor still had messages to process and had to
+     *                   be resubmitted to the thread manager.
+     */
+    void migrated(UnboundReactor _source, boolean _abandoned);
+}
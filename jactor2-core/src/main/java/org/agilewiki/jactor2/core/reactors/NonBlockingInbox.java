@@ -25,7 +25,19 @@ public class NonBlockingInbox extends Inbox {
      * @param initialLocalQueueSize The initial doLocal queue size.
      */
     public NonBlockingInbox(final int initialLocalQueueSize) {
-        concurrentQueue = new ConcurrentLinkedQueue<Object>();
+        this(initialLocalQueueSize, new ConcurrentLinkedQueue<Object>());
+    }
+
+    /**
+     * Creates a NonBlockingInbox with the given concurrent queue.
+     *
+     * @param initialLocalQueueSize The initial doLocal queue size.
+     * @param _concurrentQueue      The concurrent queue for cross-thread exchanges,
+     *                              e.g. a LinkedMessageQueue.
+     */
+    public NonBlockingInbox(final int initialLocalQueueSize,
+                            final Queue<Object> _concurrentQueue) {
+        super(_concurrentQueue);
         if (initialLocalQueueSize > DEFAULT_INITIAL_LOCAL_QUEUE_SIZE)
             localQueue = new ArrayDeque<Object>(initialLocalQueueSize);
         else
@@ -52,10 +64,11 @@ public class NonBlockingInbox extends Inbox {
     @Override
     protected void offerLocal(final Message msg) {
         localQueue.offer(msg);
+        localDepthChanged(1);
     }
 
     @Override
-    public Message poll() {
+    protected Message pollMessage() {
         Object obj = localQueue.peek();
         if (obj == null) {
             obj = concurrentQueue.poll();
@@ -71,11 +84,13 @@ public class NonBlockingInbox extends Inbox {
                     if (!msgs.isEmpty()) {
                         // msgs is not empty so save it in localQueue
                         localQueue.offer(msgs);
+                        localDepthChanged(msgs.size());
                     }
                     return result;
                 }
             }
         } else {
+            localDepthChanged(-1);
             if (obj instanceof Message) {
                 return (Message) localQueue.poll();
             } else {
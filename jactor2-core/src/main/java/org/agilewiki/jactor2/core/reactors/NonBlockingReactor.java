@@ -17,7 +17,8 @@ import org.agilewiki.jactor2.core.facilities.Facility;
  * <p>
  * When the last block of buffered messages is being disbursed, if the destination is not
  * a thread-bound targetReactor, the destination targetReactor has no associated thread and the
- * facility of the current targetReactor is the same as the destination targetReactor, then the
+ * facility of the current targetReactor is the same as the destination targetReactor, then,
+ * unless the MigrationPolicy of the current targetReactor declines, the
  * current thread migrates with the message block. By this means the message block is
  * often kept in the hardware thread's high-speed memory cache, which means much faster
  * execution.
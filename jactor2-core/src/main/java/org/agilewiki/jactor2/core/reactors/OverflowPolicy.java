@@ -0,0 +1,37 @@
+package org.agilewiki.jactor2.core.reactors;
+
+/**
+ * Determines what happens when a message is passed to a reactor whose inbox is full.
+ * Messages passed by the reactor to itself and responses are always accepted, so the
+ * capacity of an inbox is a soft limit.
+ */
+public enum OverflowPolicy {
+
+    /**
+     * A thread which is not a PoolThread, like the thread invoking RequestBase.call,
+     * waits until there is room in the inbox. Messages passed by the threads of a
+     * facility are accepted, as blocking those threads could deadlock the facility.
+     */
+    BLOCK,
+
+    /**
+     * Requests are rejected, with an InboxOverflowException being passed back as the response.
+     * Signals and events are discarded.
+     */
+    REJECT,
+
+    /**
+     * Signals and events passed to a full inbox are discarded, while requests are accepted.
+     * And while the inbox holds more messages than its capacity, the signals and events at
+     * the head of the inbox are discarded rather than processed.
+     */
+    DROP_OLDEST_SIGNAL,
+
+    /**
+     * Messages are accepted, but the reactor passing the messages is notified by a call
+     * to its onTargetOverflow method, so that it can slow down.
+     * The reactor passing a request is always notified, but the reactor passing an event
+     * is only notified when it runs on a pool thread of the facility.
+     */
+    NOTIFY_SENDER
+}
@@ -0,0 +1,243 @@
+package org.agilewiki.jactor2.core.reactors;
+
+import org.agilewiki.jactor2.core.messages.Message;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * An inbox for non-blocking reactors with a doLocal queue for each MessagePriority,
+ * so that responses and control messages do not wait behind bulk requests.
+ * <p>
+ * Responses are always placed in the HIGH lane, as processing a response often unblocks
+ * other work, e.g. an acknowledgement which lets an upstream stage send more data.
+ * Other messages are placed in the lane given by their priority. This is the same split
+ * that IsolationInbox makes between its responsePending and noResponsePending queues,
+ * but with a lane for each priority.
+ * </p>
+ * <p>
+ * Messages passed from other threads are moved from the concurrent queue to their lanes
+ * before the next message is selected, so a high priority message does not wait behind
+ * lower priority messages which were passed before it. To keep the lower lanes from
+ * starving, after starvationLimit messages have been taken from higher lanes while a
+ * lower lane was waiting, the next message is taken from one of the waiting lanes,
+ * each waiting lane taking its turn.
+ * </p>
+ * <p>
+ * A reactor uses a PriorityInbox by overriding createInbox:
+ * </p>
+ * <pre>
+ * new NonBlockingReactor(facility) {
+ *     {@literal @}Override
+ *     protected Inbox createInbox(final int _initialLocalQueueSize) {
+ *         return new PriorityInbox(_initialLocalQueueSize);
+ *     }
+ * };
+ * </pre>
+ */
+public class PriorityInbox extends Inbox {
+
+    /**
+     * The default number of messages taken from higher lanes while a lower lane waits.
+     */
+    public static int DEFAULT_STARVATION_LIMIT = 16;
+
+    /**
+     * The maximum number of entries moved from the concurrent queue before a message is selected.
+     */
+    private static final int MAX_DRAIN = 256;
+
+    /**
+     * The priorities, indexed by lane.
+     */
+    private static final MessagePriority[] PRIORITIES = MessagePriority.values();
+
+    /**
+     * Local queues, one per priority, for same-thread exchanges and for the messages
+     * moved from the concurrent queue.
+     */
+    private final ArrayDeque<Message>[] lanes;
+
+    /**
+     * The number of messages taken from higher lanes while a lower lane waits.
+     */
+    private final int starvationLimit;
+
+    /**
+     * The number of messages taken from higher lanes since a lower lane started waiting.
+     */
+    private int bypassed;
+
+    /**
+     * The lane from which a message was last taken because it had waited too long.
+     */
+    private int promoted;
+
+    /**
+     * The number of messages taken from a lower lane because it had waited too long.
+     */
+    private volatile long promotedCount;
+
+    /**
+     * Creates a PriorityInbox.
+     *
+     * @param _initialLocalQueueSize The initial doLocal queue size.
+     */
+    public PriorityInbox(final int _initialLocalQueueSize) {
+        this(_initialLocalQueueSize, DEFAULT_STARVATION_LIMIT, new ConcurrentLinkedQueue<Object>());
+    }
+
+    /**
+     * Creates a PriorityInbox.
+     *
+     * @param _initialLocalQueueSize The initial doLocal queue size.
+     * @param _starvationLimit       The number of messages taken from higher lanes while
+     *                               a lower lane waits.
+     * @param _concurrentQueue       The concurrent queue for cross-thread exchanges,
+     *                               e.g. a LinkedMessageQueue.
+     */
+    public PriorityInbox(final int _initialLocalQueueSize,
+                         final int _starvationLimit,
+                         final Queue<Object> _concurrentQueue) {
+        super(_concurrentQueue);
+        if (_starvationLimit < 1)
+            throw new IllegalArgumentException("starvationLimit must be at least 1");
+        starvationLimit = _starvationLimit;
+        final int size = Math.max(_initialLocalQueueSize, DEFAULT_INITIAL_LOCAL_QUEUE_SIZE);
+        @SuppressWarnings("unchecked")
+        final ArrayDeque<Message>[] newLanes = (ArrayDeque<Message>[]) new ArrayDeque<?>[PRIORITIES.length];
+        for (int i = 0; i < newLanes.length; i++) {
+            newLanes[i] = new ArrayDeque<Message>(size);
+        }
+        lanes = newLanes;
+    }
+
+    /**
+     * Returns the number of messages in a lane.
+     * (This method is not thread safe and the value is approximate when called by
+     * a thread other than the targetReactor's thread.)
+     *
+     * @param _priority The priority of the lane.
+     * @return The number of messages in the lane.
+     */
+    public int getLaneDepth(final MessagePriority _priority) {
+        return lanes[_priority.ordinal()].size();
+    }
+
+    /**
+     * Returns the number of messages taken from a lower lane because it had waited too long.
+     *
+     * @return The number of messages promoted.
+     */
+    public long getPromotedCount() {
+        return promotedCount;
+    }
+
+    /**
+     * Returns the lane of a message.
+     *
+     * @param _message The message.
+     * @return The index of the lane.
+     */
+    protected int lane(final Message _message) {
+        if (!(_message instanceof LinkedMessage))
+            return _message.isResponsePending() ?
+                    MessagePriority.NORMAL.ordinal() : MessagePriority.HIGH.ordinal();
+        final LinkedMessage message = (LinkedMessage) _message;
+        if (!message.isResponsePending() && !message.isSignal())
+            return MessagePriority.HIGH.ordinal();
+        return message.getPriority().ordinal();
+    }
+
+    @Override
+    protected void offerLocal(final Message _message) {
+        lanes[lane(_message)].offer(_message);
+        localDepthChanged(1);
+    }
+
+    /**
+     * Moves the messages passed from other threads to their lanes.
+     */
+    private void drain() {
+        for (int i = 0; i < MAX_DRAIN; i++) {
+            final Object obj = concurrentQueue.poll();
+            if (obj == null)
+                return;
+            if (obj instanceof Message) {
+                offerLocal((Message) obj);
+            } else {
+                @SuppressWarnings("unchecked")
+                final Queue<Message> msgs = (Queue<Message>) obj;
+                while (true) {
+                    final Message message = msgs.poll();
+                    if (message == null)
+                        break;
+                    offerLocal(message);
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean hasWork() {
+        for (final ArrayDeque<Message> lane : lanes) {
+            if (!lane.isEmpty())
+                return true;
+        }
+        return concurrentQueue.peek() != null;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return !hasWork();
+    }
+
+    @Override
+    public boolean isIdle() {
+        return !hasWork();
+    }
+
+    @Override
+    protected Message pollMessage() {
+        drain();
+        int first = 0;
+        while (first < lanes.length && lanes[first].isEmpty())
+            first += 1;
+        if (first == lanes.length)
+            return null;
+        int last = lanes.length - 1;
+        while (last > first && lanes[last].isEmpty())
+            last -= 1;
+        int selected = first;
+        if (last == first) {
+            bypassed = 0;
+        } else {
+            bypassed += 1;
+            if (bypassed > starvationLimit) {
+                bypassed = 0;
+                selected = promote(first);
+                promotedCount += 1;
+            }
+        }
+        localDepthChanged(-1);
+        return lanes[selected].poll();
+    }
+
+    /**
+     * Selects the next waiting lane, in turn, below the first non-empty lane.
+     *
+     * @param _first The index of the first non-empty lane.
+     * @return The index of the selected lane.
+     */
+    private int promote(final int _first) {
+        for (int i = 1; i < lanes.length; i++) {
+            final int lane = (promoted + i) % lanes.length;
+            if (lane > _first && !lanes[lane].isEmpty()) {
+                promoted = lane;
+                return lane;
+            }
+        }
+        return _first;
+    }
+}
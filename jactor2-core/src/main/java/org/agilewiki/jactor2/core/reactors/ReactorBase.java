@@ -2,12 +2,20 @@ package org.agilewiki.jactor2.core.reactors;
 
 import org.agilewiki.jactor2.core.blades.ExceptionHandler;
 import org.agilewiki.jactor2.core.facilities.Facility;
+import org.agilewiki.jactor2.core.facilities.PoolThread;
 import org.agilewiki.jactor2.core.messages.Message;
 import org.agilewiki.jactor2.core.messages.MessageSource;
+import org.agilewiki.jactor2.core.messages.RequestBase;
+import org.agilewiki.jactor2.core.metrics.FacilityMetrics;
+import org.agilewiki.jactor2.core.metrics.ReactorMetrics;
 import org.slf4j.Logger;
 
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -36,6 +44,11 @@ abstract public class ReactorBase implements Reactor, MessageSource, AutoCloseab
      */
     protected final Outbox outbox;
 
+    /**
+     * The metrics of this reactor, or null when metrics are not enabled.
+     */
+    protected final ReactorMetrics metrics;
+
     /**
      * The currently active exception handler.
      */
@@ -46,6 +59,27 @@ abstract public class ReactorBase implements Reactor, MessageSource, AutoCloseab
      */
     private Message currentMessage;
 
+    /**
+     * The requests from other facilities that are being processed by this reactor, or null.
+     * These requests are closed when the reactor is closed, so that their sources get
+     * a ServiceClosedException.
+     * Tracking foreign requests here, rather than in the facility, means that no additional
+     * messages need to be passed when a request crosses facilities.
+     */
+    private volatile Set<Message> foreignRequests;
+
+    /**
+     * The latest coalesced message for each coalescing key which has not yet been processed,
+     * or null when no message has been coalesced.
+     */
+    private volatile ConcurrentHashMap<Object, Message> coalescedMessages;
+
+    /**
+     * The number of coalesced messages which were replaced by a later message before
+     * being processed.
+     */
+    private final AtomicLong coalescedCount = new AtomicLong();
+
     /**
      * Create a targetReactor.
      *
@@ -60,6 +94,8 @@ abstract public class ReactorBase implements Reactor, MessageSource, AutoCloseab
         inbox = createInbox(_initialLocalQueueSize);
         log = _facility.getMessageProcessorLogger();
         outbox = new Outbox(facility, _initialBufferSize);
+        final FacilityMetrics facilityMetrics = _facility.getMetrics();
+        metrics = facilityMetrics == null ? null : facilityMetrics.addReactor(this);
         addAutoClose();
     }
 
@@ -87,6 +123,15 @@ abstract public class ReactorBase implements Reactor, MessageSource, AutoCloseab
         return log;
     }
 
+    /**
+     * Returns the metrics of this reactor.
+     *
+     * @return The metrics, or null when metrics are not enabled.
+     */
+    public final ReactorMetrics getMetrics() {
+        return metrics;
+    }
+
     /**
      * Returns the message currently being processed.
      *
@@ -129,6 +174,103 @@ abstract public class ReactorBase implements Reactor, MessageSource, AutoCloseab
         return inbox.isEmpty();
     }
 
+    /**
+     * Bounds the inbox of this reactor. Inboxes are unbounded by default.
+     *
+     * @param _capacity       The number of messages the inbox can hold, or 0 for an unbounded inbox.
+     * @param _overflowPolicy What happens when a message is passed while the inbox is full.
+     */
+    public final void setInboxCapacity(final int _capacity, final OverflowPolicy _overflowPolicy) {
+        inbox.setCapacity(_capacity, _overflowPolicy);
+    }
+
+    /**
+     * Returns true when the inbox is bounded and full.
+     * Senders can use this to hold back messages which can wait.
+     *
+     * @return True when the inbox is full.
+     */
+    public final boolean isInboxFull() {
+        return inbox.isFull();
+    }
+
+    /**
+     * Returns the number of messages in the inbox.
+     *
+     * @return The number of messages in the inbox.
+     */
+    public final int getInboxDepth() {
+        return inbox.getDepth();
+    }
+
+    /**
+     * Returns the number of messages in the doLocal queue(s) of the inbox.
+     *
+     * @return The number of messages in the doLocal queue(s).
+     */
+    public final int getLocalInboxDepth() {
+        return inbox.getLocalDepth();
+    }
+
+    /**
+     * Returns the number of messages in the concurrent queue of the inbox.
+     *
+     * @return The number of messages in the concurrent queue.
+     */
+    public final int getConcurrentInboxDepth() {
+        return inbox.getConcurrentDepth();
+    }
+
+    /**
+     * Returns the largest number of messages seen in the inbox.
+     *
+     * @return The largest number of messages seen in the inbox.
+     */
+    public final int getInboxMaxDepth() {
+        return inbox.getMaxDepth();
+    }
+
+    /**
+     * Returns the number of messages rejected because the inbox was full.
+     *
+     * @return The number of messages rejected.
+     */
+    public final long getInboxRejectedCount() {
+        return inbox.getRejectedCount();
+    }
+
+    /**
+     * Returns the number of signals discarded because the inbox was full.
+     *
+     * @return The number of signals discarded.
+     */
+    public final long getInboxDroppedCount() {
+        return inbox.getDroppedCount();
+    }
+
+    /**
+     * Returns the number of requests discarded because they were cancelled or their
+     * deadline had passed.
+     *
+     * @return The number of requests discarded.
+     */
+    public final long getInboxExpiredCount() {
+        return inbox.getExpiredCount();
+    }
+
+    /**
+     * Called when this reactor passes messages to a target whose inbox is full
+     * and whose overflow policy is NOTIFY_SENDER.
+     * The messages are still delivered. By default, nothing is done.
+     * When this reactor does not run on a pool thread, like a ThreadBoundReactor,
+     * it is only notified when it passes a request, not an event.
+     * (This method is called on this reactor's thread.)
+     *
+     * @param _target The reactor with the full inbox.
+     */
+    protected void onTargetOverflow(final Reactor _target) {
+    }
+
     @Override
     public void close() {
         try {
@@ -139,6 +281,92 @@ abstract public class ReactorBase implements Reactor, MessageSource, AutoCloseab
             inbox.close();
         } catch (Exception e) {
         }
+        closeForeignRequests();
+        if (metrics != null)
+            facility.getMetrics().removeReactor(this);
+    }
+
+    /**
+     * Passes a message which replaces any message passed earlier with the same coalescing key
+     * that has not yet been processed, as when only the latest of several state-changed
+     * notifications matters. Only one message per key is ever held in the inbox, so a
+     * slow reactor does not fall further behind as the notifications pile up.
+     * This method can be called from any thread.
+     *
+     * @param _key     The coalescing key.
+     * @param _message The message, usually a signal.
+     */
+    public final void coalesce(final Object _key, final Message _message) throws Exception {
+        ConcurrentHashMap<Object, Message> pending = coalescedMessages;
+        if (pending == null) {
+            synchronized (this) {
+                pending = coalescedMessages;
+                if (pending == null) {
+                    pending = new ConcurrentHashMap<Object, Message>();
+                    coalescedMessages = pending;
+                }
+            }
+        }
+        if (pending.put(_key, _message) != null) {
+            coalescedCount.incrementAndGet();
+            return;
+        }
+        unbufferedAddMessage(new CoalescedMessage(_key, pending), false);
+    }
+
+    /**
+     * Returns the number of coalesced messages which were replaced by a later message
+     * with the same key before being processed.
+     *
+     * @return The number of messages replaced.
+     */
+    public final long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * Track a request from another facility which is being processed by this reactor.
+     * (This method is not thread safe and must be called on the targetReactor's thread.)
+     *
+     * @param _request The request from another facility.
+     */
+    public final void addForeignRequest(final Message _request) {
+        Set<Message> requests = foreignRequests;
+        if (requests == null) {
+            requests = Collections.newSetFromMap(new ConcurrentHashMap<Message, Boolean>());
+            foreignRequests = requests;
+        }
+        requests.add(_request);
+    }
+
+    /**
+     * Stop tracking a request from another facility, as it has been processed.
+     * (This method is not thread safe and must be called on the targetReactor's thread.)
+     *
+     * @param _request The request from another facility.
+     */
+    public final void removeForeignRequest(final Message _request) {
+        final Set<Message> requests = foreignRequests;
+        if (requests != null)
+            requests.remove(_request);
+    }
+
+    /**
+     * Close the requests from other facilities which are still being processed.
+     */
+    public final void closeForeignRequests() {
+        final Set<Message> requests = foreignRequests;
+        if (requests == null)
+            return;
+        final Iterator<Message> it = requests.iterator();
+        while (it.hasNext()) {
+            final Message request = it.next();
+            it.remove();
+            try {
+                request.close();
+            } catch (final Throwable t) {
+            }
+        }
     }
 
     @Override
@@ -177,6 +405,20 @@ abstract public class ReactorBase implements Reactor, MessageSource, AutoCloseab
                 }
             return;
         }
+        if (!_local && inbox.isFull()) {
+            switch (inbox.getOverflowPolicy()) {
+                case REJECT:
+                    if (reject(_message))
+                        return;
+                    break;
+                case DROP_OLDEST_SIGNAL:
+                    if (drop(_message))
+                        return;
+                    break;
+                default:
+                    overflow(_message);
+            }
+        }
         inbox.offer(_local, _message);
         afterAdd();
     }
@@ -200,10 +442,111 @@ abstract public class ReactorBase implements Reactor, MessageSource, AutoCloseab
             }
             return;
         }
+        if (inbox.isFull()) {
+            final OverflowPolicy overflowPolicy = inbox.getOverflowPolicy();
+            if (overflowPolicy == OverflowPolicy.REJECT) {
+                final Iterator<Message> itm = _messages.iterator();
+                while (itm.hasNext()) {
+                    if (reject(itm.next()))
+                        itm.remove();
+                }
+            } else if (overflowPolicy == OverflowPolicy.DROP_OLDEST_SIGNAL) {
+                final Iterator<Message> itm = _messages.iterator();
+                while (itm.hasNext()) {
+                    if (drop(itm.next()))
+                        itm.remove();
+                }
+            } else
+                overflow(_messages.peek());
+        }
         inbox.offer(_messages);
         afterAdd();
     }
 
+    /**
+     * Rejects a message passed while the inbox is full and the overflow policy is REJECT.
+     * Responses are never rejected. The messages of a block are rejected one by one, so
+     * that the responses in the block are still delivered.
+     * Only the first discarded signal is logged, as a flood of warnings would only add to
+     * the load of an overloaded reactor. The rest are counted by getInboxRejectedCount.
+     *
+     * @param _message The message being passed.
+     * @return True when the message has been rejected.
+     */
+    private boolean reject(final Message _message) {
+        if (_message instanceof LinkedMessage && ((LinkedMessage) _message).isSignal()) {
+            if (inbox.rejected() == 1)
+                log.warn("inbox full, signal discarded; further discards are only counted");
+            ((LinkedMessage) _message).discarded();
+            return true;
+        }
+        if (_message.isResponsePending() && _message instanceof RequestBase) {
+            inbox.rejected();
+            ((RequestBase) _message).abort(new InboxOverflowException("inbox full"));
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Discards a signal passed while the inbox is full and the overflow policy is
+     * DROP_OLDEST_SIGNAL. The signals already in the inbox are discarded by the inbox itself
+     * as it is drained, but discarding the new ones as well keeps a producer which outpaces
+     * the reactor from growing the inbox without limit.
+     *
+     * @param _message The message being passed.
+     * @return True when the message has been discarded.
+     */
+    private boolean drop(final Message _message) {
+        if (_message instanceof LinkedMessage && ((LinkedMessage) _message).isSignal()) {
+            inbox.dropped();
+            ((LinkedMessage) _message).discarded();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Applies the BLOCK or NOTIFY_SENDER overflow policy when messages are passed
+     * while the inbox is full.
+     *
+     * @param _message A message being passed.
+     */
+    private void overflow(final Message _message) throws InterruptedException {
+        switch (inbox.getOverflowPolicy()) {
+            case BLOCK:
+                if (!(Thread.currentThread() instanceof PoolThread))
+                    inbox.awaitRoom();
+                break;
+            case NOTIFY_SENDER:
+                final ReactorBase sender = sender(_message);
+                if (sender != null && sender != this)
+                    sender.onTargetOverflow(this);
+                break;
+            default:
+        }
+    }
+
+    /**
+     * Returns the reactor passing a message. A request knows its source reactor, whatever
+     * the kind of thread that reactor runs on. Otherwise, as for an event, the sender is only
+     * known when it is the reactor running on the current pool thread.
+     *
+     * @param _message A message being passed.
+     * @return The reactor passing the message, or null.
+     */
+    private ReactorBase sender(final Message _message) {
+        if (_message instanceof RequestBase && _message.isResponsePending()) {
+            final Reactor source = ((RequestBase) _message).getSourceReactor();
+            if (source != null)
+                return (ReactorBase) source;
+        }
+        final Thread currentThread = Thread.currentThread();
+        if (currentThread instanceof PoolThread)
+            return ((PoolThread) currentThread).getCurrentReactor();
+        return null;
+    }
+
     /**
      * Called after adding some message(s) to the inbox.
      */
@@ -226,7 +569,13 @@ abstract public class ReactorBase implements Reactor, MessageSource, AutoCloseab
      * @param _message The message to be processed.
      */
     protected void processMessage(final Message _message) {
+        if (metrics == null) {
+            _message.eval();
+            return;
+        }
+        final long start = System.nanoTime();
         _message.eval();
+        metrics.messageProcessed(System.nanoTime() - start);
     }
 
     /**
@@ -259,6 +608,15 @@ abstract public class ReactorBase implements Reactor, MessageSource, AutoCloseab
         inbox.requestBegin();
     }
 
+    /**
+     * Signals the start of the given request.
+     *
+     * @param _request The request being started.
+     */
+    public void requestBegin(final Message _request) {
+        inbox.requestBegin(_request);
+    }
+
     /**
      * Signals that a request has completed.
      */
@@ -266,6 +624,15 @@ abstract public class ReactorBase implements Reactor, MessageSource, AutoCloseab
         inbox.requestEnd();
     }
 
+    /**
+     * Signals that the given request has completed.
+     *
+     * @param _request The request which has completed.
+     */
+    public void requestEnd(final Message _request) {
+        inbox.requestEnd(_request);
+    }
+
     /**
      * Returns the atomic reference to the current thread.
      *
@@ -285,5 +652,92 @@ abstract public class ReactorBase implements Reactor, MessageSource, AutoCloseab
      */
     abstract public boolean isIdler();
 
+    /**
+     * Returns true when this reactor processes each request to completion before starting
+     * the next one, as an IsolationReactor does. The requests passed to such a reactor are
+     * isolated, and isolated requests can not be nested.
+     *
+     * @return True when the requests passed to this reactor are isolated.
+     */
+    public boolean isIsolating() {
+        return false;
+    }
+
+    /**
+     * The message held in the inbox for a coalescing key. When processed, it processes
+     * the latest message passed with that key. When discarded by a full inbox, the latest
+     * message is discarded with it, so that the next message passed with that key is
+     * again held in the inbox.
+     */
+    private static final class CoalescedMessage extends LinkedMessage {
+
+        /**
+         * The coalescing key.
+         */
+        private final Object key;
+
+        /**
+         * The latest messages by coalescing key.
+         */
+        private final ConcurrentHashMap<Object, Message> pending;
+
+        /**
+         * Create a CoalescedMessage.
+         *
+         * @param _key     The coalescing key.
+         * @param _pending The latest messages by coalescing key.
+         */
+        CoalescedMessage(final Object _key, final ConcurrentHashMap<Object, Message> _pending) {
+            key = _key;
+            pending = _pending;
+        }
+
+        @Override
+        public MessagePriority getPriority() {
+            final Message message = pending.get(key);
+            if (message instanceof LinkedMessage)
+                return ((LinkedMessage) message).getPriority();
+            return MessagePriority.NORMAL;
+        }
+
+        @Override
+        public boolean isForeign() {
+            return false;
+        }
+
+        @Override
+        public boolean isResponsePending() {
+            return false;
+        }
+
+        @Override
+        public boolean isSignal() {
+            return true;
+        }
 
+        @Override
+        public boolean isIsolated() {
+            return false;
+        }
+
+        @Override
+        public void eval() {
+            final Message message = pending.remove(key);
+            if (message != null)
+                message.eval();
+        }
+
+        @Override
+        protected void discarded() {
+            pending.remove(key);
+        }
+
+        @Override
+        public void processException(final Reactor _activeReactor, final Exception _e) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
 }
@@ -1,16 +1,25 @@
 package org.agilewiki.jactor2.core.reactors;
 
 import org.agilewiki.jactor2.core.facilities.Facility;
+import org.agilewiki.jactor2.core.messages.Message;
 
 import javax.swing.*;
 import java.awt.event.WindowEvent;
 import java.awt.event.WindowListener;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Messages are processed on Swing's event-dispatch thread when an blade uses
  * a SwingBoundReactor. This is critical, as so many Swing methods are
  * not thread-safe. Also, if each window has its own facility, then closing a
  * window and its facility will also terminate all activity related to that window.
+ * <p>
+ * At most one runnable is pending on the event-dispatch thread at a time, however many messages
+ * are passed, and each runnable processes a bounded batch of messages before handing the
+ * event-dispatch thread back to Swing. So a burst of updates is processed in a few batches,
+ * rather than flooding the event queue with a runnable per message, and the user interface
+ * stays responsive while the burst is being processed.
+ * </p>
  * <h3>Sample Usage:</h3>
  * <pre>
  * import org.agilewiki.jactor2.core.blades.BladeBase;
@@ -65,6 +74,32 @@ import java.awt.event.WindowListener;
  */
 public class SwingBoundReactor extends ThreadBoundReactor implements WindowListener {
 
+    /**
+     * The default maximum number of messages processed per runnable.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    /**
+     * True when a runnable has been passed to the event-dispatch thread and has not yet
+     * finished processing the messages.
+     */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    /**
+     * The maximum number of messages processed per runnable.
+     */
+    private volatile int batchSize = DEFAULT_BATCH_SIZE;
+
+    /**
+     * Processes a batch of messages on the event-dispatch thread.
+     */
+    private final Runnable batch = new Runnable() {
+        @Override
+        public void run() {
+            runBatch();
+        }
+    };
+
     /**
      * Create a targetReactor bound to the Swing event-dispatch thread.
      *
@@ -86,9 +121,71 @@ public class SwingBoundReactor extends ThreadBoundReactor implements WindowListe
         super(_facility, _initialOutboxSize, _initialLocalQueueSize, null);
     }
 
+    /**
+     * Returns the maximum number of messages processed each time the event-dispatch
+     * thread runs this targetReactor.
+     *
+     * @return The batch size.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Limits the number of messages processed each time the event-dispatch thread runs
+     * this targetReactor. The default is DEFAULT_BATCH_SIZE.
+     *
+     * @param _batchSize The batch size.
+     */
+    public void setBatchSize(final int _batchSize) {
+        if (_batchSize < 1)
+            throw new IllegalArgumentException("batch size must be at least 1");
+        batchSize = _batchSize;
+    }
+
     @Override
     protected void afterAdd() {
-        SwingUtilities.invokeLater(this);
+        if (scheduled.compareAndSet(false, true))
+            invokeLater(batch);
+    }
+
+    /**
+     * Passes a runnable to the event-dispatch thread.
+     * Tests override this method to run the reactor without a display.
+     *
+     * @param _runnable The runnable, which processes a batch of messages.
+     */
+    protected void invokeLater(final Runnable _runnable) {
+        SwingUtilities.invokeLater(_runnable);
+    }
+
+    /**
+     * Processes up to a batch of messages and flushes the buffered messages. When messages
+     * remain, another runnable is passed to the event-dispatch thread, so that Swing events
+     * queued in the meantime are processed first.
+     */
+    private void runBatch() {
+        final int limit = batchSize;
+        int count = 0;
+        while (count < limit) {
+            final Message message = inbox.poll();
+            if (message == null)
+                break;
+            processMessage(message);
+            count += 1;
+        }
+        try {
+            notBusy();
+        } catch (final Exception e) {
+            log.error("Exception thrown by flush", e);
+        }
+        if (hasWork()) {
+            invokeLater(batch);
+            return;
+        }
+        scheduled.set(false);
+        if (hasConcurrent() && scheduled.compareAndSet(false, true))
+            invokeLater(batch);
     }
 
     @Override
@@ -191,8 +191,12 @@ public class ThreadBoundReactor extends ReactorBase {
                 final ReactorBase target = entry.getKey();
                 final ArrayDeque<Message> messages = entry.getValue();
                 iter.remove();
+                if (metrics != null)
+                    metrics.batch(messages.size());
                 target.unbufferedAddMessages(messages);
             }
+            if (result && metrics != null)
+                metrics.flushed();
         }
         return result;
     }
@@ -1,7 +1,7 @@
 package org.agilewiki.jactor2.core.reactors;
 
 import org.agilewiki.jactor2.core.facilities.Facility;
-import org.agilewiki.jactor2.core.facilities.MigrationException;
+import org.agilewiki.jactor2.core.facilities.PoolThread;
 import org.agilewiki.jactor2.core.messages.Message;
 
 import java.util.ArrayDeque;
@@ -13,6 +13,9 @@ import java.util.concurrent.atomic.AtomicReference;
  * Common code for NonBlockingReactor and IsolationReactor, which are not bound to a thread.
  * <p>
  * UnboundReactor supports thread migration only between instances of this class.
+ * When the last block of buffered messages is passed to an idle UnboundReactor of the same
+ * facility, and the MigrationPolicy of this reactor agrees, the current thread goes on to run
+ * that reactor once this one returns from its run method.
  * </p>
  */
 abstract public class UnboundReactor extends ReactorBase {
@@ -27,6 +30,29 @@ abstract public class UnboundReactor extends ReactorBase {
      */
     private final Runnable onIdle;
 
+    /**
+     * The pool thread which last ran this targetReactor, or null.
+     * Thread managers may prefer to run a targetReactor on its home thread, where
+     * its state is more likely to still be in the cache.
+     */
+    private volatile PoolThread homeThread;
+
+    /**
+     * Decides when the thread migrates to another reactor.
+     */
+    private volatile MigrationPolicy migrationPolicy = MigrationPolicy.ALWAYS;
+
+    /**
+     * The reactor which the current thread is to run next, or null.
+     * Once assigned, run returns as soon as possible.
+     */
+    private UnboundReactor migrationTarget;
+
+    /**
+     * True when run returned because the run quota of the facility was reached.
+     */
+    private boolean yielded;
+
     /**
      * Create an unbound targetReactor.
      *
@@ -48,6 +74,85 @@ abstract public class UnboundReactor extends ReactorBase {
         return threadReference;
     }
 
+    /**
+     * Returns the pool thread which last ran this targetReactor.
+     *
+     * @return The home thread, or null.
+     */
+    public final PoolThread getHomeThread() {
+        return homeThread;
+    }
+
+    /**
+     * Assigns the pool thread which last ran this targetReactor.
+     *
+     * @param _homeThread The home thread.
+     */
+    public final void setHomeThread(final PoolThread _homeThread) {
+        homeThread = _homeThread;
+    }
+
+    /**
+     * Returns the policy which decides when the thread migrates to another reactor.
+     *
+     * @return The migration policy.
+     */
+    public final MigrationPolicy getMigrationPolicy() {
+        return migrationPolicy;
+    }
+
+    /**
+     * Assigns the policy which decides when the thread migrates to another reactor.
+     * The default is MigrationPolicy.ALWAYS.
+     *
+     * @param _migrationPolicy The migration policy.
+     */
+    public final void setMigrationPolicy(final MigrationPolicy _migrationPolicy) {
+        if (_migrationPolicy == null)
+            throw new NullPointerException("migrationPolicy");
+        migrationPolicy = _migrationPolicy;
+    }
+
+    /**
+     * Returns, and clears, the reactor which the current thread is to run next.
+     * (This method must be called by the thread which ran this reactor, after run returns.)
+     *
+     * @return The reactor to be run next, or null when there was no migration.
+     */
+    public final UnboundReactor takeMigrationTarget() {
+        final UnboundReactor target = migrationTarget;
+        migrationTarget = null;
+        return target;
+    }
+
+    /**
+     * Returns, and clears, the flag which shows that run returned because the run quota of
+     * the facility was reached, so that the thread manager can resubmit this reactor behind
+     * the reactors already waiting.
+     * (This method must be called by the thread which ran this reactor, after run returns.)
+     *
+     * @return True when this reactor yielded its thread.
+     */
+    public final boolean takeYielded() {
+        final boolean result = yielded;
+        yielded = false;
+        return result;
+    }
+
+    /**
+     * Reports the outcome of a migration away from this reactor to its metrics and its
+     * migration policy.
+     * (This method must be called by the thread which ran this reactor, before the
+     * reactor is released.)
+     *
+     * @param _abandoned True when this reactor still has messages to be processed.
+     */
+    public final void migrated(final boolean _abandoned) {
+        if (_abandoned && metrics != null)
+            metrics.abandoned();
+        migrationPolicy.migrated(this, _abandoned);
+    }
+
     @Override
     public boolean isIdler() {
         return onIdle != null;
@@ -57,6 +162,8 @@ abstract public class UnboundReactor extends ReactorBase {
     protected void notBusy() throws Exception {
         if (onIdle != null && inbox.isIdle()) {
             flush(true);
+            if (migrationTarget != null)
+                return;
             onIdle.run();
         }
         flush(true);
@@ -70,6 +177,8 @@ abstract public class UnboundReactor extends ReactorBase {
     @Override
     protected void afterAdd() throws Exception {
         if (threadReference.get() == null) {
+            if (metrics != null)
+                metrics.submitted();
             facility.submit(this);
         }
     }
@@ -93,45 +202,75 @@ abstract public class UnboundReactor extends ReactorBase {
                 iter.remove();
                 if (!iter.hasNext() &&
                         _mayMigrate &&
+                        migrationTarget == null &&
                         getFacility() == target.getFacility() &&
-                        target instanceof UnboundReactor) {
-                    if (!target.isRunning()) {
+                        target instanceof UnboundReactor &&
+                        !target.isRunning()) {
+                    UnboundReactor targ = (UnboundReactor) target;
+                    if (migrationPolicy.mayMigrate(this, targ, messages.size())) {
                         Thread currentThread = threadReference.get();
-                        UnboundReactor targ = (UnboundReactor) target;
                         AtomicReference<Thread> targetThreadReference = targ.getThreadReference();
                         if (targetThreadReference.get() == null &&
                                 targetThreadReference.compareAndSet(null, currentThread)) {
+                            if (metrics != null) {
+                                metrics.flushed();
+                                metrics.batch(messages.size());
+                                metrics.migrated();
+                            }
                             while (!messages.isEmpty()) {
                                 Message m = messages.poll();
                                 targ.unbufferedAddMessage(m, true);
                             }
-                            throw new MigrationException(targ);
+                            migrationTarget = targ;
+                            return true;
                         }
-                    }
+                    } else if (metrics != null)
+                        metrics.declined();
                 }
+                if (metrics != null)
+                    metrics.batch(messages.size());
                 target.unbufferedAddMessages(messages);
             }
+            if (result && metrics != null)
+                metrics.flushed();
         }
         return result;
     }
 
     @Override
     public void run() {
+        final int messageQuota = facility.getRunMessageQuota();
+        final long timeQuota = facility.getRunTimeQuota();
+        final long startTime = timeQuota > 0 ? System.nanoTime() : 0;
+        int processed = 0;
         while (true) {
             final Message message = inbox.poll();
             if (message == null) {
                 try {
                     notBusy();
-                } catch (final MigrationException me) {
-                    throw me;
                 } catch (Exception e) {
                     log.error("Exception thrown by onIdle", e);
                 }
-                if (hasWork())
+                if (migrationTarget == null && hasWork())
                     continue;
                 return;
             }
             processMessage(message);
+            if (migrationTarget != null)
+                return;
+            processed += 1;
+            if ((messageQuota > 0 && processed >= messageQuota) ||
+                    (timeQuota > 0 && System.nanoTime() - startTime >= timeQuota)) {
+                try {
+                    flush(false);
+                } catch (Exception e) {
+                    log.error("Exception thrown by flush", e);
+                }
+                yielded = true;
+                if (metrics != null)
+                    metrics.yielded();
+                return;
+            }
         }
     }
 }
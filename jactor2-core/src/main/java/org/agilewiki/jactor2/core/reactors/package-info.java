@@ -8,7 +8,8 @@
  * <h2>Creating a Reactor</h2>
  * <p>
  *     Blades can use 4 different classes of reactors: NonBlockingReactor, IsolationReactor,
- *     ThreadBoundReactor and SwingBoundReactor.
+ *     ThreadBoundReactor and SwingBoundReactor. In addition, a DedicatedThreadReactor owns a
+ *     thread of its own and never goes through the thread manager, for latency-critical blades.
  *     Reactor instances are easily created, with an instance of
  *     Facility as a required parameter. Additional parameters can be also be passed to the constructor
  *     for configuring a targetReactor:
@@ -24,7 +25,7 @@
  * </li>
  * <li>
  *     <b>Runnable onIdle</b> The onIdle.run method is called when the inbox becomes empty.
- *     (This parameter does not apply to ThreadBoundReactor nor to SwingBoundReactor.)
+ *     (This parameter does not apply to ThreadBoundReactor, SwingBoundReactor nor DedicatedThreadReactor.)
  * </li>
  * <li>
  *     <b>Runnable boundProcessor</b> The boundProcessor.run method is called when a
@@ -33,5 +34,42 @@
  *     the processing is bound to. (This parameter applies only to ThreadBoundReactor.)
  * </li>
  * </ul>
+ * <h2>Inboxes</h2>
+ * <p>
+ *     Messages passed from other threads are added to the concurrent queue of the inbox,
+ *     a ConcurrentLinkedQueue by default. A reactor can override createInbox to pass a
+ *     LinkedMessageQueue to the inbox constructor instead. The messages are then linked
+ *     through their own next field, so no queue node is allocated for each message.
+ * </p>
+ * <p>
+ *     Inboxes are unbounded by default. ReactorBase.setInboxCapacity bounds the inbox, with an
+ *     OverflowPolicy to block the sending thread, reject the message, drop the oldest signals
+ *     or notify the sending reactor. The depth of the inbox is available as a gauge once the inbox
+ *     is bounded or metrics are enabled. Unbounded inboxes do not count their messages.
+ * </p>
+ * <p>
+ *     Requests which have been cancelled, or whose deadline has passed, are discarded by the
+ *     inbox instead of being processed, and a RequestExpiredException is returned as their response.
+ * </p>
+ * <p>
+ *     A non-blocking reactor can use a PriorityInbox, which has a lane for each MessagePriority.
+ *     Responses, acknowledgements passed by a BoundResponseProcessor and facility property changes
+ *     are processed before new requests, and low priority bulk requests last, with a starvation
+ *     limit so that the lower lanes are still served when the higher lanes stay busy.
+ * </p>
+ * <p>
+ *     A KeyedIsolationReactor uses a KeyedIsolationInbox, which only holds back a request while
+ *     a prior request with the same isolation key is waiting for its response, so that requests
+ *     with different keys are pipelined.
+ * </p>
+ * <h2>Thread Migration</h2>
+ * <p>
+ *     When a non-blocking or isolation reactor passes its last block of buffered messages to an
+ *     idle reactor of the same facility, the thread usually migrates with the messages. This is
+ *     decided by the MigrationPolicy of the reactor: ALWAYS (the default), NEVER, a
+ *     BatchSizeMigrationPolicy which only migrates with larger blocks, or an
+ *     AdaptiveMigrationPolicy which stops migrating when the reactor keeps being left with work
+ *     to do, as happens with a hub that fans requests out to many reactors.
+ * </p>
  */
 package org.agilewiki.jactor2.core.reactors;
\ No newline at end of file
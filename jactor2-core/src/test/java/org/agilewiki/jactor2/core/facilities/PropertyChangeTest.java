@@ -0,0 +1,65 @@
+package org.agilewiki.jactor2.core.facilities;
+
+import junit.framework.TestCase;
+import org.agilewiki.jactor2.core.blades.BladeBase;
+import org.agilewiki.jactor2.core.messages.SyncRequest;
+import org.agilewiki.jactor2.core.reactors.NonBlockingReactor;
+import org.agilewiki.jactor2.core.reactors.Reactor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Test code.
+ */
+public class PropertyChangeTest extends TestCase {
+
+    public void testPrefix() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            facility.putPropertySReq("db.url", "jdbc:x").call();
+            facility.putPropertySReq("ui.theme", "dark").call();
+            final Watcher all = new Watcher(new NonBlockingReactor(facility));
+            final Watcher db = new Watcher(new NonBlockingReactor(facility));
+            final Map<String, Object> allProperties = facility.subscribePropertyChangesSReq(all).call();
+            assertEquals("dark", allProperties.get("ui.theme"));
+            final Map<String, Object> dbProperties = facility.subscribePropertyChangesSReq(db, "db.").call();
+            assertEquals(1, dbProperties.size());
+            assertEquals("jdbc:x", dbProperties.get("db.url"));
+            assertNull(facility.subscribePropertyChangesSReq(db, "db.").call());
+            facility.putPropertySReq("ui.theme", "light").call();
+            facility.putPropertySReq("db.user", "sa").call();
+            assertEquals("[ui.theme, db.user]", all.changesSReq().call().toString());
+            assertEquals("[db.user]", db.changesSReq().call().toString());
+            assertTrue(facility.unsubscribePropertyChangesSReq(db, "db.").call());
+            facility.putPropertySReq("db.user", "admin").call();
+            assertEquals("[db.user]", db.changesSReq().call().toString());
+        } finally {
+            facility.close();
+        }
+    }
+
+    class Watcher extends BladeBase implements FacilityPropertyChangeSubscriber {
+        final List<String> changes = new ArrayList<String>();
+
+        Watcher(final Reactor _reactor) throws Exception {
+            initialize(_reactor);
+        }
+
+        @Override
+        public void propertyChange(final Facility _facility, final String _name,
+                                   final Object _oldValue, final Object _newValue) {
+            changes.add(_name);
+        }
+
+        SyncRequest<List<String>> changesSReq() {
+            return new SyncBladeRequest<List<String>>() {
+                @Override
+                protected List<String> processSyncRequest() throws Exception {
+                    return new ArrayList<String>(changes);
+                }
+            };
+        }
+    }
+}
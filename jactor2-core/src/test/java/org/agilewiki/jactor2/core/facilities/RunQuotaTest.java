@@ -0,0 +1,132 @@
+package org.agilewiki.jactor2.core.facilities;
+
+import junit.framework.TestCase;
+import org.agilewiki.jactor2.core.blades.BladeBase;
+import org.agilewiki.jactor2.core.messages.AsyncRequest;
+import org.agilewiki.jactor2.core.messages.SyncRequest;
+import org.agilewiki.jactor2.core.reactors.NonBlockingReactor;
+import org.agilewiki.jactor2.core.reactors.Reactor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test code.
+ */
+public class RunQuotaTest extends TestCase {
+
+    public void testMessageQuota() throws Exception {
+        final Facility facility = new Facility(1);
+        try {
+            facility.setRunMessageQuota(10);
+            assertEquals(10, facility.getRunMessageQuota());
+            assertEquals(10, seenByOther(facility, 1000, 0));
+        } finally {
+            facility.close();
+        }
+    }
+
+    public void testTimeQuota() throws Exception {
+        final Facility facility = new Facility(1);
+        try {
+            facility.setRunTimeQuota(5, TimeUnit.MILLISECONDS);
+            assertEquals(5000000, facility.getRunTimeQuota());
+            final int seen = seenByOther(facility, 20, 2);
+            assertTrue(seen > 0);
+            assertTrue(seen < 20);
+        } finally {
+            facility.close();
+        }
+    }
+
+    public void testNoQuota() throws Exception {
+        final Facility facility = new Facility(1);
+        try {
+            assertEquals(100, seenByOther(facility, 100, 0));
+        } finally {
+            facility.close();
+        }
+    }
+
+    /**
+     * Floods one reactor, with the flood being passed as a single block after a message
+     * has been passed to another reactor, and returns how many of the flood were processed
+     * before the message to the other reactor.
+     */
+    private int seenByOther(final Facility _facility, final int _count, final long _sleep)
+            throws Exception {
+        final AtomicInteger processed = new AtomicInteger();
+        final CountDownLatch hold = new CountDownLatch(1);
+        final Counter blocker = new Counter(new NonBlockingReactor(_facility), processed);
+        final Counter flooder = new Counter(new NonBlockingReactor(_facility), processed);
+        final Counter flooded = new Counter(new NonBlockingReactor(_facility), processed);
+        final Counter other = new Counter(new NonBlockingReactor(_facility), processed);
+        blocker.holdSReq(hold).signal();
+        flooder.floodAReq(flooded, _count, _sleep).signal();
+        final SyncRequest<Integer> seen = other.seenSReq();
+        final Thread releaser = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (final InterruptedException e) {
+                }
+                hold.countDown();
+            }
+        };
+        releaser.start();
+        return seen.call();
+    }
+
+    class Counter extends BladeBase {
+        private final AtomicInteger processed;
+
+        Counter(final Reactor _reactor, final AtomicInteger _processed) throws Exception {
+            initialize(_reactor);
+            processed = _processed;
+        }
+
+        SyncRequest<Void> holdSReq(final CountDownLatch _hold) {
+            return new SyncBladeRequest<Void>() {
+                @Override
+                protected Void processSyncRequest() throws Exception {
+                    _hold.await(10, TimeUnit.SECONDS);
+                    return null;
+                }
+            };
+        }
+
+        AsyncRequest<Void> floodAReq(final Counter _target, final int _count, final long _sleep) {
+            return new AsyncBladeRequest<Void>() {
+                @Override
+                protected void processAsyncRequest() throws Exception {
+                    for (int i = 0; i < _count; i++)
+                        send(_target.countSReq(_sleep), null);
+                    processAsyncResponse(null);
+                }
+            };
+        }
+
+        SyncRequest<Void> countSReq(final long _sleep) {
+            return new SyncBladeRequest<Void>() {
+                @Override
+                protected Void processSyncRequest() throws Exception {
+                    if (_sleep > 0)
+                        Thread.sleep(_sleep);
+                    processed.incrementAndGet();
+                    return null;
+                }
+            };
+        }
+
+        SyncRequest<Integer> seenSReq() {
+            return new SyncBladeRequest<Integer>() {
+                @Override
+                protected Integer processSyncRequest() throws Exception {
+                    return processed.get();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package org.agilewiki.jactor2.core.facilities.timings;
+
+import junit.framework.TestCase;
+import org.agilewiki.jactor2.core.blades.BladeBase;
+import org.agilewiki.jactor2.core.facilities.DefaultThreadFactory;
+import org.agilewiki.jactor2.core.facilities.Facility;
+import org.agilewiki.jactor2.core.facilities.IdleStrategy;
+import org.agilewiki.jactor2.core.facilities.ThreadManager;
+import org.agilewiki.jactor2.core.facilities.WorkStealingThreadManager;
+import org.agilewiki.jactor2.core.messages.AsyncRequest;
+import org.agilewiki.jactor2.core.messages.AsyncResponseProcessor;
+import org.agilewiki.jactor2.core.reactors.Inbox;
+import org.agilewiki.jactor2.core.reactors.NonBlockingReactor;
+import org.agilewiki.jactor2.core.reactors.Outbox;
+
+/**
+ * Compares the work stealing thread manager with and without affinity.
+ * Each pipeline passes a stream of requests through a chain of stages, and each stage
+ * updates an array large enough that its cost depends on whether the array is still in
+ * the cache of the thread that runs it.
+ */
+public class AffinityTimingsTest extends TestCase {
+    private static final int PIPELINES = 8;
+    private static final int STAGES = 8;
+    private static final int STATE_SIZE = 2048;
+    private static final int ROUNDS = 2000;
+
+    public void test() throws Exception {
+        int[] threadCounts = {4, 16};
+        for (int threadCount : threadCounts) {
+            time("no affinity", threadCount, false);
+            time("affinity", threadCount, true);
+        }
+    }
+
+    private void time(final String _name,
+                      final int _threadCount,
+                      final boolean _affinity) throws Exception {
+        final ThreadManager threadManager = new WorkStealingThreadManager(
+                _threadCount, new DefaultThreadFactory(), IdleStrategy.PARK, _affinity);
+        Facility facility = new Facility(
+                Inbox.DEFAULT_INITIAL_LOCAL_QUEUE_SIZE,
+                Outbox.DEFAULT_INITIAL_BUFFER_SIZE,
+                threadManager);
+        try {
+            Root root = new Root(facility);
+            root.runAReq().call();
+            long hits0 = threadManager.getAffinityHits();
+            long misses0 = threadManager.getAffinityMisses();
+            long t0 = System.nanoTime();
+            root.runAReq().call();
+            long t1 = System.nanoTime();
+            long hits = threadManager.getAffinityHits() - hits0;
+            long misses = threadManager.getAffinityMisses() - misses0;
+            long messages = 2L * PIPELINES * STAGES * ROUNDS;
+            long d = (t1 - t0) / 1000000L;
+            System.out.println(_name + ", threads = " + _threadCount +
+                    ", time in millis = " + d +
+                    ", messages/second = " + (d > 0 ? messages * 1000L / d : 0) +
+                    ", affinity hits = " + hits + ", misses = " + misses);
+        } finally {
+            facility.close();
+        }
+    }
+
+    class Root extends BladeBase {
+        private final Stage[] pipelines = new Stage[PIPELINES];
+
+        Root(final Facility _facility) throws Exception {
+            initialize(new NonBlockingReactor(_facility));
+            for (int i = 0; i < PIPELINES; i++) {
+                Stage next = null;
+                for (int j = 0; j < STAGES; j++) {
+                    next = new Stage(_facility, next);
+                }
+                pipelines[i] = next;
+            }
+        }
+
+        AsyncRequest<Void> runAReq() {
+            return new AsyncBladeRequest<Void>() {
+                final AsyncResponseProcessor<Void> dis = this;
+                int pending = PIPELINES;
+
+                @Override
+                protected void processAsyncRequest() throws Exception {
+                    for (final Stage first : pipelines) {
+                        send(new Driver(first).runAReq(), new AsyncResponseProcessor<Void>() {
+                            @Override
+                            public void processAsyncResponse(final Void _response) throws Exception {
+                                pending -= 1;
+                                if (pending == 0)
+                                    dis.processAsyncResponse(null);
+                            }
+                        });
+                    }
+                }
+            };
+        }
+    }
+
+    class Driver extends BladeBase {
+        private final Stage first;
+
+        Driver(final Stage _first) throws Exception {
+            first = _first;
+            initialize(new NonBlockingReactor(_first.getReactor().getFacility()));
+        }
+
+        AsyncRequest<Void> runAReq() {
+            return new AsyncBladeRequest<Void>() {
+                final AsyncResponseProcessor<Void> dis = this;
+                int round;
+
+                final AsyncResponseProcessor<Long> stageResponseProcessor =
+                        new AsyncResponseProcessor<Long>() {
+                            @Override
+                            public void processAsyncResponse(final Long _response) throws Exception {
+                                nextRound();
+                            }
+                        };
+
+                @Override
+                protected void processAsyncRequest() throws Exception {
+                    nextRound();
+                }
+
+                private void nextRound() throws Exception {
+                    if (round == ROUNDS) {
+                        dis.processAsyncResponse(null);
+                        return;
+                    }
+                    round += 1;
+                    send(first.processAReq(round), stageResponseProcessor);
+                }
+            };
+        }
+    }
+
+    class Stage extends BladeBase {
+        private final Stage next;
+        private final long[] state = new long[STATE_SIZE];
+
+        Stage(final Facility _facility, final Stage _next) throws Exception {
+            next = _next;
+            initialize(new NonBlockingReactor(_facility));
+        }
+
+        AsyncRequest<Long> processAReq(final long _value) {
+            return new AsyncBladeRequest<Long>() {
+                @Override
+                protected void processAsyncRequest() throws Exception {
+                    long total = 0;
+                    for (int i = 0; i < STATE_SIZE; i++) {
+                        state[i] += _value;
+                        total += state[i];
+                    }
+                    if (next == null) {
+                        processAsyncResponse(total);
+                        return;
+                    }
+                    send(next.processAReq(total), this);
+                }
+            };
+        }
+    }
+}
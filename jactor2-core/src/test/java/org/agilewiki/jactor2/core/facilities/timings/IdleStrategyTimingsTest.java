@@ -0,0 +1,105 @@
+package org.agilewiki.jactor2.core.facilities.timings;
+
+import junit.framework.TestCase;
+import org.agilewiki.jactor2.core.blades.BladeBase;
+import org.agilewiki.jactor2.core.facilities.DefaultThreadFactory;
+import org.agilewiki.jactor2.core.facilities.Facility;
+import org.agilewiki.jactor2.core.facilities.IdleStrategy;
+import org.agilewiki.jactor2.core.facilities.WorkStealingThreadManager;
+import org.agilewiki.jactor2.core.messages.AsyncRequest;
+import org.agilewiki.jactor2.core.messages.AsyncResponseProcessor;
+import org.agilewiki.jactor2.core.messages.SyncRequest;
+import org.agilewiki.jactor2.core.reactors.Inbox;
+import org.agilewiki.jactor2.core.reactors.NonBlockingReactor;
+import org.agilewiki.jactor2.core.reactors.Outbox;
+
+/**
+ * Measures the round-trip time of a request passed between two reactors
+ * on different facilities, with and without spinning before parking.
+ */
+public class IdleStrategyTimingsTest extends TestCase {
+    private static final int ROUND_TRIPS = 10000;
+
+    public void test() throws Exception {
+        time("park", IdleStrategy.PARK);
+        time("spin then yield then park", new IdleStrategy(10000, 100));
+    }
+
+    private void time(final String _name, final IdleStrategy _idleStrategy) throws Exception {
+        Facility pingFacility = createFacility(_idleStrategy);
+        Facility pongFacility = createFacility(_idleStrategy);
+        try {
+            Pong pong = new Pong(pongFacility);
+            Ping ping = new Ping(pingFacility, pong);
+            ping.pingAReq(ROUND_TRIPS).call();
+            long t0 = System.nanoTime();
+            ping.pingAReq(ROUND_TRIPS).call();
+            long t1 = System.nanoTime();
+            System.out.println(_name + ", round trips = " + ROUND_TRIPS +
+                    ", mean round-trip time (microseconds) = " + (t1 - t0) / 1000L / ROUND_TRIPS);
+        } finally {
+            pingFacility.close();
+            pongFacility.close();
+        }
+    }
+
+    private Facility createFacility(final IdleStrategy _idleStrategy) throws Exception {
+        return new Facility(
+                Inbox.DEFAULT_INITIAL_LOCAL_QUEUE_SIZE,
+                Outbox.DEFAULT_INITIAL_BUFFER_SIZE,
+                new WorkStealingThreadManager(2, new DefaultThreadFactory(), _idleStrategy));
+    }
+
+    class Ping extends BladeBase {
+        private final Pong pong;
+
+        Ping(final Facility _facility, final Pong _pong) throws Exception {
+            initialize(new NonBlockingReactor(_facility));
+            pong = _pong;
+        }
+
+        AsyncRequest<Void> pingAReq(final int _count) {
+            return new AsyncBladeRequest<Void>() {
+                final AsyncResponseProcessor<Void> dis = this;
+                int remaining = _count;
+
+                final AsyncResponseProcessor<Integer> pongResponseProcessor =
+                        new AsyncResponseProcessor<Integer>() {
+                            @Override
+                            public void processAsyncResponse(final Integer _response) throws Exception {
+                                next();
+                            }
+                        };
+
+                @Override
+                protected void processAsyncRequest() throws Exception {
+                    next();
+                }
+
+                private void next() throws Exception {
+                    if (remaining == 0) {
+                        dis.processAsyncResponse(null);
+                        return;
+                    }
+                    remaining -= 1;
+                    send(pong.pongSReq(remaining), pongResponseProcessor);
+                }
+            };
+        }
+    }
+
+    class Pong extends BladeBase {
+        Pong(final Facility _facility) throws Exception {
+            initialize(new NonBlockingReactor(_facility));
+        }
+
+        SyncRequest<Integer> pongSReq(final int _value) {
+            return new SyncBladeRequest<Integer>() {
+                @Override
+                protected Integer processSyncRequest() throws Exception {
+                    return _value;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package org.agilewiki.jactor2.core.facilities.timings;
+
+import junit.framework.TestCase;
+import org.agilewiki.jactor2.core.blades.BladeBase;
+import org.agilewiki.jactor2.core.facilities.DefaultThreadFactory;
+import org.agilewiki.jactor2.core.facilities.Facility;
+import org.agilewiki.jactor2.core.facilities.SharedQueueThreadManager;
+import org.agilewiki.jactor2.core.facilities.ThreadManager;
+import org.agilewiki.jactor2.core.facilities.WorkStealingThreadManager;
+import org.agilewiki.jactor2.core.messages.AsyncRequest;
+import org.agilewiki.jactor2.core.messages.AsyncResponseProcessor;
+import org.agilewiki.jactor2.core.messages.SyncRequest;
+import org.agilewiki.jactor2.core.reactors.Inbox;
+import org.agilewiki.jactor2.core.reactors.NonBlockingReactor;
+import org.agilewiki.jactor2.core.reactors.Outbox;
+
+/**
+ * Compares the throughput of the thread managers.
+ * Each of the drivers repeatedly sends a request to each of its workers and waits
+ * for all the responses before starting the next round.
+ */
+public class ThreadManagerTimingsTest extends TestCase {
+    private static final int DRIVERS = 64;
+    private static final int WORKERS = 16;
+    private static final int ROUNDS = 200;
+
+    public void test() throws Exception {
+        int[] threadCounts = {1, 4, 16, 64};
+        for (int threadCount : threadCounts) {
+            time("shared queue", threadCount,
+                    new SharedQueueThreadManager(threadCount, new DefaultThreadFactory()));
+            time("work stealing", threadCount,
+                    new WorkStealingThreadManager(threadCount, new DefaultThreadFactory()));
+        }
+    }
+
+    private void time(final String _name,
+                      final int _threadCount,
+                      final ThreadManager _threadManager) throws Exception {
+        Facility facility = new Facility(
+                Inbox.DEFAULT_INITIAL_LOCAL_QUEUE_SIZE,
+                Outbox.DEFAULT_INITIAL_BUFFER_SIZE,
+                _threadManager);
+        try {
+            Root root = new Root(facility);
+            root.runAReq().call();
+            long t0 = System.nanoTime();
+            root.runAReq().call();
+            long t1 = System.nanoTime();
+            long messages = 2L * DRIVERS * WORKERS * ROUNDS;
+            long d = (t1 - t0) / 1000000L;
+            System.out.println(_name + ", threads = " + _threadCount +
+                    ", time in millis = " + d +
+                    ", messages/second = " + (d > 0 ? messages * 1000L / d : 0));
+        } finally {
+            facility.close();
+        }
+    }
+
+    class Root extends BladeBase {
+        private final Driver[] drivers = new Driver[DRIVERS];
+
+        Root(final Facility _facility) throws Exception {
+            initialize(new NonBlockingReactor(_facility));
+            for (int i = 0; i < DRIVERS; i++) {
+                drivers[i] = new Driver(_facility);
+            }
+        }
+
+        AsyncRequest<Void> runAReq() {
+            return new AsyncBladeRequest<Void>() {
+                final AsyncResponseProcessor<Void> dis = this;
+                int pending = DRIVERS;
+
+                @Override
+                protected void processAsyncRequest() throws Exception {
+                    for (Driver driver : drivers) {
+                        send(driver.runAReq(), new AsyncResponseProcessor<Void>() {
+                            @Override
+                            public void processAsyncResponse(final Void _response) throws Exception {
+                                pending -= 1;
+                                if (pending == 0)
+                                    dis.processAsyncResponse(null);
+                            }
+                        });
+                    }
+                }
+            };
+        }
+    }
+
+    class Driver extends BladeBase {
+        private final Worker[] workers = new Worker[WORKERS];
+
+        Driver(final Facility _facility) throws Exception {
+            initialize(new NonBlockingReactor(_facility));
+            for (int i = 0; i < WORKERS; i++) {
+                workers[i] = new Worker(_facility);
+            }
+        }
+
+        AsyncRequest<Void> runAReq() {
+            return new AsyncBladeRequest<Void>() {
+                final AsyncResponseProcessor<Void> dis = this;
+                int round;
+                int pending;
+
+                final AsyncResponseProcessor<Long> workerResponseProcessor =
+                        new AsyncResponseProcessor<Long>() {
+                            @Override
+                            public void processAsyncResponse(final Long _response) throws Exception {
+                                pending -= 1;
+                                if (pending == 0)
+                                    nextRound();
+                            }
+                        };
+
+                @Override
+                protected void processAsyncRequest() throws Exception {
+                    nextRound();
+                }
+
+                private void nextRound() throws Exception {
+                    if (round == ROUNDS) {
+                        dis.processAsyncResponse(null);
+                        return;
+                    }
+                    round += 1;
+                    pending = WORKERS;
+                    for (Worker worker : workers) {
+                        send(worker.workSReq(round), workerResponseProcessor);
+                    }
+                }
+            };
+        }
+    }
+
+    class Worker extends BladeBase {
+        private long total;
+
+        Worker(final Facility _facility) throws Exception {
+            initialize(new NonBlockingReactor(_facility));
+        }
+
+        SyncRequest<Long> workSReq(final int _round) {
+            return new SyncBladeRequest<Long>() {
+                @Override
+                protected Long processSyncRequest() throws Exception {
+                    total += _round;
+                    return total;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package org.agilewiki.jactor2.core.messages;
+
+import junit.framework.TestCase;
+import org.agilewiki.jactor2.core.blades.BladeBase;
+import org.agilewiki.jactor2.core.blades.ExceptionHandler;
+import org.agilewiki.jactor2.core.facilities.Facility;
+import org.agilewiki.jactor2.core.reactors.NonBlockingReactor;
+import org.agilewiki.jactor2.core.reactors.OverflowPolicy;
+import org.agilewiki.jactor2.core.reactors.Reactor;
+import org.agilewiki.jactor2.core.reactors.ReactorBase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test code.
+ */
+public class BoundResponseProcessorBatchTest extends TestCase {
+
+    public void testInline() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            final Acker acker = new Acker(new NonBlockingReactor(facility));
+            assertEquals("[x]", acker.ackInlineSReq("x").call().toString());
+        } finally {
+            facility.close();
+        }
+    }
+
+    public void testBatch() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            final NonBlockingReactor reactor = new NonBlockingReactor(facility);
+            reactor.setInboxCapacity(1000, OverflowPolicy.BLOCK);
+            final Acker acker = new Acker(reactor);
+            acker.holdSReq().signal();
+            assertTrue(acker.started.await(10, TimeUnit.SECONDS));
+            for (int i = 0; i < 100; i++)
+                acker.ack.processAsyncResponse(i % 10 == 0 ? null : "" + i);
+            assertEquals(1, reactor.getInboxDepth());
+            acker.release.countDown();
+            final List<String> acks = acker.acksSReq().call();
+            assertEquals(100, acks.size());
+            assertNull(acks.get(0));
+            assertEquals("1", acks.get(1));
+            assertEquals("99", acks.get(99));
+        } finally {
+            facility.close();
+        }
+    }
+
+    public void testInlineContext() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            final Acker acker = new Acker(new NonBlockingReactor(facility));
+            assertEquals("[true, true]", acker.contextSReq("boom").call().toString());
+            assertEquals("[handler, true, true]", acker.contextSReq("handler").call().toString());
+        } finally {
+            facility.close();
+        }
+    }
+
+    class Acker extends BladeBase {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> acks = new ArrayList<String>();
+        final BoundResponseProcessor<String> ack;
+
+        Acker(final Reactor _reactor) throws Exception {
+            initialize(_reactor);
+            ack = new BoundResponseProcessor<String>(this, new AsyncResponseProcessor<String>() {
+                @Override
+                public void processAsyncResponse(final String _response) throws Exception {
+                    if ("boom".equals(_response))
+                        throw new IllegalStateException(_response);
+                    if ("handler".equals(_response))
+                        getReactor().setExceptionHandler(new ExceptionHandler<Void>() {
+                            @Override
+                            public Void processException(final Exception _e) throws Exception {
+                                return null;
+                            }
+                        });
+                    acks.add(_response);
+                }
+            });
+        }
+
+        SyncRequest<List<String>> ackInlineSReq(final String _value) {
+            return new SyncBladeRequest<List<String>>() {
+                @Override
+                protected List<String> processSyncRequest() throws Exception {
+                    ack.processAsyncResponse(_value);
+                    return new ArrayList<String>(acks);
+                }
+            };
+        }
+
+        /**
+         * Returns the acks, followed by whether the exception handler and current message
+         * of the reactor were left as they were by the inline continuation.
+         */
+        SyncRequest<List<String>> contextSReq(final String _value) {
+            return new SyncBladeRequest<List<String>>() {
+                @Override
+                protected List<String> processSyncRequest() throws Exception {
+                    ack.processAsyncResponse(_value);
+                    final ReactorBase reactor = (ReactorBase) getReactor();
+                    final List<String> result = new ArrayList<String>(acks);
+                    result.add(String.valueOf(reactor.getExceptionHandler() == null));
+                    result.add(String.valueOf(reactor.getCurrentMessage() == this));
+                    return result;
+                }
+            };
+        }
+
+        SyncRequest<List<String>> acksSReq() {
+            return new SyncBladeRequest<List<String>>() {
+                @Override
+                protected List<String> processSyncRequest() throws Exception {
+                    return new ArrayList<String>(acks);
+                }
+            };
+        }
+
+        SyncRequest<Void> holdSReq() {
+            return new SyncBladeRequest<Void>() {
+                @Override
+                protected Void processSyncRequest() throws Exception {
+                    started.countDown();
+                    release.await(10, TimeUnit.SECONDS);
+                    return null;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package org.agilewiki.jactor2.core.messages;
+
+import junit.framework.TestCase;
+import org.agilewiki.jactor2.core.blades.BladeBase;
+import org.agilewiki.jactor2.core.facilities.Facility;
+import org.agilewiki.jactor2.core.reactors.NonBlockingReactor;
+import org.agilewiki.jactor2.core.reactors.OverflowPolicy;
+import org.agilewiki.jactor2.core.reactors.Reactor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test code.
+ */
+public class CoalescingEventTest extends TestCase {
+
+    public void testSignal() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            final NonBlockingReactor reactor = new NonBlockingReactor(facility);
+            reactor.setInboxCapacity(1000, OverflowPolicy.BLOCK);
+            final Watcher watcher = new Watcher(reactor);
+            watcher.holdSReq().signal();
+            assertTrue(watcher.started.await(10, TimeUnit.SECONDS));
+            for (int i = 0; i < 500; i++) {
+                new Changed("a" + i).signal(watcher, "a");
+                new Changed("b" + i).signal(watcher, "b");
+            }
+            new Changed("c").signal(watcher);
+            assertEquals(3, reactor.getInboxDepth());
+            watcher.release.countDown();
+            assertEquals("[a499, b499, c]", watcher.seenSReq().call().toString());
+            assertEquals(998, reactor.getCoalescedCount());
+            new Changed("a500").signal(watcher, "a");
+            assertEquals("[a499, b499, c, a500]", watcher.seenSReq().call().toString());
+        } finally {
+            facility.close();
+        }
+    }
+
+    public void testBladesSharingReactor() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            final NonBlockingReactor reactor = new NonBlockingReactor(facility);
+            final Watcher first = new Watcher(reactor);
+            final Watcher second = new Watcher(reactor);
+            first.holdSReq().signal();
+            assertTrue(first.started.await(10, TimeUnit.SECONDS));
+            new Changed("a1").signal(first, "k");
+            new Changed("b1").signal(second, "k");
+            new Changed("a2").signal(first, "k");
+            first.release.countDown();
+            assertEquals("[a2]", first.seenSReq().call().toString());
+            assertEquals("[b1]", second.seenSReq().call().toString());
+            assertEquals(1, reactor.getCoalescedCount());
+        } finally {
+            facility.close();
+        }
+    }
+
+    public void testEventBus() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            final EventBus<Watcher> eventBus = new EventBus<Watcher>(new NonBlockingReactor(facility));
+            final Watcher slow = new Watcher(new NonBlockingReactor(facility));
+            final Watcher other = new Watcher(new NonBlockingReactor(facility));
+            eventBus.subscribeSReq(slow).call();
+            eventBus.subscribeSReq(other, "stock.").call();
+            slow.holdSReq().signal();
+            assertTrue(slow.started.await(10, TimeUnit.SECONDS));
+            for (int i = 0; i < 100; i++)
+                eventBus.publishCoalescedSReq(new Changed("s" + i), "stock.x", "stock.x").call();
+            slow.release.countDown();
+            assertEquals("[s99]", slow.seenSReq().call().toString());
+            final List<String> seen = other.seenSReq().call();
+            assertEquals("s99", seen.get(seen.size() - 1));
+        } finally {
+            facility.close();
+        }
+    }
+
+    public void testBoundedInbox() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            final NonBlockingReactor reactor = new NonBlockingReactor(facility);
+            reactor.setInboxCapacity(2, OverflowPolicy.REJECT);
+            final Watcher watcher = new Watcher(reactor);
+            watcher.holdSReq().signal();
+            assertTrue(watcher.started.await(10, TimeUnit.SECONDS));
+            new Changed("x").signal(watcher);
+            new Changed("y").signal(watcher);
+            new Changed("k1").signal(watcher, "k");
+            assertEquals(1, reactor.getInboxRejectedCount());
+            watcher.release.countDown();
+            while (reactor.getInboxDepth() > 0)
+                Thread.sleep(1);
+            new Changed("k2").signal(watcher, "k");
+            assertEquals("[x, y, k2]", watcher.seenSReq().call().toString());
+
+            final NonBlockingReactor dropping = new NonBlockingReactor(facility);
+            dropping.setInboxCapacity(1, OverflowPolicy.DROP_OLDEST_SIGNAL);
+            final Watcher dropper = new Watcher(dropping);
+            dropper.holdSReq().signal();
+            assertTrue(dropper.started.await(10, TimeUnit.SECONDS));
+            new Changed("x").signal(dropper);
+            new Changed("k1").signal(dropper, "k");
+            new Changed("y").signal(dropper);
+            dropper.release.countDown();
+            while (dropping.getInboxDepth() > 0)
+                Thread.sleep(1);
+            assertEquals(2, dropping.getInboxDroppedCount());
+            new Changed("k2").signal(dropper, "k");
+            while (dropping.getInboxDepth() > 0)
+                Thread.sleep(1);
+            assertEquals("[x, k2]", dropper.seenSReq().call().toString());
+        } finally {
+            facility.close();
+        }
+    }
+
+    class Watcher extends BladeBase {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> seen = new ArrayList<String>();
+
+        Watcher(final Reactor _reactor) throws Exception {
+            initialize(_reactor);
+        }
+
+        SyncRequest<Void> holdSReq() {
+            return new SyncBladeRequest<Void>() {
+                @Override
+                protected Void processSyncRequest() throws Exception {
+                    started.countDown();
+                    release.await(10, TimeUnit.SECONDS);
+                    return null;
+                }
+            };
+        }
+
+        SyncRequest<List<String>> seenSReq() {
+            return new SyncBladeRequest<List<String>>() {
+                @Override
+                protected List<String> processSyncRequest() throws Exception {
+                    return new ArrayList<String>(seen);
+                }
+            };
+        }
+    }
+
+    class Changed extends Event<Watcher> {
+        final String state;
+
+        Changed(final String _state) {
+            state = _state;
+        }
+
+        @Override
+        protected void processEvent(final Watcher _watcher) throws Exception {
+            _watcher.seen.add(state);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package org.agilewiki.jactor2.core.messages;
+
+import junit.framework.TestCase;
+import org.agilewiki.jactor2.core.blades.BladeBase;
+import org.agilewiki.jactor2.core.facilities.Facility;
+import org.agilewiki.jactor2.core.reactors.NonBlockingReactor;
+import org.agilewiki.jactor2.core.reactors.OverflowPolicy;
+import org.agilewiki.jactor2.core.reactors.Reactor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Test code.
+ */
+public class DeadlineTest extends TestCase {
+
+    public void testDeadline() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            final NonBlockingReactor reactor = new NonBlockingReactor(facility);
+            final Worker worker = new Worker(reactor);
+            worker.holdSReq().signal();
+            assertTrue(worker.started.await(10, TimeUnit.SECONDS));
+            final SyncRequest<Integer> late = worker.countSReq();
+            late.setDeadline(System.currentTimeMillis() + 10);
+            final Integer[] result = new Integer[1];
+            final Exception[] exception = new Exception[1];
+            final Thread caller = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        result[0] = late.call();
+                    } catch (final Exception e) {
+                        exception[0] = e;
+                    }
+                }
+            };
+            caller.start();
+            Thread.sleep(50);
+            worker.release.countDown();
+            caller.join(10000);
+            assertNull(result[0]);
+            assertTrue(exception[0] instanceof RequestExpiredException);
+            assertEquals(1, (int) worker.countSReq().call());
+            assertEquals(1, reactor.getInboxExpiredCount());
+        } finally {
+            facility.close();
+        }
+    }
+
+    public void testCallTimeout() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            final NonBlockingReactor reactor = new NonBlockingReactor(facility);
+            final Worker worker = new Worker(reactor);
+            worker.holdSReq().signal();
+            assertTrue(worker.started.await(10, TimeUnit.SECONDS));
+            try {
+                worker.countSReq().call(10, TimeUnit.MILLISECONDS);
+                fail();
+            } catch (final TimeoutException e) {
+            }
+            worker.release.countDown();
+            assertEquals(1, (int) worker.countSReq().call(10, TimeUnit.SECONDS));
+            assertEquals(1, reactor.getInboxExpiredCount());
+        } finally {
+            facility.close();
+        }
+    }
+
+    public void testCancelPropagates() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            final NonBlockingReactor workerReactor = new NonBlockingReactor(facility);
+            workerReactor.setInboxCapacity(1000, OverflowPolicy.BLOCK);
+            final Worker worker = new Worker(workerReactor);
+            final Forwarder forwarder = new Forwarder(new NonBlockingReactor(facility));
+            worker.holdSReq().signal();
+            assertTrue(worker.started.await(10, TimeUnit.SECONDS));
+            final AsyncRequest<Integer> parent = forwarder.forwardAReq(worker);
+            final Exception[] exception = new Exception[1];
+            final Thread caller = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        parent.call();
+                    } catch (final Exception e) {
+                        exception[0] = e;
+                    }
+                }
+            };
+            caller.start();
+            while (workerReactor.getInboxDepth() < 1)
+                Thread.sleep(1);
+            parent.cancel();
+            worker.release.countDown();
+            caller.join(10000);
+            assertTrue(exception[0] instanceof RequestExpiredException);
+            assertEquals(0, worker.count);
+            assertEquals(1, workerReactor.getInboxExpiredCount());
+        } finally {
+            facility.close();
+        }
+    }
+
+    public void testDeadlineInherited() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            final Worker worker = new Worker(new NonBlockingReactor(facility));
+            final Forwarder forwarder = new Forwarder(new NonBlockingReactor(facility));
+            final long deadline = System.currentTimeMillis() + 10000;
+            final AsyncRequest<Integer> parent = forwarder.forwardAReq(worker);
+            parent.setDeadline(deadline);
+            parent.call();
+            assertEquals(deadline, forwarder.childDeadline);
+        } finally {
+            facility.close();
+        }
+    }
+
+    class Worker extends BladeBase {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        int count;
+
+        Worker(final Reactor _reactor) throws Exception {
+            initialize(_reactor);
+        }
+
+        SyncRequest<Void> holdSReq() {
+            return new SyncBladeRequest<Void>() {
+                @Override
+                protected Void processSyncRequest() throws Exception {
+                    started.countDown();
+                    release.await(10, TimeUnit.SECONDS);
+                    return null;
+                }
+            };
+        }
+
+        SyncRequest<Integer> countSReq() {
+            return new SyncBladeRequest<Integer>() {
+                @Override
+                protected Integer processSyncRequest() throws Exception {
+                    count += 1;
+                    return count;
+                }
+            };
+        }
+    }
+
+    class Forwarder extends BladeBase {
+        long childDeadline;
+
+        Forwarder(final Reactor _reactor) throws Exception {
+            initialize(_reactor);
+        }
+
+        AsyncRequest<Integer> forwardAReq(final Worker _worker) {
+            return new AsyncBladeRequest<Integer>() {
+                @Override
+                protected void processAsyncRequest() throws Exception {
+                    final SyncRequest<Integer> child = _worker.countSReq();
+                    send(child, this);
+                    childDeadline = child.getDeadline();
+                }
+            };
+        }
+    }
+}
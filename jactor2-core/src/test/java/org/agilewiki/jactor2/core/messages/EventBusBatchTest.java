@@ -0,0 +1,88 @@
+package org.agilewiki.jactor2.core.messages;
+
+import junit.framework.TestCase;
+import org.agilewiki.jactor2.core.blades.BladeBase;
+import org.agilewiki.jactor2.core.facilities.Facility;
+import org.agilewiki.jactor2.core.reactors.NonBlockingReactor;
+import org.agilewiki.jactor2.core.reactors.Reactor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test code.
+ */
+public class EventBusBatchTest extends TestCase {
+
+    public void testBatches() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            final EventBus<Counter> eventBus = new EventBus<Counter>(new NonBlockingReactor(facility));
+            final Reactor[] reactors = new Reactor[3];
+            for (int i = 0; i < reactors.length; i++)
+                reactors[i] = new NonBlockingReactor(facility);
+            final Counter[] counters = new Counter[100];
+            for (int i = 0; i < counters.length; i++) {
+                counters[i] = new Counter(reactors[i % reactors.length]);
+                assertTrue(eventBus.subscribeSReq(counters[i]).call());
+            }
+            assertFalse(eventBus.subscribeSReq(counters[0]).call());
+            assertEquals(100, eventBus.getSubscriberCount());
+            assertEquals(3, eventBus.getReactorCount());
+
+            CountDownLatch done = new CountDownLatch(100);
+            eventBus.publishSReq(new Increment(done, counters[50])).call();
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            for (int i = 0; i < counters.length; i++)
+                assertEquals(i == 50 ? 0 : 1, counters[i].count);
+
+            assertTrue(eventBus.unsubscribeSReq(counters[1]).call());
+            assertFalse(eventBus.unsubscribeSReq(counters[1]).call());
+            for (int i = 2; i < counters.length; i += 3)
+                assertTrue(eventBus.unsubscribeSReq(counters[i]).call());
+            assertEquals(66, eventBus.getSubscriberCount());
+            assertEquals(2, eventBus.getReactorCount());
+            done = new CountDownLatch(66);
+            eventBus.publishSReq(new Increment(done, null)).call();
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            assertEquals(2, counters[0].count);
+            assertEquals(1, counters[1].count);
+            assertEquals(1, counters[2].count);
+            assertEquals(2, counters[4].count);
+        } finally {
+            facility.close();
+        }
+    }
+
+    class Counter extends BladeBase {
+        int count;
+
+        Counter(final Reactor _reactor) throws Exception {
+            initialize(_reactor);
+        }
+    }
+
+    /**
+     * Increments each counter, except for the one which fails.
+     */
+    class Increment extends Event<Counter> {
+        final CountDownLatch done;
+        final Counter failing;
+
+        Increment(final CountDownLatch _done, final Counter _failing) {
+            done = _done;
+            failing = _failing;
+        }
+
+        @Override
+        protected void processEvent(final Counter _counter) throws Exception {
+            try {
+                if (_counter == failing)
+                    throw new IllegalStateException();
+                _counter.count += 1;
+            } finally {
+                done.countDown();
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package org.agilewiki.jactor2.core.messages;
+
+import junit.framework.TestCase;
+import org.agilewiki.jactor2.core.blades.BladeBase;
+import org.agilewiki.jactor2.core.facilities.Facility;
+import org.agilewiki.jactor2.core.reactors.NonBlockingReactor;
+import org.agilewiki.jactor2.core.reactors.Reactor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test code.
+ */
+public class EventBusTopicTest extends TestCase {
+
+    public void testTopics() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            final EventBus<Recorder> eventBus = new EventBus<Recorder>(new NonBlockingReactor(facility));
+            final Recorder all = new Recorder(new NonBlockingReactor(facility));
+            final Recorder orders = new Recorder(new NonBlockingReactor(facility));
+            final Recorder order42 = new Recorder(new NonBlockingReactor(facility));
+            assertTrue(eventBus.subscribeSReq(all).call());
+            assertTrue(eventBus.subscribeSReq(orders, "order.").call());
+            assertFalse(eventBus.subscribeSReq(orders, "order.").call());
+            assertTrue(eventBus.subscribeSReq(orders, "order.4").call());
+            assertTrue(eventBus.subscribeKeySReq(order42, "order.42").call());
+            assertEquals(4, eventBus.getSubscriberCount());
+            assertEquals(1, eventBus.getReactorCount());
+            assertEquals(2, eventBus.getReactorCount("order.7"));
+            assertEquals(3, eventBus.getReactorCount("order.42"));
+            assertEquals(2, eventBus.getReactorCount("order.420"));
+
+            eventBus.publishSReq(new Record("a"), "order.42").call();
+            eventBus.publishSReq(new Record("b"), "order.7").call();
+            eventBus.publishSReq(new Record("c"), "invoice.1").call();
+            eventBus.publishSReq(new Record("d")).call();
+            assertEquals("[a, b, c, d]", all.recordedSReq().call().toString());
+            assertEquals("[a, b]", orders.recordedSReq().call().toString());
+            assertEquals("[a]", order42.recordedSReq().call().toString());
+
+            assertTrue(eventBus.unsubscribeSReq(orders, "order.").call());
+            assertTrue(eventBus.unsubscribeKeySReq(order42, "order.42").call());
+            assertFalse(eventBus.unsubscribeKeySReq(order42, "order.42").call());
+            assertEquals(2, eventBus.getSubscriberCount());
+            eventBus.publishSReq(new Record("e"), "order.7").call();
+            eventBus.publishSReq(new Record("f"), "order.42").call();
+            assertEquals("[a, b, c, d, e, f]", all.recordedSReq().call().toString());
+            assertEquals("[a, b, f]", orders.recordedSReq().call().toString());
+            assertEquals("[a]", order42.recordedSReq().call().toString());
+        } finally {
+            facility.close();
+        }
+    }
+
+    class Recorder extends BladeBase {
+        final List<String> recorded = new ArrayList<String>();
+
+        Recorder(final Reactor _reactor) throws Exception {
+            initialize(_reactor);
+        }
+
+        SyncRequest<List<String>> recordedSReq() {
+            return new SyncBladeRequest<List<String>>() {
+                @Override
+                protected List<String> processSyncRequest() throws Exception {
+                    return new ArrayList<String>(recorded);
+                }
+            };
+        }
+    }
+
+    class Record extends Event<Recorder> {
+        final String value;
+
+        Record(final String _value) {
+            value = _value;
+        }
+
+        @Override
+        protected void processEvent(final Recorder _recorder) throws Exception {
+            _recorder.recorded.add(value);
+        }
+    }
+}
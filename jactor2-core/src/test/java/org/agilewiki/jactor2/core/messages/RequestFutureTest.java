@@ -0,0 +1,156 @@
+package org.agilewiki.jactor2.core.messages;
+
+import junit.framework.TestCase;
+import org.agilewiki.jactor2.core.blades.BladeBase;
+import org.agilewiki.jactor2.core.facilities.Facility;
+import org.agilewiki.jactor2.core.reactors.NonBlockingReactor;
+import org.agilewiki.jactor2.core.reactors.Reactor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test code.
+ */
+public class RequestFutureTest extends TestCase {
+
+    static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(final Runnable _command) {
+            _command.run();
+        }
+    };
+
+    public void testGet() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            final Counter counter = new Counter(new NonBlockingReactor(facility));
+            final RequestFuture<Integer> future = counter.addSReq(3).callAsync();
+            assertEquals(3, (int) future.get(10, TimeUnit.SECONDS));
+            assertTrue(future.isDone());
+            assertFalse(future.isCancelled());
+            try {
+                counter.failSReq().callAsync().get();
+                fail();
+            } catch (final ExecutionException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+        } finally {
+            facility.close();
+        }
+    }
+
+    public void testListeners() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            final Counter counter = new Counter(new NonBlockingReactor(facility));
+            final int count = 10000;
+            final CountDownLatch latch = new CountDownLatch(count);
+            final AtomicInteger total = new AtomicInteger();
+            final List<RequestFuture<Integer>> futures = new ArrayList<RequestFuture<Integer>>();
+            for (int i = 0; i < count; i++) {
+                final RequestFuture<Integer> future = counter.addSReq(1).callAsync();
+                futures.add(future);
+                future.addListener(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            total.addAndGet(future.get());
+                        } catch (final Exception e) {
+                        }
+                        latch.countDown();
+                    }
+                }, DIRECT);
+            }
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+            assertEquals(count, counter.total);
+            assertEquals(count * (count + 1) / 2, total.get());
+            final boolean[] ran = new boolean[1];
+            futures.get(0).addListener(new Runnable() {
+                @Override
+                public void run() {
+                    ran[0] = true;
+                }
+            }, DIRECT);
+            assertTrue(ran[0]);
+        } finally {
+            facility.close();
+        }
+    }
+
+    public void testCancel() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            final NonBlockingReactor reactor = new NonBlockingReactor(facility);
+            final Counter counter = new Counter(reactor);
+            counter.holdSReq().signal();
+            assertTrue(counter.started.await(10, TimeUnit.SECONDS));
+            final RequestFuture<Integer> future = counter.addSReq(1).callAsync();
+            try {
+                future.get(10, TimeUnit.MILLISECONDS);
+                fail();
+            } catch (final TimeoutException e) {
+            }
+            assertTrue(future.cancel(false));
+            assertFalse(future.cancel(false));
+            assertTrue(future.isCancelled());
+            try {
+                future.get();
+                fail();
+            } catch (final CancellationException e) {
+            }
+            counter.release.countDown();
+            assertEquals(1, (int) counter.addSReq(1).callAsync().get());
+            assertEquals(1, reactor.getInboxExpiredCount());
+        } finally {
+            facility.close();
+        }
+    }
+
+    class Counter extends BladeBase {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        int total;
+
+        Counter(final Reactor _reactor) throws Exception {
+            initialize(_reactor);
+        }
+
+        SyncRequest<Integer> addSReq(final int _value) {
+            return new SyncBladeRequest<Integer>() {
+                @Override
+                protected Integer processSyncRequest() throws Exception {
+                    total += _value;
+                    return total;
+                }
+            };
+        }
+
+        SyncRequest<Integer> failSReq() {
+            return new SyncBladeRequest<Integer>() {
+                @Override
+                protected Integer processSyncRequest() throws Exception {
+                    throw new IllegalStateException();
+                }
+            };
+        }
+
+        SyncRequest<Void> holdSReq() {
+            return new SyncBladeRequest<Void>() {
+                @Override
+                protected Void processSyncRequest() throws Exception {
+                    started.countDown();
+                    release.await(10, TimeUnit.SECONDS);
+                    return null;
+                }
+            };
+        }
+    }
+}
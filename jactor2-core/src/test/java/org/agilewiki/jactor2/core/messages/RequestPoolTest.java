@@ -0,0 +1,279 @@
+package org.agilewiki.jactor2.core.messages;
+
+import junit.framework.TestCase;
+import org.agilewiki.jactor2.core.blades.BladeBase;
+import org.agilewiki.jactor2.core.blades.ExceptionHandler;
+import org.agilewiki.jactor2.core.facilities.Facility;
+import org.agilewiki.jactor2.core.reactors.NonBlockingReactor;
+import org.agilewiki.jactor2.core.reactors.Reactor;
+import org.agilewiki.jactor2.core.reactors.ThreadBoundReactor;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test code.
+ */
+public class RequestPoolTest extends TestCase {
+
+    public void testReuse() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            final Adder adder = new Adder(new NonBlockingReactor(facility));
+            final Driver driver = new Driver(new NonBlockingReactor(facility), adder);
+            assertEquals(5050, (int) driver.runAReq(100, 1).call());
+            assertEquals(1, driver.pool.getCreatedCount());
+            assertEquals(99, driver.pool.getReusedCount());
+            assertEquals(1, driver.pool.getIdleCount());
+            assertEquals(5050, (int) driver.runAReq(100, 10).call());
+            assertEquals(10, driver.pool.getCreatedCount());
+            assertEquals(10, driver.pool.getIdleCount());
+        } finally {
+            facility.close();
+        }
+    }
+
+    public void testException() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            final Adder adder = new Adder(new NonBlockingReactor(facility));
+            final Driver driver = new Driver(new NonBlockingReactor(facility), adder);
+            assertEquals(-1, (int) driver.runAReq(-1, 1).call());
+            assertEquals(1, driver.pool.getIdleCount());
+            assertEquals(3, (int) driver.runAReq(2, 1).call());
+            assertEquals(1, driver.pool.getCreatedCount());
+        } finally {
+            facility.close();
+        }
+    }
+
+    public void testThreadBoundSource() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            final Adder adder = new Adder(new NonBlockingReactor(facility));
+            final ThreadBoundReactor reactor = new ThreadBoundReactor(facility, new Runnable() {
+                @Override
+                public void run() {
+                }
+            });
+            final RequestPool<Adder.AddAReq> pool = new RequestPool<Adder.AddAReq>(reactor) {
+                @Override
+                protected Adder.AddAReq create() {
+                    return adder.new AddAReq();
+                }
+            };
+            assertNotNull(pool.acquire());
+            assertEquals(1, pool.getCreatedCount());
+        } finally {
+            facility.close();
+        }
+    }
+
+    public void testLateException() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            final Gate gate = new Gate(new NonBlockingReactor(facility));
+            final Relay relay = new Relay(new NonBlockingReactor(facility), gate);
+            final NonBlockingReactor driverReactor = new NonBlockingReactor(facility);
+            final RequestPool<Relay.RelayAReq> pool = new RequestPool<Relay.RelayAReq>(driverReactor) {
+                @Override
+                protected Relay.RelayAReq create() {
+                    return relay.new RelayAReq();
+                }
+            };
+            final Driver driver = new Driver(driverReactor, null);
+            assertEquals("early", driver.relayAReq(pool, "first").call());
+            assertTrue(gate.arrived.tryAcquire(10, TimeUnit.SECONDS));
+            final Future<String> second = driver.relayAReq(pool, "second").callAsync();
+            assertTrue(gate.arrived.tryAcquire(10, TimeUnit.SECONDS));
+            assertEquals(1, pool.getCreatedCount());
+            gate.releaseSReq("first", new IllegalStateException("late")).call();
+            gate.releaseSReq("second", null).call();
+            assertEquals("second", second.get(10, TimeUnit.SECONDS));
+        } finally {
+            facility.close();
+        }
+    }
+
+    class Adder extends BladeBase {
+        Adder(final Reactor _reactor) throws Exception {
+            initialize(_reactor);
+        }
+
+        class AddAReq extends RecyclableAsyncBladeRequest<Integer> {
+            int value;
+
+            @Override
+            protected void processAsyncRequest() throws Exception {
+                if (value < 0)
+                    throw new IllegalArgumentException();
+                processAsyncResponse(value);
+            }
+
+            @Override
+            protected void reset() {
+                super.reset();
+                value = 0;
+            }
+        }
+    }
+
+    class Driver extends BladeBase {
+        final RequestPool<Adder.AddAReq> pool;
+
+        Driver(final Reactor _reactor, final Adder _adder) throws Exception {
+            initialize(_reactor);
+            pool = new RequestPool<Adder.AddAReq>(_reactor) {
+                @Override
+                protected Adder.AddAReq create() {
+                    return _adder.new AddAReq();
+                }
+            };
+        }
+
+        /**
+         * Sends a RelayAReq taken from the pool and returns its response.
+         */
+        AsyncRequest<String> relayAReq(final RequestPool<Relay.RelayAReq> _pool, final String _name) {
+            return new AsyncBladeRequest<String>() {
+                @Override
+                protected void processAsyncRequest() throws Exception {
+                    final Relay.RelayAReq request = _pool.acquire();
+                    request.name = _name;
+                    send(request, this);
+                }
+            };
+        }
+
+        /**
+         * Sends the values 1 to _count, or -1 when _count is negative, a window at a time,
+         * and returns their sum, or -1 after an exception.
+         */
+        AsyncRequest<Integer> runAReq(final int _count, final int _window) {
+            return new AsyncBladeRequest<Integer>() {
+                final AsyncResponseProcessor<Integer> dis = this;
+                int sent;
+                int pending;
+                int sum;
+
+                final AsyncResponseProcessor<Integer> responseProcessor =
+                        new AsyncResponseProcessor<Integer>() {
+                            @Override
+                            public void processAsyncResponse(final Integer _response) throws Exception {
+                                sum += _response;
+                                pending -= 1;
+                                if (pending == 0)
+                                    nextWindow();
+                            }
+                        };
+
+                @Override
+                protected void processAsyncRequest() throws Exception {
+                    if (_count < 0) {
+                        setExceptionHandler(new ExceptionHandler<Integer>() {
+                            @Override
+                            public Integer processException(final Exception _exception) throws Exception {
+                                return -1;
+                            }
+                        });
+                        final Adder.AddAReq request = pool.acquire();
+                        request.value = _count;
+                        send(request, responseProcessor);
+                        return;
+                    }
+                    nextWindow();
+                }
+
+                private void nextWindow() throws Exception {
+                    if (sent == _count) {
+                        dis.processAsyncResponse(sum);
+                        return;
+                    }
+                    while (pending < _window && sent < _count) {
+                        sent += 1;
+                        pending += 1;
+                        final Adder.AddAReq request = pool.acquire();
+                        request.value = sent;
+                        send(request, responseProcessor);
+                    }
+                }
+            };
+        }
+    }
+
+    class Relay extends BladeBase {
+        private final Gate gate;
+
+        Relay(final Reactor _reactor, final Gate _gate) throws Exception {
+            initialize(_reactor);
+            gate = _gate;
+        }
+
+        /**
+         * Passes the name on to the gate. The request named first responds at once,
+         * without waiting for the gate.
+         */
+        class RelayAReq extends RecyclableAsyncBladeRequest<String> {
+            String name;
+
+            @Override
+            protected void processAsyncRequest() throws Exception {
+                if ("first".equals(name)) {
+                    send(gate.holdAReq(name), new AsyncResponseProcessor<String>() {
+                        @Override
+                        public void processAsyncResponse(final String _response) throws Exception {
+                        }
+                    });
+                    processAsyncResponse("early");
+                    return;
+                }
+                send(gate.holdAReq(name), this);
+            }
+
+            @Override
+            protected void reset() {
+                super.reset();
+                name = null;
+            }
+        }
+    }
+
+    class Gate extends BladeBase {
+        final Semaphore arrived = new Semaphore(0);
+        private final Map<String, AsyncRequest<String>> held = new HashMap<String, AsyncRequest<String>>();
+
+        Gate(final Reactor _reactor) throws Exception {
+            initialize(_reactor);
+        }
+
+        AsyncRequest<String> holdAReq(final String _name) {
+            return new AsyncBladeRequest<String>() {
+                @Override
+                protected void processAsyncRequest() throws Exception {
+                    held.put(_name, this);
+                    arrived.release();
+                }
+            };
+        }
+
+        /**
+         * Returns the name as the response to a held request, or fails it with the exception.
+         */
+        SyncRequest<Void> releaseSReq(final String _name, final Exception _exception) {
+            return new SyncBladeRequest<Void>() {
+                @Override
+                protected Void processSyncRequest() throws Exception {
+                    final AsyncRequest<String> request = held.remove(_name);
+                    if (_exception == null)
+                        request.processAsyncResponse(_name);
+                    else
+                        request.processAsyncException(_exception);
+                    return null;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package org.agilewiki.jactor2.core.messages;
+
+import junit.framework.TestCase;
+import org.agilewiki.jactor2.core.blades.BladeBase;
+import org.agilewiki.jactor2.core.facilities.Facility;
+import org.agilewiki.jactor2.core.reactors.IsolationReactor;
+import org.agilewiki.jactor2.core.reactors.NonBlockingReactor;
+import org.agilewiki.jactor2.core.reactors.Reactor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Test code.
+ */
+public class ScatterGatherTest extends TestCase {
+
+    public void testSum() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            final Gatherer gatherer = new Gatherer(new NonBlockingReactor(facility));
+            final List<AsyncRequest<Integer>> requests = new ArrayList<AsyncRequest<Integer>>();
+            for (int i = 1; i <= 10; i++)
+                requests.add(new Part(new NonBlockingReactor(facility)).valueAReq(i));
+            assertEquals(55, (int) gatherer.sumAReq(requests, 0).call());
+            assertEquals(0, (int) gatherer.sumAReq(new ArrayList<AsyncRequest<Integer>>(), 0).call());
+        } finally {
+            facility.close();
+        }
+    }
+
+    public void testShortCircuit() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            final Gatherer gatherer = new Gatherer(new NonBlockingReactor(facility));
+            final List<AsyncRequest<Integer>> requests = new ArrayList<AsyncRequest<Integer>>();
+            requests.add(new Part(new NonBlockingReactor(facility)).valueAReq(-1));
+            requests.add(new Part(new NonBlockingReactor(facility)).neverAReq());
+            assertEquals(-1, (int) gatherer.sumAReq(requests, 0).call());
+        } finally {
+            facility.close();
+        }
+    }
+
+    public void testTimeout() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            final Gatherer gatherer = new Gatherer(new NonBlockingReactor(facility));
+            List<AsyncRequest<Integer>> requests = new ArrayList<AsyncRequest<Integer>>();
+            requests.add(new Part(new NonBlockingReactor(facility)).valueAReq(3));
+            requests.add(new Part(new NonBlockingReactor(facility)).neverAReq());
+            assertEquals(3, (int) gatherer.sumAReq(requests, 50).call());
+            requests = new ArrayList<AsyncRequest<Integer>>();
+            requests.add(new Part(new NonBlockingReactor(facility)).neverAReq());
+            try {
+                gatherer.strictSumAReq(requests, 50).call();
+                fail();
+            } catch (final TimeoutException e) {
+            }
+        } finally {
+            facility.close();
+        }
+    }
+
+    public void testTimeoutOnIsolationReactor() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            final List<AsyncRequest<Integer>> requests = new ArrayList<AsyncRequest<Integer>>();
+            requests.add(new Part(new NonBlockingReactor(facility)).valueAReq(3));
+            requests.add(new Part(new NonBlockingReactor(facility)).neverAReq());
+            final ScatterGather<Integer, Integer> request =
+                    new ScatterGather<Integer, Integer>(new IsolationReactor(facility), requests, 0) {
+                        @Override
+                        protected Integer reduce(final Integer _result, final Integer _response) {
+                            return _result + _response;
+                        }
+                    };
+            assertEquals(3, (int) request.setTimeout(100).call(10, TimeUnit.SECONDS));
+            assertTrue(request.isTimedOut());
+        } finally {
+            facility.close();
+        }
+    }
+
+    public void testFailingPart() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            final Gatherer gatherer = new Gatherer(new NonBlockingReactor(facility));
+            final List<AsyncRequest<Integer>> requests = new ArrayList<AsyncRequest<Integer>>();
+            requests.add(new Part(new NonBlockingReactor(facility)).failAReq());
+            final AsyncRequest<Integer> never = new Part(new NonBlockingReactor(facility)).neverAReq();
+            requests.add(never);
+            try {
+                gatherer.sumAReq(requests, 10000).call();
+                fail();
+            } catch (final IllegalStateException e) {
+            }
+            assertTrue(never.isCancelled());
+        } finally {
+            facility.close();
+        }
+    }
+
+    class Part extends BladeBase {
+        Part(final Reactor _reactor) throws Exception {
+            initialize(_reactor);
+        }
+
+        AsyncRequest<Integer> valueAReq(final int _value) {
+            return new AsyncBladeRequest<Integer>() {
+                @Override
+                protected void processAsyncRequest() throws Exception {
+                    processAsyncResponse(_value);
+                }
+            };
+        }
+
+        AsyncRequest<Integer> failAReq() {
+            return new AsyncBladeRequest<Integer>() {
+                @Override
+                protected void processAsyncRequest() throws Exception {
+                    throw new IllegalStateException("failed");
+                }
+            };
+        }
+
+        AsyncRequest<Integer> neverAReq() {
+            return new AsyncBladeRequest<Integer>() {
+                @Override
+                protected void processAsyncRequest() throws Exception {
+                }
+            };
+        }
+    }
+
+    class Gatherer extends BladeBase {
+        Gatherer(final Reactor _reactor) throws Exception {
+            initialize(_reactor);
+        }
+
+        /**
+         * Sums the responses, returning -1 as soon as a response is negative.
+         */
+        AsyncRequest<Integer> sumAReq(final List<AsyncRequest<Integer>> _requests, final long _timeout) {
+            return new AsyncBladeRequest<Integer>() {
+                @Override
+                protected void processAsyncRequest() throws Exception {
+                    send(new ScatterGather<Integer, Integer>(getReactor(), _requests, 0) {
+                        @Override
+                        protected Integer reduce(final Integer _result, final Integer _response) {
+                            return _response < 0 ? -1 : _result + _response;
+                        }
+
+                        @Override
+                        protected boolean isComplete(final Integer _result) {
+                            return _result < 0;
+                        }
+                    }.setTimeout(_timeout), this);
+                }
+            };
+        }
+
+        /**
+         * Sums the responses, failing when the timeout expires.
+         */
+        AsyncRequest<Integer> strictSumAReq(final List<AsyncRequest<Integer>> _requests, final long _timeout) {
+            return new AsyncBladeRequest<Integer>() {
+                @Override
+                protected void processAsyncRequest() throws Exception {
+                    send(new ScatterGather<Integer, Integer>(getReactor(), _requests, 0) {
+                        @Override
+                        protected Integer reduce(final Integer _result, final Integer _response) {
+                            return _result + _response;
+                        }
+
+                        @Override
+                        protected Integer timedOut(final Integer _result) throws Exception {
+                            throw new TimeoutException();
+                        }
+                    }.setTimeout(_timeout), this);
+                }
+            };
+        }
+    }
+}
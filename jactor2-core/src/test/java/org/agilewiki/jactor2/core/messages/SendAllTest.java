@@ -0,0 +1,100 @@
+package org.agilewiki.jactor2.core.messages;
+
+import junit.framework.TestCase;
+import org.agilewiki.jactor2.core.blades.BladeBase;
+import org.agilewiki.jactor2.core.blades.ExceptionHandler;
+import org.agilewiki.jactor2.core.facilities.Facility;
+import org.agilewiki.jactor2.core.reactors.NonBlockingReactor;
+import org.agilewiki.jactor2.core.reactors.Reactor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test code.
+ */
+public class SendAllTest extends TestCase {
+
+    public void testSendAll() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            final Doubler[] doublers = new Doubler[3];
+            for (int i = 0; i < doublers.length; i++)
+                doublers[i] = new Doubler(new NonBlockingReactor(facility));
+            final FanOut fanOut = new FanOut(new NonBlockingReactor(facility));
+            final List<Integer> responses = fanOut.fanOutAReq(doublers, 300).call();
+            assertEquals(300, responses.size());
+            for (int i = 0; i < 300; i++)
+                assertEquals(2 * i, (int) responses.get(i));
+            assertEquals(0, fanOut.fanOutAReq(doublers, 0).call().size());
+        } finally {
+            facility.close();
+        }
+    }
+
+    public void testException() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            final Doubler[] doublers = {new Doubler(new NonBlockingReactor(facility))};
+            final FanOut fanOut = new FanOut(new NonBlockingReactor(facility));
+            assertNull(fanOut.fanOutAReq(doublers, -1).call());
+        } finally {
+            facility.close();
+        }
+    }
+
+    class Doubler extends BladeBase {
+        Doubler(final Reactor _reactor) throws Exception {
+            initialize(_reactor);
+        }
+
+        SyncRequest<Integer> doubleSReq(final int _value) {
+            return new SyncBladeRequest<Integer>() {
+                @Override
+                protected Integer processSyncRequest() throws Exception {
+                    if (_value < 0)
+                        throw new IllegalArgumentException();
+                    return 2 * _value;
+                }
+            };
+        }
+    }
+
+    class FanOut extends BladeBase {
+        FanOut(final Reactor _reactor) throws Exception {
+            initialize(_reactor);
+        }
+
+        /**
+         * Sends the values 0 to _count - 1 to the doublers, round robin, or sends -1
+         * and returns null when _count is negative.
+         */
+        AsyncRequest<List<Integer>> fanOutAReq(final Doubler[] _doublers, final int _count) {
+            return new AsyncBladeRequest<List<Integer>>() {
+                final AsyncResponseProcessor<List<Integer>> dis = this;
+
+                @Override
+                protected void processAsyncRequest() throws Exception {
+                    final List<SyncRequest<Integer>> requests = new ArrayList<SyncRequest<Integer>>();
+                    if (_count < 0) {
+                        setExceptionHandler(new ExceptionHandler<List<Integer>>() {
+                            @Override
+                            public List<Integer> processException(final Exception _exception) throws Exception {
+                                return null;
+                            }
+                        });
+                        requests.add(_doublers[0].doubleSReq(-1));
+                    }
+                    for (int i = 0; i < _count; i++)
+                        requests.add(_doublers[i % _doublers.length].doubleSReq(i));
+                    sendAll(requests, new AsyncResponseProcessor<List<Integer>>() {
+                        @Override
+                        public void processAsyncResponse(final List<Integer> _responses) throws Exception {
+                            dis.processAsyncResponse(_responses);
+                        }
+                    });
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package org.agilewiki.jactor2.core.messages.timings;
+
+import junit.framework.TestCase;
+import org.agilewiki.jactor2.core.blades.BladeBase;
+import org.agilewiki.jactor2.core.facilities.Facility;
+import org.agilewiki.jactor2.core.facilities.Plant;
+import org.agilewiki.jactor2.core.messages.AsyncRequest;
+import org.agilewiki.jactor2.core.messages.AsyncResponseProcessor;
+import org.agilewiki.jactor2.core.messages.SyncRequest;
+import org.agilewiki.jactor2.core.reactors.NonBlockingReactor;
+
+/**
+ * Compares the throughput of requests sent to a blade in the same facility
+ * with requests sent to a blade in another facility.
+ */
+public class ForeignSendTimingsTest extends TestCase {
+    private static final int BATCHES = 1000;
+    private static final int BATCH_SIZE = 100;
+
+    public void test() throws Exception {
+
+        //With foreign requests registered with the target facility as AutoCloseables:
+        //local requests/second = 1,388,888
+        //foreign requests/second = 209,205
+
+        //With foreign requests tracked by the target reactor:
+        //local requests/second = 2,439,024
+        //foreign requests/second = 1,030,927
+
+        Plant plant = new Plant();
+        try {
+            Facility foreignFacility = plant.createFacilitySReq("Foreign").call();
+            Sender sender = new Sender(plant);
+            Target localTarget = new Target(plant);
+            Target foreignTarget = new Target(foreignFacility);
+            sender.sendAReq(localTarget).call();
+            sender.sendAReq(foreignTarget).call();
+            time("local", sender, localTarget);
+            time("foreign", sender, foreignTarget);
+        } finally {
+            plant.close();
+        }
+    }
+
+    private void time(final String _name, final Sender _sender, final Target _target) throws Exception {
+        long t0 = System.nanoTime();
+        _sender.sendAReq(_target).call();
+        long t1 = System.nanoTime();
+        long requests = (long) BATCHES * BATCH_SIZE;
+        long d = (t1 - t0) / 1000000L;
+        System.out.println(_name + " requests = " + requests +
+                ", time in millis = " + d +
+                ", requests/second = " + (d > 0 ? requests * 1000L / d : 0));
+    }
+
+    class Sender extends BladeBase {
+        Sender(final Facility _facility) throws Exception {
+            initialize(new NonBlockingReactor(_facility));
+        }
+
+        AsyncRequest<Void> sendAReq(final Target _target) {
+            return new AsyncBladeRequest<Void>() {
+                final AsyncResponseProcessor<Void> dis = this;
+                int batch;
+                int pending;
+
+                final AsyncResponseProcessor<Integer> targetResponseProcessor =
+                        new AsyncResponseProcessor<Integer>() {
+                            @Override
+                            public void processAsyncResponse(final Integer _response) throws Exception {
+                                pending -= 1;
+                                if (pending == 0)
+                                    nextBatch();
+                            }
+                        };
+
+                @Override
+                protected void processAsyncRequest() throws Exception {
+                    nextBatch();
+                }
+
+                private void nextBatch() throws Exception {
+                    if (batch == BATCHES) {
+                        dis.processAsyncResponse(null);
+                        return;
+                    }
+                    batch += 1;
+                    pending = BATCH_SIZE;
+                    for (int i = 0; i < BATCH_SIZE; i++) {
+                        send(_target.echoSReq(i), targetResponseProcessor);
+                    }
+                }
+            };
+        }
+    }
+
+    class Target extends BladeBase {
+        Target(final Facility _facility) throws Exception {
+            initialize(new NonBlockingReactor(_facility));
+        }
+
+        SyncRequest<Integer> echoSReq(final int _value) {
+            return new SyncBladeRequest<Integer>() {
+                @Override
+                protected Integer processSyncRequest() throws Exception {
+                    return _value;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.agilewiki.jactor2.core.metrics;
+
+import junit.framework.TestCase;
+import org.agilewiki.jactor2.core.facilities.Facility;
+import org.agilewiki.jactor2.core.facilities.Plant;
+import org.agilewiki.jactor2.core.messages.Blade1;
+import org.agilewiki.jactor2.core.messages.Blade2;
+import org.agilewiki.jactor2.core.reactors.NonBlockingReactor;
+import org.agilewiki.jactor2.core.reactors.ReactorBase;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Test code. Run with -Djactor.metrics=true to also test the recording of metrics.
+ */
+public class MetricsTest extends TestCase {
+
+    public void testHistogram() throws Exception {
+        final Histogram histogram = new Histogram();
+        assertEquals(0, histogram.getPercentile(99));
+        for (int i = 0; i < 100; i++) {
+            histogram.record(i);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(4950, histogram.getSum());
+        assertEquals(99, histogram.getMax());
+        assertEquals(49.5, histogram.getMean());
+        assertEquals(63, histogram.getPercentile(50));
+        assertEquals(99, histogram.getPercentile(99));
+        final Histogram total = new Histogram();
+        total.add(histogram);
+        total.record(1000);
+        assertEquals(101, total.getCount());
+        assertEquals(1000, total.getMax());
+    }
+
+    public void testFacilityMetrics() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            final ReactorBase reactor = new NonBlockingReactor(facility);
+            final Blade1 blade1 = new Blade1(reactor);
+            final Blade2 blade2 = new Blade2(new NonBlockingReactor(facility));
+            for (int i = 0; i < 10; i++) {
+                assertEquals("Hello world!", blade2.hi2AReq(blade1).call());
+            }
+            final FacilityMetrics metrics = facility.getMetrics();
+            if (!Plant.METRICS) {
+                assertNull(metrics);
+                assertNull(reactor.getMetrics());
+                return;
+            }
+            assertEquals(10, reactor.getMetrics().getMessagesProcessed());
+            assertTrue(metrics.getMessagesProcessed() >= 30);
+            assertTrue(metrics.getRuns() > 0);
+            assertTrue(metrics.getFlushes() > 0);
+            assertTrue(metrics.getMigrations() > 0);
+            assertEquals(0, reactor.getInboxDepth());
+            final ObjectName name = facility.registerMetricsMBean();
+            assertEquals(metrics.getReactorCount(),
+                    ManagementFactory.getPlatformMBeanServer().getAttribute(name, "ReactorCount"));
+        } finally {
+            facility.close();
+        }
+    }
+
+    public void testClosedReactor() throws Exception {
+        if (!Plant.METRICS)
+            return;
+        final Facility facility = new Facility();
+        try {
+            final FacilityMetrics metrics = facility.getMetrics();
+            final Blade1 blade1 = new Blade1(new NonBlockingReactor(facility));
+            final ReactorBase reactor = new NonBlockingReactor(facility);
+            final Blade2 blade2 = new Blade2(reactor);
+            for (int i = 0; i < 10; i++) {
+                assertEquals("Hello world!", blade2.hi2AReq(blade1).call());
+            }
+            final int reactorCount = metrics.getReactorCount();
+            final long messagesProcessed = metrics.getMessagesProcessed();
+            final long runs = metrics.getRuns();
+            final long migrations = metrics.getMigrations();
+            final long flushes = metrics.getFlushes();
+            final long serviceTimeCount = metrics.getServiceTime().getCount();
+            assertTrue(reactor.getMetrics().getMessagesProcessed() > 0);
+            reactor.close();
+            assertEquals(reactorCount - 1, metrics.getReactorCount());
+            assertTrue(metrics.getMessagesProcessed() >= messagesProcessed);
+            assertTrue(metrics.getRuns() >= runs);
+            assertTrue(metrics.getMigrations() >= migrations);
+            assertTrue(metrics.getFlushes() >= flushes);
+            assertTrue(metrics.getServiceTime().getCount() >= serviceTimeCount);
+        } finally {
+            facility.close();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package org.agilewiki.jactor2.core.metrics;
+
+import junit.framework.TestCase;
+import org.agilewiki.jactor2.core.blades.BladeBase;
+import org.agilewiki.jactor2.core.facilities.Facility;
+import org.agilewiki.jactor2.core.messages.AsyncRequest;
+import org.agilewiki.jactor2.core.messages.Blade1;
+import org.agilewiki.jactor2.core.reactors.NonBlockingReactor;
+import org.agilewiki.jactor2.core.reactors.Reactor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test code. Run with -Djactor.trace.sampling=1 to also test the tracing of requests.
+ */
+public class RequestTracerTest extends TestCase {
+
+    public void testTrace() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            final Reactor reactor = new NonBlockingReactor(facility);
+            RequestTrace trace = null;
+            while (trace == null) {
+                trace = RequestTracer.sample(this, null, reactor);
+            }
+            assertTrue(trace.isOutstanding());
+            assertEquals(0, trace.getStartTime());
+            assertTrue(RequestTracer.getSlowestOutstanding(RequestTracer.RING_SIZE).contains(trace));
+            assertTrue(RequestTracer.dumpSlowestOutstanding(10).contains(getClass().getName()));
+            trace.started();
+            assertTrue(trace.getStartTime() >= trace.getEnqueueTime());
+            trace.ended("done");
+            assertFalse(trace.isOutstanding());
+            assertEquals("java.lang.String", trace.getResponseType());
+            assertFalse(RequestTracer.getSlowestOutstanding(RequestTracer.RING_SIZE).contains(trace));
+        } finally {
+            facility.close();
+        }
+    }
+
+    public void testOutstandingKept() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            final Reactor reactor = new NonBlockingReactor(facility);
+            RequestTrace stuck = null;
+            while (stuck == null) {
+                stuck = RequestTracer.sample(this, null, reactor);
+            }
+            int written = 0;
+            while (written < 2 * RequestTracer.RING_SIZE) {
+                final RequestTrace trace = RequestTracer.sample(this, null, reactor);
+                if (trace != null) {
+                    trace.ended(null);
+                    written += 1;
+                }
+            }
+            assertTrue(RequestTracer.getSlowestOutstanding(RequestTracer.RING_SIZE).contains(stuck));
+            stuck.ended(null);
+        } finally {
+            facility.close();
+        }
+    }
+
+    public void testShortLivedThreads() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            final Reactor reactor = new NonBlockingReactor(facility);
+            final RequestTrace[] sampled = new RequestTrace[1];
+            for (int i = 0; sampled[0] == null && i < 1024 * Math.max(1, RequestTracer.SAMPLING); i++) {
+                final Thread thread = new Thread() {
+                    @Override
+                    public void run() {
+                        sampled[0] = RequestTracer.sample(RequestTracerTest.this, null, reactor);
+                    }
+                };
+                thread.start();
+                thread.join();
+            }
+            assertNotNull(sampled[0]);
+            sampled[0].ended(null);
+        } finally {
+            facility.close();
+        }
+    }
+
+    public void testStuckRequest() throws Exception {
+        if (RequestTracer.SAMPLING != 1)
+            return;
+        final Facility facility = new Facility();
+        try {
+            final Blade1 blade1 = new Blade1(new NonBlockingReactor(facility));
+            assertEquals("Hello world!", blade1.hiSReq().call());
+            final Stuck stuck = new Stuck(facility);
+            stuck.neverAReq().signal();
+            Thread.sleep(10);
+            stuck.neverAReq().signal();
+            Thread.sleep(10);
+            final List<RequestTrace> slowest = new ArrayList<RequestTrace>();
+            for (final RequestTrace trace : RequestTracer.getSlowestOutstanding(RequestTracer.RING_SIZE)) {
+                if (trace.getTargetReactor() == stuck.getReactor())
+                    slowest.add(trace);
+            }
+            assertEquals(2, slowest.size());
+            assertTrue(slowest.get(0).getEnqueueTime() < slowest.get(1).getEnqueueTime());
+            assertTrue(slowest.get(0).getStartTime() > 0);
+            assertSame(stuck.getReactor(), slowest.get(0).getTargetReactor());
+            System.out.print(RequestTracer.dumpSlowestOutstanding(10));
+        } finally {
+            facility.close();
+        }
+    }
+
+    class Stuck extends BladeBase {
+        Stuck(final Facility _facility) throws Exception {
+            initialize(new NonBlockingReactor(_facility));
+        }
+
+        AsyncRequest<Void> neverAReq() {
+            return new AsyncBladeRequest<Void>() {
+                @Override
+                protected void processAsyncRequest() throws Exception {
+                }
+            };
+        }
+    }
+}
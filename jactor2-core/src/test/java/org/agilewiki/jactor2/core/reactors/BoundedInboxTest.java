@@ -0,0 +1,237 @@
+package org.agilewiki.jactor2.core.reactors;
+
+import junit.framework.TestCase;
+import org.agilewiki.jactor2.core.blades.BladeBase;
+import org.agilewiki.jactor2.core.facilities.Facility;
+import org.agilewiki.jactor2.core.facilities.Plant;
+import org.agilewiki.jactor2.core.messages.AsyncRequest;
+import org.agilewiki.jactor2.core.messages.AsyncResponseProcessor;
+import org.agilewiki.jactor2.core.messages.SyncRequest;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test code.
+ */
+public class BoundedInboxTest extends TestCase {
+
+    public void testReject() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            final Target target = new Target(new NonBlockingReactor(facility));
+            target.reactor.setInboxCapacity(2, OverflowPolicy.REJECT);
+            target.holdSReq().signal();
+            assertTrue(target.started.await(10, TimeUnit.SECONDS));
+            target.countSReq().signal();
+            target.countSReq().signal();
+            assertTrue(target.reactor.isInboxFull());
+            try {
+                target.countSReq().call();
+                fail();
+            } catch (final InboxOverflowException e) {
+            }
+            target.countSReq().signal();
+            assertEquals(2, target.reactor.getInboxRejectedCount());
+            target.release.countDown();
+            while (target.reactor.getInboxDepth() > 0)
+                Thread.sleep(1);
+            assertEquals(3, (int) target.countSReq().call());
+            assertEquals(0, target.reactor.getInboxDepth());
+            assertEquals(2, target.reactor.getInboxMaxDepth());
+        } finally {
+            facility.close();
+        }
+    }
+
+    public void testCounting() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            final Target target = new Target(new NonBlockingReactor(facility));
+            target.holdSReq().signal();
+            assertTrue(target.started.await(10, TimeUnit.SECONDS));
+            target.countSReq().signal();
+            target.countSReq().signal();
+            if (!Plant.METRICS)
+                assertEquals(0, target.reactor.getInboxDepth());
+            target.reactor.setInboxCapacity(10, OverflowPolicy.BLOCK);
+            target.countSReq().signal();
+            assertTrue(target.reactor.getInboxDepth() >= 1);
+            target.release.countDown();
+            assertEquals(4, (int) target.countSReq().call());
+            assertEquals(0, target.reactor.getInboxDepth());
+        } finally {
+            facility.close();
+        }
+    }
+
+    public void testBlock() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            final Target target = new Target(new IsolationReactor(facility));
+            target.reactor.setInboxCapacity(1, OverflowPolicy.BLOCK);
+            target.holdSReq().signal();
+            assertTrue(target.started.await(10, TimeUnit.SECONDS));
+            target.countSReq().signal();
+            final Integer[] result = new Integer[1];
+            final Thread caller = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        result[0] = target.countSReq().call();
+                    } catch (final Exception e) {
+                    }
+                }
+            };
+            caller.start();
+            caller.join(100);
+            assertTrue(caller.isAlive());
+            assertEquals(1, target.reactor.getInboxDepth());
+            target.release.countDown();
+            caller.join(10000);
+            assertEquals(2, (int) result[0]);
+            assertEquals(0, target.reactor.getInboxRejectedCount());
+        } finally {
+            facility.close();
+        }
+    }
+
+    public void testDropOldestSignal() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            final Target target = new Target(new NonBlockingReactor(facility));
+            target.reactor.setInboxCapacity(2, OverflowPolicy.DROP_OLDEST_SIGNAL);
+            target.holdSReq().signal();
+            assertTrue(target.started.await(10, TimeUnit.SECONDS));
+            for (int i = 0; i < 5; i++)
+                target.countSReq().signal();
+            assertEquals(2, target.reactor.getInboxDepth());
+            assertEquals(3, target.reactor.getInboxDroppedCount());
+            final Integer[] result = new Integer[1];
+            final Thread caller = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        result[0] = target.countSReq().call();
+                    } catch (final Exception e) {
+                    }
+                }
+            };
+            caller.start();
+            while (target.reactor.getInboxDepth() < 3)
+                Thread.sleep(1);
+            target.release.countDown();
+            caller.join(10000);
+            assertEquals(2, (int) result[0]);
+            assertEquals(4, target.reactor.getInboxDroppedCount());
+        } finally {
+            facility.close();
+        }
+    }
+
+    public void testNotifySender() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            final Target target = new Target(new NonBlockingReactor(facility));
+            target.reactor.setInboxCapacity(1, OverflowPolicy.NOTIFY_SENDER);
+            target.holdSReq().signal();
+            assertTrue(target.started.await(10, TimeUnit.SECONDS));
+            target.countSReq().signal();
+            final int[] overflows = new int[1];
+            final Sender sender = new Sender(new NonBlockingReactor(facility) {
+                @Override
+                protected void onTargetOverflow(final Reactor _target) {
+                    overflows[0] += 1;
+                    target.release.countDown();
+                }
+            });
+            assertEquals(4, (int) sender.sendAReq(target, 3).call());
+            assertEquals(1, overflows[0]);
+        } finally {
+            facility.close();
+        }
+    }
+
+    public void testNotifyDedicatedThreadSender() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            final Target target = new Target(new NonBlockingReactor(facility));
+            target.reactor.setInboxCapacity(1, OverflowPolicy.NOTIFY_SENDER);
+            target.holdSReq().signal();
+            assertTrue(target.started.await(10, TimeUnit.SECONDS));
+            target.countSReq().signal();
+            final int[] overflows = new int[1];
+            final Sender sender = new Sender(new DedicatedThreadReactor(facility) {
+                @Override
+                protected void onTargetOverflow(final Reactor _target) {
+                    overflows[0] += 1;
+                    target.release.countDown();
+                }
+            });
+            assertEquals(4, (int) sender.sendAReq(target, 3).call());
+            assertEquals(1, overflows[0]);
+        } finally {
+            facility.close();
+        }
+    }
+
+    class Target extends BladeBase {
+        final ReactorBase reactor;
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        int count;
+
+        Target(final ReactorBase _reactor) throws Exception {
+            reactor = _reactor;
+            initialize(_reactor);
+        }
+
+        SyncRequest<Void> holdSReq() {
+            return new SyncBladeRequest<Void>() {
+                @Override
+                protected Void processSyncRequest() throws Exception {
+                    started.countDown();
+                    release.await(10, TimeUnit.SECONDS);
+                    return null;
+                }
+            };
+        }
+
+        SyncRequest<Integer> countSReq() {
+            return new SyncBladeRequest<Integer>() {
+                @Override
+                protected Integer processSyncRequest() throws Exception {
+                    count += 1;
+                    return count;
+                }
+            };
+        }
+    }
+
+    class Sender extends BladeBase {
+        Sender(final Reactor _reactor) throws Exception {
+            initialize(_reactor);
+        }
+
+        AsyncRequest<Integer> sendAReq(final Target _target, final int _count) {
+            return new AsyncBladeRequest<Integer>() {
+                final AsyncResponseProcessor<Integer> dis = this;
+                int pending = _count;
+
+                @Override
+                protected void processAsyncRequest() throws Exception {
+                    for (int i = 0; i < _count; i++) {
+                        send(_target.countSReq(), new AsyncResponseProcessor<Integer>() {
+                            @Override
+                            public void processAsyncResponse(final Integer _response) throws Exception {
+                                pending -= 1;
+                                if (pending == 0)
+                                    dis.processAsyncResponse(_response);
+                            }
+                        });
+                    }
+                }
+            };
+        }
+    }
+}
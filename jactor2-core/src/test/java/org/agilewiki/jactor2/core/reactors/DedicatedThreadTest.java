@@ -0,0 +1,157 @@
+package org.agilewiki.jactor2.core.reactors;
+
+import junit.framework.TestCase;
+import org.agilewiki.jactor2.core.blades.BladeBase;
+import org.agilewiki.jactor2.core.facilities.Facility;
+import org.agilewiki.jactor2.core.messages.AsyncRequest;
+import org.agilewiki.jactor2.core.messages.AsyncResponseProcessor;
+import org.agilewiki.jactor2.core.messages.Message;
+import org.agilewiki.jactor2.core.messages.SyncRequest;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test code.
+ */
+public class DedicatedThreadTest extends TestCase {
+
+    public void testParking() throws Exception {
+        check(false);
+    }
+
+    public void testBusyPoll() throws Exception {
+        check(true);
+    }
+
+    private void check(final boolean _busyPoll) throws Exception {
+        final Facility facility = new Facility();
+        final DedicatedThreadReactor reactor = new DedicatedThreadReactor(facility, _busyPoll);
+        final Thread thread = reactor.getThreadReference().get();
+        try {
+            assertEquals(_busyPoll, reactor.isBusyPoll());
+            assertTrue(thread.isDaemon());
+            assertFalse(thread.isAlive());
+            final Gateway gateway = new Gateway(reactor);
+            assertSame(thread, gateway.threadSReq().call());
+            assertTrue(thread.getName().startsWith("jactor2-dedicated-"));
+            final Client client = new Client(new NonBlockingReactor(facility), gateway);
+            for (int i = 0; i < 100; i++)
+                assertSame(thread, client.roundTripAReq().call());
+            Thread.sleep(20);
+            assertSame(thread, client.roundTripAReq().call());
+        } finally {
+            facility.close();
+        }
+        thread.join(10000);
+        assertFalse(thread.isAlive());
+    }
+
+    public void testSubclassState() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            final Thread[] processedBy = new Thread[1];
+            final DedicatedThreadReactor reactor = new DedicatedThreadReactor(facility) {
+                final Thread[] processed = processedBy;
+
+                @Override
+                protected void processMessage(final Message _message) {
+                    processed[0] = Thread.currentThread();
+                    super.processMessage(_message);
+                }
+            };
+            final Gateway gateway = new Gateway(reactor);
+            assertSame(reactor.getThreadReference().get(), gateway.threadSReq().call());
+            assertSame(reactor.getThreadReference().get(), processedBy[0]);
+        } finally {
+            facility.close();
+        }
+    }
+
+    public void testCloseWhileSending() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            final DedicatedThreadReactor reactor = new DedicatedThreadReactor(facility);
+            final Thread thread = reactor.getThreadReference().get();
+            final Gateway gateway = new Gateway(reactor);
+            assertSame(thread, gateway.threadSReq().call());
+            final Semaphore inFlight = new Semaphore(100);
+            final Thread producer = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        while (inFlight.tryAcquire(1, TimeUnit.SECONDS))
+                            gateway.releaseSReq(inFlight).signal();
+                    } catch (final Exception e) {
+                    }
+                }
+            };
+            producer.setDaemon(true);
+            producer.start();
+            final long[] closeTime = new long[1];
+            final Thread closer = new Thread() {
+                @Override
+                public void run() {
+                    final long start = System.nanoTime();
+                    reactor.close();
+                    closeTime[0] = System.nanoTime() - start;
+                }
+            };
+            closer.start();
+            closer.join(10000);
+            assertFalse(closer.isAlive());
+            // The thread stops after the message it is processing, well before close gives up waiting.
+            assertTrue(closeTime[0] < TimeUnit.MILLISECONDS.toNanos(1000));
+            assertFalse(thread.isAlive());
+            producer.join(10000);
+        } finally {
+            facility.close();
+        }
+    }
+
+    class Gateway extends BladeBase {
+        Gateway(final Reactor _reactor) throws Exception {
+            initialize(_reactor);
+        }
+
+        SyncRequest<Void> releaseSReq(final Semaphore _semaphore) {
+            return new SyncBladeRequest<Void>() {
+                @Override
+                protected Void processSyncRequest() throws Exception {
+                    Thread.sleep(1);
+                    _semaphore.release();
+                    return null;
+                }
+            };
+        }
+
+        SyncRequest<Thread> threadSReq() {
+            return new SyncBladeRequest<Thread>() {
+                @Override
+                protected Thread processSyncRequest() throws Exception {
+                    return Thread.currentThread();
+                }
+            };
+        }
+    }
+
+    class Client extends BladeBase {
+        private final Gateway gateway;
+
+        Client(final Reactor _reactor, final Gateway _gateway) throws Exception {
+            initialize(_reactor);
+            gateway = _gateway;
+        }
+
+        AsyncRequest<Thread> roundTripAReq() {
+            return new AsyncBladeRequest<Thread>() {
+                final AsyncResponseProcessor<Thread> dis = this;
+
+                @Override
+                protected void processAsyncRequest() throws Exception {
+                    send(gateway.threadSReq(), dis);
+                }
+            };
+        }
+    }
+}
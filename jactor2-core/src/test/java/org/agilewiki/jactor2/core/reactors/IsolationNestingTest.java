@@ -0,0 +1,138 @@
+package org.agilewiki.jactor2.core.reactors;
+
+import junit.framework.TestCase;
+import org.agilewiki.jactor2.core.blades.BladeBase;
+import org.agilewiki.jactor2.core.facilities.Facility;
+import org.agilewiki.jactor2.core.messages.AsyncRequest;
+import org.agilewiki.jactor2.core.messages.SyncRequest;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test code.
+ */
+public class IsolationNestingTest extends TestCase {
+
+    public void testChain() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            final Counter counter = new Counter(new IsolationReactor(facility));
+            final Forwarder hop = new Forwarder(new NonBlockingReactor(facility));
+            final Forwarder isolated = new Forwarder(new IsolationReactor(facility));
+            final Forwarder driver = new Forwarder(new NonBlockingReactor(facility));
+            assertEquals(1, (int) driver.forwardAReq(isolated, hop, counter).call());
+        } finally {
+            facility.close();
+        }
+    }
+
+    public void testCycle() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            final IsolationReactor reactor = new IsolationReactor(facility);
+            final Counter counter = new Counter(reactor);
+            final Forwarder hop = new Forwarder(new NonBlockingReactor(facility));
+            final Forwarder isolated = new Forwarder(reactor);
+            final Forwarder driver = new Forwarder(new NonBlockingReactor(facility));
+            try {
+                driver.forwardAReq(isolated, hop, counter).call();
+                fail();
+            } catch (final UnsupportedOperationException e) {
+            }
+            assertEquals(0, counter.count);
+        } finally {
+            facility.close();
+        }
+    }
+
+    public void testSignalCycle() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            final IsolationReactor reactor = new IsolationReactor(facility);
+            final Counter counter = new Counter(reactor);
+            final Forwarder hop = new Forwarder(new NonBlockingReactor(facility));
+            final Forwarder isolated = new Forwarder(reactor);
+            final Forwarder driver = new Forwarder(new NonBlockingReactor(facility));
+            driver.signalAReq(isolated, hop, counter).call();
+            assertTrue(counter.incremented.tryAcquire(10, TimeUnit.SECONDS));
+            assertEquals(1, counter.count);
+        } finally {
+            facility.close();
+        }
+    }
+
+    class Counter extends BladeBase {
+        final Semaphore incremented = new Semaphore(0);
+        int count;
+
+        Counter(final Reactor _reactor) throws Exception {
+            initialize(_reactor);
+        }
+
+        SyncRequest<Integer> incrementSReq() {
+            return new SyncBladeRequest<Integer>() {
+                @Override
+                protected Integer processSyncRequest() throws Exception {
+                    count += 1;
+                    incremented.release();
+                    return count;
+                }
+            };
+        }
+    }
+
+    class Forwarder extends BladeBase {
+        Forwarder(final Reactor _reactor) throws Exception {
+            initialize(_reactor);
+        }
+
+        AsyncRequest<Integer> forwardAReq(final Counter _counter) {
+            return new AsyncBladeRequest<Integer>() {
+                @Override
+                protected void processAsyncRequest() throws Exception {
+                    send(_counter.incrementSReq(), this);
+                }
+            };
+        }
+
+        AsyncRequest<Integer> forwardAReq(final Forwarder _forwarder, final Counter _counter) {
+            return new AsyncBladeRequest<Integer>() {
+                @Override
+                protected void processAsyncRequest() throws Exception {
+                    send(_forwarder.forwardAReq(_counter), this);
+                }
+            };
+        }
+
+        AsyncRequest<Integer> forwardAReq(final Forwarder _forwarder, final Forwarder _hop,
+                                          final Counter _counter) {
+            return new AsyncBladeRequest<Integer>() {
+                @Override
+                protected void processAsyncRequest() throws Exception {
+                    send(_forwarder.forwardAReq(_hop, _counter), this);
+                }
+            };
+        }
+
+        AsyncRequest<Void> signalAReq(final Forwarder _forwarder, final Forwarder _hop,
+                                      final Counter _counter) {
+            return new AsyncBladeRequest<Void>() {
+                @Override
+                protected void processAsyncRequest() throws Exception {
+                    send(_forwarder.signalAReq(_hop, _counter), this);
+                }
+            };
+        }
+
+        AsyncRequest<Void> signalAReq(final Forwarder _forwarder, final Counter _counter) {
+            return new AsyncBladeRequest<Void>() {
+                @Override
+                protected void processAsyncRequest() throws Exception {
+                    send(_forwarder.forwardAReq(_counter), null);
+                    processAsyncResponse(null);
+                }
+            };
+        }
+    }
+}
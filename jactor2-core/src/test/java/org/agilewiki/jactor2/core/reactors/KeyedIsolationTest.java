@@ -0,0 +1,148 @@
+package org.agilewiki.jactor2.core.reactors;
+
+import junit.framework.TestCase;
+import org.agilewiki.jactor2.core.blades.BladeBase;
+import org.agilewiki.jactor2.core.facilities.Facility;
+import org.agilewiki.jactor2.core.messages.AsyncRequest;
+import org.agilewiki.jactor2.core.messages.AsyncResponseProcessor;
+import org.agilewiki.jactor2.core.messages.SyncRequest;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test code.
+ */
+public class KeyedIsolationTest extends TestCase {
+
+    public void testKeys() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            final Gate gate = new Gate(new NonBlockingReactor(facility));
+            final Relay relay = new Relay(new KeyedIsolationReactor(facility), gate);
+            final Future<String> a1 = relay.relayAReq("a1", "a").callAsync();
+            final Future<String> b1 = relay.relayAReq("b1", "b").callAsync();
+            final Future<String> a2 = relay.relayAReq("a2", "a").callAsync();
+            assertTrue(gate.arrived.tryAcquire(2, 10, TimeUnit.SECONDS));
+            assertEquals("[3, 1]", relay.statusSReq("z").call().toString());
+            assertEquals("[a1, b1]", gate.heldSReq().call().toString());
+            gate.releaseSReq("a1").call();
+            assertEquals("a1", a1.get(10, TimeUnit.SECONDS));
+            assertTrue(gate.arrived.tryAcquire(1, 10, TimeUnit.SECONDS));
+            assertEquals("[b1, a2]", gate.heldSReq().call().toString());
+            gate.releaseSReq("b1").call();
+            gate.releaseSReq("a2").call();
+            assertEquals("b1", b1.get(10, TimeUnit.SECONDS));
+            assertEquals("a2", a2.get(10, TimeUnit.SECONDS));
+            assertEquals("[1, 0]", relay.statusSReq(null).call().toString());
+            assertTrue(((KeyedIsolationInbox) relay.getReactor().inbox).isIdle());
+        } finally {
+            facility.close();
+        }
+    }
+
+    public void testNullKey() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            final Gate gate = new Gate(new NonBlockingReactor(facility));
+            final Relay relay = new Relay(new KeyedIsolationReactor(facility), gate);
+            relay.relayAReq("x1", null).signal();
+            relay.relayAReq("x2", null).signal();
+            assertTrue(gate.arrived.tryAcquire(1, 10, TimeUnit.SECONDS));
+            assertEquals("[2, 1]", relay.statusSReq("z").call().toString());
+            assertEquals("[x1]", gate.heldSReq().call().toString());
+            gate.releaseSReq("x1").call();
+            assertTrue(gate.arrived.tryAcquire(1, 10, TimeUnit.SECONDS));
+            assertEquals("[x2]", gate.heldSReq().call().toString());
+            gate.releaseSReq("x2").call();
+        } finally {
+            facility.close();
+        }
+    }
+
+    class Relay extends BladeBase {
+        private final Gate gate;
+
+        Relay(final KeyedIsolationReactor _reactor, final Gate _gate) throws Exception {
+            initialize(_reactor);
+            gate = _gate;
+        }
+
+        @Override
+        public ReactorBase getReactor() {
+            return (ReactorBase) super.getReactor();
+        }
+
+        AsyncRequest<String> relayAReq(final String _name, final Object _key) {
+            final AsyncRequest<String> request = new AsyncBladeRequest<String>() {
+                final AsyncResponseProcessor<String> dis = this;
+
+                @Override
+                protected void processAsyncRequest() throws Exception {
+                    send(gate.holdAReq(_name), dis);
+                }
+            };
+            request.setIsolationKey(_key);
+            return request;
+        }
+
+        SyncRequest<List<Integer>> statusSReq(final Object _key) {
+            final SyncRequest<List<Integer>> request = new SyncBladeRequest<List<Integer>>() {
+                @Override
+                protected List<Integer> processSyncRequest() throws Exception {
+                    final KeyedIsolationInbox inbox = (KeyedIsolationInbox) getReactor().inbox;
+                    final List<Integer> status = new ArrayList<Integer>();
+                    status.add(inbox.getActiveKeyCount());
+                    status.add(inbox.getWaitingCount());
+                    return status;
+                }
+            };
+            request.setIsolationKey(_key);
+            return request;
+        }
+    }
+
+    class Gate extends BladeBase {
+        final Semaphore arrived = new Semaphore(0);
+        private final Map<String, AsyncResponseProcessor<String>> held =
+                new LinkedHashMap<String, AsyncResponseProcessor<String>>();
+
+        Gate(final Reactor _reactor) throws Exception {
+            initialize(_reactor);
+        }
+
+        AsyncRequest<String> holdAReq(final String _name) {
+            return new AsyncBladeRequest<String>() {
+                @Override
+                protected void processAsyncRequest() throws Exception {
+                    held.put(_name, this);
+                    arrived.release();
+                }
+            };
+        }
+
+        SyncRequest<Void> releaseSReq(final String _name) {
+            return new SyncBladeRequest<Void>() {
+                @Override
+                protected Void processSyncRequest() throws Exception {
+                    held.remove(_name).processAsyncResponse(_name);
+                    return null;
+                }
+            };
+        }
+
+        SyncRequest<List<String>> heldSReq() {
+            return new SyncBladeRequest<List<String>>() {
+                @Override
+                protected List<String> processSyncRequest() throws Exception {
+                    return new ArrayList<String>(held.keySet());
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package org.agilewiki.jactor2.core.reactors;
+
+import junit.framework.TestCase;
+import org.agilewiki.jactor2.core.facilities.Plant;
+import org.agilewiki.jactor2.core.messages.Blade1;
+import org.agilewiki.jactor2.core.messages.Message;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * Test code.
+ */
+public class LinkedMessageQueueTest extends TestCase {
+
+    public void testOrder() throws Exception {
+        final LinkedMessageQueue queue = new LinkedMessageQueue();
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+        queue.offer(new TestMessage(0, 0));
+        final Queue<Message> block = new ArrayDeque<Message>();
+        block.add(new TestMessage(0, 1));
+        block.add(new TestMessage(0, 2));
+        queue.offer(block);
+        queue.offer(new TestMessage(0, 3));
+        assertEquals(4, queue.size());
+        for (int i = 0; i < 4; i++) {
+            assertFalse(queue.isEmpty());
+            assertEquals(i, ((TestMessage) queue.peek()).value);
+            assertEquals(i, ((TestMessage) queue.poll()).value);
+        }
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+
+        //a polled message can be added again
+        final TestMessage message = new TestMessage(0, 4);
+        queue.offer(message);
+        assertSame(message, queue.poll());
+        queue.offer(message);
+        assertSame(message, queue.poll());
+        assertNull(queue.poll());
+    }
+
+    public void testNotLinked() throws Exception {
+        final LinkedMessageQueue queue = new LinkedMessageQueue();
+        try {
+            queue.offer("not a message");
+            fail();
+        } catch (final IllegalArgumentException e) {
+        }
+        assertTrue(queue.isEmpty());
+    }
+
+    public void testProducers() throws Exception {
+        final int producers = 4;
+        final int count = 100000;
+        final LinkedMessageQueue queue = new LinkedMessageQueue();
+        final Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            threads[p] = new Thread() {
+                @Override
+                public void run() {
+                    Queue<Message> block = new ArrayDeque<Message>();
+                    for (int i = 0; i < count; i++) {
+                        if (i % 10 == 0) {
+                            queue.offer(block);
+                            block = new ArrayDeque<Message>();
+                            queue.offer(new TestMessage(producer, i));
+                        } else {
+                            block.add(new TestMessage(producer, i));
+                            if (block.size() == 7) {
+                                queue.offer(block);
+                                block = new ArrayDeque<Message>();
+                            }
+                        }
+                    }
+                    queue.offer(block);
+                }
+            };
+            threads[p].start();
+        }
+        final int[] next = new int[producers];
+        int received = 0;
+        while (received < producers * count) {
+            final TestMessage message = (TestMessage) queue.poll();
+            if (message == null) {
+                Thread.yield();
+                continue;
+            }
+            assertEquals(next[message.producer], message.value);
+            next[message.producer] += 1;
+            received += 1;
+        }
+        for (final Thread thread : threads)
+            thread.join();
+        assertNull(queue.poll());
+    }
+
+    public void testReactors() throws Exception {
+        final Plant plant = new Plant();
+        try {
+            final Reactor nonBlockingReactor = new NonBlockingReactor(plant) {
+                @Override
+                protected Inbox createInbox(final int _initialLocalQueueSize) {
+                    return new NonBlockingInbox(_initialLocalQueueSize, new LinkedMessageQueue());
+                }
+            };
+            final Reactor isolationReactor = new IsolationReactor(plant) {
+                @Override
+                protected Inbox createInbox(final int _initialLocalQueueSize) {
+                    return new IsolationInbox(_initialLocalQueueSize, new LinkedMessageQueue());
+                }
+            };
+            final Blade1 nonBlockingBlade = new Blade1(nonBlockingReactor);
+            final Blade1 isolationBlade = new Blade1(isolationReactor);
+            for (int i = 0; i < 1000; i++) {
+                assertEquals("Hello world!", nonBlockingBlade.hiSReq().call());
+                assertEquals("Hello world!", isolationBlade.hiSReq().call());
+            }
+        } finally {
+            plant.close();
+        }
+    }
+
+    static class TestMessage extends LinkedMessage {
+        final int producer;
+        final int value;
+
+        TestMessage(final int _producer, final int _value) {
+            producer = _producer;
+            value = _value;
+        }
+
+        @Override
+        public boolean isForeign() {
+            return false;
+        }
+
+        @Override
+        public boolean isResponsePending() {
+            return false;
+        }
+
+        @Override
+        public boolean isSignal() {
+            return true;
+        }
+
+        @Override
+        public boolean isIsolated() {
+            return false;
+        }
+
+        @Override
+        public void eval() {
+        }
+
+        @Override
+        public void processException(final Reactor _activeReactor, final Exception _e) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
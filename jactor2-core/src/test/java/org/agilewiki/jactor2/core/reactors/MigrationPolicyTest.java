@@ -0,0 +1,120 @@
+package org.agilewiki.jactor2.core.reactors;
+
+import junit.framework.TestCase;
+import org.agilewiki.jactor2.core.blades.BladeBase;
+import org.agilewiki.jactor2.core.facilities.Facility;
+import org.agilewiki.jactor2.core.messages.AsyncRequest;
+import org.agilewiki.jactor2.core.messages.AsyncResponseProcessor;
+import org.agilewiki.jactor2.core.messages.SyncRequest;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test code.
+ */
+public class MigrationPolicyTest extends TestCase {
+
+    public void testPolicy() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            final CountingPolicy always = new CountingPolicy(true);
+            final CountingPolicy never = new CountingPolicy(false);
+            final NonBlockingReactor echoReactor = new NonBlockingReactor(facility);
+            echoReactor.setMigrationPolicy(never);
+            final NonBlockingReactor relayReactor = new NonBlockingReactor(facility);
+            relayReactor.setMigrationPolicy(always);
+            final Relay relay = new Relay(relayReactor, new Echo(echoReactor));
+            for (int i = 0; i < 10; i++)
+                assertEquals(i, (int) relay.relayAReq(i).call());
+            assertTrue(always.offered.get() > 0);
+            assertTrue(always.migrated.get() > 0);
+            assertTrue(never.offered.get() > 0);
+            assertEquals(0, never.migrated.get());
+        } finally {
+            facility.close();
+        }
+    }
+
+    public void testBatchSize() throws Exception {
+        final MigrationPolicy policy = new BatchSizeMigrationPolicy(4);
+        assertFalse(policy.mayMigrate(null, null, 3));
+        assertTrue(policy.mayMigrate(null, null, 4));
+        assertTrue(MigrationPolicy.ALWAYS.mayMigrate(null, null, 1));
+        assertFalse(MigrationPolicy.NEVER.mayMigrate(null, null, 1000));
+    }
+
+    public void testAdaptive() throws Exception {
+        final AdaptiveMigrationPolicy policy = new AdaptiveMigrationPolicy(0.5, 4);
+        assertTrue(policy.mayMigrate(null, null, 1));
+        for (int i = 0; i < 10; i++)
+            policy.migrated(null, true);
+        assertTrue(policy.getHitRate() < 0.5);
+        assertFalse(policy.mayMigrate(null, null, 1));
+        assertFalse(policy.mayMigrate(null, null, 1));
+        assertFalse(policy.mayMigrate(null, null, 1));
+        assertTrue(policy.mayMigrate(null, null, 1));
+        assertFalse(policy.mayMigrate(null, null, 1));
+        for (int i = 0; i < 10; i++)
+            policy.migrated(null, false);
+        assertTrue(policy.getHitRate() >= 0.5);
+        assertTrue(policy.mayMigrate(null, null, 1));
+    }
+
+    static class CountingPolicy implements MigrationPolicy {
+        final boolean migrate;
+        final AtomicInteger offered = new AtomicInteger();
+        final AtomicInteger migrated = new AtomicInteger();
+
+        CountingPolicy(final boolean _migrate) {
+            migrate = _migrate;
+        }
+
+        @Override
+        public boolean mayMigrate(final UnboundReactor _source,
+                                  final UnboundReactor _target,
+                                  final int _messageCount) {
+            offered.incrementAndGet();
+            return migrate;
+        }
+
+        @Override
+        public void migrated(final UnboundReactor _source, final boolean _abandoned) {
+            migrated.incrementAndGet();
+        }
+    }
+
+    class Echo extends BladeBase {
+        Echo(final Reactor _reactor) throws Exception {
+            initialize(_reactor);
+        }
+
+        SyncRequest<Integer> echoSReq(final int _value) {
+            return new SyncBladeRequest<Integer>() {
+                @Override
+                protected Integer processSyncRequest() throws Exception {
+                    return _value;
+                }
+            };
+        }
+    }
+
+    class Relay extends BladeBase {
+        private final Echo echo;
+
+        Relay(final Reactor _reactor, final Echo _echo) throws Exception {
+            initialize(_reactor);
+            echo = _echo;
+        }
+
+        AsyncRequest<Integer> relayAReq(final int _value) {
+            return new AsyncBladeRequest<Integer>() {
+                final AsyncResponseProcessor<Integer> dis = this;
+
+                @Override
+                protected void processAsyncRequest() throws Exception {
+                    send(echo.echoSReq(_value), dis);
+                }
+            };
+        }
+    }
+}
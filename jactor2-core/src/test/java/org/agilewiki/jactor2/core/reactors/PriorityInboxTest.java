@@ -0,0 +1,152 @@
+package org.agilewiki.jactor2.core.reactors;
+
+import junit.framework.TestCase;
+import org.agilewiki.jactor2.core.blades.BladeBase;
+import org.agilewiki.jactor2.core.facilities.Facility;
+import org.agilewiki.jactor2.core.messages.SyncRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test code.
+ */
+public class PriorityInboxTest extends TestCase {
+
+    public void testLanes() throws Exception {
+        final PriorityInbox inbox = new PriorityInbox(16);
+        inbox.offer(false, new TestMessage("bulk", MessagePriority.LOW, true));
+        inbox.offer(false, new TestMessage("request", MessagePriority.NORMAL, true));
+        inbox.offer(false, new TestMessage("response", MessagePriority.LOW, false));
+        inbox.offer(true, new TestMessage("control", MessagePriority.HIGH, true));
+        assertEquals("control", ((TestMessage) inbox.poll()).name);
+        assertEquals("response", ((TestMessage) inbox.poll()).name);
+        assertEquals("request", ((TestMessage) inbox.poll()).name);
+        assertEquals("bulk", ((TestMessage) inbox.poll()).name);
+        assertNull(inbox.poll());
+        assertEquals(0, inbox.getDepth());
+        assertEquals(0, inbox.getLocalDepth());
+    }
+
+    public void testStarvation() throws Exception {
+        final PriorityInbox inbox = new PriorityInbox(16, 2, new LinkedMessageQueue());
+        inbox.offer(false, new TestMessage("low", MessagePriority.LOW, true));
+        inbox.offer(false, new TestMessage("normal", MessagePriority.NORMAL, true));
+        for (int i = 0; i < 6; i++)
+            inbox.offer(false, new TestMessage("high", MessagePriority.HIGH, true));
+        final List<String> order = new ArrayList<String>();
+        while (true) {
+            final TestMessage message = (TestMessage) inbox.poll();
+            if (message == null)
+                break;
+            order.add(message.name);
+        }
+        assertEquals("[high, high, normal, high, high, low, high, high]", order.toString());
+        assertEquals(2, inbox.getPromotedCount());
+    }
+
+    public void testReactor() throws Exception {
+        final Facility facility = new Facility();
+        try {
+            final Recorder recorder = new Recorder(new NonBlockingReactor(facility) {
+                @Override
+                protected Inbox createInbox(final int _initialLocalQueueSize) {
+                    return new PriorityInbox(_initialLocalQueueSize);
+                }
+            });
+            recorder.holdSReq().signal();
+            assertTrue(recorder.started.await(10, TimeUnit.SECONDS));
+            for (int i = 0; i < 5; i++)
+                recorder.recordSReq("bulk").setPriority(MessagePriority.LOW).signal();
+            recorder.recordSReq("request").signal();
+            recorder.recordSReq("ack").setPriority(MessagePriority.HIGH).signal();
+            recorder.release.countDown();
+            recorder.recordSReq("last").setPriority(MessagePriority.LOW).call();
+            assertEquals("[ack, request, bulk, bulk, bulk, bulk, bulk, last]", recorder.order.toString());
+        } finally {
+            facility.close();
+        }
+    }
+
+    static class TestMessage extends LinkedMessage {
+        final String name;
+        final MessagePriority priority;
+        final boolean responsePending;
+
+        TestMessage(final String _name, final MessagePriority _priority, final boolean _responsePending) {
+            name = _name;
+            priority = _priority;
+            responsePending = _responsePending;
+        }
+
+        @Override
+        public MessagePriority getPriority() {
+            return priority;
+        }
+
+        @Override
+        public boolean isForeign() {
+            return false;
+        }
+
+        @Override
+        public boolean isResponsePending() {
+            return responsePending;
+        }
+
+        @Override
+        public boolean isSignal() {
+            return false;
+        }
+
+        @Override
+        public boolean isIsolated() {
+            return false;
+        }
+
+        @Override
+        public void eval() {
+        }
+
+        @Override
+        public void processException(final Reactor _activeReactor, final Exception _e) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    class Recorder extends BladeBase {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> order = new ArrayList<String>();
+
+        Recorder(final Reactor _reactor) throws Exception {
+            initialize(_reactor);
+        }
+
+        SyncRequest<Void> holdSReq() {
+            return new SyncBladeRequest<Void>() {
+                @Override
+                protected Void processSyncRequest() throws Exception {
+                    started.countDown();
+                    release.await(10, TimeUnit.SECONDS);
+                    return null;
+                }
+            };
+        }
+
+        SyncRequest<Void> recordSReq(final String _name) {
+            return new SyncBladeRequest<Void>() {
+                @Override
+                protected Void processSyncRequest() throws Exception {
+                    order.add(_name);
+                    return null;
+                }
+            };
+        }
+    }
+}
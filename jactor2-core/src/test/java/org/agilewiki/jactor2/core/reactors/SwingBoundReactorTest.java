@@ -0,0 +1,128 @@
+package org.agilewiki.jactor2.core.reactors;
+
+import junit.framework.TestCase;
+import org.agilewiki.jactor2.core.blades.BladeBase;
+import org.agilewiki.jactor2.core.facilities.Facility;
+import org.agilewiki.jactor2.core.messages.SyncRequest;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test code. A single-thread executor stands in for the event-dispatch thread,
+ * so no display is needed.
+ */
+public class SwingBoundReactorTest extends TestCase {
+
+    public void testBatches() throws Exception {
+        final Facility facility = new Facility();
+        final ExecutorService edt = Executors.newSingleThreadExecutor();
+        try {
+            final CountDownLatch hold = new CountDownLatch(1);
+            edt.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        hold.await(10, TimeUnit.SECONDS);
+                    } catch (final InterruptedException e) {
+                    }
+                }
+            });
+            final TestReactor reactor = new TestReactor(facility, edt);
+            reactor.setBatchSize(100);
+            final Updater updater = new Updater(reactor, 1000);
+            for (int i = 0; i < 1000; i++)
+                updater.updateSReq().signal();
+            assertEquals(1, reactor.invokeLaterCount.get());
+            hold.countDown();
+            assertTrue(updater.done.await(10, TimeUnit.SECONDS));
+            assertEquals(10, reactor.invokeLaterCount.get());
+            assertEquals(100, reactor.maxBatch);
+        } finally {
+            facility.close();
+            edt.shutdown();
+        }
+    }
+
+    public void testLoad() throws Exception {
+        final Facility facility = new Facility();
+        final ExecutorService edt = Executors.newSingleThreadExecutor();
+        try {
+            final TestReactor reactor = new TestReactor(facility, edt);
+            final Updater updater = new Updater(reactor, 10000);
+            final Thread[] senders = new Thread[4];
+            for (int t = 0; t < senders.length; t++) {
+                senders[t] = new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            for (int i = 0; i < 2500; i++)
+                                updater.updateSReq().signal();
+                        } catch (final Exception e) {
+                            e.printStackTrace();
+                        }
+                    }
+                };
+                senders[t].start();
+            }
+            for (final Thread sender : senders)
+                sender.join();
+            assertTrue(updater.done.await(10, TimeUnit.SECONDS));
+            final int calls = reactor.invokeLaterCount.get();
+            System.out.println("invokeLater calls for 10000 updates: " + calls);
+            assertTrue(calls < 5000);
+            assertTrue(reactor.maxBatch <= SwingBoundReactor.DEFAULT_BATCH_SIZE);
+        } finally {
+            facility.close();
+            edt.shutdown();
+        }
+    }
+
+    static class TestReactor extends SwingBoundReactor {
+        final ExecutorService edt;
+        final AtomicInteger invokeLaterCount = new AtomicInteger();
+        volatile int processed;
+        volatile int maxBatch;
+
+        TestReactor(final Facility _facility, final ExecutorService _edt) throws Exception {
+            super(_facility);
+            edt = _edt;
+        }
+
+        @Override
+        protected void invokeLater(final Runnable _runnable) {
+            invokeLaterCount.incrementAndGet();
+            edt.execute(new Runnable() {
+                @Override
+                public void run() {
+                    final int before = processed;
+                    _runnable.run();
+                    maxBatch = Math.max(maxBatch, processed - before);
+                }
+            });
+        }
+    }
+
+    class Updater extends BladeBase {
+        final CountDownLatch done;
+
+        Updater(final TestReactor _reactor, final int _count) throws Exception {
+            initialize(_reactor);
+            done = new CountDownLatch(_count);
+        }
+
+        SyncRequest<Void> updateSReq() {
+            return new SyncBladeRequest<Void>() {
+                @Override
+                protected Void processSyncRequest() throws Exception {
+                    ((TestReactor) getReactor()).processed += 1;
+                    done.countDown();
+                    return null;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package org.agilewiki.jactor2.core.reactors.timings;
+
+import junit.framework.TestCase;
+import org.agilewiki.jactor2.core.reactors.LinkedMessage;
+import org.agilewiki.jactor2.core.reactors.LinkedMessageQueue;
+import org.agilewiki.jactor2.core.reactors.Reactor;
+
+import java.lang.management.ManagementFactory;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Compares the concurrent queue used by default by the inboxes, a ConcurrentLinkedQueue,
+ * with a LinkedMessageQueue. Several producers add messages which are polled by a
+ * single consumer, as when requests are sent to a reactor from other threads.
+ * The bytes allocated by the producers are only reported on JVMs which support
+ * com.sun.management.ThreadMXBean.
+ * For steadier numbers, run InboxQueueBenchmark in jactor2-benchmarks.
+ */
+public class InboxTimingsTest extends TestCase {
+    private static final int PRODUCERS = 4;
+    private static final int MESSAGES = 1000000;
+
+    public void test() throws Exception {
+
+        //1 CPU:
+        //ConcurrentLinkedQueue messages/second = 16,736,401, bytes allocated/message = 24
+        //LinkedMessageQueue messages/second = 43,010,752, bytes allocated/message = 0
+
+        for (int i = 0; i < 3; i++) {
+            time("ConcurrentLinkedQueue", new ConcurrentLinkedQueue<Object>());
+            time("LinkedMessageQueue", new LinkedMessageQueue());
+        }
+    }
+
+    private void time(final String _name, final Queue<Object> _queue) throws Exception {
+        final TestMessage[][] messages = new TestMessage[PRODUCERS][MESSAGES];
+        for (int p = 0; p < PRODUCERS; p++) {
+            for (int i = 0; i < MESSAGES; i++) {
+                messages[p][i] = new TestMessage();
+            }
+        }
+        final long[] allocated = new long[PRODUCERS];
+        final Thread[] producers = new Thread[PRODUCERS];
+        for (int p = 0; p < PRODUCERS; p++) {
+            final int producer = p;
+            producers[p] = new Thread() {
+                @Override
+                public void run() {
+                    final long a0 = allocatedBytes();
+                    final TestMessage[] m = messages[producer];
+                    for (int i = 0; i < MESSAGES; i++) {
+                        _queue.offer(m[i]);
+                    }
+                    allocated[producer] = allocatedBytes() - a0;
+                }
+            };
+        }
+        final long t0 = System.nanoTime();
+        for (final Thread producer : producers)
+            producer.start();
+        final long total = (long) PRODUCERS * MESSAGES;
+        long received = 0;
+        while (received < total) {
+            if (_queue.poll() == null)
+                Thread.yield();
+            else
+                received += 1;
+        }
+        final long t1 = System.nanoTime();
+        for (final Thread producer : producers)
+            producer.join();
+        long bytes = 0;
+        for (final long a : allocated)
+            bytes += a;
+        final long d = (t1 - t0) / 1000000L;
+        System.out.println(_name + " messages = " + total +
+                ", time in millis = " + d +
+                ", messages/second = " + (d > 0 ? total * 1000L / d : 0) +
+                (bytes < 0 ? "" : ", bytes allocated/message = " + bytes / total));
+    }
+
+    /**
+     * Returns the bytes allocated so far by the current thread, or a large negative
+     * number when this is not supported.
+     */
+    private static long allocatedBytes() {
+        final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(
+                    Thread.currentThread().getId());
+        return Long.MIN_VALUE / 2;
+    }
+
+    static class TestMessage extends LinkedMessage {
+        @Override
+        public boolean isForeign() {
+            return true;
+        }
+
+        @Override
+        public boolean isResponsePending() {
+            return false;
+        }
+
+        @Override
+        public boolean isSignal() {
+            return true;
+        }
+
+        @Override
+        public boolean isIsolated() {
+            return false;
+        }
+
+        @Override
+        public void eval() {
+        }
+
+        @Override
+        public void processException(final Reactor _activeReactor, final Exception _e) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package org.agilewiki.jactor2.vthread;
+
+import org.agilewiki.jactor2.core.facilities.Facility;
+import org.agilewiki.jactor2.core.messages.Message;
+import org.agilewiki.jactor2.core.reactors.Inbox;
+import org.agilewiki.jactor2.core.reactors.IsolationInbox;
+import org.agilewiki.jactor2.core.reactors.ReactorBase;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A targetReactor for blades which block, as when doing I/O, that is run by a virtual thread
+ * rather than by a thread of the facility's thread pool.
+ * <p>
+ * An IsolationReactor ties up a pool thread for as long as a request blocks, so a few slow
+ * requests can leave a facility with no threads to run its other reactors. When a request
+ * processed by a VirtualThreadReactor blocks, only the virtual thread is parked and its carrier
+ * thread is free to run other virtual threads. So thousands of blocking requests can be in
+ * progress at the same time while the facility keeps a small pool of platform threads.
+ * </p>
+ * <p>
+ * As with an IsolationReactor, each request is processed to completion before the next request
+ * is started, and the messages of a reactor are only ever processed by one thread at a time.
+ * A virtual thread is started when a message is passed to an idle reactor, and it ends when the
+ * inbox has been emptied. Virtual threads are not pool threads, so the blades of a
+ * VirtualThreadReactor may also use call to wait for the response to a request.
+ * </p>
+ * <p>
+ * Buffered messages are disbursed after each message is processed. Threads never migrate into
+ * or out of a VirtualThreadReactor, so a pool thread is never left blocked by one of its blades.
+ * </p>
+ * <p>
+ * The Inbox used by VirtualThreadReactor is IsolationInbox. Requests passed to a
+ * VirtualThreadReactor are isolated, just as with an IsolationReactor, so isolated requests
+ * can not be nested through it.
+ * </p>
+ */
+public class VirtualThreadReactor extends ReactorBase {
+
+    /**
+     * Creates the virtual threads which run the reactors.
+     */
+    private static final ThreadFactory virtualThreadFactory =
+            Thread.ofVirtual().name("jactor2-vthread-", 0).factory();
+
+    /**
+     * A reference to the virtual thread that is executing this targetReactor.
+     */
+    private final AtomicReference<Thread> threadReference = new AtomicReference<Thread>();
+
+    /**
+     * Run by the virtual thread, this processes messages until the inbox is empty.
+     */
+    private final Runnable activation = new Runnable() {
+        @Override
+        public void run() {
+            final Thread currentThread = Thread.currentThread();
+            while (true) {
+                if (metrics != null)
+                    metrics.started();
+                try {
+                    VirtualThreadReactor.this.run();
+                } catch (final Throwable e) {
+                    log.error("Exception thrown by a targetReactor's run method", e);
+                }
+                final boolean hasWork = hasWork();
+                threadReference.set(null);
+                if (!hasWork && !hasConcurrent())
+                    return;
+                if (!threadReference.compareAndSet(null, currentThread))
+                    return;
+            }
+        }
+    };
+
+    /**
+     * Create a virtual thread targetReactor.
+     *
+     * @param _facility The facility of the targetReactor.
+     */
+    public VirtualThreadReactor(final Facility _facility) throws Exception {
+        super(_facility, _facility.getInitialBufferSize(),
+                _facility.getInitialLocalMessageQueueSize());
+    }
+
+    /**
+     * Create a virtual thread targetReactor.
+     *
+     * @param _facility              The facility of the targetReactor.
+     * @param _initialOutboxSize     Initial size of the outbox for each unique message destination.
+     * @param _initialLocalQueueSize The initial number of slots in the doLocal queue.
+     */
+    public VirtualThreadReactor(final Facility _facility,
+                                final int _initialOutboxSize,
+                                final int _initialLocalQueueSize) throws Exception {
+        super(_facility, _initialOutboxSize, _initialLocalQueueSize);
+    }
+
+    @Override
+    protected Inbox createInbox(final int _initialLocalQueueSize) {
+        return new IsolationInbox(_initialLocalQueueSize);
+    }
+
+    @Override
+    public AtomicReference<Thread> getThreadReference() {
+        return threadReference;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return threadReference.get() != null;
+    }
+
+    @Override
+    public boolean isIdler() {
+        return false;
+    }
+
+    @Override
+    public boolean isIsolating() {
+        return true;
+    }
+
+    @Override
+    protected void afterAdd() throws Exception {
+        if (threadReference.get() != null)
+            return;
+        final Thread thread = virtualThreadFactory.newThread(activation);
+        if (threadReference.compareAndSet(null, thread)) {
+            if (metrics != null)
+                metrics.submitted();
+            thread.start();
+        }
+    }
+
+    @Override
+    protected void notBusy() throws Exception {
+        flush();
+    }
+
+    @Override
+    protected void processMessage(final Message _message) {
+        super.processMessage(_message);
+        try {
+            flush();
+        } catch (final Exception e) {
+            log.error("Exception thrown by flush", e);
+        }
+    }
+
+    /**
+     * The flush method disburses all buffered message to their target targetReactor for
+     * processing.
+     *
+     * @return True when one or more buffered messages were delivered.
+     */
+    public final boolean flush() throws Exception {
+        boolean result = false;
+        final Iterator<Map.Entry<ReactorBase, ArrayDeque<Message>>> iter = outbox.getIterator();
+        if (iter != null) {
+            while (iter.hasNext()) {
+                result = true;
+                final Map.Entry<ReactorBase, ArrayDeque<Message>> entry = iter.next();
+                final ReactorBase target = entry.getKey();
+                final ArrayDeque<Message> messages = entry.getValue();
+                iter.remove();
+                if (metrics != null)
+                    metrics.batch(messages.size());
+                target.unbufferedAddMessages(messages);
+            }
+            if (result && metrics != null)
+                metrics.flushed();
+        }
+        return result;
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            final Message message = inbox.poll();
+            if (message == null) {
+                try {
+                    notBusy();
+                } catch (final Exception e) {
+                    log.error("Exception thrown by flush", e);
+                }
+                if (hasWork())
+                    continue;
+                return;
+            }
+            processMessage(message);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+/**
+ * <h1>Virtual Thread Reactors</h1>
+ * <p>
+ *     VirtualThreadReactor is for blades which block, as when doing I/O. Each time it has
+ *     messages to process, it is run by a new virtual thread rather than by a thread of the
+ *     facility's thread pool, so a blocked request does not hold onto a pool thread.
+ * </p>
+ * <p>
+ *     This module requires Java 21 and is only built when Maven is run with Java 21 or later.
+ * </p>
+ */
+package org.agilewiki.jactor2.vthread;
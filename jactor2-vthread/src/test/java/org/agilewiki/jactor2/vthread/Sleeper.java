@@ -0,0 +1,25 @@
+package org.agilewiki.jactor2.vthread;
+
+import org.agilewiki.jactor2.core.blades.BladeBase;
+import org.agilewiki.jactor2.core.messages.SyncRequest;
+import org.agilewiki.jactor2.core.reactors.Reactor;
+
+/**
+ * Test code.
+ */
+public class Sleeper extends BladeBase {
+
+    public Sleeper(final Reactor _reactor) throws Exception {
+        initialize(_reactor);
+    }
+
+    public SyncRequest<Thread> sleepSReq(final long _delay) {
+        return new SyncBladeRequest<Thread>() {
+            @Override
+            protected Thread processSyncRequest() throws Exception {
+                Thread.sleep(_delay);
+                return Thread.currentThread();
+            }
+        };
+    }
+}
@@ -0,0 +1,160 @@
+package org.agilewiki.jactor2.vthread;
+
+import junit.framework.TestCase;
+import org.agilewiki.jactor2.core.blades.BladeBase;
+import org.agilewiki.jactor2.core.facilities.Facility;
+import org.agilewiki.jactor2.core.messages.AsyncRequest;
+import org.agilewiki.jactor2.core.messages.AsyncResponseProcessor;
+import org.agilewiki.jactor2.core.messages.SyncRequest;
+import org.agilewiki.jactor2.core.reactors.NonBlockingReactor;
+import org.agilewiki.jactor2.core.reactors.Reactor;
+
+/**
+ * Test code.
+ */
+public class VirtualThreadReactorTest extends TestCase {
+
+    public void testCall() throws Exception {
+        final Facility facility = new Facility(1);
+        try {
+            final VirtualThreadReactor reactor = new VirtualThreadReactor(facility);
+            final Sleeper sleeper = new Sleeper(reactor);
+            final Thread thread = sleeper.sleepSReq(1).call();
+            assertTrue(thread.isVirtual());
+            thread.join();
+            assertFalse(reactor.isRunning());
+        } finally {
+            facility.close();
+        }
+    }
+
+    public void testSend() throws Exception {
+        final Facility facility = new Facility(1);
+        try {
+            final Counter counter = new Counter(new VirtualThreadReactor(facility));
+            final Driver driver = new Driver(new NonBlockingReactor(facility));
+            assertEquals(100, (int) driver.countAReq(counter, 100).call());
+        } finally {
+            facility.close();
+        }
+    }
+
+    public void testBlockingCall() throws Exception {
+        final Facility facility = new Facility(1);
+        try {
+            final Counter counter = new Counter(new NonBlockingReactor(facility));
+            final Caller caller = new Caller(new VirtualThreadReactor(facility));
+            assertEquals(1, (int) caller.callSReq(counter).call());
+        } finally {
+            facility.close();
+        }
+    }
+
+    public void testNestedIsolation() throws Exception {
+        final Facility facility = new Facility(1);
+        try {
+            final Counter counter = new Counter(new VirtualThreadReactor(facility));
+            final VirtualThreadReactor reactor = new VirtualThreadReactor(facility);
+            final Forwarder forwarder = new Forwarder(reactor);
+            final Forwarder driver = new Forwarder(new NonBlockingReactor(facility));
+            assertEquals(1, (int) driver.forwardAReq(forwarder, counter).call());
+            final Counter local = new Counter(reactor);
+            try {
+                driver.forwardAReq(forwarder, local).call();
+                fail();
+            } catch (final UnsupportedOperationException e) {
+            }
+        } finally {
+            facility.close();
+        }
+    }
+
+    class Counter extends BladeBase {
+        int count;
+
+        Counter(final Reactor _reactor) throws Exception {
+            initialize(_reactor);
+        }
+
+        SyncRequest<Integer> incrementSReq() {
+            return new SyncBladeRequest<Integer>() {
+                @Override
+                protected Integer processSyncRequest() throws Exception {
+                    count += 1;
+                    return count;
+                }
+            };
+        }
+    }
+
+    class Driver extends BladeBase {
+        Driver(final Reactor _reactor) throws Exception {
+            initialize(_reactor);
+        }
+
+        AsyncRequest<Integer> countAReq(final Counter _counter, final int _count) {
+            return new AsyncBladeRequest<Integer>() {
+                final AsyncResponseProcessor<Integer> dis = this;
+                int pending = _count;
+                int max;
+
+                @Override
+                protected void processAsyncRequest() throws Exception {
+                    for (int i = 0; i < _count; i++) {
+                        send(_counter.incrementSReq(), new AsyncResponseProcessor<Integer>() {
+                            @Override
+                            public void processAsyncResponse(final Integer _response) throws Exception {
+                                max = Math.max(max, _response);
+                                pending -= 1;
+                                if (pending == 0)
+                                    dis.processAsyncResponse(max);
+                            }
+                        });
+                    }
+                }
+            };
+        }
+    }
+
+    class Forwarder extends BladeBase {
+        Forwarder(final Reactor _reactor) throws Exception {
+            initialize(_reactor);
+        }
+
+        AsyncRequest<Integer> forwardAReq(final Counter _counter) {
+            return new AsyncBladeRequest<Integer>() {
+                @Override
+                protected void processAsyncRequest() throws Exception {
+                    send(_counter.incrementSReq(), this);
+                }
+            };
+        }
+
+        AsyncRequest<Integer> forwardAReq(final Forwarder _forwarder, final Counter _counter) {
+            return new AsyncBladeRequest<Integer>() {
+                @Override
+                protected void processAsyncRequest() throws Exception {
+                    send(_forwarder.forwardAReq(_counter), this);
+                }
+            };
+        }
+    }
+
+    /**
+     * Uses call, which would deadlock a pool thread, from a virtual thread.
+     */
+    class Caller extends BladeBase {
+        Caller(final Reactor _reactor) throws Exception {
+            initialize(_reactor);
+        }
+
+        SyncRequest<Integer> callSReq(final Counter _counter) {
+            return new SyncBladeRequest<Integer>() {
+                @Override
+                protected Integer processSyncRequest() throws Exception {
+                    return _counter.incrementSReq().call();
+                }
+            };
+        }
+    }
+}
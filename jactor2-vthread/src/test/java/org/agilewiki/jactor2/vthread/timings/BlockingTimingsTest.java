@@ -0,0 +1,85 @@
+package org.agilewiki.jactor2.vthread.timings;
+
+import junit.framework.TestCase;
+import org.agilewiki.jactor2.core.blades.BladeBase;
+import org.agilewiki.jactor2.core.facilities.Facility;
+import org.agilewiki.jactor2.core.messages.AsyncRequest;
+import org.agilewiki.jactor2.core.messages.AsyncResponseProcessor;
+import org.agilewiki.jactor2.core.reactors.IsolationReactor;
+import org.agilewiki.jactor2.core.reactors.NonBlockingReactor;
+import org.agilewiki.jactor2.core.reactors.Reactor;
+import org.agilewiki.jactor2.vthread.Sleeper;
+import org.agilewiki.jactor2.vthread.VirtualThreadReactor;
+
+/**
+ * Compares many concurrent blocking requests on isolation reactors and on
+ * virtual thread reactors, with a small pool of platform threads.
+ */
+public class BlockingTimingsTest extends TestCase {
+
+    private static final int THREADS = 4;
+    private static final int SLEEPERS = 1000;
+    private static final long DELAY = 10;
+
+    public void testIsolation() throws Exception {
+        final Facility facility = new Facility(THREADS);
+        try {
+            final Sleeper[] sleepers = new Sleeper[SLEEPERS];
+            for (int i = 0; i < SLEEPERS; i++)
+                sleepers[i] = new Sleeper(new IsolationReactor(facility));
+            time("isolation", facility, sleepers);
+        } finally {
+            facility.close();
+        }
+    }
+
+    public void testVirtualThread() throws Exception {
+        final Facility facility = new Facility(THREADS);
+        try {
+            final Sleeper[] sleepers = new Sleeper[SLEEPERS];
+            for (int i = 0; i < SLEEPERS; i++)
+                sleepers[i] = new Sleeper(new VirtualThreadReactor(facility));
+            time("virtual thread", facility, sleepers);
+        } finally {
+            facility.close();
+        }
+    }
+
+    private void time(final String _name, final Facility _facility, final Sleeper[] _sleepers)
+            throws Exception {
+        final Driver driver = new Driver(new NonBlockingReactor(_facility));
+        driver.sleepAReq(_sleepers).call();
+        final long t0 = System.nanoTime();
+        driver.sleepAReq(_sleepers).call();
+        final long t1 = System.nanoTime();
+        System.out.println(_name + ": " + SLEEPERS + " requests blocking for " + DELAY +
+                "ms on " + THREADS + " pool threads took " + (t1 - t0) / 1000000 + "ms");
+    }
+
+    class Driver extends BladeBase {
+        Driver(final Reactor _reactor) throws Exception {
+            initialize(_reactor);
+        }
+
+        AsyncRequest<Void> sleepAReq(final Sleeper[] _sleepers) {
+            return new AsyncBladeRequest<Void>() {
+                final AsyncResponseProcessor<Void> dis = this;
+                int pending = _sleepers.length;
+
+                @Override
+                protected void processAsyncRequest() throws Exception {
+                    for (final Sleeper sleeper : _sleepers) {
+                        send(sleeper.sleepSReq(DELAY), new AsyncResponseProcessor<Thread>() {
+                            @Override
+                            public void processAsyncResponse(final Thread _response) throws Exception {
+                                pending -= 1;
+                                if (pending == 0)
+                                    dis.processAsyncResponse(null);
+                            }
+                        });
+                    }
+                }
+            };
+        }
+    }
+}